@@ -10,4 +10,12 @@ public record AppliedStep(
         BigDecimal totalBefore,
         BigDecimal totalAfter,
         String note
-) {}
+) {
+    /**
+     * Whether a {@link SpendBudget} capped or skipped this step, which depends on what earlier orders spent.
+     */
+    public boolean limitedByBudget() {
+        return note != null && (note.equals(GroupedStackingApplier.BUDGET_EXHAUSTED)
+                || note.startsWith(GroupedStackingApplier.BUDGET_CAPPED));
+    }
+}
@@ -5,6 +5,7 @@ import com.example.fpcore.Result;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Evaluates all eligible rules and applies only the one with the biggest discount.
@@ -15,6 +16,16 @@ public final class BestDiscountWinsEngine {
     public record AppliedDiscount(String ruleName, DiscountGroup group, BigDecimal amount) {}
     private record Candidate(DiscountRule rule, BigDecimal amount) {}
 
+    private final RuleEvaluator evaluator;
+
+    public BestDiscountWinsEngine() {
+        this(RuleEvaluator.DIRECT);
+    }
+
+    public BestDiscountWinsEngine(RuleEvaluator evaluator) {
+        this.evaluator = Objects.requireNonNull(evaluator, "evaluator");
+    }
+
     public AppliedDiscount pickBest(OrderContext ctx, List<DiscountRule> rules) {
         return pickBestResult(ctx, rules)
                 .orElse(() -> Result.success(noDiscount()))
@@ -24,7 +35,7 @@ public final class BestDiscountWinsEngine {
     public Result<AppliedDiscount> pickBestResult(OrderContext ctx, List<DiscountRule> rules) {
         Candidate best = null;
         for (DiscountRule rule : rules) {
-            Result<BigDecimal> evaluated = rule.evaluate(ctx);
+            Result<BigDecimal> evaluated = evaluator.evaluate(rule, ctx);
             if (evaluated.isFailure()) {
                 return Result.failure(evaluated.failureCause());
             }
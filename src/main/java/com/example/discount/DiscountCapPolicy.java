@@ -19,4 +19,15 @@ public final class DiscountCapPolicy {
                 .multiply(maxRatio)
                 .setScale(2, RoundingMode.HALF_UP);
     }
+
+    /**
+     * Same cap expressed in cents, for primitive (batch) pricing paths.
+     */
+    public long maxAllowedDiscountCents(long subtotalCents) {
+        return BigDecimal.valueOf(subtotalCents, 2)
+                .multiply(maxRatio)
+                .setScale(2, RoundingMode.HALF_UP)
+                .unscaledValue()
+                .longValueExact();
+    }
 }
@@ -1,47 +1,221 @@
 package com.example.discount;
 
+import com.example.discount.jfr.QuoteEvent;
 import com.example.discount.validation.DiscountValidation;
+import com.example.fpcore.Option;
 import com.example.fpcore.Result;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * End-to-end grouped stacking orchestration (best-per-group + group order + exclusivity + cap + audit).
  */
 public final class DiscountOrchestratorV2 {
 
-    private final GroupedSelector selector = new GroupedSelector();
     private final GroupedStackingApplier applier = new GroupedStackingApplier();
+    private final StackingPolicy policy;
+    private final Option<OptimalStackingSolver> solver;
+    private final List<RuleInterceptor> interceptors;
+    private final PricingTracer tracer;
+    private final SpendBudget budget;
+    private final String tenant;
+    // budget with the tenant's rule names scoped to it
+    private final SpendBudget tenantBudget;
+
+    public DiscountOrchestratorV2() {
+        this(StackingPolicy.defaults());
+    }
+
+    public DiscountOrchestratorV2(StackingPolicy policy) {
+        this(policy, Option.none(), List.of(), PricingTracer.OFF, SpendBudget.UNLIMITED, null);
+    }
+
+    private DiscountOrchestratorV2(StackingPolicy policy, Option<OptimalStackingSolver> solver,
+                                   List<RuleInterceptor> interceptors, PricingTracer tracer, SpendBudget budget,
+                                   String tenant) {
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.solver = solver;
+        this.interceptors = List.copyOf(interceptors);
+        this.tracer = Objects.requireNonNull(tracer, "tracer");
+        this.budget = Objects.requireNonNull(budget, "budget");
+        this.tenant = tenant;
+        this.tenantBudget = budget.forTenant(tenant);
+    }
+
+    /**
+     * Same orchestrator, but the group order is chosen per order by {@link OptimalStackingSolver}
+     * instead of following {@link StackingPolicy#groupOrder()} greedily.
+     */
+    public DiscountOrchestratorV2 withOptimalStacking(OptimalStackingSolver.Objective objective) {
+        return new DiscountOrchestratorV2(policy, Option.some(new OptimalStackingSolver(objective)), interceptors, tracer, budget, tenant);
+    }
+
+    /**
+     * Same orchestrator with one more interceptor around rule evaluation (outermost last).
+     * Notes recorded by interceptors are appended to the audit trail as zero-amount steps.
+     */
+    public DiscountOrchestratorV2 withInterceptor(RuleInterceptor interceptor) {
+        Objects.requireNonNull(interceptor, "interceptor");
+        List<RuleInterceptor> next = new ArrayList<>(interceptors);
+        next.add(interceptor);
+        return new DiscountOrchestratorV2(policy, solver, next, tracer, budget, tenant);
+    }
+
+    /**
+     * Same orchestrator; quotes sampled by {@code tracer} through {@link #priceValidated} record validation,
+     * rule outcomes, per-group selection and stacking steps (see {@link TraceSnapshot}).
+     */
+    public DiscountOrchestratorV2 withTracer(PricingTracer tracer) {
+        return new DiscountOrchestratorV2(policy, solver, interceptors, tracer, budget, tenant);
+    }
+
+    /**
+     * Same orchestrator (solver, interceptors, tracer) stacking with another policy, e.g. a tenant's.
+     */
+    public DiscountOrchestratorV2 withPolicy(StackingPolicy policy) {
+        return new DiscountOrchestratorV2(policy, solver, interceptors, tracer, budget, tenant);
+    }
+
+    /**
+     * Same orchestrator; every discount about to be applied is first reserved from {@code budget}, and capped or
+     * skipped (with a note) when the rule's budget runs out. Pass {@link SpendBudget#readOnly()} to price against
+     * the remaining budgets without spending them.
+     */
+    public DiscountOrchestratorV2 withSpendBudget(SpendBudget budget) {
+        return new DiscountOrchestratorV2(policy, solver, interceptors, tracer, budget, tenant);
+    }
+
+    /**
+     * Same orchestrator pricing with {@code tenant}'s own catalog; interceptors keep their per-rule state for that
+     * tenant apart from the shared rules and other tenants with the same rule names, and its rules are budgeted under
+     * {@link SpendBudget#key}. {@code null} is the shared rules.
+     */
+    public DiscountOrchestratorV2 forTenant(String tenant) {
+        return new DiscountOrchestratorV2(policy, solver, interceptors, tracer, budget, tenant);
+    }
+
+    /**
+     * Same orchestrator; every rule is evaluated within {@code budget}'s request deadline and per-rule limit, and an
+     * overrunning rule is skipped or fails the quote (with a note) instead of holding it.
+     */
+    public DiscountOrchestratorV2 withEvaluationBudget(EvaluationBudget budget) {
+        return withInterceptor(budget);
+    }
+
+    /**
+     * Same orchestrator; rules quarantined by {@code monitor} are skipped and noted in the audit trail.
+     */
+    public DiscountOrchestratorV2 withRuleHealthMonitor(RuleHealthMonitor monitor) {
+        return withInterceptor(monitor);
+    }
+
+    public StackingPolicy policy() {
+        return policy;
+    }
 
     public PricingResult price(OrderContext ctx, List<DiscountRule> rules) {
         return priceValidated(ctx, rules).getOrThrow();
     }
 
     public Result<PricingResult> priceResult(OrderContext ctx, List<DiscountRule> rules) {
-        return selector.selectBestPerGroupResult(ctx, rules)
-                .map(selected -> applySelected(ctx, selected));
+        return priceResult(ctx, rules, RuleEvaluator.DIRECT);
+    }
+
+    Result<PricingResult> priceResult(OrderContext ctx, List<DiscountRule> rules, RuleEvaluator evaluator) {
+        return priceResult(ctx, rules, evaluator, PricingTrace.OFF);
     }
 
+    private Result<PricingResult> priceResult(OrderContext ctx, List<DiscountRule> rules, RuleEvaluator evaluator, PricingTrace trace) {
+        if (interceptors.isEmpty()) {
+            return select(ctx, rules, evaluator, trace)
+                    .map(selected -> applySelected(ctx, selected, trace));
+        }
+
+        RuleNotes notes = new RuleNotes();
+        RuleEvaluator chain = evaluator;
+        for (RuleInterceptor interceptor : interceptors) {
+            chain = interceptor.around(chain, notes, tenant);
+        }
+        return select(ctx, rules, chain, trace)
+                .map(selected -> withNotes(applySelected(ctx, selected, trace), notes));
+    }
+
+    /**
+     * Validates, then prices. Quotes slower than the {@link QuoteEvent} threshold are recorded when a JFR
+     * recording enables it.
+     */
     public Result<PricingResult> priceValidated(OrderContext ctx, List<DiscountRule> rules) {
-        return DiscountValidation.validate(ctx, rules)
-                .toResult()
-                .flatMap(command -> priceResult(command.context(), command.rules()));
+        QuoteEvent event = new QuoteEvent();
+        event.begin();
+        Result<PricingResult> result = priceTraced(ctx, rules);
+        event.end();
+        if (event.shouldCommit()) {
+            commit(event, ctx, rules, result);
+        }
+        return result;
+    }
+
+    private Result<PricingResult> priceTraced(OrderContext ctx, List<DiscountRule> rules) {
+        PricingTrace trace = tracer.begin();
+        long start = trace.now();
+        Result<DiscountValidation.PricingCommand> command = DiscountValidation.validate(ctx, rules).toResult();
+        trace.stage(TraceSnapshot.Kind.VALIDATION, start);
+        try {
+            return trace.finish(command.flatMap(c -> priceResult(c.context(), c.rules(), RuleEvaluator.DIRECT, trace)));
+        } catch (RuntimeException e) {
+            trace.finish(Result.failure(e));
+            throw e;
+        }
     }
 
-    private PricingResult applySelected(OrderContext ctx, List<SelectedDiscount> selected) {
-        ExclusivityPolicy exclusivity = new ExclusivityPolicy()
-                .block(DiscountGroup.COUPON, DiscountGroup.CAMPAIGN)
-                .block(DiscountGroup.CAMPAIGN, DiscountGroup.COUPON);
+    private static void commit(QuoteEvent event, OrderContext ctx, List<DiscountRule> rules, Result<PricingResult> result) {
+        double subtotal = ctx == null || ctx.pricing() == null ? 0.0 : ctx.pricing().subtotal().doubleValue();
+        int ruleCount = rules == null ? 0 : rules.size();
+        if (result.isSuccess()) {
+            PricingResult priced = result.getOrThrow();
+            event.commit(result.outcome(false), subtotal, priced.pricing().discountTotal().doubleValue(), ruleCount, priced.steps().size(), null);
+        } else {
+            event.commit(result.outcome(false), subtotal, 0.0, ruleCount, 0,
+                    result.isFailure() ? result.failureCause().getMessage() : null);
+        }
+    }
 
-        DiscountCapPolicy cap = new DiscountCapPolicy(new BigDecimal("0.30")); // 30% cap
+    private static Result<List<SelectedDiscount>> select(OrderContext ctx, List<DiscountRule> rules, RuleEvaluator evaluator, PricingTrace trace) {
+        if (!trace.active()) {
+            return new GroupedSelector(evaluator).selectBestPerGroupResult(ctx, rules);
+        }
+        Result<List<SelectedDiscount>> selected = new GroupedSelector(trace.around(evaluator)).selectBestPerGroupResult(ctx, rules);
+        if (selected.isSuccess()) {
+            trace.selected(selected.getOrThrow());
+        }
+        return selected;
+    }
 
-        var groupOrder = List.of(
-                DiscountGroup.CAMPAIGN,
-                DiscountGroup.VIP,
-                DiscountGroup.COUPON
-        );
+    private static PricingResult withNotes(PricingResult result, RuleNotes notes) {
+        if (notes.isEmpty()) {
+            return result;
+        }
+        BigDecimal total = result.pricing().total();
+        List<AppliedStep> steps = new ArrayList<>(result.steps());
+        for (RuleNotes.Note n : notes.notes()) {
+            steps.add(new AppliedStep(n.rule().name(), n.rule().group(), BigDecimal.ZERO, BigDecimal.ZERO, total, total, n.note()));
+        }
+        return new PricingResult(result.pricing(), List.copyOf(steps));
+    }
 
-        return applier.applyFold(ctx, selected, groupOrder, exclusivity, cap);
+    private PricingResult applySelected(OrderContext ctx, List<SelectedDiscount> selected, PricingTrace trace) {
+        long start = trace.now();
+        List<DiscountGroup> groupOrder = solver
+                .map(s -> s.solve(ctx, selected, policy))
+                .getOrElse(policy.groupOrder());
+        if (solver.isDefined()) {
+            trace.groupOrder(groupOrder);
+        }
+        PricingResult result = applier.applyFold(ctx, selected, groupOrder, policy.exclusivity(), policy.cap(), tenantBudget);
+        trace.applied(start, result);
+        return result;
     }
 }
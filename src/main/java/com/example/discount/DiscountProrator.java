@@ -0,0 +1,165 @@
+package com.example.discount;
+
+import com.example.fpcore.Result;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Distributes the applied discount of every {@link AppliedStep} across the cart lines ({@link OrderContext#items()}),
+ * the stage after {@link GroupedStackingApplier} that refunds and accounting read.
+ * <p>
+ * Steps are prorated in order, each in proportion to what the lines are still worth after the previous steps, using
+ * the largest-remainder method in long cents: every line gets the floor of its exact share and the leftover cents go
+ * to the lines with the largest remainders (ties to the earlier line). Parts therefore sum exactly to the step and
+ * no line is discounted below zero. The leftover lines are picked with a quickselect, so one step costs O(lines).
+ * <p>
+ * The per-line working arrays are kept and reused between calls; the only allocation proportional to the cart is
+ * the result matrix. Instances are not thread-safe: use one per thread. Carts above ~30 million in value take a
+ * slower {@link BigInteger} path per step, because {@code discount * line} no longer fits a long.
+ */
+public final class DiscountProrator {
+
+    // largest cart value (cents) for which amount * lineValue cannot overflow, since amount <= cart value
+    private static final long EXACT_LONG_LIMIT = 3_037_000_499L;
+
+    private long[] remaining = new long[0];
+    private long[] remainders = new long[0];
+    private int[] order = new int[0];
+
+    public Result<ProratedDiscounts> prorate(OrderContext ctx, PricingResult result) {
+        Objects.requireNonNull(ctx, "ctx");
+        Objects.requireNonNull(result, "result");
+        return prorate(ctx.items(), result.steps());
+    }
+
+    /**
+     * Fails when the steps discount more than the lines are worth, e.g. when the steps were not priced from
+     * {@code items}.
+     */
+    public Result<ProratedDiscounts> prorate(LineItems items, List<AppliedStep> steps) {
+        Objects.requireNonNull(items, "items");
+        Objects.requireNonNull(steps, "steps");
+        int lines = items.size();
+        ensureCapacity(lines);
+        long[] cents = new long[Math.multiplyExact(steps.size(), lines)];
+        long cartValue = 0;
+        for (int i = 0; i < lines; i++) {
+            remaining[i] = items.lineTotalCents(i);
+            cartValue += remaining[i];
+        }
+
+        for (int s = 0; s < steps.size(); s++) {
+            long amount = toCents(steps.get(s).appliedDiscount());
+            if (amount <= 0) {
+                continue;
+            }
+            if (amount > cartValue) {
+                return Result.failure("Step " + steps.get(s).ruleName() + " discounts " + BigDecimal.valueOf(amount, 2)
+                        + " but the lines are only worth " + BigDecimal.valueOf(cartValue, 2));
+            }
+            distribute(amount, cartValue, lines, cents, s * lines);
+            cartValue -= amount;
+        }
+        return Result.success(new ProratedDiscounts(List.copyOf(steps), lines, cents));
+    }
+
+    private void distribute(long amount, long cartValue, int lines, long[] cents, int row) {
+        long distributed = 0;
+        int candidates = 0;
+        boolean exact = cartValue <= EXACT_LONG_LIMIT;
+        for (int i = 0; i < lines; i++) {
+            long value = remaining[i];
+            if (value == 0) {
+                continue;
+            }
+            long share;
+            long remainder;
+            if (exact) {
+                long product = amount * value;
+                share = product / cartValue;
+                remainder = product % cartValue;
+            } else {
+                BigInteger[] qr = BigInteger.valueOf(amount).multiply(BigInteger.valueOf(value))
+                        .divideAndRemainder(BigInteger.valueOf(cartValue));
+                share = qr[0].longValueExact();
+                remainder = qr[1].longValueExact();
+            }
+            cents[row + i] = share;
+            distributed += share;
+            if (remainder > 0) {
+                remainders[i] = remainder;
+                order[candidates++] = i;
+            }
+        }
+
+        // the remainders add up to exactly leftover * cartValue, each below cartValue, so leftover < candidates
+        int leftover = (int) (amount - distributed);
+        if (leftover > 0) {
+            selectLargest(candidates, leftover);
+            for (int k = 0; k < leftover; k++) {
+                cents[row + order[k]]++;
+            }
+        }
+        for (int i = 0; i < lines; i++) {
+            remaining[i] -= cents[row + i];
+        }
+    }
+
+    /**
+     * Reorders {@code order[0..count)} so that its first {@code k} entries are the lines with the largest remainders.
+     */
+    private void selectLargest(int count, int k) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo < hi) {
+            int p = partition(lo, hi, lo + (hi - lo) / 2);
+            if (p == k - 1 || p == k) {
+                return;
+            }
+            if (p < k) {
+                lo = p + 1;
+            } else {
+                hi = p - 1;
+            }
+        }
+    }
+
+    private int partition(int lo, int hi, int pivotIndex) {
+        int pivot = order[pivotIndex];
+        swap(pivotIndex, hi);
+        int store = lo;
+        for (int i = lo; i < hi; i++) {
+            if (ranksBefore(order[i], pivot)) {
+                swap(i, store++);
+            }
+        }
+        swap(store, hi);
+        return store;
+    }
+
+    private boolean ranksBefore(int a, int b) {
+        return remainders[a] > remainders[b] || remainders[a] == remainders[b] && a < b;
+    }
+
+    private void swap(int i, int j) {
+        int t = order[i];
+        order[i] = order[j];
+        order[j] = t;
+    }
+
+    private void ensureCapacity(int lines) {
+        if (remaining.length < lines) {
+            remaining = new long[lines];
+            remainders = new long[lines];
+            order = new int[lines];
+        }
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
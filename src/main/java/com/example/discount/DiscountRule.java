@@ -1,5 +1,6 @@
 package com.example.discount;
 
+import com.example.discount.jfr.RuleEvaluationEvent;
 import com.example.fpcore.Result;
 
 import java.math.BigDecimal;
@@ -17,7 +18,22 @@ public record DiscountRule(
         Predicate<OrderContext> eligible,
         Function<OrderContext, BigDecimal> calculate
 ) {
+    /**
+     * Empty when not eligible, failure when the rule throws or returns null.
+     * Slow evaluations are recorded as {@link RuleEvaluationEvent} when a JFR recording enables them.
+     */
     public Result<BigDecimal> evaluate(OrderContext ctx) {
+        RuleEvaluationEvent event = new RuleEvaluationEvent();
+        event.begin();
+        Result<BigDecimal> result = evaluateUntimed(ctx);
+        event.end();
+        if (event.shouldCommit()) {
+            event.commit(name, group == null ? null : group.name(), result.outcome(false));
+        }
+        return result;
+    }
+
+    private Result<BigDecimal> evaluateUntimed(OrderContext ctx) {
         try {
             if (!eligible.test(ctx)) {
                 return Result.empty();
@@ -0,0 +1,137 @@
+package com.example.discount;
+
+import com.example.fpcore.Lazy;
+import com.example.fpcore.Result;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Time budget for rule evaluation: a deadline for the whole request and an optional limit per rule.
+ * <p>
+ * Each rule runs on {@code executor} while the caller waits at most until the nearer of the two limits (only the
+ * request deadline without a per-rule limit), so a rule that never returns cannot hold the quote; a rule that
+ * overruns is cancelled (interrupted). The default executor is bounded (one thread per processor,
+ * {@value #QUEUE_CAPACITY} queued rules): a rule that ignores interruption holds at most one of those threads, and
+ * rules that cannot be scheduled overrun instead of piling up.
+ * <p>
+ * An overrun is noted in {@link RuleNotes} and treated as {@link Result#empty()} or a failure depending on
+ * {@link Overrun}. Once the request deadline has passed, remaining rules are not started at all.
+ */
+public final class EvaluationBudget implements RuleInterceptor {
+
+    public enum Overrun {
+        EMPTY,
+        FAILURE
+    }
+
+    static final int QUEUE_CAPACITY = 256;
+
+    private static final Lazy<ExecutorService> DEFAULT_EXECUTOR = Lazy.of(() -> {
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger ids = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "rule-evaluation-" + ids.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    });
+
+    private final long requestBudgetNanos;
+    private final long ruleBudgetNanos;
+    private final Overrun overrun;
+    private final ExecutorService executor;
+
+    private EvaluationBudget(Duration requestBudget, Duration ruleBudget, Overrun overrun, ExecutorService executor) {
+        this.requestBudgetNanos = positive(requestBudget, "requestBudget").toNanos();
+        this.ruleBudgetNanos = ruleBudget == null ? Long.MAX_VALUE : positive(ruleBudget, "ruleBudget").toNanos();
+        this.overrun = Objects.requireNonNull(overrun, "overrun");
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    public static EvaluationBudget perRequest(Duration requestBudget, Overrun overrun) {
+        return new EvaluationBudget(requestBudget, null, overrun, DEFAULT_EXECUTOR.get());
+    }
+
+    public static EvaluationBudget of(Duration requestBudget, Duration ruleBudget, Overrun overrun) {
+        return new EvaluationBudget(requestBudget, ruleBudget, overrun, DEFAULT_EXECUTOR.get());
+    }
+
+    public EvaluationBudget withExecutor(ExecutorService executor) {
+        return new EvaluationBudget(Duration.ofNanos(requestBudgetNanos),
+                ruleBudgetNanos == Long.MAX_VALUE ? null : Duration.ofNanos(ruleBudgetNanos), overrun, executor);
+    }
+
+    /**
+     * Starts the request deadline now. Usable directly with {@link SequentialDiscountEngine} and
+     * {@link BestDiscountWinsEngine}, which accept a {@link RuleEvaluator}.
+     */
+    @Override
+    public RuleEvaluator around(RuleEvaluator next, RuleNotes notes) {
+        long deadline = System.nanoTime() + requestBudgetNanos;
+        return (rule, ctx) -> evaluateBefore(deadline, next, notes, rule, ctx);
+    }
+
+    private Result<BigDecimal> evaluateBefore(long deadline, RuleEvaluator next, RuleNotes notes, DiscountRule rule, OrderContext ctx) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return overrun(notes, rule, "request deadline reached before evaluation");
+        }
+        boolean ruleLimited = ruleBudgetNanos < remaining;
+        long timeout = ruleLimited ? ruleBudgetNanos : remaining;
+
+        Future<Result<BigDecimal>> future;
+        try {
+            future = executor.submit(() -> next.evaluate(rule, ctx));
+        } catch (RejectedExecutionException e) {
+            return overrun(notes, rule, "could not be scheduled");
+        }
+
+        try {
+            return future.get(timeout, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return overrun(notes, rule, ruleLimited
+                    ? "rule budget of " + Duration.ofNanos(ruleBudgetNanos).toMillis() + "ms exceeded"
+                    : "request deadline exceeded");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return Result.failure(new IllegalStateException("Rule '" + rule.name() + "' evaluation interrupted", e));
+        } catch (ExecutionException e) {
+            return Result.failure(new IllegalStateException("Rule '" + rule.name() + "' failed", e.getCause()));
+        }
+    }
+
+    private Result<BigDecimal> overrun(RuleNotes notes, DiscountRule rule, String reason) {
+        if (overrun == Overrun.FAILURE) {
+            notes.add(rule, "FAILED: " + reason);
+            return Result.failure("Rule '" + rule.name() + "' overran its time budget: " + reason);
+        }
+        notes.add(rule, "SKIPPED: " + reason);
+        return Result.empty();
+    }
+
+    private static Duration positive(Duration d, String name) {
+        Objects.requireNonNull(d, name);
+        if (d.isNegative() || d.isZero()) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return d;
+    }
+}
@@ -11,15 +11,22 @@ import java.util.Set;
 public final class ExclusivityPolicy {
 
     private final Map<DiscountGroup, Set<DiscountGroup>> blocks = new EnumMap<>(DiscountGroup.class);
+    private final int[] blockedMasks = new int[DiscountGroup.values().length];
 
     public ExclusivityPolicy block(DiscountGroup applied, DiscountGroup... blocked) {
         if (blocked == null || blocked.length == 0) {
             blocks.put(applied, EnumSet.noneOf(DiscountGroup.class));
+            blockedMasks[applied.ordinal()] = 0;
             return this;
         }
         EnumSet<DiscountGroup> set = EnumSet.noneOf(DiscountGroup.class);
-        for (DiscountGroup g : blocked) set.add(g);
+        int mask = 0;
+        for (DiscountGroup g : blocked) {
+            set.add(g);
+            mask |= 1 << g.ordinal();
+        }
         blocks.put(applied, set);
+        blockedMasks[applied.ordinal()] = mask;
         return this;
     }
 
@@ -30,4 +37,24 @@ public final class ExclusivityPolicy {
         }
         return true;
     }
+
+    /**
+     * Bitmask variant of {@link #isAllowed(Set, DiscountGroup)}: bit {@code 1 << group.ordinal()} marks an applied group.
+     */
+    public boolean isAllowed(int appliedMask, DiscountGroup candidate) {
+        int bit = 1 << candidate.ordinal();
+        for (int g = 0; g < blockedMasks.length; g++) {
+            if ((appliedMask & (1 << g)) != 0 && (blockedMasks[g] & bit) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Groups blocked once {@code applied} is applied, as a bitmask over {@link DiscountGroup#ordinal()}.
+     */
+    public int blockedMask(DiscountGroup applied) {
+        return blockedMasks[applied.ordinal()];
+    }
 }
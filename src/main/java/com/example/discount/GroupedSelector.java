@@ -12,6 +12,16 @@ import java.util.stream.Collectors;
  */
 public final class GroupedSelector {
 
+    private final RuleEvaluator evaluator;
+
+    public GroupedSelector() {
+        this(RuleEvaluator.DIRECT);
+    }
+
+    public GroupedSelector(RuleEvaluator evaluator) {
+        this.evaluator = Objects.requireNonNull(evaluator, "evaluator");
+    }
+
     public List<SelectedDiscount> selectBestPerGroup(OrderContext ctx, List<DiscountRule> rules) {
         return selectBestPerGroupResult(ctx, rules).getOrThrow();
     }
@@ -49,7 +59,7 @@ public final class GroupedSelector {
     }
     // Evaluates a rule and converts it to an Option<SelectedDiscount>. If evaluation fails, returns failure.
     private Result<Option<SelectedDiscount>> toCandidateOption(OrderContext ctx, DiscountGroup group, DiscountRule rule) {
-        Result<BigDecimal> amountResult = rule.evaluate(ctx);
+        Result<BigDecimal> amountResult = evaluator.evaluate(rule, ctx);
 
         if (amountResult.isFailure()) {
             return Result.failure(amountResult.failureCause());
@@ -1,8 +1,10 @@
 package com.example.discount;
 
+import com.example.discount.jfr.StackingStepEvent;
+
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.*;
-import java.util.stream.Stream;
 
 
 /**
@@ -10,74 +12,140 @@ import java.util.stream.Stream;
  * - exclusivity matrix
  * - global discount cap
  * - total floor (never below zero)
+ * - per-rule spend budgets ({@link SpendBudget}, {@code applyFold} only)
  * and produces an audit trail.
+ * Every decision is also emitted as a {@link StackingStepEvent} when a JFR recording enables it.
  */
 public final class GroupedStackingApplier {
 
+    static final String BLOCKED_BY_EXCLUSIVITY = "SKIPPED: blocked by exclusivity policy";
+    static final String BUDGET_EXHAUSTED = "SKIPPED: campaign budget exhausted";
+    static final String BUDGET_CAPPED = "CAPPED: campaign budget";
+
     private record Acc(OrderPricing pricing, BigDecimal capRemaining, Set<DiscountGroup> appliedGroups, List<AppliedStep> appliedSteps){}
 
 
     public PricingResult applyFold(OrderContext initialCtx, List<SelectedDiscount> selected, List<DiscountGroup> groupOrder,
                                    ExclusivityPolicy exclusivityPolicy, DiscountCapPolicy capPolicy) {
-        var byGroup = new EnumMap<DiscountGroup, SelectedDiscount>(DiscountGroup.class);
-        for (var s : selected) byGroup.put(s.group(), s);
-
-        BigDecimal cap = capPolicy.maxAllowedDiscount(initialCtx.pricing());
-        BigDecimal capRemaining = cap.subtract(initialCtx.pricing().discountTotal()).max(BigDecimal.ZERO);
-
-        List<SelectedDiscount> orderSelected = groupOrder.stream().map(byGroup::get).filter(Objects::nonNull).toList();
-
-        //acc holds the current pricing, remaining cap, applied groups and steps
-        Acc start = new Acc (initialCtx.pricing(), capRemaining, Set.of(), List.of());
-
-        Acc out = orderSelected.stream().reduce(start, (acc, cand)-> {
-            BigDecimal before = acc.pricing().total();
+        return applyFold(initialCtx, selected, groupOrder, exclusivityPolicy, capPolicy, SpendBudget.UNLIMITED);
+    }
 
-            boolean allowed = exclusivityPolicy.isAllowed(acc.appliedGroups(), cand.group());
+    /**
+     * Like {@link #applyFold(OrderContext, List, List, ExclusivityPolicy, DiscountCapPolicy)}, but each amount that
+     * survives exclusivity and the cap is reserved from {@code budget} first. A partial reservation is noted as
+     * {@code CAPPED: campaign budget}; an exhausted budget skips the step without marking its group applied, so it
+     * does not block other groups.
+     */
+    public PricingResult applyFold(OrderContext initialCtx, List<SelectedDiscount> selected, List<DiscountGroup> groupOrder,
+                                   ExclusivityPolicy exclusivityPolicy, DiscountCapPolicy capPolicy, SpendBudget budget) {
+        Map<DiscountGroup, SelectedDiscount> byGroup = byGroup(selected);
 
-            if (!allowed) {
-                AppliedStep blockedStep = new AppliedStep(cand.ruleName(), cand.group(), safe(cand.amount()), BigDecimal.ZERO,
-                        before, before, "SKIPPED: blocked by exclusivity policy");
+        Acc acc = start(initialCtx, capPolicy);
+        for (DiscountGroup group : groupOrder) {
+            SelectedDiscount cand = byGroup.get(group);
+            if (cand != null) acc = step(acc, cand, exclusivityPolicy, budget);
+        }
+        return new PricingResult(acc.pricing(), acc.appliedSteps());
+    }
 
-                List<AppliedStep> newSteps = Stream.concat(acc.appliedSteps().stream(),Stream.of(blockedStep)).toList();
-                return new Acc(acc.pricing(), acc.capRemaining(), acc.appliedGroups(), newSteps);
+    /**
+     * Continues a previous {@link #applyFold} run: replays {@code prefix} (steps already produced for the leading groups)
+     * to rebuild pricing, cap and applied groups, then folds the remaining groups as usual.
+     * The outcome is identical to {@code applyFold} over the full group order when the prefix groups did not change.
+     */
+    public PricingResult resume(OrderContext initialCtx, List<AppliedStep> prefix, List<SelectedDiscount> selected,
+                                List<DiscountGroup> remainingOrder, ExclusivityPolicy exclusivityPolicy, DiscountCapPolicy capPolicy) {
+        Map<DiscountGroup, SelectedDiscount> byGroup = byGroup(selected);
+
+        Acc acc = start(initialCtx, capPolicy);
+        for (AppliedStep step : prefix) {
+            // a blocked or budget-skipped step changed nothing but the audit trail
+            if (BLOCKED_BY_EXCLUSIVITY.equals(step.note()) || BUDGET_EXHAUSTED.equals(step.note())) {
+                acc = new Acc(acc.pricing(), acc.capRemaining(), acc.appliedGroups(), append(acc.appliedSteps(), step));
+            } else {
+                acc = new Acc(
+                        acc.pricing().addDiscount(step.appliedDiscount()),
+                        acc.capRemaining().subtract(step.appliedDiscount()).max(BigDecimal.ZERO),
+                        addGroup(acc.appliedGroups(), step.group()),
+                        append(acc.appliedSteps(), step)
+                );
             }
+        }
+        for (DiscountGroup group : remainingOrder) {
+            SelectedDiscount cand = byGroup.get(group);
+            if (cand != null) acc = step(acc, cand, exclusivityPolicy, SpendBudget.UNLIMITED);
+        }
+        return new PricingResult(acc.pricing(), acc.appliedSteps());
+    }
 
-            //TODO 1 : requested = max(cand.amount, 0) to avoid negative discounts
-            BigDecimal requested = safe(cand.amount());
+    private static Map<DiscountGroup, SelectedDiscount> byGroup(List<SelectedDiscount> selected) {
+        var byGroup = new EnumMap<DiscountGroup, SelectedDiscount>(DiscountGroup.class);
+        for (var s : selected) byGroup.put(s.group(), s);
+        return byGroup;
+    }
 
-            //TODO 2: applyable = min(requested, start.capRemaining, before) to enforce cap and total floor
-            BigDecimal applyable = requested.min(acc.capRemaining()).min(before.max(BigDecimal.ZERO)); //total floor is zero, not negative
-            //TODO 3: update pricing by adding applyable discount
-            OrderPricing newPricing = acc.pricing().addDiscount(applyable);
-            BigDecimal after = newPricing.total();
+    private static Acc start(OrderContext initialCtx, DiscountCapPolicy capPolicy) {
+        BigDecimal cap = capPolicy.maxAllowedDiscount(initialCtx.pricing());
+        BigDecimal capRemaining = cap.subtract(initialCtx.pricing().discountTotal()).max(BigDecimal.ZERO);
+        return new Acc(initialCtx.pricing(), capRemaining, Set.of(), List.of());
+    }
 
-            //TODO 4: newCap: start.capRemaining - applyable
-            BigDecimal newCapRemaining = acc.capRemaining().subtract(applyable).max(BigDecimal.ZERO); //cap remaining can't be negative
+    /**
+     * One group's decision: blocked by exclusivity, or the requested amount limited by the remaining cap, the total
+     * floor and the spend budget.
+     */
+    private static Acc step(Acc acc, SelectedDiscount cand, ExclusivityPolicy exclusivityPolicy, SpendBudget budget) {
+        BigDecimal before = acc.pricing().total();
+
+        if (!exclusivityPolicy.isAllowed(acc.appliedGroups(), cand.group())) {
+            AppliedStep blockedStep = emit(new AppliedStep(cand.ruleName(), cand.group(), safe(cand.amount()), BigDecimal.ZERO,
+                    before, before, BLOCKED_BY_EXCLUSIVITY));
+            return new Acc(acc.pricing(), acc.capRemaining(), acc.appliedGroups(), append(acc.appliedSteps(), blockedStep));
+        }
 
-            //TODO 5: create AppliedStep with appropriate note (APPLIED, CAPPED or SKIPPED)
-            String note = "APPLIED";
-            if (applyable.compareTo(requested) < 0) {
-                note = "CAPPED: requested=" + requested + ", applied=" + applyable + ", capRemaining=" + acc.capRemaining();
+        BigDecimal requested = safe(cand.amount());
+        // never more than the remaining cap, and the total never drops below zero
+        BigDecimal applyable = requested.min(acc.capRemaining()).min(before.max(BigDecimal.ZERO));
+        String budgetNote = null;
+        if (budget != SpendBudget.UNLIMITED && applyable.signum() > 0) {
+            long wanted = applyable.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            long granted = budget.reserve(cand.ruleName(), wanted);
+            if (granted <= 0) {
+                AppliedStep exhausted = emit(new AppliedStep(cand.ruleName(), cand.group(), requested, BigDecimal.ZERO,
+                        before, before, BUDGET_EXHAUSTED));
+                return new Acc(acc.pricing(), acc.capRemaining(), acc.appliedGroups(), append(acc.appliedSteps(), exhausted));
             }
-
-            if (applyable.signum() == 0 && requested.signum() > 0) {
-                note = "SKIPPED: cap exhausted or total is zero";
+            if (granted < wanted) {
+                BigDecimal limited = BigDecimal.valueOf(granted, 2);
+                budgetNote = BUDGET_CAPPED + ", requested=" + requested + ", applied=" + limited;
+                applyable = limited;
             }
+        }
+        OrderPricing newPricing = acc.pricing().addDiscount(applyable);
+        BigDecimal newCapRemaining = acc.capRemaining().subtract(applyable).max(BigDecimal.ZERO);
 
-            AppliedStep step = new AppliedStep(cand.ruleName(), cand.group(), requested, applyable, before, after, note);
-
-            // TODO 6 : immutable steps append
-            List<AppliedStep> newSteps = Stream.concat(acc.appliedSteps().stream(), Stream.of(step)).toList();
-
-            //TODO 7: applied groups immutable update
-            Set<DiscountGroup> newAppliedGroups = addGroup(acc.appliedGroups(), cand.group());
-
-            return new Acc(newPricing, newCapRemaining, newAppliedGroups, newSteps);
-        }, (a,b) -> {throw new UnsupportedOperationException("no parallel stream");});
+        String note = "APPLIED";
+        if (applyable.compareTo(requested) < 0) {
+            note = "CAPPED: requested=" + requested + ", applied=" + applyable + ", capRemaining=" + acc.capRemaining();
+        }
+        if (applyable.signum() == 0 && requested.signum() > 0) {
+            note = "SKIPPED: cap exhausted or total is zero";
+        }
+        if (budgetNote != null) {
+            note = budgetNote;
+        }
 
+        AppliedStep step = emit(new AppliedStep(cand.ruleName(), cand.group(), requested, applyable, before,
+                newPricing.total(), note));
+        return new Acc(newPricing, newCapRemaining, addGroup(acc.appliedGroups(), cand.group()),
+                append(acc.appliedSteps(), step));
+    }
 
-        return new PricingResult(out.pricing(), out.appliedSteps());
+    private static List<AppliedStep> append(List<AppliedStep> steps, AppliedStep step) {
+        List<AppliedStep> appended = new ArrayList<>(steps.size() + 1);
+        appended.addAll(steps);
+        appended.add(step);
+        return List.copyOf(appended);
     }
 
     private static Set<DiscountGroup> addGroup(Set<DiscountGroup> groups, DiscountGroup group){
@@ -112,12 +180,12 @@ public final class GroupedStackingApplier {
 
             // Exclusivity
             if (!exclusivityPolicy.isAllowed(appliedGroups, g)) {
-                steps.add(new AppliedStep(
+                steps.add(emit(new AppliedStep(
                         cand.ruleName(), g,
                         safe(cand.amount()), BigDecimal.ZERO,
                         before, before,
-                        "SKIPPED: blocked by exclusivity policy"
-                ));
+                        BLOCKED_BY_EXCLUSIVITY
+                )));
                 continue;
             }
 
@@ -137,12 +205,12 @@ public final class GroupedStackingApplier {
                 note = "SKIPPED: cap exhausted or total is zero";
             }
 
-            steps.add(new AppliedStep(
+            steps.add(emit(new AppliedStep(
                     cand.ruleName(), g,
                     requested, allowedByTotal,
                     before, after,
                     note
-            ));
+            )));
 
             current = current.withPricing(updated);
             appliedGroups.add(g);
@@ -152,6 +220,17 @@ public final class GroupedStackingApplier {
         return new PricingResult(current.pricing(), List.copyOf(steps));
     }
 
+    private static AppliedStep emit(AppliedStep step) {
+        StackingStepEvent event = new StackingStepEvent();
+        if (event.shouldCommit()) {
+            int colon = step.note().indexOf(':');
+            String decision = colon < 0 ? step.note() : step.note().substring(0, colon);
+            event.commit(step.ruleName(), step.group().name(), decision,
+                    step.requestedDiscount().doubleValue(), step.appliedDiscount().doubleValue(), step.note());
+        }
+        return step;
+    }
+
     private static BigDecimal safe(BigDecimal v) {
         if (v == null) return BigDecimal.ZERO;
         //negative discounts don't make sense in this context, treat as zero
@@ -0,0 +1,177 @@
+package com.example.discount;
+
+import com.example.discount.validation.DiscountValidation;
+import com.example.fpcore.Result;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Grouped stacking that can re-price a previous {@link PricingSnapshot} after a small context change
+ * (coupon toggled, item added, ...).
+ * <p>
+ * Only groups with a rule that reads a changed input (or whose rule list changed) are re-selected, and
+ * {@link GroupedStackingApplier} is replayed from the first group whose candidate changed. Rules without declared
+ * inputs are assumed to read everything. A {@link Input#PRICING} change (subtotal, discount total or line items)
+ * re-selects every group whatever its rules declare, because {@link GroupedSelector} clamps each candidate to the
+ * order total. The result is the same as {@link DiscountOrchestratorV2#priceResult}
+ * as long as rules are pure functions of their declared inputs.
+ */
+public final class IncrementalPricer {
+
+    /**
+     * Parts of {@link OrderContext} a rule can depend on.
+     */
+    public enum Input {
+        VIP,
+        COUPON,
+        PRICING
+    }
+
+    private static final Set<Input> ALL_INPUTS = EnumSet.allOf(Input.class);
+
+    private final GroupedSelector selector = new GroupedSelector();
+    private final GroupedStackingApplier applier = new GroupedStackingApplier();
+    private final StackingPolicy policy;
+    private final Map<String, Set<Input>> inputsByRule;
+
+    public IncrementalPricer() {
+        this(StackingPolicy.defaults(), Map.of());
+    }
+
+    /**
+     * @param inputsByRule rule name -> inputs it reads; missing rules are treated as reading every input
+     */
+    public IncrementalPricer(StackingPolicy policy, Map<String, Set<Input>> inputsByRule) {
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.inputsByRule = Map.copyOf(inputsByRule);
+    }
+
+    public Result<PricingSnapshot> price(OrderContext ctx, List<DiscountRule> rules) {
+        return DiscountValidation.validate(ctx, rules)
+                .toResult()
+                .flatMap(command -> selector.selectBestPerGroupResult(command.context(), command.rules())
+                        .map(selected -> new PricingSnapshot(command.context(), command.rules(), selected,
+                                applier.applyFold(command.context(), selected, policy.groupOrder(), policy.exclusivity(), policy.cap()))));
+    }
+
+    public Result<PricingSnapshot> reprice(PricingSnapshot previous, OrderContext next) {
+        return reprice(previous, next, previous.rules());
+    }
+
+    public Result<PricingSnapshot> reprice(PricingSnapshot previous, OrderContext next, List<DiscountRule> rules) {
+        Objects.requireNonNull(previous, "previous");
+        return DiscountValidation.validate(next, rules)
+                .toResult()
+                .flatMap(command -> repriceValid(previous, command.context(), command.rules()));
+    }
+
+    private Result<PricingSnapshot> repriceValid(PricingSnapshot previous, OrderContext next, List<DiscountRule> rules) {
+        Set<Input> changed = changedInputs(previous.context(), next);
+        Map<DiscountGroup, List<DiscountRule>> previousByGroup = byGroup(previous.rules());
+        Map<DiscountGroup, List<DiscountRule>> nextByGroup = byGroup(rules);
+
+        Set<DiscountGroup> affected = EnumSet.noneOf(DiscountGroup.class);
+        if (changed.contains(Input.PRICING)) {
+            affected.addAll(nextByGroup.keySet());
+        }
+        for (DiscountGroup group : DiscountGroup.values()) {
+            List<DiscountRule> groupRules = nextByGroup.getOrDefault(group, List.of());
+            if (!sameRules(previousByGroup.getOrDefault(group, List.of()), groupRules)
+                    || groupRules.stream().anyMatch(rule -> readsAny(rule, changed))) {
+                affected.add(group);
+            }
+        }
+
+        if (affected.isEmpty() && changed.isEmpty()) {
+            return Result.success(previous);
+        }
+
+        List<DiscountRule> affectedRules = rules.stream().filter(rule -> affected.contains(rule.group())).toList();
+        return selector.selectBestPerGroupResult(next, affectedRules)
+                .map(reselected -> merge(previous.selected(), affected, reselected))
+                .map(selected -> new PricingSnapshot(next, rules, selected, replay(previous, next, selected, changed)));
+    }
+
+    private PricingResult replay(PricingSnapshot previous, OrderContext next, List<SelectedDiscount> selected, Set<Input> changed) {
+        List<DiscountGroup> order = policy.groupOrder();
+        int firstChanged = changed.contains(Input.PRICING) ? 0 : firstChangedGroup(order, previous.selected(), selected);
+        if (firstChanged == order.size()) {
+            return previous.result();
+        }
+
+        List<AppliedStep> prefix = previous.result().steps().stream()
+                .filter(step -> order.indexOf(step.group()) < firstChanged)
+                .toList();
+
+        return applier.resume(next, prefix, selected, order.subList(firstChanged, order.size()),
+                policy.exclusivity(), policy.cap());
+    }
+
+    private static int firstChangedGroup(List<DiscountGroup> order, List<SelectedDiscount> before, List<SelectedDiscount> after) {
+        Map<DiscountGroup, SelectedDiscount> beforeByGroup = selectedByGroup(before);
+        Map<DiscountGroup, SelectedDiscount> afterByGroup = selectedByGroup(after);
+        for (int i = 0; i < order.size(); i++) {
+            if (!Objects.equals(beforeByGroup.get(order.get(i)), afterByGroup.get(order.get(i)))) {
+                return i;
+            }
+        }
+        return order.size();
+    }
+
+    private static List<SelectedDiscount> merge(List<SelectedDiscount> previous, Set<DiscountGroup> affected, List<SelectedDiscount> reselected) {
+        List<SelectedDiscount> merged = new ArrayList<>(reselected);
+        for (SelectedDiscount s : previous) {
+            if (!affected.contains(s.group())) merged.add(s);
+        }
+        return List.copyOf(merged);
+    }
+
+    private boolean readsAny(DiscountRule rule, Set<Input> changed) {
+        if (changed.isEmpty()) return false;
+        Set<Input> inputs = inputsByRule.getOrDefault(rule.name(), ALL_INPUTS);
+        for (Input input : changed) {
+            if (inputs.contains(input)) return true;
+        }
+        return false;
+    }
+
+    private static Set<Input> changedInputs(OrderContext before, OrderContext after) {
+        Set<Input> changed = EnumSet.noneOf(Input.class);
+        if (before.vip() != after.vip()) changed.add(Input.VIP);
+        if (before.hasCoupon() != after.hasCoupon()) changed.add(Input.COUPON);
+        if (before.pricing().subtotal().compareTo(after.pricing().subtotal()) != 0
+                || before.pricing().discountTotal().compareTo(after.pricing().discountTotal()) != 0
+                || !before.items().equals(after.items())) {
+            changed.add(Input.PRICING);
+        }
+        return changed;
+    }
+
+    private static boolean sameRules(List<DiscountRule> a, List<DiscountRule> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) return false;
+        }
+        return true;
+    }
+
+    private static Map<DiscountGroup, List<DiscountRule>> byGroup(List<DiscountRule> rules) {
+        Map<DiscountGroup, List<DiscountRule>> byGroup = new EnumMap<>(DiscountGroup.class);
+        for (DiscountRule rule : rules) {
+            byGroup.computeIfAbsent(rule.group(), g -> new ArrayList<>()).add(rule);
+        }
+        return byGroup;
+    }
+
+    private static Map<DiscountGroup, SelectedDiscount> selectedByGroup(List<SelectedDiscount> selected) {
+        Map<DiscountGroup, SelectedDiscount> byGroup = new EnumMap<>(DiscountGroup.class);
+        for (SelectedDiscount s : selected) byGroup.put(s.group(), s);
+        return byGroup;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.discount;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * {@link DiscountRule}s scoped to part of the cart ({@link OrderContext#items()}): one category or one SKU.
+ * They read the precomputed category aggregates or scan the SKU column once, so a rule costs at most O(lines).
+ * Orders without line items are never eligible.
+ */
+public final class ItemRules {
+
+    private ItemRules() {
+    }
+
+    /**
+     * {@code rate} of everything in {@code category}.
+     */
+    public static DiscountRule categoryPercent(String name, DiscountGroup group, int priority, String category, BigDecimal rate) {
+        Objects.requireNonNull(category, "category");
+        Objects.requireNonNull(rate, "rate");
+        return new DiscountRule(name, group, priority,
+                ctx -> ctx.items().categorySubtotal(category).signum() > 0,
+                ctx -> ctx.items().categorySubtotal(category).multiply(rate));
+    }
+
+    /**
+     * {@code amount} off once the lines in {@code category} add up to at least {@code minimum}.
+     * The discount never exceeds what the category costs.
+     */
+    public static DiscountRule categoryAmount(String name, DiscountGroup group, int priority, String category,
+                                              BigDecimal minimum, BigDecimal amount) {
+        Objects.requireNonNull(category, "category");
+        Objects.requireNonNull(minimum, "minimum");
+        Objects.requireNonNull(amount, "amount");
+        return new DiscountRule(name, group, priority,
+                ctx -> {
+                    BigDecimal scope = ctx.items().categorySubtotal(category);
+                    return scope.signum() > 0 && scope.compareTo(minimum) >= 0;
+                },
+                ctx -> amount.min(ctx.items().categorySubtotal(category)));
+    }
+
+    /**
+     * {@code rate} of every line of {@code sku}.
+     */
+    public static DiscountRule itemPercent(String name, DiscountGroup group, int priority, String sku, BigDecimal rate) {
+        Objects.requireNonNull(sku, "sku");
+        Objects.requireNonNull(rate, "rate");
+        return new DiscountRule(name, group, priority,
+                ctx -> ctx.items().subtotalCentsOf(sku) > 0,
+                ctx -> BigDecimal.valueOf(ctx.items().subtotalCentsOf(sku), 2).multiply(rate));
+    }
+
+    /**
+     * For every {@code buy + free} units of {@code sku}, {@code free} of them cost nothing (priced at the lowest
+     * unit price among its lines).
+     */
+    public static DiscountRule buyGetFree(String name, DiscountGroup group, int priority, String sku, int buy, int free) {
+        Objects.requireNonNull(sku, "sku");
+        if (buy <= 0 || free <= 0) {
+            throw new IllegalArgumentException("buy and free must be positive");
+        }
+        return new DiscountRule(name, group, priority,
+                ctx -> ctx.items().quantityOf(sku) >= buy + free,
+                ctx -> {
+                    long freeUnits = ctx.items().quantityOf(sku) / (buy + free) * free;
+                    return BigDecimal.valueOf(Math.multiplyExact(freeUnits, ctx.items().lowestUnitPriceCentsOf(sku)), 2);
+                });
+    }
+}
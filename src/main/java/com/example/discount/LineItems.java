@@ -0,0 +1,259 @@
+package com.example.discount;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable cart lines stored as parallel primitive arrays (struct of arrays), money in cents.
+ * <p>
+ * Categories are interned into small integer ids when the cart is built, and per-category subtotal and quantity
+ * are aggregated in the same pass, so building the cart is linear in its lines and a category lookup only scans the
+ * (few) distinct categories. Item lookups by SKU scan the SKU column.
+ */
+public final class LineItems {
+
+    public static final LineItems EMPTY = builder(0).build();
+
+    private final String[] skus;
+    private final int[] categoryIds;
+    private final int[] quantities;
+    private final long[] unitPriceCents;
+    private final long[] lineTotalCents;
+    private final String[] categoryNames;
+    private final long[] categorySubtotalCents;
+    private final long[] categoryQuantities;
+    private final long subtotalCents;
+    private int hash;
+
+    private LineItems(String[] skus, int[] categoryIds, int[] quantities, long[] unitPriceCents, String[] categoryNames) {
+        int n = skus.length;
+        this.skus = skus;
+        this.categoryIds = categoryIds;
+        this.quantities = quantities;
+        this.unitPriceCents = unitPriceCents;
+        this.categoryNames = categoryNames;
+        this.lineTotalCents = new long[n];
+        this.categorySubtotalCents = new long[categoryNames.length];
+        this.categoryQuantities = new long[categoryNames.length];
+        long subtotal = 0;
+        for (int i = 0; i < n; i++) {
+            long line = Math.multiplyExact(unitPriceCents[i], quantities[i]);
+            lineTotalCents[i] = line;
+            categorySubtotalCents[categoryIds[i]] += line;
+            categoryQuantities[categoryIds[i]] += quantities[i];
+            subtotal = Math.addExact(subtotal, line);
+        }
+        this.subtotalCents = subtotal;
+    }
+
+    public static Builder builder(int expectedLines) {
+        return new Builder(expectedLines);
+    }
+
+    public int size() {
+        return skus.length;
+    }
+
+    public boolean isEmpty() {
+        return skus.length == 0;
+    }
+
+    public String sku(int i) {
+        return skus[i];
+    }
+
+    public String category(int i) {
+        return categoryNames[categoryIds[i]];
+    }
+
+    public int quantity(int i) {
+        return quantities[i];
+    }
+
+    public long unitPriceCents(int i) {
+        return unitPriceCents[i];
+    }
+
+    public long lineTotalCents(int i) {
+        return lineTotalCents[i];
+    }
+
+    public long subtotalCents() {
+        return subtotalCents;
+    }
+
+    public BigDecimal subtotal() {
+        return BigDecimal.valueOf(subtotalCents, 2);
+    }
+
+    /**
+     * Distinct categories, in order of first appearance.
+     */
+    public int categoryCount() {
+        return categoryNames.length;
+    }
+
+    public String categoryName(int categoryId) {
+        return categoryNames[categoryId];
+    }
+
+    public long categorySubtotalCents(int categoryId) {
+        return categorySubtotalCents[categoryId];
+    }
+
+    /**
+     * Sum of the lines in {@code category}, zero when the cart has none.
+     */
+    public BigDecimal categorySubtotal(String category) {
+        int id = categoryId(category);
+        return BigDecimal.valueOf(id < 0 ? 0 : categorySubtotalCents[id], 2);
+    }
+
+    public long categoryQuantity(String category) {
+        int id = categoryId(category);
+        return id < 0 ? 0 : categoryQuantities[id];
+    }
+
+    /**
+     * Units of {@code sku} over all its lines.
+     */
+    public long quantityOf(String sku) {
+        long quantity = 0;
+        for (int i = 0; i < skus.length; i++) {
+            if (skus[i].equals(sku)) quantity += quantities[i];
+        }
+        return quantity;
+    }
+
+    /**
+     * Sum of the lines of {@code sku}, in cents.
+     */
+    public long subtotalCentsOf(String sku) {
+        long cents = 0;
+        for (int i = 0; i < skus.length; i++) {
+            if (skus[i].equals(sku)) cents += lineTotalCents[i];
+        }
+        return cents;
+    }
+
+    /**
+     * Lowest unit price of {@code sku}, or -1 when the cart does not contain it.
+     */
+    public long lowestUnitPriceCentsOf(String sku) {
+        long lowest = -1;
+        for (int i = 0; i < skus.length; i++) {
+            if (skus[i].equals(sku) && (lowest < 0 || unitPriceCents[i] < lowest)) lowest = unitPriceCents[i];
+        }
+        return lowest;
+    }
+
+    int categoryId(String category) {
+        for (int id = 0; id < categoryNames.length; id++) {
+            if (categoryNames[id].equals(category)) return id;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LineItems other)) return false;
+        if (skus.length != other.skus.length || subtotalCents != other.subtotalCents) return false;
+        for (int i = 0; i < skus.length; i++) {
+            if (quantities[i] != other.quantities[i]
+                    || unitPriceCents[i] != other.unitPriceCents[i]
+                    || !skus[i].equals(other.skus[i])
+                    || !category(i).equals(other.category(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && skus.length > 0) {
+            h = Arrays.hashCode(skus);
+            h = 31 * h + Arrays.hashCode(quantities);
+            h = 31 * h + Arrays.hashCode(unitPriceCents);
+            for (int id : categoryIds) h = 31 * h + categoryNames[id].hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "LineItems{lines=" + skus.length + ", categories=" + categoryNames.length + ", subtotal=" + subtotal() + "}";
+    }
+
+    public static final class Builder {
+        private String[] skus;
+        private int[] categoryIds;
+        private int[] quantities;
+        private long[] unitPriceCents;
+        private final Map<String, Integer> categories = new HashMap<>();
+        private String[] categoryNames = new String[4];
+        private int size;
+
+        private Builder(int expectedLines) {
+            int capacity = Math.max(expectedLines, 4);
+            this.skus = new String[capacity];
+            this.categoryIds = new int[capacity];
+            this.quantities = new int[capacity];
+            this.unitPriceCents = new long[capacity];
+        }
+
+        public Builder add(String sku, String category, int quantity, BigDecimal unitPrice) {
+            Objects.requireNonNull(unitPrice, "unitPrice");
+            return addCents(sku, category, quantity,
+                    unitPrice.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+        }
+
+        public Builder addCents(String sku, String category, int quantity, long unitPriceCents) {
+            Objects.requireNonNull(sku, "sku");
+            Objects.requireNonNull(category, "category");
+            if (quantity <= 0 || unitPriceCents < 0) {
+                throw new IllegalArgumentException("quantity must be positive and unit price non-negative");
+            }
+            if (size == skus.length) {
+                int capacity = size * 2;
+                this.skus = Arrays.copyOf(skus, capacity);
+                this.categoryIds = Arrays.copyOf(categoryIds, capacity);
+                this.quantities = Arrays.copyOf(quantities, capacity);
+                this.unitPriceCents = Arrays.copyOf(this.unitPriceCents, capacity);
+            }
+            skus[size] = sku;
+            categoryIds[size] = intern(category);
+            quantities[size] = quantity;
+            this.unitPriceCents[size] = unitPriceCents;
+            size++;
+            return this;
+        }
+
+        public LineItems build() {
+            return new LineItems(
+                    Arrays.copyOf(skus, size),
+                    Arrays.copyOf(categoryIds, size),
+                    Arrays.copyOf(quantities, size),
+                    Arrays.copyOf(unitPriceCents, size),
+                    Arrays.copyOf(categoryNames, categories.size())
+            );
+        }
+
+        private int intern(String category) {
+            Integer id = categories.get(category);
+            if (id != null) return id;
+            int next = categories.size();
+            if (next == categoryNames.length) categoryNames = Arrays.copyOf(categoryNames, next * 2);
+            categoryNames[next] = category;
+            categories.put(category, next);
+            return next;
+        }
+    }
+}
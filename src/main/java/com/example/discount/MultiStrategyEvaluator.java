@@ -0,0 +1,77 @@
+package com.example.discount;
+
+import com.example.fpcore.Result;
+
+import java.math.BigDecimal;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Runs sequential, best-wins and grouped pricing for the same order while calling each rule's
+ * {@link DiscountRule#evaluate} at most once for the initial context.
+ * <p>
+ * All three strategies share a memoizing {@link RuleEvaluator}. Best-wins and grouped only see the initial context;
+ * sequential stacking hits the memo until a rule actually changes the pricing, and re-evaluates from there on.
+ */
+public final class MultiStrategyEvaluator {
+
+    public record StrategyResults(
+            Result<OrderPricing> sequential,
+            Result<BestDiscountWinsEngine.AppliedDiscount> bestWins,
+            Result<PricingResult> grouped
+    ) {}
+
+    private final DiscountOrchestratorV2 orchestrator;
+
+    public MultiStrategyEvaluator() {
+        this(new DiscountOrchestratorV2());
+    }
+
+    public MultiStrategyEvaluator(DiscountOrchestratorV2 orchestrator) {
+        this.orchestrator = Objects.requireNonNull(orchestrator, "orchestrator");
+    }
+
+    public StrategyResults evaluate(OrderContext ctx, List<DiscountRule> rules) {
+        RuleEvaluator memo = new InitialContextMemo(ctx);
+        Result<BestDiscountWinsEngine.AppliedDiscount> bestWins = new BestDiscountWinsEngine(memo).pickBestResult(ctx, rules);
+        Result<PricingResult> grouped = orchestrator.priceResult(ctx, rules, memo);
+        Result<OrderPricing> sequential = new SequentialDiscountEngine(memo).applySequentiallyResult(ctx, rules);
+        return new StrategyResults(sequential, bestWins, grouped);
+    }
+
+    /**
+     * Caches outcomes per rule for contexts equivalent to the initial one; other contexts go straight to the rule.
+     */
+    private static final class InitialContextMemo implements RuleEvaluator {
+        private final OrderContext initial;
+        private final Map<DiscountRule, Result<BigDecimal>> outcomes = new IdentityHashMap<>();
+
+        private InitialContextMemo(OrderContext initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public Result<BigDecimal> evaluate(DiscountRule rule, OrderContext ctx) {
+            if (!sameInputs(ctx)) {
+                return rule.evaluate(ctx);
+            }
+            Result<BigDecimal> cached = outcomes.get(rule);
+            if (cached == null) {
+                cached = rule.evaluate(ctx);
+                outcomes.put(rule, cached);
+            }
+            return cached;
+        }
+
+        private boolean sameInputs(OrderContext ctx) {
+            if (ctx == initial) return true;
+            return ctx.vip() == initial.vip()
+                    && ctx.hasCoupon() == initial.hasCoupon()
+                    && ctx.pricing().subtotal().compareTo(initial.pricing().subtotal()) == 0
+                    && ctx.pricing().discountTotal().compareTo(initial.pricing().discountTotal()) == 0
+                    && ctx.items().equals(initial.items());
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.discount;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Chooses the group order for {@link GroupedStackingApplier} instead of the fixed {@link StackingPolicy#groupOrder()}.
+ * <p>
+ * Candidate groups are indexed into a bitmask. A subset is reachable when its groups can be applied in some order
+ * without one blocking a later one; it is final when every other candidate is blocked by it, so the applier will
+ * record those as skipped. Up to {@value #MAX_GROUPS} candidate groups are searched; with more, the fixed greedy
+ * order is returned. Since candidate amounts do not depend on order, the discount of a subset is
+ * {@code min(sum of requested, cap remaining, total)}. Reachable subsets are explored depth-first with a visited
+ * bitset (bitmask DP), kept per thread and reused across solves, and pruned with the best value found so far (branch and bound). The greedy order is the
+ * starting incumbent and only a strictly better subset replaces it.
+ * <p>
+ * Amounts are compared as {@code long}s at their largest scale; when they do not fit (huge or very high-scale
+ * amounts), the fixed greedy order is returned instead.
+ * <p>
+ * The returned order is fed to the normal applier, so the audit trail has the same shape as greedy stacking.
+ */
+public final class OptimalStackingSolver {
+
+    /**
+     * What the solver optimizes for.
+     */
+    public enum Objective {
+        /** Largest total discount (customer-favourable). */
+        MAX_DISCOUNT,
+        /** Smallest total discount among arrangements where every candidate is either applied or blocked. */
+        MIN_DISCOUNT
+    }
+
+    // 2^20 subsets, a visited set of 128 KiB per thread; DiscountGroup has far fewer values than this
+    private static final int MAX_GROUPS = 20;
+
+    private final Objective objective;
+    private final ThreadLocal<long[]> visitedSets = ThreadLocal.withInitial(() -> new long[1]);
+
+    public OptimalStackingSolver(Objective objective) {
+        this.objective = Objects.requireNonNull(objective, "objective");
+    }
+
+    public Objective objective() {
+        return objective;
+    }
+
+    public List<DiscountGroup> solve(OrderContext ctx, List<SelectedDiscount> selected, StackingPolicy policy) {
+        Map<DiscountGroup, SelectedDiscount> byGroup = new EnumMap<>(DiscountGroup.class);
+        for (SelectedDiscount s : selected) byGroup.put(s.group(), s);
+
+        List<DiscountGroup> groups = new ArrayList<>();
+        for (DiscountGroup g : policy.groupOrder()) {
+            if (byGroup.containsKey(g) && !groups.contains(g)) groups.add(g);
+        }
+        int n = groups.size();
+        if (n < 2) {
+            return policy.groupOrder();
+        }
+        if (n > MAX_GROUPS) {
+            return policy.groupOrder();
+        }
+
+        BigDecimal total = ctx.pricing().total().max(BigDecimal.ZERO);
+        BigDecimal capRemaining = policy.cap().maxAllowedDiscount(ctx.pricing())
+                .subtract(ctx.pricing().discountTotal()).max(BigDecimal.ZERO);
+        BigDecimal limit = total.min(capRemaining);
+
+        int scale = limit.scale();
+        for (DiscountGroup g : groups) {
+            scale = Math.max(scale, requested(byGroup.get(g)).scale());
+        }
+
+        long[] amounts = new long[n];
+        BigInteger sum = BigInteger.ZERO;
+        for (int i = 0; i < n; i++) {
+            BigInteger units = requested(byGroup.get(groups.get(i))).setScale(scale).unscaledValue();
+            sum = sum.add(units);
+            amounts[i] = units.longValue();
+        }
+        BigInteger limitUnits = limit.setScale(scale).unscaledValue();
+        if (sum.bitLength() >= Long.SIZE || limitUnits.bitLength() >= Long.SIZE) {
+            return policy.groupOrder();
+        }
+
+        Search search = new Search(n, objective, limitUnits.longValue(), amounts, visited(n));
+        for (int i = 0; i < n; i++) {
+            int blocked = policy.exclusivity().blockedMask(groups.get(i));
+            for (int j = 0; j < n; j++) {
+                if ((blocked & (1 << groups.get(j).ordinal())) != 0) search.blocks[i] |= 1 << j;
+            }
+        }
+
+        search.seedWithGreedy();
+        search.explore(0, 0, 0L, 0);
+
+        List<DiscountGroup> order = new ArrayList<>(policy.groupOrder().size());
+        for (int k = 0; k < search.bestLength; k++) {
+            order.add(groups.get(search.bestPath[k]));
+        }
+        for (DiscountGroup g : policy.groupOrder()) {
+            if (!order.contains(g)) order.add(g);
+        }
+        return List.copyOf(order);
+    }
+
+    /**
+     * This thread's visited set, cleared for {@code 2^n} subsets.
+     */
+    private long[] visited(int n) {
+        int words = Math.max(1, (1 << n) >>> 6);
+        long[] visited = visitedSets.get();
+        if (visited.length < words) {
+            visited = new long[words];
+            visitedSets.set(visited);
+        } else {
+            Arrays.fill(visited, 0, words, 0L);
+        }
+        return visited;
+    }
+
+    private static BigDecimal requested(SelectedDiscount s) {
+        return s.amount() == null ? BigDecimal.ZERO : s.amount().max(BigDecimal.ZERO);
+    }
+
+    /**
+     * Mutable search state, confined to one {@link #solve} call.
+     */
+    private static final class Search {
+        private final int n;
+        private final int all;
+        private final Objective objective;
+        private final long limit;
+        private final long[] amounts;
+        private final int[] blocks;
+        private final long[] visited;
+        private final int[] path;
+        private final int[] bestPath;
+        private int bestLength;
+        private long bestValue;
+
+        private Search(int n, Objective objective, long limit, long[] amounts, long[] visited) {
+            this.n = n;
+            this.all = (1 << n) - 1;
+            this.objective = objective;
+            this.limit = limit;
+            this.amounts = amounts;
+            this.visited = visited;
+            this.blocks = new int[n];
+            this.path = new int[n];
+            this.bestPath = new int[n];
+        }
+
+        /**
+         * The fixed-order greedy outcome is always feasible and final, so it is the incumbent to beat.
+         */
+        private void seedWithGreedy() {
+            int mask = 0;
+            int blocked = 0;
+            long sum = 0;
+            int length = 0;
+            for (int i = 0; i < n; i++) {
+                if ((blocked & (1 << i)) != 0) continue;
+                mask |= 1 << i;
+                blocked |= blocks[i];
+                sum += amounts[i];
+                bestPath[length++] = i;
+            }
+            bestLength = length;
+            bestValue = Math.min(sum, limit);
+        }
+
+        private void explore(int mask, int blocked, long sum, int depth) {
+            int word = mask >>> 6;
+            long bit = 1L << mask;
+            if ((visited[word] & bit) != 0) return;
+            visited[word] |= bit;
+
+            long value = Math.min(sum, limit);
+            int open = all & ~mask & ~blocked;
+
+            if (open == 0) {
+                if (isBetter(value)) {
+                    bestValue = value;
+                    bestLength = depth;
+                    System.arraycopy(path, 0, bestPath, 0, depth);
+                }
+                return;
+            }
+            if (!canImprove(value, sum, open)) return;
+
+            for (int rest = open; rest != 0; rest &= rest - 1) {
+                int i = Integer.numberOfTrailingZeros(rest);
+                path[depth] = i;
+                explore(mask | (1 << i), blocked | blocks[i], sum + amounts[i], depth + 1);
+            }
+        }
+
+        private boolean isBetter(long value) {
+            return objective == Objective.MAX_DISCOUNT ? value > bestValue : value < bestValue;
+        }
+
+        private boolean canImprove(long value, long sum, int open) {
+            if (objective == Objective.MIN_DISCOUNT) {
+                // adding groups never lowers the discount
+                return value < bestValue;
+            }
+            if (bestValue >= limit) return false;
+            long upper = sum;
+            for (int rest = open; rest != 0; rest &= rest - 1) {
+                upper += amounts[Integer.numberOfTrailingZeros(rest)];
+            }
+            return Math.min(upper, limit) > bestValue;
+        }
+    }
+}
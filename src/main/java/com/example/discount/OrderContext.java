@@ -2,14 +2,32 @@ package com.example.discount;
 
 /**
  * Immutable context used when evaluating discount rules.
- * Extend this with whatever you need (restaurantId, items, customer tier, etc.).
+ * Extend this with whatever you need (customer tier, etc.); the restaurant selects which rules are evaluated
+ * ({@code TenantRegistry}) and is not part of the context.
+ * {@code items} is {@link LineItems#EMPTY} for orders priced from a subtotal only.
  */
 public record OrderContext(
         boolean vip,
         boolean hasCoupon,
-        OrderPricing pricing
+        OrderPricing pricing,
+        LineItems items
 ) {
+    public OrderContext {
+        items = items == null ? LineItems.EMPTY : items;
+    }
+
+    public OrderContext(boolean vip, boolean hasCoupon, OrderPricing pricing) {
+        this(vip, hasCoupon, pricing, LineItems.EMPTY);
+    }
+
+    /**
+     * Context for a cart whose subtotal is the sum of its lines.
+     */
+    public static OrderContext ofItems(boolean vip, boolean hasCoupon, LineItems items) {
+        return new OrderContext(vip, hasCoupon, OrderPricing.of(items.subtotal()), items);
+    }
+
     public OrderContext withPricing(OrderPricing newPricing) {
-        return new OrderContext(vip, hasCoupon, newPricing);
+        return new OrderContext(vip, hasCoupon, newPricing, items);
     }
 }
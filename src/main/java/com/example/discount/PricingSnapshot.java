@@ -0,0 +1,18 @@
+package com.example.discount;
+
+import java.util.List;
+
+/**
+ * A {@link PricingResult} together with the inputs it was computed from, so it can be re-priced incrementally.
+ */
+public record PricingSnapshot(
+        OrderContext context,
+        List<DiscountRule> rules,
+        List<SelectedDiscount> selected,
+        PricingResult result
+) {
+    public PricingSnapshot {
+        rules = List.copyOf(rules);
+        selected = List.copyOf(selected);
+    }
+}
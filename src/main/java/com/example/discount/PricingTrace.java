@@ -0,0 +1,148 @@
+package com.example.discount;
+
+import com.example.fpcore.Result;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-thread event buffer for one quote at a time, reused across quotes.
+ * <p>
+ * Events go into preallocated parallel arrays used as a ring: a quote with more events than the capacity keeps
+ * the newest ones and counts the rest as dropped. Nothing is allocated per event except what the event refers to.
+ * An inactive trace (not sampled) ignores every call, so callers only guard work that is expensive to compute.
+ */
+public final class PricingTrace {
+
+    static final PricingTrace OFF = new PricingTrace(null, 0);
+
+    private static final TraceSnapshot.Kind[] KINDS = TraceSnapshot.Kind.values();
+
+    private final PricingTracer tracer;
+    private final int capacity;
+    private final byte[] kinds;
+    private final long[] at;
+    private final long[] nanos;
+    private final String[] rules;
+    private final DiscountGroup[] groups;
+    private final BigDecimal[] amounts;
+    private final String[] details;
+    private final long[] groupNanos = new long[DiscountGroup.values().length];
+
+    private boolean active;
+    private long startNanos;
+    private long startMillis;
+    private long written;
+
+    PricingTrace(PricingTracer tracer, int capacity) {
+        this.tracer = tracer;
+        this.capacity = capacity;
+        this.kinds = new byte[capacity];
+        this.at = new long[capacity];
+        this.nanos = new long[capacity];
+        this.rules = new String[capacity];
+        this.groups = new DiscountGroup[capacity];
+        this.amounts = new BigDecimal[capacity];
+        this.details = new String[capacity];
+    }
+
+    public boolean active() {
+        return active;
+    }
+
+    void start() {
+        active = true;
+        written = 0;
+        startNanos = System.nanoTime();
+        startMillis = System.currentTimeMillis();
+        Arrays.fill(groupNanos, 0L);
+    }
+
+    /**
+     * Current time for stage measurements; 0 without a clock read when inactive.
+     */
+    long now() {
+        return active ? System.nanoTime() : 0L;
+    }
+
+    void stage(TraceSnapshot.Kind kind, long since) {
+        if (!active) return;
+        long end = System.nanoTime();
+        add(kind, since, end - since, null, null, null, null);
+    }
+
+    /**
+     * Outermost evaluator: records the outcome and duration of every rule evaluation.
+     */
+    RuleEvaluator around(RuleEvaluator next) {
+        return (rule, ctx) -> {
+            long start = System.nanoTime();
+            Result<BigDecimal> result = next.evaluate(rule, ctx);
+            long elapsed = System.nanoTime() - start;
+            if (rule.group() != null) groupNanos[rule.group().ordinal()] += elapsed;
+            add(TraceSnapshot.Kind.RULE, start, elapsed, rule.name(), rule.group(), result.isSuccess() ? result.getOrThrow() : null,
+                    result.outcome(true));
+            return result;
+        };
+    }
+
+    void selected(List<SelectedDiscount> selected) {
+        if (!active) return;
+        for (SelectedDiscount s : selected) {
+            add(TraceSnapshot.Kind.SELECTED, System.nanoTime(), groupNanos[s.group().ordinal()], s.ruleName(), s.group(), s.amount(), null);
+        }
+    }
+
+    void groupOrder(List<DiscountGroup> order) {
+        if (!active) return;
+        add(TraceSnapshot.Kind.GROUP_ORDER, System.nanoTime(), 0, null, null, null, order.toString());
+    }
+
+    void applied(long since, PricingResult result) {
+        if (!active) return;
+        stage(TraceSnapshot.Kind.APPLY, since);
+        for (AppliedStep step : result.steps()) {
+            add(TraceSnapshot.Kind.STEP, since, 0, step.ruleName(), step.group(), step.appliedDiscount(), step.note());
+        }
+    }
+
+    /**
+     * Ends the quote: publishes a snapshot to the tracer and deactivates this buffer.
+     */
+    <T> Result<T> finish(Result<T> result) {
+        if (!active) return result;
+        active = false;
+        tracer.publish(snapshot(result.outcome(true)));
+        return result;
+    }
+
+    private TraceSnapshot snapshot(String outcome) {
+        int size = (int) Math.min(written, capacity);
+        List<TraceSnapshot.Event> events = new ArrayList<>(size);
+        for (long i = written - size; i < written; i++) {
+            int slot = (int) (i % capacity);
+            events.add(new TraceSnapshot.Event(KINDS[kinds[slot]], at[slot] - startNanos, nanos[slot],
+                    rules[slot], groups[slot], amounts[slot], details[slot]));
+            rules[slot] = null;
+            amounts[slot] = null;
+            details[slot] = null;
+        }
+        return new TraceSnapshot(tracer.nextId(), Instant.ofEpochMilli(startMillis), Thread.currentThread().getName(),
+                System.nanoTime() - startNanos, outcome, (int) (written - size), events);
+    }
+
+    private void add(TraceSnapshot.Kind kind, long atNanos, long durationNanos, String rule, DiscountGroup group,
+                     BigDecimal amount, String detail) {
+        int slot = (int) (written++ % capacity);
+        kinds[slot] = (byte) kind.ordinal();
+        at[slot] = atNanos;
+        nanos[slot] = durationNanos;
+        rules[slot] = rule;
+        groups[slot] = group;
+        amounts[slot] = amount;
+        details[slot] = detail;
+    }
+}
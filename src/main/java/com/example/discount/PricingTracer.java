@@ -0,0 +1,75 @@
+package com.example.discount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Samples quotes for tracing and keeps the last {@code retained} traces.
+ * <p>
+ * Every {@code sampleEvery}-th quote (1 = all, 0 = none) is traced into the calling thread's {@link PricingTrace};
+ * finished traces are copied into a global ring that overwrites the oldest entry. Quotes that are not sampled only
+ * pay for one counter increment.
+ */
+public final class PricingTracer {
+
+    public static final PricingTracer OFF = new PricingTracer(0, 1, 1);
+
+    private final int sampleEvery;
+    private final int eventsPerTrace;
+    private final AtomicLong quotes = new AtomicLong();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicReferenceArray<TraceSnapshot> ring;
+    private final ThreadLocal<PricingTrace> buffers;
+
+    public PricingTracer(int sampleEvery, int retained, int eventsPerTrace) {
+        if (sampleEvery < 0 || retained <= 0 || eventsPerTrace <= 0) {
+            throw new IllegalArgumentException("expected sampleEvery >= 0, retained > 0 and eventsPerTrace > 0");
+        }
+        this.sampleEvery = sampleEvery;
+        this.eventsPerTrace = eventsPerTrace;
+        this.ring = new AtomicReferenceArray<>(retained);
+        this.buffers = ThreadLocal.withInitial(() -> new PricingTrace(this, this.eventsPerTrace));
+    }
+
+    /**
+     * The calling thread's trace, started if this quote is sampled, otherwise an inactive one.
+     */
+    PricingTrace begin() {
+        if (sampleEvery == 0 || quotes.getAndIncrement() % sampleEvery != 0) {
+            return PricingTrace.OFF;
+        }
+        PricingTrace trace = buffers.get();
+        if (trace.active()) {
+            // nested quote on the same thread: only the outer one is traced
+            return PricingTrace.OFF;
+        }
+        trace.start();
+        return trace;
+    }
+
+    /**
+     * Most recent traces first, at most {@code limit}.
+     */
+    public List<TraceSnapshot> recent(int limit) {
+        long newest = published.get();
+        int count = (int) Math.min(Math.min(limit, ring.length()), newest);
+        List<TraceSnapshot> traces = new ArrayList<>(count);
+        for (long i = newest - 1; i >= newest - count; i--) {
+            TraceSnapshot trace = ring.get((int) (i % ring.length()));
+            if (trace != null) traces.add(trace);
+        }
+        return traces;
+    }
+
+    long nextId() {
+        return ids.incrementAndGet();
+    }
+
+    void publish(TraceSnapshot trace) {
+        long slot = published.getAndIncrement();
+        ring.set((int) (slot % ring.length()), trace);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.discount;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Each applied step's discount split across the cart lines, in cents.
+ * Row {@code s} belongs to {@code steps().get(s)}; every row sums exactly to that step's applied discount.
+ */
+public final class ProratedDiscounts {
+
+    private final List<AppliedStep> steps;
+    private final int lines;
+    private final long[] cents; // steps x lines, row-major
+
+    ProratedDiscounts(List<AppliedStep> steps, int lines, long[] cents) {
+        this.steps = steps;
+        this.lines = lines;
+        this.cents = cents;
+    }
+
+    public List<AppliedStep> steps() {
+        return steps;
+    }
+
+    public int lines() {
+        return lines;
+    }
+
+    /**
+     * Part of step {@code step}'s discount carried by line {@code line}.
+     */
+    public long cents(int step, int line) {
+        return cents[step * lines + line];
+    }
+
+    public long stepCents(int step) {
+        long sum = 0;
+        for (int line = 0; line < lines; line++) {
+            sum += cents[step * lines + line];
+        }
+        return sum;
+    }
+
+    /**
+     * Total discount carried by line {@code line} over all steps.
+     */
+    public long lineCents(int line) {
+        long sum = 0;
+        for (int step = 0; step < steps.size(); step++) {
+            sum += cents[step * lines + line];
+        }
+        return sum;
+    }
+
+    public BigDecimal lineDiscount(int line) {
+        return BigDecimal.valueOf(lineCents(line), 2);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.discount;
+
+import com.example.fpcore.Result;
+
+import java.math.BigDecimal;
+
+/**
+ * How engines turn a rule + context into an outcome. {@link #DIRECT} simply calls {@link DiscountRule#evaluate};
+ * other implementations decorate it (memoization, time budgets, ...).
+ */
+@FunctionalInterface
+public interface RuleEvaluator {
+
+    RuleEvaluator DIRECT = DiscountRule::evaluate;
+
+    Result<BigDecimal> evaluate(DiscountRule rule, OrderContext ctx);
+}
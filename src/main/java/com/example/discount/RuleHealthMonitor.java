@@ -0,0 +1,326 @@
+package com.example.discount;
+
+import com.example.fpcore.Result;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks failure rate and latency per rule and quarantines rules that cross a threshold.
+ * <p>
+ * Calls are counted per rule in striped {@link LongAdder}s over a tumbling window. Whenever a call fails or is
+ * slower than {@link Thresholds#slowCall()}, the window is checked: with at least {@link Thresholds#minCalls()}
+ * calls, a failure or slow-call rate at or above its limit quarantines the rule for {@link Thresholds#cooldown()}.
+ * A quarantined rule is not evaluated; it is treated as {@link Result#empty()} and noted in {@link RuleNotes},
+ * so one bad rule no longer fails every quote. The failing call that trips the quarantine is already treated as
+ * empty. After the cooldown the rule is evaluated again with a fresh window.
+ * <p>
+ * Rules are tracked per tenant and rule name (see {@link DiscountOrchestratorV2#forTenant}), since two restaurant
+ * catalogs may use the same rule name for unrelated rules. At most {@code maxRules} rules are tracked; rules not
+ * called for {@code idleExpiry} are forgotten (unless quarantined), and while the monitor is full further rules are
+ * evaluated untracked and counted in {@link #untrackedCount()}.
+ * <p>
+ * Window counters are reset without locking, so a few calls racing with a rollover may land in either window.
+ */
+public final class RuleHealthMonitor implements RuleInterceptor {
+
+    /**
+     * When a rule is quarantined.
+     *
+     * @param window         length of the tumbling window the rates are computed over
+     * @param minCalls       calls in the window before any rate is trusted
+     * @param maxFailureRate failure rate (0..1) that quarantines the rule
+     * @param slowCall       a call at least this long counts as slow
+     * @param maxSlowRate    slow-call rate (0..1) that quarantines the rule
+     * @param cooldown       how long a quarantined rule is skipped
+     */
+    public record Thresholds(Duration window, int minCalls, double maxFailureRate, Duration slowCall,
+                             double maxSlowRate, Duration cooldown) {
+        public Thresholds {
+            positive(window, "window");
+            positive(slowCall, "slowCall");
+            positive(cooldown, "cooldown");
+            if (minCalls <= 0) {
+                throw new IllegalArgumentException("minCalls must be positive");
+            }
+            if (!(maxFailureRate > 0 && maxFailureRate <= 1) || !(maxSlowRate > 0 && maxSlowRate <= 1)) {
+                throw new IllegalArgumentException("rates must be in (0, 1]");
+            }
+        }
+
+        /**
+         * 10s window, at least 20 calls, 50% failures or 50% calls slower than 50ms, 30s cooldown.
+         */
+        public static Thresholds defaults() {
+            return new Thresholds(Duration.ofSeconds(10), 20, 0.5, Duration.ofMillis(50), 0.5, Duration.ofSeconds(30));
+        }
+    }
+
+    /**
+     * Lifetime counters of one rule plus its current quarantine state; {@code tenant} is {@code null} for the shared
+     * rules.
+     */
+    public record RuleStatus(String tenant, String rule, long calls, long failures, long slowCalls, long meanNanos,
+                             long quarantines, long skipped, boolean quarantined, String reason) {}
+
+    private final Thresholds thresholds;
+    private final long windowNanos;
+    private final long slowCallNanos;
+    private final long cooldownNanos;
+    private final int maxRules;
+    private final long idleExpiryNanos;
+    private final ConcurrentHashMap<RuleKey, Health> rules = new ConcurrentHashMap<>();
+    private final AtomicLong lastExpiry = new AtomicLong(System.nanoTime());
+    private final LongAdder quarantines = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    /**
+     * Tracks up to 10,000 rules and forgets those idle for an hour.
+     */
+    public RuleHealthMonitor(Thresholds thresholds) {
+        this(thresholds, 10_000, Duration.ofHours(1));
+    }
+
+    public RuleHealthMonitor(Thresholds thresholds, int maxRules, Duration idleExpiry) {
+        this.thresholds = Objects.requireNonNull(thresholds, "thresholds");
+        positive(idleExpiry, "idleExpiry");
+        if (maxRules <= 0) {
+            throw new IllegalArgumentException("maxRules must be positive");
+        }
+        this.windowNanos = thresholds.window().toNanos();
+        this.slowCallNanos = thresholds.slowCall().toNanos();
+        this.cooldownNanos = thresholds.cooldown().toNanos();
+        this.maxRules = maxRules;
+        this.idleExpiryNanos = idleExpiry.toNanos();
+    }
+
+    public Thresholds thresholds() {
+        return thresholds;
+    }
+
+    @Override
+    public RuleEvaluator around(RuleEvaluator next, RuleNotes notes) {
+        return around(next, notes, null);
+    }
+
+    @Override
+    public RuleEvaluator around(RuleEvaluator next, RuleNotes notes, String tenant) {
+        return (rule, ctx) -> evaluate(next, notes, tenant, rule, ctx);
+    }
+
+    /**
+     * Quarantines started since this monitor was created.
+     */
+    public long quarantineCount() {
+        return quarantines.sum();
+    }
+
+    /**
+     * Rule evaluations not tracked because {@code maxRules} rules were already tracked.
+     */
+    public long untrackedCount() {
+        return untracked.sum();
+    }
+
+    /**
+     * Shared rules first, then by tenant and rule.
+     */
+    public List<RuleStatus> status() {
+        long now = System.nanoTime();
+        return rules.values().stream()
+                .map(h -> h.status(now))
+                .sorted(Comparator.comparing(RuleStatus::tenant, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                        .thenComparing(RuleStatus::rule))
+                .toList();
+    }
+
+    private Result<BigDecimal> evaluate(RuleEvaluator next, RuleNotes notes, String tenant, DiscountRule rule, OrderContext ctx) {
+        long start = System.nanoTime();
+        Health health = health(new RuleKey(tenant, rule.name()), start);
+        if (health == null) {
+            untracked.increment();
+            return next.evaluate(rule, ctx);
+        }
+        if (health.isQuarantined(start)) {
+            health.skipped.increment();
+            notes.add(rule, "SKIPPED: quarantined (" + health.reason + ")");
+            return Result.empty();
+        }
+
+        Result<BigDecimal> result = next.evaluate(rule, ctx);
+        long end = System.nanoTime();
+        boolean failed = result.isFailure();
+        boolean slow = end - start >= slowCallNanos;
+        health.record(start, end - start, failed, slow);
+
+        if (failed || slow) {
+            String reason = health.breach(thresholds);
+            if (reason != null && health.quarantine(end, reason)) {
+                quarantines.increment();
+                notes.add(rule, "QUARANTINED: " + reason + ", cooldown " + thresholds.cooldown().toMillis() + "ms");
+            }
+            if (failed && health.isQuarantined(end)) {
+                return Result.empty();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The rule's health, or {@code null} when it is new and the monitor is full even after expiring idle rules.
+     */
+    private Health health(RuleKey key, long now) {
+        Health health = rules.get(key);
+        if (health != null) {
+            return health;
+        }
+        expireIdle(now);
+        if (rules.size() >= maxRules) {
+            return null;
+        }
+        return rules.computeIfAbsent(key, k -> new Health(k, now));
+    }
+
+    /**
+     * Forgets rules idle for longer than {@code idleExpiry}; runs at most once per window (or per idle expiry, when
+     * that is shorter), on a new rule's first call.
+     */
+    private void expireIdle(long now) {
+        long last = lastExpiry.get();
+        if (now - last < Math.min(windowNanos, idleExpiryNanos) || !lastExpiry.compareAndSet(last, now)) {
+            return;
+        }
+        rules.values().removeIf(h -> h.isIdle(now, idleExpiryNanos));
+    }
+
+    private record RuleKey(String tenant, String rule) {}
+
+    private final class Health {
+        private final RuleKey key;
+        private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+        private final LongAdder windowCalls = new LongAdder();
+        private final LongAdder windowFailures = new LongAdder();
+        private final LongAdder windowSlow = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder quarantined = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        // 0 when not quarantined, otherwise the nanoTime the cooldown ends
+        private final AtomicLong quarantinedUntil = new AtomicLong();
+        private volatile String reason;
+        private volatile long lastCall;
+
+        private Health(RuleKey key, long now) {
+            this.key = key;
+            this.lastCall = now;
+        }
+
+        boolean isIdle(long now, long idleNanos) {
+            return now - lastCall >= idleNanos && !isQuarantined(now);
+        }
+
+        boolean isQuarantined(long now) {
+            long until = quarantinedUntil.get();
+            if (until == 0) {
+                return false;
+            }
+            if (now - until < 0) {
+                return true;
+            }
+            if (quarantinedUntil.compareAndSet(until, 0)) {
+                resetWindow(now);
+            }
+            return false;
+        }
+
+        void record(long start, long elapsed, boolean failed, boolean slow) {
+            lastCall = start;
+            long windowStarted = windowStart.get();
+            if (start - windowStarted >= windowNanos && windowStart.compareAndSet(windowStarted, start)) {
+                clearWindow();
+            }
+            windowCalls.increment();
+            calls.increment();
+            nanos.add(elapsed);
+            if (failed) {
+                windowFailures.increment();
+                failures.increment();
+            }
+            if (slow) {
+                windowSlow.increment();
+                slowCalls.increment();
+            }
+        }
+
+        /**
+         * The reason to quarantine, or {@code null} while the window is within the thresholds.
+         */
+        String breach(Thresholds t) {
+            long n = windowCalls.sum();
+            if (n < t.minCalls()) {
+                return null;
+            }
+            long failed = windowFailures.sum();
+            if (failed >= Math.ceil(t.maxFailureRate() * n)) {
+                return "failure rate " + percent(failed, n) + " over " + n + " calls";
+            }
+            long slow = windowSlow.sum();
+            if (slow >= Math.ceil(t.maxSlowRate() * n)) {
+                return "slow-call rate " + percent(slow, n) + " over " + n + " calls (>= " + t.slowCall().toMillis() + "ms)";
+            }
+            return null;
+        }
+
+        /**
+         * Starts a cooldown unless another call already did.
+         */
+        boolean quarantine(long now, String why) {
+            long until = now + cooldownNanos;
+            if (until == 0) until = 1;
+            this.reason = why;
+            if (quarantinedUntil.compareAndSet(0, until)) {
+                quarantined.increment();
+                return true;
+            }
+            return false;
+        }
+
+        RuleStatus status(long now) {
+            long n = calls.sum();
+            long until = quarantinedUntil.get();
+            boolean active = until != 0 && now - until < 0;
+            return new RuleStatus(key.tenant(), key.rule(), n, failures.sum(), slowCalls.sum(), n == 0 ? 0 : nanos.sum() / n,
+                    quarantined.sum(), skipped.sum(), active, active ? reason : null);
+        }
+
+        private void resetWindow(long now) {
+            windowStart.set(now);
+            clearWindow();
+        }
+
+        private void clearWindow() {
+            windowCalls.reset();
+            windowFailures.reset();
+            windowSlow.reset();
+        }
+    }
+
+    private static String percent(long part, long whole) {
+        return Math.round(100.0 * part / whole) + "%";
+    }
+
+    private static void positive(Duration d, String name) {
+        Objects.requireNonNull(d, name);
+        if (d.isNegative() || d.isZero()) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+    }
+}
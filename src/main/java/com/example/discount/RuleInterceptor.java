@@ -0,0 +1,19 @@
+package com.example.discount;
+
+/**
+ * Decorates the {@link RuleEvaluator} used for one pricing request.
+ * Called once per request, so implementations can keep per-request state (deadlines, notes).
+ */
+@FunctionalInterface
+public interface RuleInterceptor {
+
+    RuleEvaluator around(RuleEvaluator next, RuleNotes notes);
+
+    /**
+     * Same, for a request priced with {@code tenant}'s own catalog ({@code null} for the shared rules). Interceptors
+     * that keep state per rule override this to keep tenants apart, since rule names are only unique per catalog.
+     */
+    default RuleEvaluator around(RuleEvaluator next, RuleNotes notes, String tenant) {
+        return around(next, notes);
+    }
+}
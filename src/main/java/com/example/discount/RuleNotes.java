@@ -0,0 +1,27 @@
+package com.example.discount;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-request notes about rules that were not evaluated normally (timed out, quarantined, ...).
+ * {@link DiscountOrchestratorV2} turns them into {@link AppliedStep} audit entries.
+ */
+public final class RuleNotes {
+
+    public record Note(DiscountRule rule, String note) {}
+
+    private final List<Note> notes = new ArrayList<>();
+
+    public synchronized void add(DiscountRule rule, String note) {
+        notes.add(new Note(rule, note));
+    }
+
+    public synchronized List<Note> notes() {
+        return List.copyOf(notes);
+    }
+
+    public synchronized boolean isEmpty() {
+        return notes.isEmpty();
+    }
+}
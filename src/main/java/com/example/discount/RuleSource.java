@@ -0,0 +1,30 @@
+package com.example.discount;
+
+import com.example.fpcore.Option;
+
+import java.util.List;
+
+/**
+ * Supplies the rules to price one order with. Implementations return an immutable snapshot,
+ * so a quote keeps a consistent rule set even if the source changes meanwhile.
+ */
+@FunctionalInterface
+public interface RuleSource {
+
+    List<DiscountRule> rules(OrderContext ctx);
+
+    /**
+     * The stacking policy these rules are meant to be priced with, if the source declares one.
+     */
+    default Option<StackingPolicy> policy() {
+        return Option.none();
+    }
+
+    /**
+     * The source as it is now; one that changes returns its current immutable state, so its rules and policy can
+     * be read together.
+     */
+    default RuleSource snapshot() {
+        return this;
+    }
+}
@@ -4,12 +4,23 @@ import com.example.fpcore.Result;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Applies all eligible rules in the given order (compound stacking).
  */
 public final class SequentialDiscountEngine {
 
+    private final RuleEvaluator evaluator;
+
+    public SequentialDiscountEngine() {
+        this(RuleEvaluator.DIRECT);
+    }
+
+    public SequentialDiscountEngine(RuleEvaluator evaluator) {
+        this.evaluator = Objects.requireNonNull(evaluator, "evaluator");
+    }
+
     public OrderPricing applySequentially(OrderContext ctx, List<DiscountRule> rules) {
         return applySequentiallyResult(ctx, rules).getOrThrow();
     }
@@ -18,7 +29,7 @@ public final class SequentialDiscountEngine {
         return rules.stream().reduce(
                 Result.success(ctx),
                 (acc, rule) -> acc.flatMap(current ->
-                        rule.evaluate(current)
+                        evaluator.evaluate(rule, current)
                                 .map(amount -> current.withPricing(current.pricing().addDiscount(safeAmount(current, amount))))
                                 .orElse(() -> Result.success(current))
                 ),
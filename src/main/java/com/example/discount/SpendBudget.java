@@ -0,0 +1,137 @@
+package com.example.discount;
+
+/**
+ * Global spend limits per rule, consulted by {@link GroupedStackingApplier} before a discount is applied.
+ * <p>
+ * Amounts are in cents. {@link #reserve} takes up to {@code cents} from the rule's remaining budget and returns how
+ * much it took: all of it, part of it (the step is {@code CAPPED}) or nothing (the step is {@code SKIPPED}).
+ * {@link #available} answers the same question without taking anything. Rules without a limit are granted in full.
+ * A reservation counts as spent until it is {@link #release released}, e.g. when the order is cancelled.
+ * <p>
+ * A budget that can be reset for a new campaign period numbers its {@link #period periods}. Whoever releases later
+ * notes the period before reserving and releases with {@link #release(String, long, long)}, so cents granted in an
+ * earlier period are never given to the next one.
+ */
+public interface SpendBudget {
+
+    SpendBudget UNLIMITED = new SpendBudget() {
+        @Override
+        public long reserve(String rule, long cents) {
+            return Math.max(cents, 0);
+        }
+
+        @Override
+        public long available(String rule, long cents) {
+            return Math.max(cents, 0);
+        }
+
+        @Override
+        public void release(String rule, long cents) {
+        }
+    };
+
+    long reserve(String rule, long cents);
+
+    /**
+     * How much of {@code cents} {@link #reserve} would grant right now.
+     */
+    long available(String rule, long cents);
+
+    void release(String rule, long cents);
+
+    /**
+     * The rule's current period; it only changes when the rule's budget is reset. 0 for budgets that never are.
+     */
+    default long period(String rule) {
+        return 0;
+    }
+
+    /**
+     * Releases {@code cents} only while {@code rule} is still in {@code period}; otherwise they belong to a period
+     * that is over and are dropped.
+     */
+    default void release(String rule, long cents, long period) {
+        if (period(rule) == period) {
+            release(rule, cents);
+        }
+    }
+
+    /**
+     * The key a tenant's own rule is budgeted under: {@code "<tenant>/<rule>"}, or the bare rule name for the shared
+     * rules ({@code tenant == null}), so two restaurants with a rule of the same name never share a counter.
+     */
+    static String key(String tenant, String rule) {
+        return tenant == null ? rule : tenant + "/" + rule;
+    }
+
+    /**
+     * This budget with every rule name scoped to {@code tenant} (see {@link #key}).
+     */
+    default SpendBudget forTenant(String tenant) {
+        SpendBudget budget = this;
+        if (budget == UNLIMITED || tenant == null) {
+            return budget;
+        }
+        return new SpendBudget() {
+            @Override
+            public long reserve(String rule, long cents) {
+                return budget.reserve(key(tenant, rule), cents);
+            }
+
+            @Override
+            public long available(String rule, long cents) {
+                return budget.available(key(tenant, rule), cents);
+            }
+
+            @Override
+            public void release(String rule, long cents) {
+                budget.release(key(tenant, rule), cents);
+            }
+
+            @Override
+            public long period(String rule) {
+                return budget.period(key(tenant, rule));
+            }
+
+            @Override
+            public void release(String rule, long cents, long period) {
+                budget.release(key(tenant, rule), cents, period);
+            }
+        };
+    }
+
+    /**
+     * A view that grants what this budget {@link #available would} but takes nothing, for prices that are only
+     * quoted.
+     */
+    default SpendBudget readOnly() {
+        SpendBudget budget = this;
+        if (budget == UNLIMITED) {
+            return budget;
+        }
+        return new SpendBudget() {
+            @Override
+            public long reserve(String rule, long cents) {
+                return budget.available(rule, cents);
+            }
+
+            @Override
+            public long available(String rule, long cents) {
+                return budget.available(rule, cents);
+            }
+
+            @Override
+            public void release(String rule, long cents) {
+            }
+
+            @Override
+            public void release(String rule, long cents, long period) {
+            }
+
+            @Override
+            public SpendBudget forTenant(String tenant) {
+                return budget.forTenant(tenant).readOnly();
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.discount;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Policies used when stacking selected discounts (group order + exclusivity + cap).
+ */
+public record StackingPolicy(
+        List<DiscountGroup> groupOrder,
+        ExclusivityPolicy exclusivity,
+        DiscountCapPolicy cap
+) {
+    public StackingPolicy {
+        groupOrder = List.copyOf(Objects.requireNonNull(groupOrder, "groupOrder"));
+        Objects.requireNonNull(exclusivity, "exclusivity");
+        Objects.requireNonNull(cap, "cap");
+    }
+
+    /**
+     * Coupon and campaign block each other, 30% global cap, order CAMPAIGN -> VIP -> COUPON.
+     */
+    public static StackingPolicy defaults() {
+        ExclusivityPolicy exclusivity = new ExclusivityPolicy()
+                .block(DiscountGroup.COUPON, DiscountGroup.CAMPAIGN)
+                .block(DiscountGroup.CAMPAIGN, DiscountGroup.COUPON);
+
+        DiscountCapPolicy cap = new DiscountCapPolicy(new BigDecimal("0.30")); // 30% cap
+
+        var groupOrder = List.of(
+                DiscountGroup.CAMPAIGN,
+                DiscountGroup.VIP,
+                DiscountGroup.COUPON
+        );
+
+        return new StackingPolicy(groupOrder, exclusivity, cap);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.discount;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable copy of one traced quote, published by {@link PricingTracer}.
+ * Event times are nanoseconds since the start of the quote.
+ */
+public record TraceSnapshot(
+        long id,
+        Instant startedAt,
+        String thread,
+        long totalNanos,
+        String outcome,
+        int droppedEvents,
+        List<Event> events
+) {
+    public TraceSnapshot {
+        events = List.copyOf(events);
+    }
+
+    public enum Kind {
+        /** Request/rule validation; {@code nanos} is the stage duration. */
+        VALIDATION,
+        /** One rule evaluation; {@code detail} is SUCCESS, EMPTY or FAILURE: message. */
+        RULE,
+        /** Best candidate of a group; {@code nanos} is the time spent evaluating that group's rules. */
+        SELECTED,
+        /** Group order chosen by the optimal stacking solver. */
+        GROUP_ORDER,
+        /** One stacking step; {@code detail} is the applier note (APPLIED, CAPPED, SKIPPED: ...). */
+        STEP,
+        /** Applying the selected discounts; {@code nanos} is the stage duration. */
+        APPLY
+    }
+
+    public record Event(
+            Kind kind,
+            long atNanos,
+            long nanos,
+            String rule,
+            DiscountGroup group,
+            BigDecimal amount,
+            String detail
+    ) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.discount.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Executor behind {@code POST /api/pricing/quote/async}.
+ * <ul>
+ *   <li>{@code pricing.async.mode=platform} (default): fixed pool of {@code pricing.async.threads} platform threads
+ *       (default: twice the processors) with at most {@code pricing.async.queue-capacity} (default 1024) waiting
+ *       quotes; quotes beyond that are answered with 503</li>
+ *   <li>{@code pricing.async.mode=virtual}: one virtual thread per quote (Java 21+, falls back to platform)</li>
+ * </ul>
+ */
+@Configuration
+public class PricingAsyncConfiguration {
+
+    public static final String EXECUTOR = "pricingExecutor";
+
+    private static final Logger log = LoggerFactory.getLogger(PricingAsyncConfiguration.class);
+
+    @Bean(name = EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService pricingExecutor(
+            @Value("${pricing.async.mode:platform}") String mode,
+            @Value("${pricing.async.threads:0}") int threads,
+            @Value("${pricing.async.queue-capacity:1024}") int queueCapacity
+    ) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+        if ("virtual".equalsIgnoreCase(mode)) {
+            var virtual = PricingExecutors.virtualThreadPerTask();
+            if (virtual.isDefined()) {
+                log.info("Async quotes run on virtual threads");
+                return virtual.getOrThrow();
+            }
+            log.warn("pricing.async.mode=virtual needs Java 21+, using {} platform threads", poolSize);
+        }
+        return PricingExecutors.platform(poolSize, queueCapacity);
+    }
+}
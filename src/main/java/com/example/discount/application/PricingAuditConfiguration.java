@@ -0,0 +1,42 @@
+package com.example.discount.application;
+
+import com.example.discount.audit.AuditLogWriter;
+import com.example.discount.audit.AuditSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Audit sink behind {@code PricingService}.
+ * <ul>
+ *   <li>{@code pricing.audit.enabled=false} (default): results are not audited</li>
+ *   <li>{@code pricing.audit.enabled=true}: binary log in {@code pricing.audit.directory}, rotating every
+ *       {@code pricing.audit.segment-bytes}, keeping {@code pricing.audit.max-segments} files, buffering up to
+ *       {@code pricing.audit.queue-capacity} results</li>
+ * </ul>
+ */
+@Configuration
+public class PricingAuditConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(PricingAuditConfiguration.class);
+
+    @Bean
+    public AuditSink auditSink(
+            @Value("${pricing.audit.enabled:false}") boolean enabled,
+            @Value("${pricing.audit.directory:audit}") String directory,
+            @Value("${pricing.audit.segment-bytes:67108864}") long segmentBytes,
+            @Value("${pricing.audit.queue-capacity:65536}") int queueCapacity,
+            @Value("${pricing.audit.max-segments:16}") int maxSegments
+    ) {
+        if (!enabled) {
+            return AuditSink.NOOP;
+        }
+        AuditLogWriter writer = AuditLogWriter.open(Path.of(directory), segmentBytes, queueCapacity, maxSegments).getOrThrow();
+        log.info("Auditing pricing results to {}", Path.of(directory).toAbsolutePath());
+        return writer;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.discount.application;
+
+import com.example.discount.SpendBudget;
+import com.example.discount.budget.BudgetReservations;
+import com.example.discount.budget.SharedSpendBudget;
+import com.example.discount.budget.StripedSpendBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Campaign spend budgets.
+ * <ul>
+ *   <li>{@code pricing.budget.limits} unset (default): discounts are not limited by a budget</li>
+ *   <li>{@code pricing.budget.limits=OVER_500_DYNAMIC=25000.00,COUPON_50_TRY=5000,r1/CAMP=300}: the total each
+ *       listed rule grants to orders is limited to its amount; an order that would exceed it gets the rest, then
+ *       nothing. Quotes show what is left without spending it. A rule from a restaurant's own catalog is listed as
+ *       {@code <restaurantId>/<rule>}. An order's reservation is held until it is committed or cancelled, or for
+ *       {@code pricing.budget.hold-ttl} (default 15m), after which it is released. Spent amounts start from zero on
+ *       every start unless {@code pricing.budget.log-path} is set, in which case they are written to that file
+ *       every {@code pricing.budget.sync-interval-ms} (default 100) and resumed from it. The log is written behind
+ *       the counters, so the limit is soft across a crash: the amounts granted in the last interval before it are
+ *       forgotten and can be granted again. {@code pricing.budget.stripes} (default: processors, rounded to a power
+ *       of two) sets how many counters each limit is split over</li>
+ *   <li>{@code pricing.budget.shared-path=/dev/shm/pricing-budgets}: the counters live in that memory-mapped file
+ *       instead, shared by every pricing process on the host that points at it. {@code pricing.budget.limits}
+ *       (optional here) adds the listed rules that the file does not have yet; a rule already in it keeps its limit
+ *       (a different configured one is logged) unless {@code pricing.budget.shared-override-limits=true}. Limits
+ *       are changed, reset for a new period or removed for all processes through {@code /api/pricing/debug/budgets}.
+ *       Spent amounts live as long as the file: on tmpfs such as {@code /dev/shm} they carry over process restarts
+ *       but not a reboot; a file on disk keeps them. The file is the only record, so
+ *       {@code pricing.budget.log-path} cannot be combined with it. {@code pricing.budget.shared-slots}
+ *       (default 256) is the number of rules a new file has room for</li>
+ * </ul>
+ */
+@Configuration
+public class PricingBudgetConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(PricingBudgetConfiguration.class);
+
+    @Bean
+    public SpendBudget spendBudget(
+            @Value("${pricing.budget.limits:}") String limits,
+            @Value("${pricing.budget.log-path:}") String logPath,
+            @Value("${pricing.budget.stripes:0}") int stripes,
+            @Value("${pricing.budget.sync-interval-ms:100}") long syncIntervalMs,
+            @Value("${pricing.budget.shared-path:}") String sharedPath,
+            @Value("${pricing.budget.shared-slots:256}") int sharedSlots,
+            @Value("${pricing.budget.shared-override-limits:false}") boolean overrideSharedLimits
+    ) {
+        if (!sharedPath.isBlank()) {
+            if (!logPath.isBlank()) {
+                throw new IllegalArgumentException("pricing.budget.log-path cannot be combined with "
+                        + "pricing.budget.shared-path: shared counters are kept in the shared file only");
+            }
+            Map<String, BigDecimal> byRule = limits.isBlank() ? Map.of() : parseLimits(limits);
+            log.info("Campaign budgets shared through {}, {} limits {}", Path.of(sharedPath).toAbsolutePath(),
+                    overrideSharedLimits ? "setting" : "adding", byRule);
+            SharedSpendBudget shared = SharedSpendBudget.open(Path.of(sharedPath), byRule, sharedSlots,
+                    overrideSharedLimits).getOrThrow();
+            shared.limitConflicts().forEach(conflict -> log.warn("Shared campaign budget kept: {}", conflict));
+            return shared;
+        }
+        if (limits.isBlank()) {
+            return SpendBudget.UNLIMITED;
+        }
+        Map<String, BigDecimal> byRule = parseLimits(limits);
+        int n = stripes > 0 ? stripes : StripedSpendBudget.defaultStripes();
+        if (logPath.isBlank()) {
+            log.info("Campaign budgets {} kept in memory only", byRule);
+            return StripedSpendBudget.inMemory(byRule, n);
+        }
+        log.info("Campaign budgets {} logged to {}", byRule, Path.of(logPath).toAbsolutePath());
+        return StripedSpendBudget.open(byRule, n, Path.of(logPath), Duration.ofMillis(syncIntervalMs)).getOrThrow();
+    }
+
+    @Bean
+    public BudgetReservations budgetReservations(SpendBudget spendBudget,
+                                                 @Value("${pricing.budget.hold-ttl:15m}") Duration holdTtl) {
+        return new BudgetReservations(spendBudget, holdTtl);
+    }
+
+    static Map<String, BigDecimal> parseLimits(String limits) {
+        Map<String, BigDecimal> byRule = new LinkedHashMap<>();
+        for (String entry : limits.split(",")) {
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("pricing.budget.limits entries must look like RULE=amount, got '" + entry.trim() + "'");
+            }
+            BigDecimal amount = new BigDecimal(entry.substring(eq + 1).trim());
+            if (amount.signum() < 0) {
+                throw new IllegalArgumentException("budget of " + entry.substring(0, eq).trim() + " must not be negative");
+            }
+            byRule.put(entry.substring(0, eq).trim(), amount);
+        }
+        return byRule;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.discount.application;
+
+import com.example.discount.application.capture.RequestCaptureWriter;
+import com.example.discount.application.capture.RequestRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Request capture for replay benchmarks.
+ * <ul>
+ *   <li>{@code pricing.capture.path} unset (default): requests are not captured</li>
+ *   <li>{@code pricing.capture.path=quotes.preq}: every incoming request is appended to that file (truncated on
+ *       start) until it reaches {@code pricing.capture.max-bytes} (default 256 MiB), buffering up to
+ *       {@code pricing.capture.queue-capacity} requests</li>
+ * </ul>
+ */
+@Configuration
+public class PricingCaptureConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(PricingCaptureConfiguration.class);
+
+    @Bean
+    public RequestRecorder requestRecorder(
+            @Value("${pricing.capture.path:}") String path,
+            @Value("${pricing.capture.max-bytes:268435456}") long maxBytes,
+            @Value("${pricing.capture.queue-capacity:65536}") int queueCapacity
+    ) {
+        if (path.isBlank()) {
+            return RequestRecorder.NOOP;
+        }
+        RequestCaptureWriter writer = RequestCaptureWriter.open(Path.of(path), maxBytes, queueCapacity).getOrThrow();
+        log.info("Capturing pricing requests to {}", Path.of(path).toAbsolutePath());
+        return writer;
+    }
+}
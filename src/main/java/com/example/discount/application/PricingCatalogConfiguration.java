@@ -0,0 +1,40 @@
+package com.example.discount.application;
+
+import com.example.discount.RuleSource;
+import com.example.discount.application.service.PricingService;
+import com.example.discount.catalog.ReloadingRuleCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Rules behind {@code PricingService}.
+ * <ul>
+ *   <li>{@code pricing.catalog.path} unset (default): the built-in {@link PricingService#DEFAULT_RULES}</li>
+ *   <li>{@code pricing.catalog.path=rules.json}: rules compiled from that file, reloaded on change unless
+ *       {@code pricing.catalog.watch=false}</li>
+ * </ul>
+ */
+@Configuration
+public class PricingCatalogConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(PricingCatalogConfiguration.class);
+
+    @Bean
+    public RuleSource ruleSource(
+            @Value("${pricing.catalog.path:}") String path,
+            @Value("${pricing.catalog.watch:true}") boolean watch
+    ) throws IOException {
+        if (path.isBlank()) {
+            return PricingService.DEFAULT_RULES;
+        }
+        ReloadingRuleCatalog catalog = ReloadingRuleCatalog.open(Path.of(path)).getOrThrow();
+        log.info("Loaded {} rules from {}", catalog.current().rules().size(), Path.of(path).toAbsolutePath());
+        return watch ? catalog.watch() : catalog;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.discount.application;
+
+import com.example.fpcore.Option;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for the asynchronous quote path. The project targets Java 17, so the virtual-thread executor
+ * is looked up reflectively and only available when running on Java 21+.
+ */
+public final class PricingExecutors {
+
+    private PricingExecutors() {
+    }
+
+    public static Option<ExecutorService> virtualThreadPerTask() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return Option.some((ExecutorService) factory.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Option.none();
+        }
+    }
+
+    /**
+     * Fixed pool with at most {@code queueCapacity} waiting quotes; further submissions are rejected with
+     * {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    public static ExecutorService platform(int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), namedDaemon("pricing-async-"), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ThreadFactory namedDaemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.discount.application;
+
+import com.example.discount.RuleHealthMonitor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Automatic rule quarantine, enabled with {@code pricing.health.enabled=true}. Defaults follow
+ * {@link RuleHealthMonitor.Thresholds#defaults()}:
+ * <ul>
+ *   <li>{@code pricing.health.window}: tumbling window for the rates (default 10s)</li>
+ *   <li>{@code pricing.health.min-calls}: calls in the window before rates count (default 20)</li>
+ *   <li>{@code pricing.health.max-failure-rate}: failure rate that quarantines a rule (default 0.5)</li>
+ *   <li>{@code pricing.health.slow-call}: a call at least this long is slow (default 50ms)</li>
+ *   <li>{@code pricing.health.max-slow-rate}: slow-call rate that quarantines a rule (default 0.5)</li>
+ *   <li>{@code pricing.health.cooldown}: how long a quarantined rule is skipped (default 30s)</li>
+ *   <li>{@code pricing.health.max-rules}: tenant rules tracked at most (default 10000)</li>
+ *   <li>{@code pricing.health.idle-expiry}: rules not called for this long are forgotten (default 1h)</li>
+ * </ul>
+ * Status is served by {@code GET /api/pricing/debug/rules}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pricing.health.enabled", havingValue = "true")
+public class PricingHealthConfiguration {
+
+    @Bean
+    public RuleHealthMonitor ruleHealthMonitor(
+            @Value("${pricing.health.window:10s}") Duration window,
+            @Value("${pricing.health.min-calls:20}") int minCalls,
+            @Value("${pricing.health.max-failure-rate:0.5}") double maxFailureRate,
+            @Value("${pricing.health.slow-call:50ms}") Duration slowCall,
+            @Value("${pricing.health.max-slow-rate:0.5}") double maxSlowRate,
+            @Value("${pricing.health.cooldown:30s}") Duration cooldown,
+            @Value("${pricing.health.max-rules:10000}") int maxRules,
+            @Value("${pricing.health.idle-expiry:1h}") Duration idleExpiry
+    ) {
+        return new RuleHealthMonitor(new RuleHealthMonitor.Thresholds(
+                window, minCalls, maxFailureRate, slowCall, maxSlowRate, cooldown), maxRules, idleExpiry);
+    }
+}
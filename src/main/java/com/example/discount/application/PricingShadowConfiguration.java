@@ -0,0 +1,63 @@
+package com.example.discount.application;
+
+import com.example.discount.DiscountCapPolicy;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.OptimalStackingSolver;
+import com.example.discount.StackingPolicy;
+import com.example.discount.catalog.ReloadingRuleCatalog;
+import com.example.discount.shadow.ShadowEvaluator;
+import com.example.discount.shadow.ShadowPricing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+/**
+ * Shadow pricing of live quotes against a candidate catalog, served by {@code GET /api/pricing/debug/shadow}.
+ * <ul>
+ *   <li>{@code pricing.shadow.catalog-path} unset (default): no shadow pricing</li>
+ *   <li>{@code pricing.shadow.catalog-path=candidate.json}: candidate rules, reloaded on change</li>
+ *   <li>{@code pricing.shadow.cap-rate}: candidate global cap (default 0.30) when the candidate catalog declares
+ *       no policy; a catalog policy is used as it is and follows the file when it is reloaded</li>
+ *   <li>{@code pricing.shadow.optimal-stacking}: {@code MAX_DISCOUNT} or {@code MIN_DISCOUNT} to stack the
+ *       candidate optimally (default: greedy)</li>
+ *   <li>{@code pricing.shadow.sample-rate} (default 0.01), {@code pricing.shadow.threads} (default 1),
+ *       {@code pricing.shadow.queue-capacity} (default 1024), {@code pricing.shadow.retained-diffs} (default 256)</li>
+ * </ul>
+ * The evaluator is closed with the context, which also stops the candidate catalog's file watcher.
+ */
+@Configuration
+public class PricingShadowConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(PricingShadowConfiguration.class);
+
+    @Bean
+    public ShadowPricing shadowPricing(
+            @Value("${pricing.shadow.catalog-path:}") String catalogPath,
+            @Value("${pricing.shadow.cap-rate:0.30}") BigDecimal capRate,
+            @Value("${pricing.shadow.optimal-stacking:}") String optimalStacking,
+            @Value("${pricing.shadow.sample-rate:0.01}") double sampleRate,
+            @Value("${pricing.shadow.threads:1}") int threads,
+            @Value("${pricing.shadow.queue-capacity:1024}") int queueCapacity,
+            @Value("${pricing.shadow.retained-diffs:256}") int retainedDiffs
+    ) throws IOException {
+        if (catalogPath.isBlank()) {
+            return ShadowPricing.NOOP;
+        }
+        ReloadingRuleCatalog catalog = ReloadingRuleCatalog.open(Path.of(catalogPath)).getOrThrow();
+        StackingPolicy defaults = StackingPolicy.defaults();
+        DiscountOrchestratorV2 candidate = new DiscountOrchestratorV2(
+                new StackingPolicy(defaults.groupOrder(), defaults.exclusivity(), new DiscountCapPolicy(capRate)));
+        if (!optimalStacking.isBlank()) {
+            candidate = candidate.withOptimalStacking(OptimalStackingSolver.Objective.valueOf(optimalStacking));
+        }
+        log.info("Shadow pricing {} of quotes against {} rules from {}", sampleRate,
+                catalog.current().rules().size(), Path.of(catalogPath).toAbsolutePath());
+        return new ShadowEvaluator(candidate, catalog.watch(), sampleRate, threads, queueCapacity, retainedDiffs);
+    }
+}
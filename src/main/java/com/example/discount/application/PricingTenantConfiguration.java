@@ -0,0 +1,49 @@
+package com.example.discount.application;
+
+import com.example.discount.catalog.TenantCatalogs;
+import com.example.discount.catalog.TenantRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Per-restaurant catalogs.
+ * <ul>
+ *   <li>{@code pricing.tenants.directory} unset (default): every request is priced with the shared rules</li>
+ *   <li>{@code pricing.tenants.directory=tenants}: a request with {@code restaurantId=r1} is priced with
+ *       {@code tenants/r1.json} (rules and optional policy), compiled on first use and kept while the compiled
+ *       catalogs fit {@code pricing.tenants.memory-budget-bytes} (default 64 MiB, estimated); a restaurant without a
+ *       file is priced with the shared rules</li>
+ *   <li>{@code pricing.tenants.negative-ttl}: how long a missing or invalid catalog is remembered before it is
+ *       looked up again (default 30s)</li>
+ *   <li>{@code pricing.tenants.watch}: drop a restaurant's catalog as soon as its file is created, changed or deleted
+ *       (default true)</li>
+ * </ul>
+ */
+@Configuration
+public class PricingTenantConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(PricingTenantConfiguration.class);
+
+    @Bean
+    public TenantCatalogs tenantCatalogs(
+            @Value("${pricing.tenants.directory:}") String directory,
+            @Value("${pricing.tenants.memory-budget-bytes:67108864}") long budgetBytes,
+            @Value("${pricing.tenants.negative-ttl:30s}") Duration negativeTtl,
+            @Value("${pricing.tenants.watch:true}") boolean watch
+    ) throws IOException {
+        if (directory.isBlank()) {
+            return TenantCatalogs.NONE;
+        }
+        log.info("Loading restaurant catalogs from {} on demand (budget {} bytes{})",
+                Path.of(directory).toAbsolutePath(), budgetBytes, watch ? ", watching for changes" : "");
+        TenantRegistry registry = TenantRegistry.fromDirectory(Path.of(directory), budgetBytes, negativeTtl);
+        return watch ? registry.watch() : registry;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.discount.application;
+
+import com.example.discount.PricingTracer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Quote tracing behind {@code GET /api/pricing/debug/traces}.
+ * <ul>
+ *   <li>{@code pricing.trace.sample-every}: trace every n-th quote (default 100, 1 = all, 0 = off)</li>
+ *   <li>{@code pricing.trace.retained}: how many finished traces are kept (default 256)</li>
+ *   <li>{@code pricing.trace.events-per-trace}: per-thread event ring size (default 256)</li>
+ * </ul>
+ */
+@Configuration
+public class PricingTraceConfiguration {
+
+    @Bean
+    public PricingTracer pricingTracer(
+            @Value("${pricing.trace.sample-every:100}") int sampleEvery,
+            @Value("${pricing.trace.retained:256}") int retained,
+            @Value("${pricing.trace.events-per-trace:256}") int eventsPerTrace
+    ) {
+        return new PricingTracer(sampleEvery, retained, eventsPerTrace);
+    }
+}
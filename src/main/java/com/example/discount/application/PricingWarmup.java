@@ -0,0 +1,135 @@
+package com.example.discount.application;
+
+import com.example.discount.PricingResult;
+import com.example.discount.RuleSource;
+import com.example.discount.application.api.PricingRequest;
+import com.example.discount.application.api.PricingResultJsonWriter;
+import com.example.discount.application.service.PricingService;
+import com.example.fpcore.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+/**
+ * Opt-in JIT warm-up ({@code pricing.warmup.enabled=true}).
+ * <p>
+ * Runs synthetic quotes (vip/coupon mixes, subtotals crossing every campaign tier) through
+ * {@link PricingService#quote} and the response writer in rounds, until round latency is steady or
+ * {@code pricing.warmup.max-rounds} is reached. Time to steady state is logged.
+ * <p>
+ * The synthetic quotes go through a separate {@link PricingService} over the same {@link RuleSource} but without
+ * side effects: no audit, request capture, shadow pricing, tracing, rule health interceptors or campaign budgets.
+ * <p>
+ * The embedded server is already listening while runners execute, so warm-up cannot keep requests out by itself.
+ * It publishes {@link ReadinessState#REFUSING_TRAFFIC} until it completes; a readiness probe on that state (e.g.
+ * Actuator's {@code /actuator/health/readiness}) keeps the instance out of the load balancer until it is warm.
+ * <p>
+ * {@code pricing.warmup.exit=true} shuts the application down afterwards; used by the {@code appcds}
+ * build profile to record a class-data-sharing archive that includes the warmed-up classes.
+ */
+@Component
+@ConditionalOnProperty(name = "pricing.warmup.enabled", havingValue = "true")
+public class PricingWarmup implements ApplicationRunner {
+
+    public record Report(int rounds, int quotesPerRound, long firstRoundNanosPerQuote,
+                         long lastRoundNanosPerQuote, long timeToSteadyStateMillis, boolean steady) {}
+
+    private static final Logger log = LoggerFactory.getLogger(PricingWarmup.class);
+    private static final double STEADY_TOLERANCE = 0.10;
+    private static final int STEADY_ROUNDS = 3;
+
+    private final PricingService pricingService;
+    private final PricingResultJsonWriter jsonWriter;
+    private final ConfigurableApplicationContext context;
+    private final int maxRounds;
+    private final int quotesPerRound;
+    private final boolean exitAfterWarmup;
+
+    public PricingWarmup(
+            RuleSource ruleSource,
+            PricingResultJsonWriter jsonWriter,
+            ConfigurableApplicationContext context,
+            @Value("${pricing.warmup.max-rounds:200}") int maxRounds,
+            @Value("${pricing.warmup.quotes-per-round:1000}") int quotesPerRound,
+            @Value("${pricing.warmup.exit:false}") boolean exitAfterWarmup
+    ) {
+        this.pricingService = PricingService.builder().ruleSource(ruleSource).build();
+        this.jsonWriter = jsonWriter;
+        this.context = context;
+        this.maxRounds = maxRounds;
+        this.quotesPerRound = quotesPerRound;
+        this.exitAfterWarmup = exitAfterWarmup;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        AvailabilityChangeEvent.publish(context, ReadinessState.REFUSING_TRAFFIC);
+        Report report = warmUp(pricingService, jsonWriter, maxRounds, quotesPerRound);
+        log.info("Pricing warm-up: {} rounds x {} quotes, {} ns/quote -> {} ns/quote, steady={} after {} ms",
+                report.rounds(), report.quotesPerRound(), report.firstRoundNanosPerQuote(),
+                report.lastRoundNanosPerQuote(), report.steady(), report.timeToSteadyStateMillis());
+
+        if (exitAfterWarmup) {
+            System.exit(SpringApplication.exit(context));
+        }
+        AvailabilityChangeEvent.publish(context, ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    /**
+     * Quotes through {@code service} as given; callers pass one without side effects.
+     */
+    public static Report warmUp(PricingService service, PricingResultJsonWriter writer, int maxRounds, int quotesPerRound)
+            throws IOException {
+        OutputStream sink = OutputStream.nullOutputStream();
+        long start = System.nanoTime();
+        long first = -1;
+        long previous = -1;
+        long current = -1;
+        int steadyRounds = 0;
+        int round = 0;
+
+        while (round < maxRounds && steadyRounds < STEADY_ROUNDS) {
+            long roundStart = System.nanoTime();
+            for (int i = 0; i < quotesPerRound; i++) {
+                Result<PricingResult> result = service.quote(syntheticRequest(round * quotesPerRound + i));
+                if (result.isSuccess()) {
+                    writer.write(result.getOrThrow(), sink);
+                }
+            }
+            current = (System.nanoTime() - roundStart) / quotesPerRound;
+            if (first < 0) first = current;
+
+            boolean withinTolerance = previous > 0 && Math.abs(current - previous) <= previous * STEADY_TOLERANCE;
+            steadyRounds = withinTolerance ? steadyRounds + 1 : 0;
+            previous = current;
+            round++;
+        }
+
+        return new Report(round, quotesPerRound, first, current,
+                (System.nanoTime() - start) / 1_000_000, steadyRounds >= STEADY_ROUNDS);
+    }
+
+    /**
+     * Deterministic request mix: all vip/coupon combinations, subtotals from 50.00 to ~6000.00
+     * so every dynamic campaign tier is exercised, plus an invalid request for the failure path.
+     */
+    static PricingRequest syntheticRequest(int i) {
+        if (i % 97 == 0) {
+            return new PricingRequest(null, null, null);
+        }
+        BigDecimal subtotal = BigDecimal.valueOf(5_000 + (i * 7_919L) % 595_000, 2);
+        return new PricingRequest(subtotal, (i & 1) == 0, (i & 2) == 0);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.discount.application;
+
+import com.example.discount.application.api.PricingResultHttpMessageConverter;
+import com.example.discount.application.api.PricingResultJsonWriter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Registers the direct {@code PricingResult} JSON writer ahead of Jackson.
+ */
+@Configuration
+public class PricingWebConfiguration implements WebMvcConfigurer {
+
+    private final PricingResultJsonWriter jsonWriter = new PricingResultJsonWriter();
+
+    @Bean
+    public PricingResultJsonWriter pricingResultJsonWriter() {
+        return jsonWriter;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new PricingResultHttpMessageConverter(jsonWriter));
+    }
+}
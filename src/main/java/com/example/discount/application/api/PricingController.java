@@ -1,24 +1,106 @@
 package com.example.discount.application.api;
 
+import com.example.discount.application.PricingAsyncConfiguration;
+import com.example.discount.application.service.NdjsonQuoteStreamer;
 import com.example.discount.application.service.PricingService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/pricing")
 public class PricingController {
 
+    static final String NDJSON = "application/x-ndjson";
+
     private final PricingService pricingService;
+    private final NdjsonQuoteStreamer quoteStreamer;
+    private final ExecutorService pricingExecutor;
 
-    public PricingController(PricingService pricingService) {
+    public PricingController(
+            PricingService pricingService,
+            NdjsonQuoteStreamer quoteStreamer,
+            @Qualifier(PricingAsyncConfiguration.EXECUTOR) ExecutorService pricingExecutor
+    ) {
         this.pricingService = pricingService;
+        this.quoteStreamer = quoteStreamer;
+        this.pricingExecutor = pricingExecutor;
     }
 
     @PostMapping("/quote")
     public ResponseEntity<?> quote(@RequestBody PricingRequest request) {
-        return pricingService.quoteHttp(request);
+        return pricingService.quoteHttpDirect(request);
+    }
+
+    /**
+     * Same as {@link #quote} but priced on the configured pricing executor, releasing the servlet thread.
+     * When the executor's queue is full the quote is answered with 503 right away.
+     */
+    @PostMapping("/quote/async")
+    public CompletableFuture<ResponseEntity<?>> quoteAsync(@RequestBody PricingRequest request) {
+        try {
+            return CompletableFuture.supplyAsync(() -> pricingService.quoteHttpDirect(request), pricingExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new ErrorResponse("pricing is overloaded, retry later")));
+        }
+    }
+
+    /**
+     * Prices an order and reserves its discounts from the campaign budgets; the reservation id comes back in
+     * {@value PricingService#RESERVATION_HEADER} and must be committed or cancelled before it expires.
+     */
+    @PostMapping("/order")
+    public ResponseEntity<?> order(@RequestBody PricingRequest request) {
+        return pricingService.orderHttp(request);
+    }
+
+    /**
+     * The order was confirmed: its discounts stay spent. 404 when the reservation is unknown, settled or expired.
+     */
+    @PostMapping("/order/{reservation}/commit")
+    public ResponseEntity<?> commitOrder(@PathVariable("reservation") String reservation) {
+        return pricingService.commitOrder(reservation)
+                ? ResponseEntity.noContent().build()
+                : reservationNotFound();
+    }
+
+    /**
+     * The order was abandoned: its discounts go back to the campaign budgets.
+     */
+    @DeleteMapping("/order/{reservation}")
+    public ResponseEntity<?> cancelOrder(@PathVariable("reservation") String reservation) {
+        return pricingService.cancelOrder(reservation)
+                ? ResponseEntity.noContent().build()
+                : reservationNotFound();
+    }
+
+    private static ResponseEntity<?> reservationNotFound() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ErrorResponse("budget reservation is unknown, already settled or expired"));
+    }
+
+    /**
+     * Bulk quotes: newline-delimited {@link PricingRequest}s in, one response line per request out, streamed.
+     */
+    @PostMapping(value = "/quote/stream", consumes = NDJSON, produces = NDJSON)
+    public void quoteStream(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        quoteStreamer.quote(body, response.getOutputStream());
     }
 }
@@ -0,0 +1,212 @@
+package com.example.discount.application.api;
+
+import com.example.discount.PricingTracer;
+import com.example.discount.RuleHealthMonitor;
+import com.example.discount.TraceSnapshot;
+import com.example.discount.budget.BudgetReservations;
+import com.example.discount.budget.BudgetStatus;
+import com.example.discount.budget.SharedSpendBudget;
+import com.example.discount.budget.StripedSpendBudget;
+import com.example.discount.catalog.TenantCatalogs;
+import com.example.discount.catalog.TenantRegistry;
+import com.example.discount.shadow.ShadowDiff;
+import com.example.discount.shadow.ShadowEvaluator;
+import com.example.discount.shadow.ShadowPricing;
+import com.example.fpcore.Result;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+/**
+ * Local-only diagnostics. Requests that do not come from a loopback address are rejected.
+ */
+@RestController
+@RequestMapping("/api/pricing/debug")
+public class PricingDebugController {
+
+    private final PricingTracer tracer;
+    private final ObjectProvider<RuleHealthMonitor> healthMonitor;
+    private final ShadowPricing shadow;
+    private final TenantCatalogs tenants;
+    private final BudgetReservations reservations;
+
+    public PricingDebugController(PricingTracer tracer, ObjectProvider<RuleHealthMonitor> healthMonitor, ShadowPricing shadow,
+                                  TenantCatalogs tenants, BudgetReservations reservations) {
+        this.tracer = tracer;
+        this.healthMonitor = healthMonitor;
+        this.shadow = shadow;
+        this.tenants = tenants;
+        this.reservations = reservations;
+    }
+
+    /**
+     * Most recent sampled quote traces first.
+     */
+    @GetMapping("/traces")
+    public ResponseEntity<?> traces(@RequestParam(name = "limit", defaultValue = "20") int limit, HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("debug endpoints are only available locally"));
+        }
+        List<TraceSnapshot> traces = tracer.recent(Math.max(limit, 0));
+        return ResponseEntity.ok(traces);
+    }
+
+    /**
+     * Per tenant rule call, failure, latency and quarantine counters; 404 unless {@code pricing.health.enabled=true}.
+     */
+    @GetMapping("/rules")
+    public ResponseEntity<?> rules(HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("debug endpoints are only available locally"));
+        }
+        RuleHealthMonitor monitor = healthMonitor.getIfAvailable();
+        if (monitor == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("rule health monitoring is disabled"));
+        }
+        return ResponseEntity.ok(new RuleHealthResponse(monitor.quarantineCount(), monitor.untrackedCount(), monitor.status()));
+    }
+
+    /**
+     * Shadow pricing counters and the most recent differences first; 404 unless a candidate catalog is configured.
+     */
+    @GetMapping("/shadow")
+    public ResponseEntity<?> shadow(@RequestParam(name = "limit", defaultValue = "20") int limit, HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("debug endpoints are only available locally"));
+        }
+        if (!(shadow instanceof ShadowEvaluator evaluator)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("shadow pricing is disabled"));
+        }
+        return ResponseEntity.ok(new ShadowResponse(evaluator.stats(), evaluator.recentDiffs(Math.max(limit, 0))));
+    }
+
+    /**
+     * Restaurant catalog registry counters; 404 unless {@code pricing.tenants.directory} is set.
+     */
+    @GetMapping("/tenants")
+    public ResponseEntity<?> tenants(HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("debug endpoints are only available locally"));
+        }
+        if (!(tenants instanceof TenantRegistry registry)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("restaurant catalogs are disabled"));
+        }
+        return ResponseEntity.ok(registry.stats());
+    }
+
+    /**
+     * Limit, spent and remaining amount per budgeted rule (held order reservations count as spent), the order
+     * reservation counters and the budget log counters (none for shared budgets); 404 unless
+     * {@code pricing.budget.limits} or {@code pricing.budget.shared-path} is set.
+     */
+    @GetMapping("/budgets")
+    public ResponseEntity<?> budgets(HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("debug endpoints are only available locally"));
+        }
+        if (reservations.budget() instanceof StripedSpendBudget striped) {
+            return ResponseEntity.ok(new BudgetResponse(striped.status(), reservations.stats(), striped.logStats()));
+        }
+        if (reservations.budget() instanceof SharedSpendBudget shared) {
+            return ResponseEntity.ok(new BudgetResponse(shared.status(), reservations.stats(), null));
+        }
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("campaign budgets are disabled"));
+    }
+
+    /**
+     * Starts a new campaign period for {@code rule}: nothing spent, same limit (in every process for shared budgets).
+     */
+    @PostMapping("/budgets/reset")
+    public ResponseEntity<?> resetBudget(@RequestParam(name = "rule") String rule, HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("debug endpoints are only available locally"));
+        }
+        boolean reset;
+        if (reservations.budget() instanceof StripedSpendBudget striped) {
+            reset = striped.reset(rule);
+        } else if (reservations.budget() instanceof SharedSpendBudget shared) {
+            reset = shared.reset(rule);
+        } else {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("campaign budgets are disabled"));
+        }
+        return reset ? budgets(request) : unknownBudget(rule);
+    }
+
+    /**
+     * Sets the limit of {@code rule} for every process sharing the budget file; in-process budgets take their
+     * limits from {@code pricing.budget.limits} (409).
+     */
+    @PutMapping("/budgets")
+    public ResponseEntity<?> setBudgetLimit(@RequestParam(name = "rule") String rule,
+                                            @RequestParam(name = "limit") BigDecimal limit, HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("debug endpoints are only available locally"));
+        }
+        if (!(reservations.budget() instanceof SharedSpendBudget shared)) {
+            return notShared();
+        }
+        if (limit.signum() < 0) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("limit must not be negative"));
+        }
+        Result<BudgetStatus> result = shared.setLimit(rule, limit);
+        if (result.isFailure()) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(result.failureCause().getCause().getMessage()));
+        }
+        return budgets(request);
+    }
+
+    /**
+     * Stops limiting {@code rule} in every process sharing the budget file; in-process budgets drop a rule when it
+     * is removed from {@code pricing.budget.limits} and the service restarts (409).
+     */
+    @DeleteMapping("/budgets")
+    public ResponseEntity<?> removeBudget(@RequestParam(name = "rule") String rule, HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ErrorResponse("debug endpoints are only available locally"));
+        }
+        if (!(reservations.budget() instanceof SharedSpendBudget shared)) {
+            return notShared();
+        }
+        return shared.remove(rule) ? budgets(request) : unknownBudget(rule);
+    }
+
+    private ResponseEntity<?> notShared() {
+        if (!reservations.enforced()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("campaign budgets are disabled"));
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ErrorResponse("in-process budgets take their limits from pricing.budget.limits"));
+    }
+
+    private static ResponseEntity<?> unknownBudget(String rule) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("no campaign budget for " + rule));
+    }
+
+    public record BudgetResponse(List<BudgetStatus> budgets, BudgetReservations.Stats reservations,
+                                 StripedSpendBudget.LogStats log) {}
+
+    public record ShadowResponse(ShadowEvaluator.Stats stats, List<ShadowDiff> diffs) {}
+
+    public record RuleHealthResponse(long quarantines, long untracked, List<RuleHealthMonitor.RuleStatus> rules) {}
+
+    static boolean isLoopback(String address) {
+        try {
+            return address != null && InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -1,10 +1,28 @@
 package com.example.discount.application.api;
 
 import java.math.BigDecimal;
+import java.util.List;
 
+/**
+ * {@code items} is optional; with items the subtotal may be omitted and is then their sum.
+ * {@code restaurantId} is optional and selects that restaurant's own catalog when tenant catalogs are configured.
+ */
 public record PricingRequest(
         BigDecimal subtotal,
         Boolean vip,
-        Boolean hasCoupon
+        Boolean hasCoupon,
+        List<Item> items,
+        String restaurantId
 ) {
+
+    public PricingRequest(BigDecimal subtotal, Boolean vip, Boolean hasCoupon) {
+        this(subtotal, vip, hasCoupon, null, null);
+    }
+
+    public PricingRequest(BigDecimal subtotal, Boolean vip, Boolean hasCoupon, List<Item> items) {
+        this(subtotal, vip, hasCoupon, items, null);
+    }
+
+    public record Item(String sku, String category, Integer quantity, BigDecimal unitPrice) {
+    }
 }
@@ -0,0 +1,43 @@
+package com.example.discount.application.api;
+
+import com.example.discount.PricingResult;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link PricingResult} response bodies with {@link PricingResultJsonWriter} instead of Jackson.
+ */
+public class PricingResultHttpMessageConverter extends AbstractHttpMessageConverter<PricingResult> {
+
+    private final PricingResultJsonWriter writer;
+
+    public PricingResultHttpMessageConverter(PricingResultJsonWriter writer) {
+        super(MediaType.APPLICATION_JSON);
+        this.writer = writer;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return PricingResult.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected PricingResult readInternal(Class<? extends PricingResult> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("PricingResult is write-only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(PricingResult result, HttpOutputMessage outputMessage) throws IOException {
+        writer.write(result, outputMessage.getBody());
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.discount.application.api;
+
+import com.example.discount.AppliedStep;
+import com.example.discount.DiscountGroup;
+import com.example.discount.PricingResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes a {@link PricingResult} as the JSON of {@link PricingResponse}, straight to an output stream.
+ * <p>
+ * Produces the same bytes as Jackson would for {@code PricingResponse.from(result)}, except that characters
+ * outside the BMP are written as 4-byte UTF-8 where Jackson escapes both halves (the text decodes the same);
+ * unpaired surrogates are escaped as <code>&#92;uXXXX</code> like Jackson does. It does so without building the
+ * response DTOs: field names and group names are pre-encoded, rule names are encoded once and cached, and
+ * everything else is encoded into a buffer borrowed from a small shared pool. The pool is not tied to threads, so
+ * quotes on short-lived or virtual threads reuse buffers as well; when it is empty a fresh buffer is allocated.
+ */
+public final class PricingResultJsonWriter {
+
+    private static final int MAX_CACHED_RULE_NAMES = 4096;
+    private static final int BUFFER_SIZE = 4096;
+    private static final int POOLED_BUFFERS = Runtime.getRuntime().availableProcessors() * 2;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] SUBTOTAL = ascii("{\"subtotal\":");
+    private static final byte[] DISCOUNT_TOTAL = ascii(",\"discountTotal\":");
+    private static final byte[] TOTAL = ascii(",\"total\":");
+    private static final byte[] STEPS = ascii(",\"steps\":[");
+    private static final byte[] RULE_NAME = ascii("{\"ruleName\":");
+    private static final byte[] GROUP = ascii(",\"group\":");
+    private static final byte[] REQUESTED = ascii(",\"requestedDiscount\":");
+    private static final byte[] APPLIED = ascii(",\"appliedDiscount\":");
+    private static final byte[] TOTAL_BEFORE = ascii(",\"totalBefore\":");
+    private static final byte[] TOTAL_AFTER = ascii(",\"totalAfter\":");
+    private static final byte[] NOTE = ascii(",\"note\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] END = ascii("]}");
+
+    private static final Map<DiscountGroup, byte[]> GROUP_NAMES = new EnumMap<>(DiscountGroup.class);
+
+    static {
+        for (DiscountGroup g : DiscountGroup.values()) {
+            GROUP_NAMES.put(g, ascii("\"" + g.name() + "\""));
+        }
+    }
+
+    private static final BlockingQueue<Buffer> BUFFERS = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    private final Map<String, byte[]> ruleNames = new ConcurrentHashMap<>();
+
+    public void write(PricingResult result, OutputStream out) throws IOException {
+        Buffer buf = BUFFERS.poll();
+        if (buf == null) {
+            buf = new Buffer();
+        }
+        buf.out = out;
+        try {
+            buf.put(SUBTOTAL);
+            buf.number(result.pricing().subtotal());
+            buf.put(DISCOUNT_TOTAL);
+            buf.number(result.pricing().discountTotal());
+            buf.put(TOTAL);
+            buf.number(result.pricing().total());
+            buf.put(STEPS);
+
+            List<AppliedStep> steps = result.steps();
+            for (int i = 0; i < steps.size(); i++) {
+                if (i > 0) buf.put((byte) ',');
+                writeStep(buf, steps.get(i));
+            }
+            buf.put(END);
+            buf.flush();
+        } finally {
+            buf.out = null;
+            buf.count = 0;
+            BUFFERS.offer(buf);
+        }
+    }
+
+    private void writeStep(Buffer buf, AppliedStep step) throws IOException {
+        buf.put(RULE_NAME);
+        if (step.ruleName() == null) {
+            buf.put(NULL);
+        } else {
+            buf.put(ruleName(step.ruleName()));
+        }
+        buf.put(GROUP);
+        buf.put(step.group() == null ? NULL : GROUP_NAMES.get(step.group()));
+        buf.put(REQUESTED);
+        buf.number(step.requestedDiscount());
+        buf.put(APPLIED);
+        buf.number(step.appliedDiscount());
+        buf.put(TOTAL_BEFORE);
+        buf.number(step.totalBefore());
+        buf.put(TOTAL_AFTER);
+        buf.number(step.totalAfter());
+        buf.put(NOTE);
+        buf.string(step.note());
+        buf.put((byte) '}');
+    }
+
+    private byte[] ruleName(String name) {
+        byte[] cached = ruleNames.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] encoded = quoted(name);
+        if (ruleNames.size() < MAX_CACHED_RULE_NAMES) {
+            ruleNames.putIfAbsent(name, encoded);
+        }
+        return encoded;
+    }
+
+    private static byte[] quoted(String s) {
+        Buffer scratch = new Buffer();
+        try {
+            scratch.string(s);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Arrays.copyOf(scratch.bytes, scratch.count);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reusable output buffer; grows only when no target stream is attached (pre-encoding).
+     */
+    private static final class Buffer {
+        private byte[] bytes = new byte[BUFFER_SIZE];
+        private int count;
+        private OutputStream out;
+
+        void put(byte b) throws IOException {
+            ensure(1);
+            bytes[count++] = b;
+        }
+
+        void put(byte[] b) throws IOException {
+            if (b.length > bytes.length) {
+                flush();
+                out.write(b);
+                return;
+            }
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, count, b.length);
+            count += b.length;
+        }
+
+        /**
+         * Same text as Jackson's default {@code BigDecimal} output ({@link BigDecimal#toString()}, cached by BigDecimal).
+         */
+        void number(BigDecimal value) throws IOException {
+            if (value == null) {
+                put(NULL);
+                return;
+            }
+            String s = value.toString();
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                bytes[count++] = (byte) s.charAt(i);
+            }
+        }
+
+        void string(String s) throws IOException {
+            if (s == null) {
+                put(NULL);
+                return;
+            }
+            put((byte) '"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c < 0x80) {
+                    if (c == '"' || c == '\\') put((byte) '\\');
+                    put((byte) c);
+                } else if (c < 0x20) {
+                    escapeControl(c);
+                } else if (c < 0x800) {
+                    ensure(2);
+                    bytes[count++] = (byte) (0xC0 | (c >> 6));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    ensure(4);
+                    bytes[count++] = (byte) (0xF0 | (cp >> 18));
+                    bytes[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // an unpaired surrogate has no UTF-8 form; escaped like Jackson's UTF-8 generator does
+                    escapeUnicode(c);
+                } else {
+                    ensure(3);
+                    bytes[count++] = (byte) (0xE0 | (c >> 12));
+                    bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            put((byte) '"');
+        }
+
+        private void escapeControl(char c) throws IOException {
+            char escape = switch (c) {
+                case '\b' -> 'b';
+                case '\f' -> 'f';
+                case '\n' -> 'n';
+                case '\r' -> 'r';
+                case '\t' -> 't';
+                default -> 0;
+            };
+            if (escape == 0) {
+                escapeUnicode(c);
+                return;
+            }
+            ensure(2);
+            bytes[count++] = '\\';
+            bytes[count++] = (byte) escape;
+        }
+
+        private void escapeUnicode(char c) throws IOException {
+            ensure(6);
+            bytes[count++] = '\\';
+            bytes[count++] = 'u';
+            bytes[count++] = HEX[c >> 12];
+            bytes[count++] = HEX[(c >> 8) & 0xF];
+            bytes[count++] = HEX[(c >> 4) & 0xF];
+            bytes[count++] = HEX[c & 0xF];
+        }
+
+        void flush() throws IOException {
+            if (count > 0 && out != null) {
+                out.write(bytes, 0, count);
+                count = 0;
+            }
+        }
+
+        private void ensure(int n) throws IOException {
+            if (count + n <= bytes.length) return;
+            if (out != null) {
+                flush();
+                if (n <= bytes.length) return;
+            }
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + n));
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.discount.application.capture;
+
+import com.example.discount.application.api.PricingRequest;
+import com.example.fpcore.Result;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * File format of captured {@link PricingRequest}s.
+ * <p>
+ * Header: magic {@code "PREQ"}, version byte, capture start (epoch millis, 8 bytes). Each request is a varint
+ * of microseconds since the previous one, a flags byte (which fields are present and the two booleans) and, when
+ * present, the subtotal as zigzag varint scale + varint length + unscaled two's-complement bytes. A typical request
+ * takes 6 to 8 bytes. Since version 2 a request with line items also carries a varint item count followed by, per
+ * item, presence flags, SKU and category (varint length + UTF-8), varint quantity and the unit price encoded like the
+ * subtotal. Since version 3 a request for a restaurant carries its id (varint length + UTF-8) last. Older versions
+ * are still read. A record cut off by a crash ends the capture; everything before it is
+ * still readable.
+ */
+public final class RequestCapture {
+
+    /**
+     * One captured request and when it arrived, relative to the capture start.
+     */
+    public record Captured(long offsetMicros, PricingRequest request) {}
+
+    static final int MAGIC = 0x50524551; // "PREQ"
+    static final byte VERSION = 3;
+
+    private static final int SUBTOTAL = 1;
+    private static final int VIP_PRESENT = 1 << 1;
+    private static final int VIP = 1 << 2;
+    private static final int COUPON_PRESENT = 1 << 3;
+    private static final int COUPON = 1 << 4;
+    private static final int ITEMS = 1 << 5;
+    private static final int RESTAURANT = 1 << 6;
+
+    private static final int ITEM_SKU = 1;
+    private static final int ITEM_CATEGORY = 1 << 1;
+    private static final int ITEM_QUANTITY = 1 << 2;
+    private static final int ITEM_UNIT_PRICE = 1 << 3;
+
+    private RequestCapture() {
+    }
+
+    public static Result<List<Captured>> read(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        } catch (IOException e) {
+            return Result.failure(new IllegalStateException("Cannot read capture " + file, e));
+        }
+    }
+
+    private static Result<List<Captured>> read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            return Result.failure("Not a request capture (bad magic)");
+        }
+        byte version = in.readByte();
+        if (version < 1 || version > VERSION) {
+            return Result.failure("Unsupported request capture version " + version);
+        }
+        in.readLong();
+
+        List<Captured> requests = new ArrayList<>();
+        long offset = 0;
+        while (true) {
+            int first = in.read();
+            if (first < 0) break;
+            try {
+                offset += readVarLong(in, first);
+                requests.add(new Captured(offset, readRequest(in)));
+            } catch (EOFException truncated) {
+                break;
+            }
+        }
+        return Result.success(List.copyOf(requests));
+    }
+
+    static void writeHeader(DataOutputStream out, long startEpochMillis) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(startEpochMillis);
+    }
+
+    static void write(DataOutputStream out, long deltaMicros, PricingRequest request) throws IOException {
+        writeVarLong(out, Math.max(deltaMicros, 0));
+        int flags = 0;
+        if (request.subtotal() != null) flags |= SUBTOTAL;
+        if (request.vip() != null) flags |= VIP_PRESENT | (request.vip() ? VIP : 0);
+        if (request.hasCoupon() != null) flags |= COUPON_PRESENT | (request.hasCoupon() ? COUPON : 0);
+        if (request.items() != null) flags |= ITEMS;
+        if (request.restaurantId() != null) flags |= RESTAURANT;
+        out.writeByte(flags);
+        if (request.subtotal() != null) {
+            writeDecimal(out, request.subtotal());
+        }
+        if (request.items() != null) {
+            writeVarLong(out, request.items().size());
+            for (PricingRequest.Item item : request.items()) {
+                writeItem(out, item);
+            }
+        }
+        if (request.restaurantId() != null) {
+            writeString(out, request.restaurantId());
+        }
+    }
+
+    private static void writeItem(DataOutputStream out, PricingRequest.Item item) throws IOException {
+        if (item == null) {
+            out.writeByte(0);
+            return;
+        }
+        int flags = 0;
+        if (item.sku() != null) flags |= ITEM_SKU;
+        if (item.category() != null) flags |= ITEM_CATEGORY;
+        if (item.quantity() != null) flags |= ITEM_QUANTITY;
+        if (item.unitPrice() != null) flags |= ITEM_UNIT_PRICE;
+        out.writeByte(flags);
+        if (item.sku() != null) writeString(out, item.sku());
+        if (item.category() != null) writeString(out, item.category());
+        if (item.quantity() != null) writeVarLong(out, zigzag(item.quantity()));
+        if (item.unitPrice() != null) writeDecimal(out, item.unitPrice());
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        writeVarLong(out, zigzag(value.scale()));
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        writeVarLong(out, unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, utf8.length);
+        out.write(utf8);
+    }
+
+    private static PricingRequest readRequest(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedByte();
+        BigDecimal subtotal = (flags & SUBTOTAL) != 0 ? readDecimal(in) : null;
+        Boolean vip = (flags & VIP_PRESENT) != 0 ? (flags & VIP) != 0 : null;
+        Boolean coupon = (flags & COUPON_PRESENT) != 0 ? (flags & COUPON) != 0 : null;
+        List<PricingRequest.Item> items = null;
+        if ((flags & ITEMS) != 0) {
+            int count = (int) readVarLong(in, in.readUnsignedByte());
+            items = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                items.add(readItem(in));
+            }
+            items = Collections.unmodifiableList(items);
+        }
+        String restaurantId = (flags & RESTAURANT) != 0 ? readString(in) : null;
+        return new PricingRequest(subtotal, vip, coupon, items, restaurantId);
+    }
+
+    private static PricingRequest.Item readItem(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedByte();
+        if (flags == 0) {
+            return null;
+        }
+        String sku = (flags & ITEM_SKU) != 0 ? readString(in) : null;
+        String category = (flags & ITEM_CATEGORY) != 0 ? readString(in) : null;
+        Integer quantity = (flags & ITEM_QUANTITY) != 0 ? (int) unzigzag(readVarLong(in, in.readUnsignedByte())) : null;
+        BigDecimal unitPrice = (flags & ITEM_UNIT_PRICE) != 0 ? readDecimal(in) : null;
+        return new PricingRequest.Item(sku, category, quantity, unitPrice);
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        int scale = (int) unzigzag(readVarLong(in, in.readUnsignedByte()));
+        byte[] unscaled = new byte[(int) readVarLong(in, in.readUnsignedByte())];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[(int) readVarLong(in, in.readUnsignedByte())];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static long zigzag(int value) {
+        return Integer.toUnsignedLong((value << 1) ^ (value >> 31));
+    }
+
+    private static long unzigzag(long zigzag) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in, int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.discount.application.capture;
+
+import com.example.discount.application.api.PricingRequest;
+import com.example.fpcore.Result;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records incoming requests into a {@link RequestCapture} file.
+ * <p>
+ * {@link #record} stamps the arrival time and offers the request to a bounded queue; when the queue is full the
+ * request is dropped and counted. A background thread appends queued requests and flushes once per batch. Once the
+ * file reaches {@code maxBytes} further requests are dropped, so a forgotten capture cannot fill the disk.
+ */
+public final class RequestCaptureWriter implements RequestRecorder {
+
+    public record Stats(long written, long dropped, long failed, long bytes) {}
+
+    private record Arrival(long nanoTime, PricingRequest request) {}
+
+    private static final int MAX_BATCH = 1024;
+
+    private final DataOutputStream out;
+    private final CountingOutputStream counter;
+    private final long maxBytes;
+    private final long startNanos;
+    private final BlockingQueue<Arrival> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long written;
+    private volatile long failed;
+    // DataOutputStream.size() is an int that stops counting at 2 GiB, so bytes are counted in a long
+    private volatile long bytes;
+
+    // owned by the writer thread
+    private long previousMicros;
+
+    private RequestCaptureWriter(DataOutputStream out, CountingOutputStream counter, long maxBytes, int queueCapacity) {
+        this.out = out;
+        this.counter = counter;
+        this.bytes = counter.count;
+        this.maxBytes = maxBytes;
+        this.startNanos = System.nanoTime();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::drain, "pricing-request-capture");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Creates (or truncates) {@code file}, writes the header and starts the writer thread.
+     */
+    public static Result<RequestCaptureWriter> open(Path file, long maxBytes, int queueCapacity) {
+        Objects.requireNonNull(file, "file");
+        if (maxBytes <= 0 || queueCapacity <= 0) {
+            return Result.failure("maxBytes and queueCapacity must be positive");
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            CountingOutputStream counter = new CountingOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(counter);
+            RequestCapture.writeHeader(out, System.currentTimeMillis());
+            RequestCaptureWriter writer = new RequestCaptureWriter(out, counter, maxBytes, queueCapacity);
+            writer.thread.start();
+            return Result.success(writer);
+        } catch (IOException e) {
+            return Result.failure(e);
+        }
+    }
+
+    @Override
+    public void record(PricingRequest request) {
+        if (request == null || !running || !queue.offer(new Arrival(System.nanoTime(), request))) {
+            dropped.increment();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(written, dropped.sum(), failed, bytes);
+    }
+
+    /**
+     * Stops accepting requests, writes everything already queued and closes the file.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<Arrival> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (running || !queue.isEmpty()) {
+                Arrival first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (Arrival arrival : batch) {
+                    append(arrival);
+                }
+                flush();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                failed++;
+            }
+        }
+    }
+
+    private void append(Arrival arrival) {
+        if (counter.count >= maxBytes) {
+            dropped.increment();
+            return;
+        }
+        try {
+            long micros = Math.max((arrival.nanoTime() - startNanos) / 1_000, previousMicros);
+            RequestCapture.write(out, micros - previousMicros, arrival.request());
+            previousMicros = micros;
+            written++;
+        } catch (IOException e) {
+            failed++;
+        } finally {
+            bytes = counter.count;
+        }
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            failed++;
+        }
+    }
+
+    /**
+     * Counts the bytes written through it; used by the writer thread only.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
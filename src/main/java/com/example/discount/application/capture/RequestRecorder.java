@@ -0,0 +1,17 @@
+package com.example.discount.application.capture;
+
+import com.example.discount.application.api.PricingRequest;
+
+/**
+ * Receives every incoming {@link PricingRequest}, valid or not. Implementations must not block the quote path.
+ */
+public interface RequestRecorder extends AutoCloseable {
+
+    RequestRecorder NOOP = request -> { };
+
+    void record(PricingRequest request);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.discount.application.service;
+
+import com.example.discount.PricingResult;
+import com.example.discount.application.api.ErrorResponse;
+import com.example.discount.application.api.PricingRequest;
+import com.example.discount.application.api.PricingResponse;
+import com.example.discount.application.api.PricingResultJsonWriter;
+import com.example.fpcore.Result;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bulk quoting over newline-delimited JSON: one {@link PricingRequest} per input line, one
+ * {@link PricingResponse} or {@link ErrorResponse} per output line, in input order.
+ * <p>
+ * Lines are read, priced and written one at a time, so memory stays constant regardless of input size.
+ * Writes block when the client reads slowly, which in turn stops reading its upload (backpressure).
+ * Output is flushed whenever no more input is buffered, so results stream back while the client is still sending.
+ */
+@Service
+public class NdjsonQuoteStreamer {
+
+    static final int MAX_LINE_CHARS = 64 * 1024;
+
+    private final PricingService pricingService;
+    private final PricingResultJsonWriter resultWriter;
+    private final ObjectReader requestReader;
+    private final ObjectWriter errorWriter;
+
+    public NdjsonQuoteStreamer(PricingService pricingService, PricingResultJsonWriter resultWriter, ObjectMapper objectMapper) {
+        this.pricingService = pricingService;
+        this.resultWriter = resultWriter;
+        this.requestReader = objectMapper.readerFor(PricingRequest.class);
+        this.errorWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * @return number of lines answered
+     */
+    public long quote(InputStream in, OutputStream out) throws IOException {
+        LineReader reader = new LineReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        OutputStream output = new BufferedOutputStream(out, 16 * 1024);
+        StringBuilder line = new StringBuilder(256);
+        long answered = 0;
+
+        int status;
+        while ((status = reader.readLine(line)) != END_OF_INPUT) {
+            if (status == LINE_TOO_LONG) {
+                writeError(output, "line exceeds " + MAX_LINE_CHARS + " characters");
+                answered++;
+            } else {
+                String text = line.toString();
+                if (!text.isBlank()) {
+                    answer(output, text);
+                    answered++;
+                }
+            }
+            if (!reader.hasBufferedInput()) {
+                output.flush();
+            }
+        }
+        output.flush();
+        return answered;
+    }
+
+    private void answer(OutputStream output, String line) throws IOException {
+        PricingRequest request;
+        try {
+            request = requestReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            writeError(output, "malformed request: " + e.getOriginalMessage());
+            return;
+        }
+
+        Result<PricingResult> result = pricingService.quote(request);
+        if (result.isSuccess()) {
+            resultWriter.write(result.getOrThrow(), output);
+            output.write('\n');
+        } else if (result.isFailure()) {
+            writeError(output, result.failureCause().getMessage());
+        } else {
+            writeError(output, PricingService.NO_PRICE_MESSAGE);
+        }
+    }
+
+    private void writeError(OutputStream output, String message) throws IOException {
+        errorWriter.writeValue(output, new ErrorResponse(message));
+        output.write('\n');
+    }
+
+    private static final int END_OF_INPUT = -1;
+    private static final int LINE_OK = 0;
+    private static final int LINE_TOO_LONG = 1;
+
+    /**
+     * Line splitter over a fixed char buffer that never holds more than {@link #MAX_LINE_CHARS} characters
+     * of a line; the rest of an oversized line is discarded.
+     */
+    private static final class LineReader {
+        private final Reader in;
+        private final char[] buf = new char[8192];
+        private int pos;
+        private int limit;
+
+        private LineReader(Reader in) {
+            this.in = in;
+        }
+
+        int readLine(StringBuilder line) throws IOException {
+            line.setLength(0);
+            boolean tooLong = false;
+            boolean sawAny = false;
+            while (true) {
+                if (pos == limit && !fill()) {
+                    return sawAny ? (tooLong ? LINE_TOO_LONG : LINE_OK) : END_OF_INPUT;
+                }
+                sawAny = true;
+                int start = pos;
+                while (pos < limit && buf[pos] != '\n') pos++;
+                int end = pos;
+                boolean newline = pos < limit;
+                if (newline) pos++;
+
+                if (end > start && buf[end - 1] == '\r' && newline) end--;
+                if (!tooLong) {
+                    if (line.length() + (end - start) > MAX_LINE_CHARS) {
+                        tooLong = true;
+                        line.setLength(0);
+                    } else {
+                        line.append(buf, start, end - start);
+                    }
+                }
+                if (newline) {
+                    return tooLong ? LINE_TOO_LONG : LINE_OK;
+                }
+            }
+        }
+
+        boolean hasBufferedInput() throws IOException {
+            return pos < limit || in.ready();
+        }
+
+        private boolean fill() throws IOException {
+            int n = in.read(buf, 0, buf.length);
+            if (n <= 0) {
+                return false;
+            }
+            pos = 0;
+            limit = n;
+            return true;
+        }
+    }
+}
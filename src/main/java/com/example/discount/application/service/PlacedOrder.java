@@ -0,0 +1,9 @@
+package com.example.discount.application.service;
+
+import com.example.discount.PricingResult;
+
+/**
+ * A priced order and the id of the budget reservation holding its discounts ({@code null} without campaign budgets).
+ */
+public record PlacedOrder(String reservation, PricingResult result) {
+}
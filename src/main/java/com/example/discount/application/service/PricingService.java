@@ -3,15 +3,27 @@ package com.example.discount.application.service;
 import com.example.discount.DiscountGroup;
 import com.example.discount.DiscountOrchestratorV2;
 import com.example.discount.DiscountRule;
+import com.example.discount.LineItems;
 import com.example.discount.OrderContext;
 import com.example.discount.OrderPricing;
 import com.example.discount.PricingResult;
+import com.example.discount.PricingTracer;
+import com.example.discount.RuleInterceptor;
+import com.example.discount.RuleSource;
+import com.example.discount.SpendBudget;
 import com.example.discount.application.api.ErrorResponse;
 import com.example.discount.application.api.PricingRequest;
 import com.example.discount.application.api.PricingResponse;
+import com.example.discount.application.capture.RequestRecorder;
+import com.example.discount.audit.AuditSink;
+import com.example.discount.budget.BudgetReservations;
+import com.example.discount.catalog.RuleCatalog;
+import com.example.discount.catalog.TenantCatalogs;
+import com.example.discount.shadow.ShadowPricing;
 import com.example.fpcore.LazyStream;
 import com.example.fpcore.Result;
 import com.example.fpcore.Validation;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,35 +31,215 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
 
 @Service
 public class PricingService {
 
+    static final String NO_PRICE_MESSAGE = "no price could be calculated";
+
+    /**
+     * Response header carrying the id of the budget reservation an order holds.
+     */
+    public static final String RESERVATION_HEADER = "X-Budget-Reservation";
+
+    /**
+     * Built-in rules: VIP 10%, coupon 50.00 and campaign tiers every 500.00 (2%, 3%, ... up to 10%).
+     */
+    public static final RuleSource DEFAULT_RULES = PricingService::defaultRules;
+
     private static final BigDecimal FIVE_HUNDRED = new BigDecimal("500.00");
     private static final BigDecimal ONE_PERCENT = new BigDecimal("0.01");
     private static final BigDecimal TWO_PERCENT = new BigDecimal("0.02");
     private static final BigDecimal MAX_DYNAMIC_RATE = new BigDecimal("0.10");
-    private final DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2();
+    private final DiscountOrchestratorV2 orchestrator;
+    private final SingleFlight<QuoteKey, Result<PricingResult>> inFlightQuotes = new SingleFlight<>();
+    private final AuditSink auditSink;
+    private final RuleSource ruleSource;
+    private final ShadowPricing shadow;
+    private final RequestRecorder recorder;
+    private final TenantCatalogs tenants;
+    private final BudgetReservations reservations;
+
+    public PricingService() {
+        this(new Builder());
+    }
+
+    private PricingService(Builder builder) {
+        this(builder.auditSink, builder.ruleSource, builder.tracer, builder.interceptors, builder.shadow,
+                builder.recorder, builder.tenants, builder.reservations);
+    }
+
+    /**
+     * {@code interceptors} wrap rule evaluation in the given order, e.g. the {@code RuleHealthMonitor};
+     * every successful quote is also offered to {@code shadow}; every incoming request is handed to {@code recorder}.
+     * Requests with a {@code restaurantId} are priced with that tenant's catalog and policy from {@code tenants}
+     * when it has one, otherwise with {@code ruleSource}. Quotes are priced against the campaign budgets of
+     * {@code reservations} without spending them; {@link #order orders} reserve what they apply.
+     */
+    @Autowired
+    public PricingService(AuditSink auditSink, RuleSource ruleSource, PricingTracer tracer,
+                          List<RuleInterceptor> interceptors, ShadowPricing shadow, RequestRecorder recorder,
+                          TenantCatalogs tenants, BudgetReservations reservations) {
+        this.auditSink = Objects.requireNonNull(auditSink, "auditSink");
+        this.ruleSource = Objects.requireNonNull(ruleSource, "ruleSource");
+        this.shadow = Objects.requireNonNull(shadow, "shadow");
+        this.recorder = Objects.requireNonNull(recorder, "recorder");
+        this.tenants = Objects.requireNonNull(tenants, "tenants");
+        this.reservations = Objects.requireNonNull(reservations, "reservations");
+        DiscountOrchestratorV2 configured = new DiscountOrchestratorV2().withTracer(tracer)
+                .withSpendBudget(reservations.budget().readOnly());
+        for (RuleInterceptor interceptor : interceptors) {
+            configured = configured.withInterceptor(interceptor);
+        }
+        this.orchestrator = configured;
+    }
 
+    /**
+     * A service wired by hand, e.g. in tests and tools; anything not set keeps the default of {@link #PricingService()}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Valid requests with the same normalized key (restaurant, subtotal at money scale, vip, hasCoupon, line items)
+     * that arrive while an identical quote is being priced share its result; invalid requests are never coalesced.
+     * A quote shows the discounts the remaining campaign budgets allow right now but takes nothing from them.
+     * Every successful result is handed to the {@link AuditSink} once per caller, so callers that shared a result
+     * each leave an audit record of the quote they were served. Results priced with the shared rules are also
+     * offered to {@link ShadowPricing}, whose candidate only stands in for the shared rules; that happens once per
+     * pricing, by the caller that priced it, so a shared result is compared once.
+     */
     public Result<PricingResult> quote(PricingRequest request) {
-        return validateRequest(request)
+        recorder.record(request);
+        Result<PricingResult> result = validateRequest(request)
                 .toResult()
-                .flatMap(ctx -> orchestrator.priceValidated(ctx, defaultRules(ctx)));
+                .flatMap(ctx -> {
+                    String restaurantId = request.restaurantId();
+                    return inFlightQuotes.execute(QuoteKey.of(restaurantId, ctx), () -> {
+                        Result<PricingResult> priced = price(orchestrator, restaurantId, ctx);
+                        return restaurantId == null ? shadowed(ctx, priced) : priced;
+                    });
+                });
+        if (result.isSuccess()) {
+            auditSink.record(result.getOrThrow());
+        }
+        return result;
+    }
+
+    /**
+     * Prices an order, reserving every applied discount from the campaign budgets. On success the reservation is
+     * held under {@link PlacedOrder#reservation()} until it is {@link #commitOrder committed},
+     * {@link #cancelOrder cancelled} or expires; when pricing fails or throws, everything it reserved is released.
+     * Without budgets nothing is reserved and the reservation is {@code null}. Orders are never coalesced.
+     */
+    public Result<PlacedOrder> order(PricingRequest request) {
+        Result<OrderContext> validated = validateRequest(request).toResult();
+        if (!validated.isSuccess() || !reservations.enforced()) {
+            Result<PricingResult> result = validated.flatMap(ctx -> price(orchestrator, request.restaurantId(), ctx));
+            if (result.isSuccess()) {
+                auditSink.record(result.getOrThrow());
+            }
+            return result.map(priced -> new PlacedOrder(null, priced));
+        }
+        BudgetReservations.Reservation reservation = reservations.open();
+        try {
+            Result<PricingResult> result = price(orchestrator.withSpendBudget(reservation), request.restaurantId(),
+                    validated.getOrThrow());
+            if (!result.isSuccess()) {
+                reservation.cancel();
+                return result.map(priced -> new PlacedOrder(null, priced));
+            }
+            auditSink.record(result.getOrThrow());
+            return Result.success(new PlacedOrder(reservation.hold(), result.getOrThrow()));
+        } catch (RuntimeException e) {
+            reservation.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps the discounts of a placed order as spent; false when the reservation is unknown, already settled or
+     * expired.
+     */
+    public boolean commitOrder(String reservation) {
+        return reservations.commit(reservation);
+    }
+
+    /**
+     * Returns the discounts of a placed order to the campaign budgets; false when the reservation is unknown,
+     * already settled or expired.
+     */
+    public boolean cancelOrder(String reservation) {
+        return reservations.cancel(reservation);
+    }
+
+    private Result<PricingResult> shadowed(OrderContext ctx, Result<PricingResult> live) {
+        if (live.isSuccess()) {
+            shadow.offer(ctx, live.getOrThrow());
+        }
+        return live;
+    }
+
+    public SingleFlight.Stats coalescingStats() {
+        return inFlightQuotes.stats();
+    }
+
+    private Result<PricingResult> price(DiscountOrchestratorV2 orchestrator, String restaurantId, OrderContext ctx) {
+        if (restaurantId == null) {
+            return orchestrator.priceValidated(ctx, ruleSource.rules(ctx));
+        }
+        Result<RuleCatalog> tenant = tenants.catalog(restaurantId);
+        if (tenant.isFailure()) {
+            return Result.failure(tenant.failureCause());
+        }
+        if (tenant.isEmpty()) {
+            return orchestrator.priceValidated(ctx, ruleSource.rules(ctx));
+        }
+        RuleCatalog catalog = tenant.getOrThrow();
+        DiscountOrchestratorV2 tenanted = orchestrator.forTenant(restaurantId);
+        DiscountOrchestratorV2 policed = catalog.policy().isDefined()
+                ? tenanted.withPolicy(catalog.policy().getOrThrow())
+                : tenanted;
+        return policed.priceValidated(ctx, catalog.rules(ctx));
     }
 
     public ResponseEntity<?> quoteHttp(PricingRequest request) {
-        return toHttpResponse(quote(request));
+        return toHttpResponse(quote(request), PricingResponse::from);
+    }
+
+    /**
+     * Like {@link #quoteHttp} but the success body is the {@link PricingResult} itself,
+     * serialized directly by {@code PricingResultHttpMessageConverter} without intermediate DTOs.
+     */
+    public ResponseEntity<?> quoteHttpDirect(PricingRequest request) {
+        return toHttpResponse(quote(request), Function.identity());
+    }
+
+    /**
+     * Like {@link #quoteHttpDirect} for {@link #order}; the reservation id, if any, is in {@link #RESERVATION_HEADER}.
+     */
+    public ResponseEntity<?> orderHttp(PricingRequest request) {
+        Result<PlacedOrder> placed = order(request);
+        if (placed.isSuccess() && placed.getOrThrow().reservation() != null) {
+            return ResponseEntity.ok()
+                    .header(RESERVATION_HEADER, placed.getOrThrow().reservation())
+                    .body(placed.getOrThrow().result());
+        }
+        return toHttpResponse(placed.map(PlacedOrder::result), Function.identity());
     }
 
-    private ResponseEntity<?> toHttpResponse(Result<PricingResult> result) {
+    private ResponseEntity<?> toHttpResponse(Result<PricingResult> result, Function<PricingResult, ?> successBody) {
         if (result.isSuccess()) {
-            return ResponseEntity.ok(PricingResponse.from(result.getOrThrow()));
+            return ResponseEntity.ok(successBody.apply(result.getOrThrow()));
         }
         if (result.isFailure()) {
             return ResponseEntity.badRequest().body(new ErrorResponse(result.failureCause().getMessage()));
         }
         if (result.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(new ErrorResponse("no price could be calculated"));
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(new ErrorResponse(NO_PRICE_MESSAGE));
         }
 
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ErrorResponse("Unexpected pricing result state"));
@@ -60,10 +252,22 @@ public class PricingService {
             return Validation.invalid(errors);
         }
 
+        LineItems items = validateItems(request.items(), errors);
         if (request.subtotal() == null) {
-            errors.add("subtotal is required");
+            if (items.isEmpty()) {
+                errors.add("subtotal is required");
+            }
         } else if (request.subtotal().signum() <= 0) {
             errors.add("subtotal must be greater than zero");
+        } else if (!items.isEmpty() && request.subtotal().compareTo(items.subtotal()) != 0) {
+            errors.add("subtotal must equal the sum of the items (" + items.subtotal() + ")");
+        }
+        if (request.subtotal() == null && !items.isEmpty() && items.subtotalCents() <= 0) {
+            errors.add("items must add up to more than zero");
+        }
+
+        if (request.restaurantId() != null && request.restaurantId().isBlank()) {
+            errors.add("restaurantId must not be blank");
         }
 
         if (request.vip() == null) {
@@ -78,14 +282,65 @@ public class PricingService {
             return Validation.invalid(errors);
         }
 
-        return Validation.valid(new OrderContext(
-                request.vip(),
-                request.hasCoupon(),
-                OrderPricing.of(request.subtotal())
-        ));
+        if (items.isEmpty()) {
+            return Validation.valid(new OrderContext(
+                    request.vip(),
+                    request.hasCoupon(),
+                    OrderPricing.of(request.subtotal())
+            ));
+        }
+        return Validation.valid(OrderContext.ofItems(request.vip(), request.hasCoupon(), items));
+    }
+
+    /**
+     * Builds the cart in one pass, adding an error per invalid line; the result is only used when there are none.
+     */
+    private static LineItems validateItems(List<PricingRequest.Item> items, List<String> errors) {
+        if (items == null || items.isEmpty()) {
+            return LineItems.EMPTY;
+        }
+        LineItems.Builder cart = LineItems.builder(items.size());
+        int errorsBefore = errors.size();
+        for (int i = 0; i < items.size(); i++) {
+            PricingRequest.Item item = items.get(i);
+            if (item == null) {
+                errors.add("items[" + i + "] is required");
+                continue;
+            }
+            if (item.sku() == null || item.sku().isBlank()) {
+                errors.add("items[" + i + "].sku is required");
+            }
+            if (item.category() == null || item.category().isBlank()) {
+                errors.add("items[" + i + "].category is required");
+            }
+            if (item.quantity() == null || item.quantity() <= 0) {
+                errors.add("items[" + i + "].quantity must be greater than zero");
+            }
+            if (item.unitPrice() == null || item.unitPrice().signum() < 0) {
+                errors.add("items[" + i + "].unitPrice must not be negative");
+            } else if (item.unitPrice().stripTrailingZeros().scale() > 2) {
+                errors.add("items[" + i + "].unitPrice must have at most 2 decimals");
+            }
+            if (errors.size() == errorsBefore) {
+                try {
+                    cart.add(item.sku(), item.category(), item.quantity(), item.unitPrice());
+                } catch (ArithmeticException e) {
+                    errors.add("items[" + i + "] is too large");
+                }
+            }
+        }
+        if (errors.size() > errorsBefore) {
+            return LineItems.EMPTY;
+        }
+        try {
+            return cart.build();
+        } catch (ArithmeticException e) {
+            errors.add("items add up to more than can be priced");
+            return LineItems.EMPTY;
+        }
     }
 
-    private List<DiscountRule> defaultRules(OrderContext ctx) {
+    private static List<DiscountRule> defaultRules(OrderContext ctx) {
         LazyStream<DiscountRule> baseRules = LazyStream.of(
                 new DiscountRule(
                         "VIP_10_PERCENT",
@@ -104,22 +359,22 @@ public class PricingService {
         );
 
         LazyStream<DiscountRule> dynamicCampaignRules = LazyStream
-                .iterate(new CampaignTier(FIVE_HUNDRED, TWO_PERCENT), this::nextTier)
+                .iterate(new CampaignTier(FIVE_HUNDRED, TWO_PERCENT), PricingService::nextTier)
                 .takeWhile(tier -> tier.threshold().compareTo(ctx.pricing().subtotal()) <= 0
                         && tier.rate().compareTo(MAX_DYNAMIC_RATE) <= 0)
-                .map(this::toCampaignRule);
+                .map(PricingService::toCampaignRule);
 
         return baseRules.append(() -> dynamicCampaignRules).toList();
     }
 
-    private CampaignTier nextTier(CampaignTier current) {
+    private static CampaignTier nextTier(CampaignTier current) {
         return new CampaignTier(
                 current.threshold().add(FIVE_HUNDRED),
                 current.rate().add(ONE_PERCENT)
         );
     }
 
-    private DiscountRule toCampaignRule(CampaignTier tier) {
+    private static DiscountRule toCampaignRule(CampaignTier tier) {
         String name = "OVER_" + tier.threshold().intValue() + "_DYNAMIC";
         int priority = 100 - tier.rate().movePointRight(2).intValue();
         return new DiscountRule(
@@ -131,6 +386,78 @@ public class PricingService {
         );
     }
 
+    private record QuoteKey(String restaurantId, BigDecimal subtotal, boolean vip, boolean hasCoupon, LineItems items) {
+        static QuoteKey of(String restaurantId, OrderContext ctx) {
+            return new QuoteKey(restaurantId, ctx.pricing().subtotal(), ctx.vip(), ctx.hasCoupon(), ctx.items());
+        }
+    }
+
     private record CampaignTier(BigDecimal threshold, BigDecimal rate) {
     }
+
+    public static final class Builder {
+        private AuditSink auditSink = AuditSink.NOOP;
+        private RuleSource ruleSource = DEFAULT_RULES;
+        private PricingTracer tracer = PricingTracer.OFF;
+        private List<RuleInterceptor> interceptors = List.of();
+        private ShadowPricing shadow = ShadowPricing.NOOP;
+        private RequestRecorder recorder = RequestRecorder.NOOP;
+        private TenantCatalogs tenants = TenantCatalogs.NONE;
+        private BudgetReservations reservations =
+                new BudgetReservations(SpendBudget.UNLIMITED, BudgetReservations.DEFAULT_TTL);
+
+        private Builder() {
+        }
+
+        public Builder auditSink(AuditSink auditSink) {
+            this.auditSink = auditSink;
+            return this;
+        }
+
+        public Builder ruleSource(RuleSource ruleSource) {
+            this.ruleSource = ruleSource;
+            return this;
+        }
+
+        public Builder tracer(PricingTracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
+        public Builder interceptors(List<RuleInterceptor> interceptors) {
+            this.interceptors = List.copyOf(interceptors);
+            return this;
+        }
+
+        public Builder shadow(ShadowPricing shadow) {
+            this.shadow = shadow;
+            return this;
+        }
+
+        public Builder recorder(RequestRecorder recorder) {
+            this.recorder = recorder;
+            return this;
+        }
+
+        public Builder tenants(TenantCatalogs tenants) {
+            this.tenants = tenants;
+            return this;
+        }
+
+        /**
+         * Campaign budgets whose order holds expire after {@link BudgetReservations#DEFAULT_TTL}.
+         */
+        public Builder budget(SpendBudget budget) {
+            return reservations(new BudgetReservations(budget, BudgetReservations.DEFAULT_TTL));
+        }
+
+        public Builder reservations(BudgetReservations reservations) {
+            this.reservations = reservations;
+            return this;
+        }
+
+        public PricingService build() {
+            return new PricingService(this);
+        }
+    }
 }
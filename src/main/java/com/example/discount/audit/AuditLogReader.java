@@ -0,0 +1,95 @@
+package com.example.discount.audit;
+
+import com.example.fpcore.Result;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Scans the segments written by {@link AuditLogWriter}, oldest first.
+ * A segment ends at the first empty slot or at the first record whose checksum does not match (torn tail).
+ */
+public final class AuditLogReader {
+
+    private AuditLogReader() {
+    }
+
+    /**
+     * Feeds every complete record to {@code consumer}; returns how many were read.
+     */
+    public static Result<Long> scan(Path directory, Consumer<AuditRecord> consumer) {
+        Objects.requireNonNull(directory, "directory");
+        Objects.requireNonNull(consumer, "consumer");
+        try {
+            long count = 0;
+            for (Path segment : AuditSegments.list(directory)) {
+                count += scanSegment(segment, consumer);
+            }
+            return Result.success(count);
+        } catch (IOException | IllegalStateException e) {
+            return Result.failure(e);
+        }
+    }
+
+    public static Result<List<AuditRecord>> readAll(Path directory) {
+        List<AuditRecord> records = new ArrayList<>();
+        return scan(directory, records::add).map(count -> List.copyOf(records));
+    }
+
+    /**
+     * Sequence number of the last record in the newest of {@code segments} (oldest first) that has one; 0 when none
+     * does. Segments that are not readable hold no records and are skipped.
+     */
+    static long lastSequence(List<Path> segments) throws IOException {
+        long[] last = {0};
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            try {
+                if (scanSegment(segments.get(i), record -> last[0] = record.sequence()) > 0) {
+                    return last[0];
+                }
+            } catch (IllegalStateException e) {
+                // e.g. a segment created by a crashed writer before its header reached the disk
+            }
+        }
+        return 0;
+    }
+
+    private static long scanSegment(Path segment, Consumer<AuditRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < AuditSegments.HEADER_BYTES
+                    || buffer.getInt() != AuditSegments.MAGIC
+                    || buffer.getInt() != AuditSegments.VERSION) {
+                throw new IllegalStateException("Not an audit segment: " + segment);
+            }
+            buffer.getLong();
+
+            CRC32C crc = new CRC32C();
+            long count = 0;
+            while (buffer.remaining() >= AuditSegments.RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) break;
+
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) break;
+
+                consumer.accept(AuditRecordCodec.decode(payload));
+                buffer.position(buffer.position() + length);
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.discount.audit;
+
+import com.example.discount.PricingResult;
+import com.example.fpcore.Result;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary audit log.
+ * <p>
+ * {@link #record} only offers the result to a bounded queue; when the queue is full the result is dropped and
+ * counted, so the quote path never waits on disk. A single background thread drains the queue in batches, encodes
+ * each result with {@link AuditRecordCodec} into the current memory-mapped segment and forces the segment once per
+ * batch (group commit). Full segments are rotated; only the newest {@code maxSegments} files are kept.
+ * <p>
+ * A record that cannot be written counts as {@code failed}, a batch that could not be forced as a
+ * {@code failedBatch}; either way the thread keeps draining. Sequence numbers continue after the last record of
+ * the newest segment that has one, so they stay unique across restarts.
+ */
+public final class AuditLogWriter implements AuditSink {
+
+    public record Stats(long written, long dropped, long failed, long batches, long failedBatches) {}
+
+    private static final int MAX_BATCH = 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final BlockingQueue<PricingResult> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long written;
+    private volatile long failed;
+    private volatile long batches;
+    private volatile long failedBatches;
+
+    // owned by the writer thread
+    private final AuditRecordCodec codec = new AuditRecordCodec();
+    private final CRC32C crc = new CRC32C();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private long sequence;
+
+    private AuditLogWriter(Path directory, long segmentBytes, int queueCapacity, int maxSegments) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::drain, "pricing-audit-writer");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Opens a new segment after the newest existing one in {@code directory} and starts the writer thread.
+     */
+    public static Result<AuditLogWriter> open(Path directory, long segmentBytes, int queueCapacity, int maxSegments) {
+        Objects.requireNonNull(directory, "directory");
+        if (segmentBytes <= AuditSegments.HEADER_BYTES + AuditSegments.RECORD_HEADER_BYTES || segmentBytes > Integer.MAX_VALUE) {
+            return Result.failure("segmentBytes must be between " + (AuditSegments.HEADER_BYTES + AuditSegments.RECORD_HEADER_BYTES)
+                    + " and " + Integer.MAX_VALUE);
+        }
+        if (queueCapacity <= 0 || maxSegments <= 0) {
+            return Result.failure("queueCapacity and maxSegments must be positive");
+        }
+        try {
+            Files.createDirectories(directory);
+            AuditLogWriter writer = new AuditLogWriter(directory, segmentBytes, queueCapacity, maxSegments);
+            List<Path> existing = AuditSegments.list(directory);
+            writer.segmentIndex = existing.isEmpty() ? 0 : AuditSegments.index(existing.get(existing.size() - 1));
+            writer.sequence = AuditLogReader.lastSequence(existing);
+            writer.rotate();
+            writer.thread.start();
+            return Result.success(writer);
+        } catch (IOException e) {
+            return Result.failure(e);
+        }
+    }
+
+    @Override
+    public void record(PricingResult result) {
+        if (result == null || !running || !queue.offer(result)) {
+            dropped.increment();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(written, dropped.sum(), failed, batches, failedBatches);
+    }
+
+    /**
+     * Stops accepting results, writes everything already queued and forces the last segment.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<PricingResult> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (running || !queue.isEmpty()) {
+                PricingResult first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                long now = System.currentTimeMillis();
+                try {
+                    for (PricingResult result : batch) {
+                        append(result, now);
+                    }
+                    segment.force();
+                } catch (RuntimeException e) {
+                    failedBatches++;
+                } finally {
+                    batches++;
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+        }
+    }
+
+    private void append(PricingResult result, long timestampMillis) {
+        try {
+            ByteBuffer payload = codec.encode(sequence + 1, timestampMillis, result);
+            int length = payload.remaining();
+            int size = AuditSegments.RECORD_HEADER_BYTES + length;
+            if (size > segmentBytes - AuditSegments.HEADER_BYTES) {
+                failed++;
+                return;
+            }
+            if (segment.remaining() < size) {
+                rotate();
+            }
+
+            crc.reset();
+            crc.update(payload.duplicate());
+            int at = segment.position();
+            segment.put(at + AuditSegments.RECORD_HEADER_BYTES, payload, payload.position(), length);
+            segment.putInt(at + 4, (int) crc.getValue());
+            segment.putInt(at, length);
+            segment.position(at + size);
+            sequence++;
+            written++;
+        } catch (IOException | RuntimeException e) {
+            failed++;
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (segment != null) {
+            segment.force();
+            closeSegment();
+        }
+        segmentIndex++;
+        channel = FileChannel.open(AuditSegments.path(directory, segmentIndex),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segment.putInt(AuditSegments.MAGIC).putInt(AuditSegments.VERSION).putLong(segmentIndex);
+        deleteOldSegments();
+    }
+
+    private void deleteOldSegments() throws IOException {
+        List<Path> segments = AuditSegments.list(directory);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    private void closeSegment() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            failed++;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.discount.audit;
+
+import com.example.discount.PricingResult;
+
+/**
+ * One audited quote as read back by {@link AuditLogReader}.
+ */
+public record AuditRecord(long sequence, long timestampMillis, PricingResult result) {
+}
@@ -0,0 +1,156 @@
+package com.example.discount.audit;
+
+import com.example.discount.AppliedStep;
+import com.example.discount.DiscountGroup;
+import com.example.discount.OrderPricing;
+import com.example.discount.PricingResult;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary record payload:
+ * <pre>
+ * varlong sequence, varlong timestampMillis, decimal subtotal, decimal discountTotal, varint stepCount,
+ * step*: string ruleName, byte group (ordinal, -1 = none), decimal requestedDiscount, decimal appliedDiscount,
+ *        decimal totalBefore, decimal totalAfter, string note
+ * decimal: varint (length + 1, 0 = null), zigzag varint scale, two's-complement unscaled bytes
+ * string:  varint (length + 1, 0 = null), UTF-8 bytes
+ * </pre>
+ * The total is not stored; it is derived from subtotal and discount total like {@link OrderPricing} does.
+ */
+final class AuditRecordCodec {
+
+    private static final DiscountGroup[] GROUPS = DiscountGroup.values();
+
+    private byte[] bytes = new byte[512];
+    private int position;
+
+    ByteBuffer encode(long sequence, long timestampMillis, PricingResult result) {
+        position = 0;
+        writeVarLong(sequence);
+        writeVarLong(timestampMillis);
+        writeDecimal(result.pricing().subtotal());
+        writeDecimal(result.pricing().discountTotal());
+        writeVarLong(result.steps().size());
+        for (AppliedStep step : result.steps()) {
+            writeString(step.ruleName());
+            ensure(1);
+            bytes[position++] = (byte) (step.group() == null ? -1 : step.group().ordinal());
+            writeDecimal(step.requestedDiscount());
+            writeDecimal(step.appliedDiscount());
+            writeDecimal(step.totalBefore());
+            writeDecimal(step.totalAfter());
+            writeString(step.note());
+        }
+        return ByteBuffer.wrap(bytes, 0, position);
+    }
+
+    static AuditRecord decode(ByteBuffer in) {
+        try {
+            long sequence = readVarLong(in);
+            long timestampMillis = readVarLong(in);
+            OrderPricing pricing = OrderPricing.of(readDecimal(in)).addDiscount(readDecimal(in));
+            int stepCount = (int) readVarLong(in);
+            List<AppliedStep> steps = new ArrayList<>(stepCount);
+            for (int i = 0; i < stepCount; i++) {
+                String ruleName = readString(in);
+                byte group = in.get();
+                steps.add(new AppliedStep(
+                        ruleName,
+                        group < 0 ? null : GROUPS[group],
+                        readDecimal(in),
+                        readDecimal(in),
+                        readDecimal(in),
+                        readDecimal(in),
+                        readString(in)
+                ));
+            }
+            return new AuditRecord(sequence, timestampMillis, new PricingResult(pricing, steps));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Truncated audit record", e);
+        }
+    }
+
+    private void writeDecimal(BigDecimal value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        writeVarLong(unscaled.length + 1L);
+        writeVarLong(zigzag(value.scale()));
+        ensure(unscaled.length);
+        System.arraycopy(unscaled, 0, bytes, position, unscaled.length);
+        position += unscaled.length;
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(utf8.length + 1L);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, position, utf8.length);
+        position += utf8.length;
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+    }
+
+    private void ensure(int more) {
+        if (position + more > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + more));
+        }
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) return null;
+        int scale = unzigzag(readVarLong(in));
+        byte[] unscaled = new byte[length];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) return null;
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalStateException("Malformed varint in audit record");
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFF_FFFFL;
+    }
+
+    private static int unzigzag(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.discount.audit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Segment file layout shared by {@link AuditLogWriter} and {@link AuditLogReader}.
+ * <pre>
+ * header: int magic, int version, long segment index
+ * record: int payload length (0 = end of segment), int CRC32C of payload, payload ({@link AuditRecordCodec})
+ * </pre>
+ * The length is written last, so a record is only visible to readers once it is complete.
+ */
+final class AuditSegments {
+
+    static final int MAGIC = 0x50415544; // "PAUD"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 8;
+
+    private static final Pattern FILE_NAME = Pattern.compile("audit-(\\d{16})\\.seg");
+
+    private AuditSegments() {
+    }
+
+    static Path path(Path directory, long index) {
+        return directory.resolve(String.format("audit-%016d.seg", index));
+    }
+
+    static long index(Path segment) {
+        Matcher matcher = FILE_NAME.matcher(segment.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Segment files of {@code directory}, oldest first.
+     */
+    static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> index(p) >= 0)
+                    .sorted((a, b) -> Long.compare(index(a), index(b)))
+                    .toList();
+        }
+    }
+}
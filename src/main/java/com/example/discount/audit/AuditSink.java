@@ -0,0 +1,17 @@
+package com.example.discount.audit;
+
+import com.example.discount.PricingResult;
+
+/**
+ * Receives every successful {@link PricingResult}. Implementations must not block the quote path.
+ */
+public interface AuditSink extends AutoCloseable {
+
+    AuditSink NOOP = result -> { };
+
+    void record(PricingResult result);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.discount.batch;
+
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.fpcore.Result;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Struct-of-arrays view of many orders, used for offline/bulk repricing.
+ * Money columns are stored in cents; {@code totalCents} is the running total written by {@link OrderBatchPricer}.
+ * Only the order-level columns are kept: {@link OrderContext#items() line items} are not carried, so orders with
+ * line items are rejected rather than priced without their item- and category-scoped rules.
+ */
+public final class OrderBatch {
+
+    private final int size;
+    private final boolean[] vip;
+    private final boolean[] hasCoupon;
+    private final long[] subtotalCents;
+    private final long[] totalCents;
+    private final RuntimeException[] failures;
+
+    private OrderBatch(boolean[] vip, boolean[] hasCoupon, long[] subtotalCents) {
+        this.size = subtotalCents.length;
+        this.vip = vip;
+        this.hasCoupon = hasCoupon;
+        this.subtotalCents = subtotalCents;
+        this.totalCents = subtotalCents.clone();
+        this.failures = new RuntimeException[size];
+    }
+
+    /**
+     * Failure when any context has line items, naming the first few offending indexes.
+     */
+    public static Result<OrderBatch> of(List<OrderContext> contexts) {
+        Objects.requireNonNull(contexts, "contexts");
+        List<Integer> withItems = new ArrayList<>();
+        Builder builder = builder(contexts.size());
+        for (int i = 0; i < contexts.size(); i++) {
+            OrderContext ctx = contexts.get(i);
+            if (!ctx.items().isEmpty()) {
+                withItems.add(i);
+                continue;
+            }
+            builder.add(ctx.vip(), ctx.hasCoupon(), ctx.pricing().subtotal());
+        }
+        if (!withItems.isEmpty()) {
+            return Result.failure("batch pricing does not carry line items; " + withItems.size()
+                    + " order(s) have them, e.g. at " + withItems.subList(0, Math.min(withItems.size(), 10)));
+        }
+        return Result.success(builder.build());
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean vip(int i) {
+        return vip[i];
+    }
+
+    public boolean hasCoupon(int i) {
+        return hasCoupon[i];
+    }
+
+    public long subtotalCents(int i) {
+        return subtotalCents[i];
+    }
+
+    public long totalCents(int i) {
+        return totalCents[i];
+    }
+
+    public long discountCents(int i) {
+        return subtotalCents[i] - totalCents[i];
+    }
+
+    /**
+     * Pricing of order {@code i} after the last {@link OrderBatchPricer#price} run, or the failure of one of its rules.
+     */
+    public Result<OrderPricing> result(int i) {
+        if (failures[i] != null) {
+            return Result.failure(failures[i]);
+        }
+        return Result.success(OrderPricing.of(BigDecimal.valueOf(subtotalCents[i], 2))
+                .addDiscount(BigDecimal.valueOf(discountCents(i), 2)));
+    }
+
+    OrderContext context(int i) {
+        return new OrderContext(vip[i], hasCoupon[i], OrderPricing.of(BigDecimal.valueOf(subtotalCents[i], 2)));
+    }
+
+    void reset() {
+        System.arraycopy(subtotalCents, 0, totalCents, 0, size);
+        Arrays.fill(failures, null);
+    }
+
+    boolean failed(int i) {
+        return failures[i] != null;
+    }
+
+    void fail(int i, RuntimeException cause) {
+        failures[i] = cause;
+    }
+
+    void setTotalCents(int i, long cents) {
+        totalCents[i] = cents;
+    }
+
+    static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static final class Builder {
+        private boolean[] vip;
+        private boolean[] hasCoupon;
+        private long[] subtotalCents;
+        private int size;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            this.vip = new boolean[capacity];
+            this.hasCoupon = new boolean[capacity];
+            this.subtotalCents = new long[capacity];
+        }
+
+        public Builder add(boolean vip, boolean hasCoupon, BigDecimal subtotal) {
+            Objects.requireNonNull(subtotal, "subtotal");
+            return addCents(vip, hasCoupon, toCents(subtotal));
+        }
+
+        public Builder addCents(boolean vip, boolean hasCoupon, long subtotalCents) {
+            if (size == this.subtotalCents.length) {
+                int capacity = size * 2;
+                this.vip = Arrays.copyOf(this.vip, capacity);
+                this.hasCoupon = Arrays.copyOf(this.hasCoupon, capacity);
+                this.subtotalCents = Arrays.copyOf(this.subtotalCents, capacity);
+            }
+            this.vip[size] = vip;
+            this.hasCoupon[size] = hasCoupon;
+            this.subtotalCents[size] = subtotalCents;
+            size++;
+            return this;
+        }
+
+        public OrderBatch build() {
+            return new OrderBatch(
+                    Arrays.copyOf(vip, size),
+                    Arrays.copyOf(hasCoupon, size),
+                    Arrays.copyOf(subtotalCents, size)
+            );
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.discount.batch;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.StackingPolicy;
+import com.example.discount.validation.DiscountValidation;
+import com.example.fpcore.Result;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Grouped stacking over an {@link OrderBatch}, rule-at-a-time instead of order-at-a-time.
+ * <p>
+ * Each rule is evaluated across the whole batch in one loop, keeping the best candidate per group in primitive
+ * columns. Selection and stacking then run per order on those columns, in cents, with the same
+ * group order / exclusivity / cap semantics as {@link DiscountOrchestratorV2}.
+ * Rule amounts are rounded to cents (HALF_UP) when they are evaluated.
+ */
+public final class OrderBatchPricer {
+
+    private static final int GROUPS = DiscountGroup.values().length;
+
+    private final StackingPolicy policy;
+
+    public OrderBatchPricer() {
+        this(StackingPolicy.defaults());
+    }
+
+    public OrderBatchPricer(StackingPolicy policy) {
+        this.policy = Objects.requireNonNull(policy, "policy");
+    }
+
+    /**
+     * Prices every order of the batch in place. A failing rule only fails the orders it failed on;
+     * the returned result is a failure only when the rules themselves are invalid.
+     */
+    public Result<OrderBatch> price(OrderBatch batch, List<DiscountRule> rules) {
+        Objects.requireNonNull(batch, "batch");
+        return DiscountValidation.validateRules(rules)
+                .toResult()
+                .map(valid -> priceValid(batch, valid));
+    }
+
+    private OrderBatch priceValid(OrderBatch batch, List<DiscountRule> rules) {
+        int n = batch.size();
+        batch.reset();
+
+        OrderContext[] contexts = new OrderContext[n];
+        for (int i = 0; i < n; i++) {
+            contexts[i] = batch.context(i);
+        }
+
+        Candidates candidates = new Candidates(n);
+        for (DiscountRule rule : rules) {
+            evaluateAcrossBatch(batch, contexts, rule, candidates);
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (!batch.failed(i)) {
+                batch.setTotalCents(i, stack(batch.subtotalCents(i), i, candidates));
+            }
+        }
+        return batch;
+    }
+
+    private static void evaluateAcrossBatch(OrderBatch batch, OrderContext[] contexts, DiscountRule rule, Candidates candidates) {
+        int g = rule.group().ordinal();
+        int priority = rule.priority();
+        long[] amounts = candidates.amount(g);
+        int[] priorities = candidates.priority(g);
+        boolean[] present = candidates.present(g);
+
+        for (int i = 0; i < contexts.length; i++) {
+            if (batch.failed(i)) continue;
+
+            Result<BigDecimal> evaluated = rule.evaluate(contexts[i]);
+            if (evaluated.isFailure()) {
+                batch.fail(i, evaluated.failureCause());
+                continue;
+            }
+            if (evaluated.isEmpty()) continue;
+
+            long total = batch.subtotalCents(i);
+            long cents = Math.min(Math.max(OrderBatch.toCents(evaluated.getOrThrow()), 0L), Math.max(total, 0L));
+
+            // same tie-break as GroupedSelector: amount desc, then priority asc, later rule wins a full tie
+            if (!present[i] || cents > amounts[i] || (cents == amounts[i] && priority <= priorities[i])) {
+                present[i] = true;
+                amounts[i] = cents;
+                priorities[i] = priority;
+            }
+        }
+    }
+
+    private long stack(long subtotalCents, int i, Candidates candidates) {
+        long total = subtotalCents;
+        long capRemaining = Math.max(policy.cap().maxAllowedDiscountCents(subtotalCents), 0L);
+        int appliedMask = 0;
+
+        for (DiscountGroup group : policy.groupOrder()) {
+            int g = group.ordinal();
+            if (!candidates.has(g, i)) continue;
+            if (!policy.exclusivity().isAllowed(appliedMask, group)) continue;
+
+            long applyable = Math.min(Math.min(candidates.amount(g)[i], capRemaining), Math.max(total, 0L));
+            total -= applyable;
+            capRemaining -= applyable;
+            appliedMask |= 1 << g;
+        }
+        return total;
+    }
+
+    /**
+     * Best candidate per (group, order), allocated lazily for the groups that actually have rules.
+     */
+    private static final class Candidates {
+        private final int size;
+        private final long[][] amounts = new long[GROUPS][];
+        private final int[][] priorities = new int[GROUPS][];
+        private final boolean[][] present = new boolean[GROUPS][];
+
+        private Candidates(int size) {
+            this.size = size;
+        }
+
+        long[] amount(int g) {
+            ensure(g);
+            return amounts[g];
+        }
+
+        int[] priority(int g) {
+            ensure(g);
+            return priorities[g];
+        }
+
+        boolean[] present(int g) {
+            ensure(g);
+            return present[g];
+        }
+
+        boolean has(int g, int i) {
+            return present[g] != null && present[g][i];
+        }
+
+        private void ensure(int g) {
+            if (present[g] == null) {
+                amounts[g] = new long[size];
+                priorities[g] = new int[size];
+                present[g] = new boolean[size];
+            }
+        }
+    }
+}
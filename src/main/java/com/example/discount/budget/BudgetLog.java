@@ -0,0 +1,170 @@
+package com.example.discount.budget;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the spent amount per rule, so budget counters survive a restart.
+ * <p>
+ * Header: magic {@code "PBUD"}, version byte. Each record is the rule name (2-byte length + UTF-8), the rule's
+ * spent cents (8 bytes) and a CRC32 of both (4 bytes); the last record of a rule wins. Reading stops at the first
+ * truncated or corrupt record. Opening a log rewrites it as one record per rule (written to a temporary file and
+ * moved into place), so the log never grows beyond what was appended since the last start or {@link #compact}.
+ * Not thread-safe: one writer thread owns it.
+ */
+final class BudgetLog implements AutoCloseable {
+
+    static final int MAGIC = 0x50425544; // "PBUD"
+    static final byte VERSION = 1;
+
+    private final Path path;
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final CRC32 crc = new CRC32();
+
+    private BudgetLog(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Spent cents per rule from {@code path}; empty when the file does not exist.
+     */
+    static Map<String, Long> read(Path path) throws IOException {
+        Map<String, Long> spent = new LinkedHashMap<>();
+        if (!Files.exists(path)) {
+            return spent;
+        }
+        try (InputStream stream = Files.newInputStream(path)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a budget log: " + path);
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported budget log version " + version);
+            }
+            CRC32 check = new CRC32();
+            while (true) {
+                try {
+                    byte[] name = new byte[in.readUnsignedShort()];
+                    in.readFully(name);
+                    long cents = in.readLong();
+                    int stored = in.readInt();
+                    check.reset();
+                    check.update(name);
+                    check.update(longBytes(cents));
+                    if ((int) check.getValue() != stored) {
+                        break;
+                    }
+                    spent.put(new String(name, StandardCharsets.UTF_8), cents);
+                } catch (EOFException truncated) {
+                    break;
+                }
+            }
+        } catch (EOFException noHeader) {
+            return spent;
+        }
+        return spent;
+    }
+
+    /**
+     * Rewrites {@code path} with {@code spent} and opens it for appending.
+     */
+    static BudgetLog open(Path path, Map<String, Long> spent) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        BudgetLog log = new BudgetLog(path, null);
+        log.rewrite(spent);
+        return log;
+    }
+
+    void append(String rule, long spentCents) throws IOException {
+        byte[] name = rule.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < name.length + 14) {
+            flush();
+        }
+        crc.reset();
+        crc.update(name);
+        crc.update(longBytes(spentCents));
+        buffer.putShort((short) name.length).put(name).putLong(spentCents).putInt((int) crc.getValue());
+    }
+
+    /**
+     * Writes appended records and forces them to disk.
+     */
+    void sync() throws IOException {
+        flush();
+        channel.force(false);
+    }
+
+    long size() throws IOException {
+        return channel.size() + buffer.position();
+    }
+
+    void compact(Map<String, Long> spent) throws IOException {
+        sync();
+        channel.close();
+        rewrite(spent);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void rewrite(Map<String, Long> spent) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.flush();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel = tmpChannel;
+            writeFully(ByteBuffer.wrap(bytes.toByteArray()));
+            for (Map.Entry<String, Long> entry : spent.entrySet()) {
+                append(entry.getKey(), entry.getValue());
+            }
+            sync();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    private static byte[] longBytes(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+}
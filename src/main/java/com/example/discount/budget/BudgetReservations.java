@@ -0,0 +1,222 @@
+package com.example.discount.budget;
+
+import com.example.discount.SpendBudget;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Campaign budget taken by orders rather than by quotes.
+ * <p>
+ * {@link #open} starts a {@link Reservation}, a {@link SpendBudget} that reserves from the underlying budget and
+ * remembers what it took. An order priced with it reserves its applied discounts; when pricing fails the caller
+ * {@link Reservation#cancel cancels} it and everything goes back, otherwise it {@link Reservation#hold holds} it
+ * under an id. A held reservation is either {@link #commit committed} once the order is confirmed, which makes its
+ * amounts spent for good, or {@link #cancel cancelled}. One that is neither within {@code ttl} is released, so an
+ * abandoned checkout returns its budget. Expired holds are released by the next {@link #open} or {@link #stats}
+ * call once per sweep interval, so nothing runs in the background.
+ * <p>
+ * Holds live only in this process. {@link #close} releases the ones still open on a graceful shutdown, like a
+ * cancel; a process that crashes or is killed cannot, and what its open holds took stays spent in a budget that
+ * outlives it (a {@link SharedSpendBudget} file or a {@link StripedSpendBudget} log) until the rule is reset.
+ */
+public final class BudgetReservations implements AutoCloseable {
+
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(15);
+
+    public record Stats(int held, long committed, long cancelled, long expired) {}
+
+    private static final long MAX_SWEEP_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final SpendBudget budget;
+    private final long ttlNanos;
+    private final long sweepNanos;
+    private final Map<String, Reservation> held = new ConcurrentHashMap<>();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private volatile long nextSweep;
+
+    public BudgetReservations(SpendBudget budget, Duration ttl) {
+        this.budget = Objects.requireNonNull(budget, "budget");
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.sweepNanos = Math.min(ttlNanos, MAX_SWEEP_NANOS);
+        this.nextSweep = System.nanoTime() + sweepNanos;
+    }
+
+    public SpendBudget budget() {
+        return budget;
+    }
+
+    /**
+     * Whether reservations take anything, i.e. the budget is not {@link SpendBudget#UNLIMITED}.
+     */
+    public boolean enforced() {
+        return budget != SpendBudget.UNLIMITED;
+    }
+
+    public Reservation open() {
+        expireDue();
+        return new Reservation();
+    }
+
+    /**
+     * Keeps what the held reservation {@code id} took as spent; false when it is unknown, already committed or
+     * cancelled, or expired (its budget was released and the order has to be priced again).
+     */
+    public boolean commit(String id) {
+        Reservation reservation = held.remove(id);
+        if (reservation == null) {
+            return false;
+        }
+        committed.increment();
+        return true;
+    }
+
+    /**
+     * Releases what the held reservation {@code id} took; false when it is unknown, committed or expired.
+     */
+    public boolean cancel(String id) {
+        Reservation reservation = held.remove(id);
+        if (reservation == null) {
+            return false;
+        }
+        reservation.cancel();
+        cancelled.increment();
+        return true;
+    }
+
+    /**
+     * Releases every held reservation past its deadline; returns how many.
+     */
+    public int expire() {
+        long now = System.nanoTime();
+        nextSweep = now + sweepNanos;
+        int released = 0;
+        for (Map.Entry<String, Reservation> entry : held.entrySet()) {
+            Reservation reservation = entry.getValue();
+            if (now - reservation.deadline >= 0 && held.remove(entry.getKey(), reservation)) {
+                reservation.cancel();
+                expired.increment();
+                released++;
+            }
+        }
+        return released;
+    }
+
+    public Stats stats() {
+        expireDue();
+        return new Stats(held.size(), committed.sum(), cancelled.sum(), expired.sum());
+    }
+
+    /**
+     * Releases every reservation still held, counting them as cancelled.
+     */
+    @Override
+    public void close() {
+        for (Map.Entry<String, Reservation> entry : held.entrySet()) {
+            Reservation reservation = entry.getValue();
+            if (held.remove(entry.getKey(), reservation)) {
+                reservation.cancel();
+                cancelled.increment();
+            }
+        }
+    }
+
+    private void expireDue() {
+        if (System.nanoTime() - nextSweep >= 0) {
+            expire();
+        }
+    }
+
+    private record Grant(String rule, long period) {}
+
+    /**
+     * What one order took from the budget, in cents per budget key and the period it was granted in; cents from a
+     * period that has since been reset are not given back.
+     */
+    public final class Reservation implements SpendBudget {
+
+        private final Map<Grant, Long> taken = new LinkedHashMap<>();
+        private long deadline;
+
+        private Reservation() {
+        }
+
+        @Override
+        public synchronized long reserve(String rule, long cents) {
+            // noted before reserving: a reset in between makes the grant look older, never newer
+            long period = budget.period(rule);
+            long granted = budget.reserve(rule, cents);
+            if (granted > 0) {
+                taken.merge(new Grant(rule, period), granted, Long::sum);
+            }
+            return granted;
+        }
+
+        @Override
+        public long available(String rule, long cents) {
+            return budget.available(rule, cents);
+        }
+
+        /**
+         * Gives back up to what this reservation took of {@code rule}.
+         */
+        @Override
+        public synchronized void release(String rule, long cents) {
+            long left = cents;
+            for (Map.Entry<Grant, Long> grant : taken.entrySet()) {
+                if (left <= 0) {
+                    break;
+                }
+                if (grant.getKey().rule().equals(rule)) {
+                    long giveBack = Math.min(left, grant.getValue());
+                    budget.release(rule, giveBack, grant.getKey().period());
+                    grant.setValue(grant.getValue() - giveBack);
+                    left -= giveBack;
+                }
+            }
+        }
+
+        @Override
+        public long period(String rule) {
+            return budget.period(rule);
+        }
+
+        /**
+         * Cents taken per budget key.
+         */
+        public synchronized Map<String, Long> taken() {
+            Map<String, Long> byRule = new LinkedHashMap<>();
+            taken.forEach((grant, cents) -> byRule.merge(grant.rule(), cents, Long::sum));
+            return byRule;
+        }
+
+        /**
+         * Releases everything this reservation took in periods that are still current.
+         */
+        public synchronized void cancel() {
+            taken.forEach((grant, cents) -> budget.release(grant.rule(), cents, grant.period()));
+            taken.clear();
+        }
+
+        /**
+         * Keeps what this reservation took until it is committed, cancelled or expires; returns its id.
+         */
+        public String hold() {
+            String id = UUID.randomUUID().toString();
+            // published to the sweeping thread by the put
+            deadline = System.nanoTime() + ttlNanos;
+            held.put(id, this);
+            return id;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.discount.budget;
+
+import java.math.BigDecimal;
+
+/**
+ * Limit, spent and remaining amount of one budgeted rule.
+ */
+public record BudgetStatus(String rule, BigDecimal limit, BigDecimal spent, BigDecimal remaining) {
+
+    static BudgetStatus ofCents(String rule, long limit, long spent) {
+        return new BudgetStatus(rule, BigDecimal.valueOf(limit, 2), BigDecimal.valueOf(spent, 2),
+                BigDecimal.valueOf(Math.max(limit - spent, 0), 2));
+    }
+}
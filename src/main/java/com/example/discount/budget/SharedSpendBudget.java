@@ -0,0 +1,457 @@
+package com.example.discount.budget;
+
+import com.example.discount.SpendBudget;
+import com.example.fpcore.Result;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link SpendBudget} whose counters live in a memory-mapped file, so every pricing process on the host that maps
+ * the same file reserves from the same budget.
+ * <p>
+ * Layout (native byte order): a 64-byte header (magic {@code "PSHM"}, version, slot capacity, slots in use)
+ * followed by 128-byte slots, one per rule: spent cents, limit cents, period, name length and the UTF-8 name.
+ * Reservations are compare-and-exchange loops on the slot's spent counter through a {@link VarHandle} view of the
+ * mapped buffer; the CPU's atomic instructions work on the shared page just as on the heap, so processes never take
+ * a lock on the quote path. A grant never exceeds {@code limit - spent}, so the limit holds across all processes.
+ * <p>
+ * Slots are only added and limits only changed while holding a {@link FileLock} on the file. {@link #open} claims
+ * a slot for every configured rule that does not have one yet; a rule that already has one keeps the limit in the
+ * file, so a process started with a stale configuration cannot change it, unless {@code overrideLimits} is set.
+ * Disagreeing limits are reported by {@link #limitConflicts}. {@link #setLimit}, {@link #reset} (a new campaign
+ * period) and {@link #remove} change a rule for every process at once; the last two start a new {@link #period},
+ * so reservations taken before them give nothing back to the period after. A process also honours the limits that
+ * other processes configured, indexing their slots the first time it sees an unknown rule after the slot count
+ * grew.
+ * <p>
+ * Spent amounts live as long as the file: they carry over between process restarts. The page cache writes the
+ * file back, so a file on disk survives a process crash but not necessarily a host crash; {@link #close} forces it
+ * to disk. A file on tmpfs ({@code /dev/shm}) is lost on reboot, and every rule starts from nothing spent again.
+ */
+public final class SharedSpendBudget implements SpendBudget, AutoCloseable {
+
+    static final int MAGIC = 0x5053484D; // "PSHM"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 64;
+    static final int SLOT_BYTES = 128;
+    static final int MAX_NAME_BYTES = SLOT_BYTES - 28;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    // header offsets
+    private static final int CAPACITY = 8;
+    private static final int USED = 12;
+    // slot offsets
+    private static final int SPENT = 0;
+    private static final int LIMIT = 8;
+    private static final int PERIOD = 16;
+    private static final int NAME_LENGTH = 24;
+    private static final int NAME = 28;
+    // limit of a removed rule: granted in full until a limit is set again
+    private static final long NO_LIMIT = -1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    // rule -> slot offset, replaced as a whole when other processes add rules
+    private volatile Map<String, Integer> slots;
+    private volatile int indexed;
+    private final List<String> limitConflicts = new ArrayList<>();
+
+    private SharedSpendBudget(Path path, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.slots = Map.of();
+    }
+
+    /**
+     * Maps {@code file}, creating it with room for {@code capacity} rules when it does not exist yet, and claims a
+     * slot with the given limit for every rule in {@code limits} that has none; rules already in the file keep
+     * their limit.
+     */
+    public static Result<SharedSpendBudget> open(Path file, Map<String, BigDecimal> limits, int capacity) {
+        return open(file, limits, capacity, false);
+    }
+
+    /**
+     * Like {@link #open(Path, Map, int)}; with {@code overrideLimits} the given limits also replace those already
+     * in the file.
+     */
+    public static Result<SharedSpendBudget> open(Path file, Map<String, BigDecimal> limits, int capacity,
+                                                 boolean overrideLimits) {
+        Objects.requireNonNull(file, "file");
+        Objects.requireNonNull(limits, "limits");
+        if (capacity <= 0) {
+            return Result.failure("capacity must be positive");
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            SharedSpendBudget budget;
+            // FileLock is held per JVM, so threads of this process opening the same file take turns here first
+            synchronized (SharedSpendBudget.class) {
+                FileLock lock = channel.lock();
+                try {
+                    budget = map(file, channel, capacity);
+                    for (Map.Entry<String, BigDecimal> limit : limits.entrySet()) {
+                        budget.claim(limit.getKey(), cents(limit.getValue()), overrideLimits);
+                    }
+                    budget.reindex();
+                } finally {
+                    lock.release();
+                }
+            }
+            return Result.success(budget);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            return Result.failure(new IllegalStateException("Cannot open shared budget file " + file, e));
+        }
+    }
+
+    @Override
+    public long reserve(String rule, long cents) {
+        int slot = slot(rule);
+        if (slot < 0) {
+            return Math.max(cents, 0);
+        }
+        if (cents <= 0) {
+            return 0;
+        }
+        long spent = (long) LONGS.getVolatile(buffer, slot + SPENT);
+        while (true) {
+            long limit = (long) LONGS.getVolatile(buffer, slot + LIMIT);
+            if (limit == NO_LIMIT) {
+                return cents;
+            }
+            long available = limit - spent;
+            if (available <= 0) {
+                return 0;
+            }
+            long take = Math.min(available, cents);
+            long witnessed = (long) LONGS.compareAndExchange(buffer, slot + SPENT, spent, spent + take);
+            if (witnessed == spent) {
+                return take;
+            }
+            spent = witnessed;
+        }
+    }
+
+    @Override
+    public long available(String rule, long cents) {
+        int slot = slot(rule);
+        if (slot < 0) {
+            return Math.max(cents, 0);
+        }
+        if (cents <= 0) {
+            return 0;
+        }
+        long limit = (long) LONGS.getVolatile(buffer, slot + LIMIT);
+        if (limit == NO_LIMIT) {
+            return cents;
+        }
+        return Math.min(cents, Math.max(limit - (long) LONGS.getVolatile(buffer, slot + SPENT), 0));
+    }
+
+    /**
+     * Gives {@code cents} back to the rule's budget; spent never drops below zero.
+     */
+    @Override
+    public void release(String rule, long cents) {
+        int slot = slot(rule);
+        if (slot < 0 || cents <= 0) {
+            return;
+        }
+        long spent = (long) LONGS.getVolatile(buffer, slot + SPENT);
+        while (true) {
+            long witnessed = (long) LONGS.compareAndExchange(buffer, slot + SPENT, spent, Math.max(spent - cents, 0));
+            if (witnessed == spent) {
+                return;
+            }
+            spent = witnessed;
+        }
+    }
+
+    @Override
+    public long period(String rule) {
+        int slot = slot(rule);
+        return slot < 0 ? 0 : (long) LONGS.getVolatile(buffer, slot + PERIOD);
+    }
+
+    /**
+     * Gives {@code cents} back only while the rule is still in {@code period}. The period is checked again on every
+     * attempt, and a reset changes spent, so a release racing with a reset fails its exchange and is dropped (unless
+     * new reservations brought spent back to the very value it read in between).
+     */
+    @Override
+    public void release(String rule, long cents, long period) {
+        int slot = slot(rule);
+        if (slot < 0 || cents <= 0) {
+            return;
+        }
+        long spent = (long) LONGS.getVolatile(buffer, slot + SPENT);
+        while ((long) LONGS.getVolatile(buffer, slot + PERIOD) == period) {
+            long witnessed = (long) LONGS.compareAndExchange(buffer, slot + SPENT, spent, Math.max(spent - cents, 0));
+            if (witnessed == spent) {
+                return;
+            }
+            spent = witnessed;
+        }
+    }
+
+    /**
+     * Sets the limit of {@code rule} for every process, adding its slot when it has none.
+     */
+    public Result<BudgetStatus> setLimit(String rule, BigDecimal limit) {
+        try {
+            long cents = cents(limit);
+            withFileLock(() -> claim(rule, cents, true));
+            reindexIfGrown();
+            return Result.success(status(slot(rule)));
+        } catch (IOException | RuntimeException e) {
+            return Result.failure(new IllegalStateException("Cannot set the budget of " + rule + " in " + path, e));
+        }
+    }
+
+    /**
+     * Starts a new period for {@code rule} in every process: nothing spent, same limit. False when the file has no
+     * such rule.
+     */
+    public boolean reset(String rule) {
+        int slot = slot(rule);
+        if (slot < 0) {
+            return false;
+        }
+        try {
+            withFileLock(() -> newPeriod(slot));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot reset the budget of " + rule + " in " + path, e);
+        }
+        return true;
+    }
+
+    /**
+     * Stops limiting {@code rule} in every process and clears what it spent, until a process configures or
+     * {@link #setLimit sets} a limit for it again; its slot stays in the file. False when the file has no such rule.
+     */
+    public boolean remove(String rule) {
+        int slot = slot(rule);
+        if (slot < 0) {
+            return false;
+        }
+        try {
+            withFileLock(() -> {
+                LONGS.setVolatile(buffer, slot + LIMIT, NO_LIMIT);
+                newPeriod(slot);
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot remove the budget of " + rule + " from " + path, e);
+        }
+        return true;
+    }
+
+    /**
+     * Configured limits that {@link #open} did not apply because the file already had another one.
+     */
+    public List<String> limitConflicts() {
+        return List.copyOf(limitConflicts);
+    }
+
+    /**
+     * Every limited rule in the file, including those only other processes configured.
+     */
+    public List<BudgetStatus> status() {
+        reindexIfGrown();
+        List<BudgetStatus> status = new ArrayList<>();
+        slots.forEach((rule, slot) -> {
+            if ((long) LONGS.getVolatile(buffer, slot + LIMIT) != NO_LIMIT) {
+                status.add(status(slot));
+            }
+        });
+        status.sort((a, b) -> a.rule().compareTo(b.rule()));
+        return status;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Forces the counters to disk and closes the file; other processes keep using it.
+     */
+    @Override
+    public void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot close shared budget file " + path, e);
+        }
+    }
+
+    private BudgetStatus status(int slot) {
+        return BudgetStatus.ofCents(name(slot), (long) LONGS.getVolatile(buffer, slot + LIMIT),
+                (long) LONGS.getVolatile(buffer, slot + SPENT));
+    }
+
+    /**
+     * Moves the slot to the next period before clearing spent, so a release that still sees the old period fails
+     * its exchange on spent. Callers hold the file lock.
+     */
+    private void newPeriod(int slot) {
+        LONGS.getAndAdd(buffer, slot + PERIOD, 1L);
+        LONGS.setVolatile(buffer, slot + SPENT, 0L);
+    }
+
+    private void withFileLock(Runnable action) throws IOException {
+        synchronized (SharedSpendBudget.class) {
+            FileLock lock = channel.lock();
+            try {
+                action.run();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private int slot(String rule) {
+        Integer slot = slots.get(rule);
+        if (slot != null) {
+            return slot;
+        }
+        return reindexIfGrown() ? slot(rule) : -1;
+    }
+
+    private boolean reindexIfGrown() {
+        if ((int) INTS.getAcquire(buffer, USED) <= indexed) {
+            return false;
+        }
+        synchronized (this) {
+            reindex();
+        }
+        return true;
+    }
+
+    /**
+     * Indexes all slots in use. A slot is published (slots-in-use incremented) only after its name and limit are
+     * written, so every slot below that count is complete.
+     */
+    private void reindex() {
+        int used = (int) INTS.getAcquire(buffer, USED);
+        Map<String, Integer> index = new HashMap<>(slots);
+        for (int i = indexed; i < used; i++) {
+            int slot = HEADER_BYTES + i * SLOT_BYTES;
+            index.put(name(slot), slot);
+        }
+        slots = Map.copyOf(index);
+        indexed = used;
+    }
+
+    /**
+     * Finds or adds the slot of {@code rule}. A new slot, or a removed rule's, gets {@code limitCents}; an existing
+     * limit is only replaced with {@code override}, otherwise a different one is recorded as a conflict. Callers
+     * hold the file lock.
+     */
+    private void claim(String rule, long limitCents, boolean override) {
+        byte[] name = rule.getBytes(StandardCharsets.UTF_8);
+        if (name.length == 0 || name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("rule name must be 1.." + MAX_NAME_BYTES + " UTF-8 bytes: " + rule);
+        }
+        if (limitCents < 0) {
+            throw new IllegalArgumentException("limit of " + rule + " must not be negative");
+        }
+        int used = (int) INTS.getAcquire(buffer, USED);
+        for (int i = 0; i < used; i++) {
+            int slot = HEADER_BYTES + i * SLOT_BYTES;
+            if (name(slot).equals(rule)) {
+                long current = (long) LONGS.getVolatile(buffer, slot + LIMIT);
+                if (override || current == NO_LIMIT) {
+                    LONGS.setVolatile(buffer, slot + LIMIT, limitCents);
+                } else if (current != limitCents) {
+                    limitConflicts.add(rule + ": file has " + BigDecimal.valueOf(current, 2) + ", configured "
+                            + BigDecimal.valueOf(limitCents, 2));
+                }
+                return;
+            }
+        }
+        if (used == capacity) {
+            throw new IllegalStateException("shared budget file " + path + " has no free slot for " + rule
+                    + " (capacity " + capacity + ")");
+        }
+        int slot = HEADER_BYTES + used * SLOT_BYTES;
+        LONGS.setVolatile(buffer, slot + SPENT, 0L);
+        LONGS.setVolatile(buffer, slot + LIMIT, limitCents);
+        LONGS.setVolatile(buffer, slot + PERIOD, 0L);
+        buffer.put(slot + NAME, name);
+        INTS.setVolatile(buffer, slot + NAME_LENGTH, name.length);
+        INTS.setRelease(buffer, USED, used + 1);
+    }
+
+    private String name(int slot) {
+        byte[] name = new byte[(int) INTS.getVolatile(buffer, slot + NAME_LENGTH)];
+        buffer.get(slot + NAME, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps the file, writing the header when it is new. Callers hold the file lock.
+     */
+    private static SharedSpendBudget map(Path file, FileChannel channel, int requestedCapacity) throws IOException {
+        if (channel.size() == 0) {
+            long size = HEADER_BYTES + (long) requestedCapacity * SLOT_BYTES;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            INTS.setVolatile(buffer, 0, MAGIC);
+            INTS.setVolatile(buffer, 4, VERSION);
+            INTS.setVolatile(buffer, CAPACITY, requestedCapacity);
+            INTS.setRelease(buffer, USED, 0);
+            return new SharedSpendBudget(file, channel, buffer, requestedCapacity);
+        }
+        if (channel.size() < HEADER_BYTES) {
+            throw new IOException("Not a shared budget file: " + file);
+        }
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if ((int) INTS.getVolatile(header, 0) != MAGIC) {
+            throw new IOException("Not a shared budget file: " + file);
+        }
+        int version = (int) INTS.getVolatile(header, 4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported shared budget file version " + version);
+        }
+        // the file's capacity wins, so every process agrees on its size
+        int capacity = (int) INTS.getVolatile(header, CAPACITY);
+        long size = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+        if (channel.size() < size) {
+            throw new IOException("Shared budget file " + file + " is truncated");
+        }
+        return new SharedSpendBudget(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), capacity);
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
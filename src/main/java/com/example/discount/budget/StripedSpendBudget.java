@@ -0,0 +1,320 @@
+package com.example.discount.budget;
+
+import com.example.discount.SpendBudget;
+import com.example.fpcore.Result;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link SpendBudget} whose remaining amount per rule is split over striped atomic counters.
+ * <p>
+ * Each rule's limit is divided over {@code stripes} counters, each on its own cache line. A thread reserves from
+ * the stripe its id hashes to with a compare-and-set and only moves on to the other stripes when that one runs dry,
+ * so threads on different cores rarely touch the same counter. Because every stripe only ever hands out what it
+ * holds, the rule as a whole never grants more than its limit; near exhaustion a reservation may be assembled from
+ * several stripes.
+ * <p>
+ * With a log ({@link #open(Map, int, Path, Duration)}), a background thread appends the spent amount of every rule
+ * that changed to a {@link BudgetLog} and forces it to disk every {@code syncInterval}; a restart resumes from the
+ * last synced amounts. The log is written behind the counters, not ahead of them: a grant is never delayed by the
+ * disk, and in exchange the limit is soft across a crash. The reservations of the last interval are forgotten and
+ * can be granted again after the restart, so a rule can overspend by at most what it granted in one interval.
+ */
+public final class StripedSpendBudget implements SpendBudget, AutoCloseable {
+
+    public record LogStats(long records, long syncs, long failed) {}
+
+    // 16 longs = 128 bytes between stripes, so two stripes never share a cache line (or an adjacent-line prefetch)
+    private static final int PAD = 16;
+    private static final long COMPACT_BYTES = 1 << 20;
+
+    private final Map<String, Budget> budgets;
+    private final int mask;
+    private final BudgetLog log;
+    private final long syncNanos;
+    private final Thread writer;
+    private final LongAdder logRecords = new LongAdder();
+    private final LongAdder logSyncs = new LongAdder();
+    private final LongAdder logFailures = new LongAdder();
+    private volatile boolean running = true;
+
+    private StripedSpendBudget(Map<String, Long> limitCents, Map<String, Long> spentCents, int stripes,
+                               BudgetLog log, Duration syncInterval) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("stripes must be a positive power of two");
+        }
+        this.mask = stripes - 1;
+        Map<String, Budget> byRule = new LinkedHashMap<>();
+        limitCents.forEach((rule, limit) -> {
+            if (limit < 0) {
+                throw new IllegalArgumentException("limit of " + rule + " must not be negative");
+            }
+            long spent = Math.min(Math.max(spentCents.getOrDefault(rule, 0L), 0), limit);
+            byRule.put(rule, new Budget(rule, limit, limit - spent, stripes));
+        });
+        this.budgets = Map.copyOf(byRule);
+        this.log = log;
+        if (log == null) {
+            this.syncNanos = 0;
+            this.writer = null;
+        } else {
+            this.syncNanos = syncInterval.toNanos();
+            this.writer = new Thread(this::writeBehind, "pricing-budget-log");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+    }
+
+    /**
+     * In-memory budgets, starting from nothing spent.
+     */
+    public static StripedSpendBudget inMemory(Map<String, BigDecimal> limits, int stripes) {
+        return new StripedSpendBudget(cents(limits), Map.of(), stripes, null, null);
+    }
+
+    /**
+     * Budgets that resume from and keep writing to {@code logFile}.
+     */
+    public static Result<StripedSpendBudget> open(Map<String, BigDecimal> limits, int stripes, Path logFile,
+                                                  Duration syncInterval) {
+        Objects.requireNonNull(logFile, "logFile");
+        if (syncInterval == null || syncInterval.isNegative() || syncInterval.isZero()) {
+            return Result.failure("syncInterval must be positive");
+        }
+        try {
+            Map<String, Long> limitCents = cents(limits);
+            Map<String, Long> spent = BudgetLog.read(logFile);
+            Map<String, Long> recovered = new LinkedHashMap<>();
+            limitCents.keySet().forEach(rule -> recovered.put(rule, Math.min(spent.getOrDefault(rule, 0L), limitCents.get(rule))));
+            return Result.success(new StripedSpendBudget(limitCents, recovered, stripes,
+                    BudgetLog.open(logFile, recovered), syncInterval));
+        } catch (IOException | RuntimeException e) {
+            return Result.failure(new IllegalStateException("Cannot open budget log " + logFile, e));
+        }
+    }
+
+    /**
+     * Power of two at or above the number of processors.
+     */
+    public static int defaultStripes() {
+        return Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1));
+    }
+
+    @Override
+    public long reserve(String rule, long cents) {
+        Budget budget = budgets.get(rule);
+        if (budget == null) {
+            return Math.max(cents, 0);
+        }
+        if (cents <= 0) {
+            return 0;
+        }
+        AtomicLongArray remaining = budget.remaining;
+        int home = stripe();
+        long granted = 0;
+        for (int i = 0; i <= mask && granted < cents; i++) {
+            int slot = ((home + i) & mask) * PAD;
+            long available = remaining.get(slot);
+            while (available > 0) {
+                long take = Math.min(available, cents - granted);
+                long witnessed = remaining.compareAndExchange(slot, available, available - take);
+                if (witnessed == available) {
+                    granted += take;
+                    break;
+                }
+                available = witnessed;
+            }
+        }
+        return granted;
+    }
+
+    @Override
+    public long available(String rule, long cents) {
+        Budget budget = budgets.get(rule);
+        if (budget == null) {
+            return Math.max(cents, 0);
+        }
+        return cents <= 0 ? 0 : Math.min(cents, Math.max(budget.remaining(), 0));
+    }
+
+    /**
+     * Gives {@code cents} back to the rule's budget. Releasing more than was reserved raises the remaining amount
+     * above the limit; callers release only what they reserved.
+     */
+    @Override
+    public void release(String rule, long cents) {
+        Budget budget = budgets.get(rule);
+        if (budget != null && cents > 0) {
+            budget.remaining.getAndAdd(stripe() * PAD, cents);
+        }
+    }
+
+    @Override
+    public long period(String rule) {
+        Budget budget = budgets.get(rule);
+        return budget == null ? 0 : budget.period;
+    }
+
+    /**
+     * Gives {@code cents} back only while the rule is still in {@code period}; serialized with {@link #reset} so a
+     * release never straddles one.
+     */
+    @Override
+    public void release(String rule, long cents, long period) {
+        Budget budget = budgets.get(rule);
+        if (budget == null || cents <= 0) {
+            return;
+        }
+        synchronized (budget) {
+            if (budget.period == period) {
+                budget.remaining.getAndAdd(stripe() * PAD, cents);
+            }
+        }
+    }
+
+    /**
+     * Starts a new period for {@code rule}: nothing spent, same limit. Reservations from the previous period no
+     * longer give anything back. False when it has no budget here.
+     */
+    public boolean reset(String rule) {
+        Budget budget = budgets.get(rule);
+        if (budget == null) {
+            return false;
+        }
+        synchronized (budget) {
+            budget.period++;
+            budget.refill(budget.limit);
+        }
+        return true;
+    }
+
+    public List<BudgetStatus> status() {
+        List<BudgetStatus> status = new ArrayList<>(budgets.size());
+        for (Budget budget : budgets.values()) {
+            status.add(BudgetStatus.ofCents(budget.rule, budget.limit, budget.limit - budget.remaining()));
+        }
+        status.sort((a, b) -> a.rule().compareTo(b.rule()));
+        return status;
+    }
+
+    public LogStats logStats() {
+        return new LogStats(logRecords.sum(), logSyncs.sum(), logFailures.sum());
+    }
+
+    /**
+     * Stops the log writer after a final sync.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void writeBehind() {
+        boolean last = false;
+        while (!last) {
+            last = !running;
+            try {
+                boolean appended = false;
+                for (Budget budget : budgets.values()) {
+                    long spent = budget.limit - budget.remaining();
+                    if (spent != budget.logged) {
+                        log.append(budget.rule, spent);
+                        budget.logged = spent;
+                        logRecords.increment();
+                        appended = true;
+                    }
+                }
+                if (appended) {
+                    log.sync();
+                    logSyncs.increment();
+                }
+                if (log.size() > COMPACT_BYTES) {
+                    Map<String, Long> spent = new LinkedHashMap<>();
+                    budgets.values().forEach(b -> spent.put(b.rule, b.logged));
+                    log.compact(spent);
+                }
+            } catch (IOException e) {
+                logFailures.increment();
+            }
+            if (!last) {
+                LockSupport.parkNanos(this, syncNanos);
+            }
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            logFailures.increment();
+        }
+    }
+
+    private static Map<String, Long> cents(Map<String, BigDecimal> limits) {
+        Objects.requireNonNull(limits, "limits");
+        Map<String, Long> cents = new LinkedHashMap<>();
+        limits.forEach((rule, limit) -> cents.put(Objects.requireNonNull(rule, "rule"),
+                limit.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact()));
+        return cents;
+    }
+
+    private static final class Budget {
+        private final String rule;
+        private final long limit;
+        private final AtomicLongArray remaining;
+        // changed under the Budget's lock
+        private volatile long period;
+        // owned by the log writer
+        private long logged;
+
+        private Budget(String rule, long limit, long remaining, int stripes) {
+            this.rule = rule;
+            this.limit = limit;
+            this.logged = limit - remaining;
+            this.remaining = new AtomicLongArray(stripes * PAD);
+            refill(remaining);
+        }
+
+        /**
+         * Spreads {@code amount} over the stripes; reservations racing with it may land on either side.
+         */
+        void refill(long amount) {
+            int stripes = remaining.length() / PAD;
+            long share = amount / stripes;
+            for (int i = 0; i < stripes; i++) {
+                remaining.set(i * PAD, share);
+            }
+            remaining.addAndGet(0, amount - share * stripes);
+        }
+
+        long remaining() {
+            long sum = 0;
+            for (int i = 0; i < remaining.length(); i += PAD) {
+                sum += remaining.get(i);
+            }
+            return sum;
+        }
+    }
+}
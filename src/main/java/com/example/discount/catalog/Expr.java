@@ -0,0 +1,79 @@
+package com.example.discount.catalog;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Typed syntax tree of catalog expressions, produced by {@link ExpressionParser}.
+ * Number nodes evaluate to {@link BigDecimal}, boolean nodes to a condition on the order.
+ */
+public sealed interface Expr {
+
+    enum Type { NUMBER, BOOLEAN }
+
+    Type type();
+
+    /** Order amounts readable from expressions. */
+    enum Amount { SUBTOTAL, TOTAL, DISCOUNT_TOTAL }
+
+    /** Order flags readable from expressions. */
+    enum Flag { VIP, HAS_COUPON }
+
+    enum ArithmeticOp { ADD, SUBTRACT, MULTIPLY, DIVIDE, MIN, MAX }
+
+    enum ComparisonOp { LT, LE, GT, GE, EQ, NE }
+
+    enum LogicalOp { AND, OR }
+
+    record Literal(BigDecimal value) implements Expr {
+        public Literal {
+            Objects.requireNonNull(value, "value");
+        }
+
+        public Type type() {
+            return Type.NUMBER;
+        }
+    }
+
+    record AmountRef(Amount amount) implements Expr {
+        public Type type() {
+            return Type.NUMBER;
+        }
+    }
+
+    record Arithmetic(ArithmeticOp op, Expr left, Expr right) implements Expr {
+        public Type type() {
+            return Type.NUMBER;
+        }
+    }
+
+    record BooleanLiteral(boolean value) implements Expr {
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+    }
+
+    record FlagRef(Flag flag) implements Expr {
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+    }
+
+    record Comparison(ComparisonOp op, Expr left, Expr right) implements Expr {
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+    }
+
+    record Logical(LogicalOp op, Expr left, Expr right) implements Expr {
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+    }
+
+    record Not(Expr operand) implements Expr {
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+    }
+}
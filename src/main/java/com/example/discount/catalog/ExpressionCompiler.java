@@ -0,0 +1,79 @@
+package com.example.discount.catalog;
+
+import com.example.discount.OrderContext;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Turns a type-checked {@link Expr} into a tree of closures once, so rule evaluation never walks the syntax tree.
+ * Division uses {@link MathContext#DECIMAL64}; dividing by zero fails the rule like any other calculation error.
+ */
+public final class ExpressionCompiler {
+
+    private ExpressionCompiler() {
+    }
+
+    public static Predicate<OrderContext> condition(Expr expr) {
+        if (expr instanceof Expr.BooleanLiteral literal) {
+            boolean value = literal.value();
+            return ctx -> value;
+        }
+        if (expr instanceof Expr.FlagRef ref) {
+            return switch (ref.flag()) {
+                case VIP -> OrderContext::vip;
+                case HAS_COUPON -> OrderContext::hasCoupon;
+            };
+        }
+        if (expr instanceof Expr.Not not) {
+            return condition(not.operand()).negate();
+        }
+        if (expr instanceof Expr.Logical logical) {
+            Predicate<OrderContext> left = condition(logical.left());
+            Predicate<OrderContext> right = condition(logical.right());
+            return logical.op() == Expr.LogicalOp.AND ? left.and(right) : left.or(right);
+        }
+        if (expr instanceof Expr.Comparison comparison) {
+            Function<OrderContext, BigDecimal> left = amount(comparison.left());
+            Function<OrderContext, BigDecimal> right = amount(comparison.right());
+            return switch (comparison.op()) {
+                case LT -> ctx -> left.apply(ctx).compareTo(right.apply(ctx)) < 0;
+                case LE -> ctx -> left.apply(ctx).compareTo(right.apply(ctx)) <= 0;
+                case GT -> ctx -> left.apply(ctx).compareTo(right.apply(ctx)) > 0;
+                case GE -> ctx -> left.apply(ctx).compareTo(right.apply(ctx)) >= 0;
+                case EQ -> ctx -> left.apply(ctx).compareTo(right.apply(ctx)) == 0;
+                case NE -> ctx -> left.apply(ctx).compareTo(right.apply(ctx)) != 0;
+            };
+        }
+        throw new IllegalArgumentException("Not a condition: " + expr);
+    }
+
+    public static Function<OrderContext, BigDecimal> amount(Expr expr) {
+        if (expr instanceof Expr.Literal literal) {
+            BigDecimal value = literal.value();
+            return ctx -> value;
+        }
+        if (expr instanceof Expr.AmountRef ref) {
+            return switch (ref.amount()) {
+                case SUBTOTAL -> ctx -> ctx.pricing().subtotal();
+                case TOTAL -> ctx -> ctx.pricing().total();
+                case DISCOUNT_TOTAL -> ctx -> ctx.pricing().discountTotal();
+            };
+        }
+        if (expr instanceof Expr.Arithmetic arithmetic) {
+            Function<OrderContext, BigDecimal> left = amount(arithmetic.left());
+            Function<OrderContext, BigDecimal> right = amount(arithmetic.right());
+            return switch (arithmetic.op()) {
+                case ADD -> ctx -> left.apply(ctx).add(right.apply(ctx));
+                case SUBTRACT -> ctx -> left.apply(ctx).subtract(right.apply(ctx));
+                case MULTIPLY -> ctx -> left.apply(ctx).multiply(right.apply(ctx));
+                case DIVIDE -> ctx -> left.apply(ctx).divide(right.apply(ctx), MathContext.DECIMAL64);
+                case MIN -> ctx -> left.apply(ctx).min(right.apply(ctx));
+                case MAX -> ctx -> left.apply(ctx).max(right.apply(ctx));
+            };
+        }
+        throw new IllegalArgumentException("Not an amount: " + expr);
+    }
+}
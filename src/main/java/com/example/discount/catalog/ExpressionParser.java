@@ -0,0 +1,280 @@
+package com.example.discount.catalog;
+
+import com.example.fpcore.Validation;
+
+import java.math.BigDecimal;
+
+/**
+ * Recursive-descent parser for catalog expressions.
+ * <pre>
+ * or      := and ('||' and)*
+ * and     := not ('&amp;&amp;' not)*
+ * not     := '!' not | compare
+ * compare := sum (('&lt;' | '&lt;=' | '&gt;' | '&gt;=' | '==' | '!=') sum)?
+ * sum     := product (('+' | '-') product)*
+ * product := unary (('*' | '/') unary)*
+ * unary   := '-' unary | primary
+ * primary := number | 'true' | 'false' | 'vip' | 'hasCoupon' | 'subtotal' | 'total' | 'discountTotal'
+ *          | ('min' | 'max') '(' sum ',' sum ')' | '(' or ')'
+ * </pre>
+ * Operands are type-checked while parsing, e.g. {@code vip * 2} or {@code total && vip} are rejected.
+ * <p>
+ * Parsing, compiling and evaluating all recurse over the tree, so an expression may nest at most
+ * {@value #MAX_NESTING} levels (parentheses, {@code !}, unary {@code -}, {@code min}/{@code max}) and have at most
+ * {@value #MAX_OPERATORS} operators; deeper input from a catalog file is rejected rather than overflowing the stack.
+ */
+public final class ExpressionParser {
+
+    static final int MAX_NESTING = 64;
+    static final int MAX_OPERATORS = 1024;
+
+    private final String source;
+    private int pos;
+    private int nesting;
+    private int operators;
+
+    private ExpressionParser(String source) {
+        this.source = source;
+    }
+
+    public static Validation<Expr> parseCondition(String source) {
+        return parse(source, Expr.Type.BOOLEAN);
+    }
+
+    public static Validation<Expr> parseAmount(String source) {
+        return parse(source, Expr.Type.NUMBER);
+    }
+
+    private static Validation<Expr> parse(String source, Expr.Type expected) {
+        if (source == null || source.isBlank()) {
+            return Validation.invalid("expression is required");
+        }
+        try {
+            ExpressionParser parser = new ExpressionParser(source);
+            Expr expr = parser.or();
+            parser.skipWhitespace();
+            if (parser.pos < source.length()) {
+                throw parser.error("unexpected '" + source.charAt(parser.pos) + "'");
+            }
+            if (expr.type() != expected) {
+                return Validation.invalid("'" + source + "' must be a " + expected.name().toLowerCase() + " expression");
+            }
+            return Validation.valid(expr);
+        } catch (IllegalArgumentException e) {
+            return Validation.invalid(e.getMessage());
+        }
+    }
+
+    private Expr or() {
+        Expr left = and();
+        while (accept("||")) {
+            left = operator(new Expr.Logical(Expr.LogicalOp.OR, expect(left, Expr.Type.BOOLEAN), expect(and(), Expr.Type.BOOLEAN)));
+        }
+        return left;
+    }
+
+    private Expr and() {
+        Expr left = not();
+        while (accept("&&")) {
+            left = operator(new Expr.Logical(Expr.LogicalOp.AND, expect(left, Expr.Type.BOOLEAN), expect(not(), Expr.Type.BOOLEAN)));
+        }
+        return left;
+    }
+
+    private Expr not() {
+        if (peek('!') && !peek("!=")) {
+            pos++;
+            enter();
+            Expr operand = expect(not(), Expr.Type.BOOLEAN);
+            nesting--;
+            return operator(new Expr.Not(operand));
+        }
+        return compare();
+    }
+
+    private Expr compare() {
+        Expr left = sum();
+        Expr.ComparisonOp op = comparisonOp();
+        if (op == null) {
+            return left;
+        }
+        return operator(new Expr.Comparison(op, expect(left, Expr.Type.NUMBER), expect(sum(), Expr.Type.NUMBER)));
+    }
+
+    private Expr.ComparisonOp comparisonOp() {
+        if (accept("<=")) return Expr.ComparisonOp.LE;
+        if (accept(">=")) return Expr.ComparisonOp.GE;
+        if (accept("==")) return Expr.ComparisonOp.EQ;
+        if (accept("!=")) return Expr.ComparisonOp.NE;
+        if (accept("<")) return Expr.ComparisonOp.LT;
+        if (accept(">")) return Expr.ComparisonOp.GT;
+        return null;
+    }
+
+    private Expr sum() {
+        Expr left = product();
+        while (true) {
+            if (accept("+")) {
+                left = arithmetic(Expr.ArithmeticOp.ADD, left, product());
+            } else if (accept("-")) {
+                left = arithmetic(Expr.ArithmeticOp.SUBTRACT, left, product());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expr product() {
+        Expr left = unary();
+        while (true) {
+            if (accept("*")) {
+                left = arithmetic(Expr.ArithmeticOp.MULTIPLY, left, unary());
+            } else if (accept("/")) {
+                left = arithmetic(Expr.ArithmeticOp.DIVIDE, left, unary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expr unary() {
+        if (accept("-")) {
+            enter();
+            Expr operand = expect(unary(), Expr.Type.NUMBER);
+            nesting--;
+            if (operand instanceof Expr.Literal literal) {
+                return new Expr.Literal(literal.value().negate());
+            }
+            return operator(new Expr.Arithmetic(Expr.ArithmeticOp.SUBTRACT, new Expr.Literal(BigDecimal.ZERO), operand));
+        }
+        return primary();
+    }
+
+    private Expr primary() {
+        skipWhitespace();
+        if (pos >= source.length()) {
+            throw error("unexpected end of expression");
+        }
+        char c = source.charAt(pos);
+        if (accept("(")) {
+            enter();
+            Expr inner = or();
+            require(")");
+            nesting--;
+            return inner;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return number();
+        }
+        if (Character.isLetter(c)) {
+            return identifier();
+        }
+        throw error("unexpected '" + c + "'");
+    }
+
+    private Expr number() {
+        int start = pos;
+        while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        String text = source.substring(start, pos);
+        try {
+            return new Expr.Literal(new BigDecimal(text));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("invalid number '" + text + "'");
+        }
+    }
+
+    private Expr identifier() {
+        int start = pos;
+        while (pos < source.length() && Character.isLetterOrDigit(source.charAt(pos))) {
+            pos++;
+        }
+        String name = source.substring(start, pos);
+        switch (name) {
+            case "true": return new Expr.BooleanLiteral(true);
+            case "false": return new Expr.BooleanLiteral(false);
+            case "vip": return new Expr.FlagRef(Expr.Flag.VIP);
+            case "hasCoupon": return new Expr.FlagRef(Expr.Flag.HAS_COUPON);
+            case "subtotal": return new Expr.AmountRef(Expr.Amount.SUBTOTAL);
+            case "total": return new Expr.AmountRef(Expr.Amount.TOTAL);
+            case "discountTotal": return new Expr.AmountRef(Expr.Amount.DISCOUNT_TOTAL);
+            case "min": return call(Expr.ArithmeticOp.MIN);
+            case "max": return call(Expr.ArithmeticOp.MAX);
+            default:
+                pos = start;
+                throw error("unknown identifier '" + name + "'");
+        }
+    }
+
+    private Expr call(Expr.ArithmeticOp op) {
+        require("(");
+        enter();
+        Expr left = sum();
+        require(",");
+        Expr right = sum();
+        require(")");
+        nesting--;
+        return arithmetic(op, left, right);
+    }
+
+    private Expr arithmetic(Expr.ArithmeticOp op, Expr left, Expr right) {
+        return operator(new Expr.Arithmetic(op, expect(left, Expr.Type.NUMBER), expect(right, Expr.Type.NUMBER)));
+    }
+
+    private void enter() {
+        if (++nesting > MAX_NESTING) {
+            throw error("nested deeper than " + MAX_NESTING + " levels");
+        }
+    }
+
+    private Expr operator(Expr expr) {
+        if (++operators > MAX_OPERATORS) {
+            throw error("more than " + MAX_OPERATORS + " operators");
+        }
+        return expr;
+    }
+
+    private Expr expect(Expr expr, Expr.Type type) {
+        if (expr.type() != type) {
+            throw error("expected a " + type.name().toLowerCase() + " operand");
+        }
+        return expr;
+    }
+
+    private boolean accept(String token) {
+        skipWhitespace();
+        if (source.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void require(String token) {
+        if (!accept(token)) {
+            throw error("expected '" + token + "'");
+        }
+    }
+
+    private boolean peek(char c) {
+        skipWhitespace();
+        return pos < source.length() && source.charAt(pos) == c;
+    }
+
+    private boolean peek(String token) {
+        skipWhitespace();
+        return source.startsWith(token, pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("'" + source + "' at " + pos + ": " + message);
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.discount.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Template for the hidden classes behind {@link MethodHandleCompiler#compileRule}. The class file is equivalent to
+ * <pre>
+ * final class CompiledRule implements Predicate, Function {
+ *     private static final MethodHandle CONDITION = classDataAt(lookup(), "_", MethodHandle.class, 0);
+ *     private static final MethodHandle AMOUNT = classDataAt(lookup(), "_", MethodHandle.class, 1);
+ *     public boolean test(Object ctx) { return (boolean) CONDITION.invokeExact((OrderContext) ctx); }
+ *     public Object apply(Object ctx) { return (BigDecimal) AMOUNT.invokeExact((OrderContext) ctx); }
+ * }
+ * </pre>
+ * and is written by hand (no branches, so no stack map frames are needed). Every rule defines its own hidden class
+ * from these bytes with its handles as class data, so the handles are trusted constants the JIT can inline.
+ * The classes are not strongly linked to their loader and are unloaded together with the rule.
+ */
+final class HiddenRuleClass {
+
+    private static final String CLASS_NAME = "com/example/discount/catalog/CompiledRule";
+    private static final byte[] BYTES = classFile();
+
+    private HiddenRuleClass() {
+    }
+
+    static Object instantiate(MethodHandles.Lookup lookup, List<MethodHandle> handles) {
+        try {
+            MethodHandles.Lookup hidden = lookup.defineHiddenClassWithClassData(BYTES, handles, true);
+            return hidden.findConstructor(hidden.lookupClass(), methodType(void.class)).invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Could not define compiled rule class", t);
+        }
+    }
+
+    private static byte[] classFile() {
+        ConstantPool cp = new ConstantPool();
+        int thisClass = cp.classRef(CLASS_NAME);
+        int object = cp.classRef("java/lang/Object");
+        int predicate = cp.classRef("java/util/function/Predicate");
+        int function = cp.classRef("java/util/function/Function");
+        int methodHandle = cp.classRef("java/lang/invoke/MethodHandle");
+        int orderContext = cp.classRef("com/example/discount/OrderContext");
+        int mhDescriptor = cp.utf8("Ljava/lang/invoke/MethodHandle;");
+        int condition = cp.fieldRef(thisClass, "CONDITION", "Ljava/lang/invoke/MethodHandle;");
+        int amount = cp.fieldRef(thisClass, "AMOUNT", "Ljava/lang/invoke/MethodHandle;");
+        int objectInit = cp.methodRef(object, "<init>", "()V");
+        int lookup = cp.methodRef(cp.classRef("java/lang/invoke/MethodHandles"), "lookup",
+                "()Ljava/lang/invoke/MethodHandles$Lookup;");
+        int classDataAt = cp.methodRef(cp.classRef("java/lang/invoke/MethodHandles"), "classDataAt",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;I)Ljava/lang/Object;");
+        int underscore = cp.string("_");
+        int invokeCondition = cp.methodRef(methodHandle, "invokeExact", "(Lcom/example/discount/OrderContext;)Z");
+        int invokeAmount = cp.methodRef(methodHandle, "invokeExact", "(Lcom/example/discount/OrderContext;)Ljava/math/BigDecimal;");
+        int code = cp.utf8("Code");
+        int conditionName = cp.utf8("CONDITION");
+        int amountName = cp.utf8("AMOUNT");
+        int clinitName = cp.utf8("<clinit>");
+        int initName = cp.utf8("<init>");
+        int voidDescriptor = cp.utf8("()V");
+        int testName = cp.utf8("test");
+        int testDescriptor = cp.utf8("(Ljava/lang/Object;)Z");
+        int applyName = cp.utf8("apply");
+        int applyDescriptor = cp.utf8("(Ljava/lang/Object;)Ljava/lang/Object;");
+
+        Code clinit = new Code()
+                .op(0xB8).u2(lookup).op(0x13).u2(underscore).op(0x13).u2(methodHandle).op(0x03)  // lookup, "_", MH.class, 0
+                .op(0xB8).u2(classDataAt).op(0xC0).u2(methodHandle).op(0xB3).u2(condition)     // classDataAt, checkcast, putstatic
+                .op(0xB8).u2(lookup).op(0x13).u2(underscore).op(0x13).u2(methodHandle).op(0x04)  // lookup, "_", MH.class, 1
+                .op(0xB8).u2(classDataAt).op(0xC0).u2(methodHandle).op(0xB3).u2(amount)
+                .op(0xB1);                                                                        // return
+        Code init = new Code().op(0x2A).op(0xB7).u2(objectInit).op(0xB1);                       // aload_0, super(), return
+        Code test = new Code().op(0xB2).u2(condition).op(0x2B).op(0xC0).u2(orderContext)          // getstatic, aload_1, checkcast
+                .op(0xB6).u2(invokeCondition).op(0xAC);                                           // invokeExact, ireturn
+        Code apply = new Code().op(0xB2).u2(amount).op(0x2B).op(0xC0).u2(orderContext)
+                .op(0xB6).u2(invokeAmount).op(0xB0);                                              // invokeExact, areturn
+
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream(); DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(61); // Java 17
+            cp.writeTo(out);
+            out.writeShort(0x0010 | 0x0020); // final, super
+            out.writeShort(thisClass);
+            out.writeShort(object);
+            out.writeShort(2);
+            out.writeShort(predicate);
+            out.writeShort(function);
+
+            out.writeShort(2);
+            for (int name : new int[]{conditionName, amountName}) {
+                out.writeShort(0x0002 | 0x0008 | 0x0010); // private static final
+                out.writeShort(name);
+                out.writeShort(mhDescriptor);
+                out.writeShort(0);
+            }
+
+            out.writeShort(4);
+            method(out, 0x0008, clinitName, voidDescriptor, code, clinit, 4, 0);
+            method(out, 0x0001, initName, voidDescriptor, code, init, 1, 1);
+            method(out, 0x0001, testName, testDescriptor, code, test, 2, 2);
+            method(out, 0x0001, applyName, applyDescriptor, code, apply, 2, 2);
+
+            out.writeShort(0); // class attributes
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void method(DataOutputStream out, int access, int name, int descriptor, int codeAttribute,
+                               Code code, int maxStack, int maxLocals) throws IOException {
+        byte[] bytecode = code.bytes.toByteArray();
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + bytecode.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private static final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Code op(int opcode) {
+            bytes.write(opcode);
+            return this;
+        }
+
+        Code u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+            return this;
+        }
+    }
+
+    /**
+     * Deduplicating constant pool; entries are written in insertion order, indices start at 1.
+     * Every entry must be created before {@link #writeTo}.
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return entry("C" + internalName, () -> {
+                out.writeByte(7);
+                out.writeShort(name);
+            });
+        }
+
+        int string(String value) {
+            int utf8 = utf8(value);
+            return entry("S" + value, () -> {
+                out.writeByte(8);
+                out.writeShort(utf8);
+            });
+        }
+
+        int fieldRef(int owner, String name, String descriptor) {
+            return memberRef(9, owner, name, descriptor);
+        }
+
+        int methodRef(int owner, String name, String descriptor) {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, int owner, String name, String descriptor) {
+            int nameAndType = nameAndType(name, descriptor);
+            return entry("M" + tag + ":" + owner + ":" + name + descriptor, () -> {
+                out.writeByte(tag);
+                out.writeShort(owner);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            int n = utf8(name);
+            int d = utf8(descriptor);
+            return entry("N" + name + ":" + descriptor, () -> {
+                out.writeByte(12);
+                out.writeShort(n);
+                out.writeShort(d);
+            });
+        }
+
+        private int entry(String key, Writer writer) {
+            Integer existing = indices.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            indices.put(key, count);
+            return count++;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.discount.catalog;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Compiles an {@link Expr} into a single {@link MethodHandle} tree: {@code (OrderContext)BigDecimal} for amounts,
+ * {@code (OrderContext)boolean} for conditions. {@code &&} / {@code ||} short-circuit through
+ * {@link MethodHandles#guardWithTest}; constant sub-expressions are folded at compile time.
+ * <p>
+ * {@link #compileRule} binds the two trees as {@code static final} constants of a hidden class
+ * ({@link HiddenRuleClass}) that implements both {@link Predicate} and {@link Function}. The JIT can then inline the
+ * whole expression into the class's {@code test}/{@code apply}, instead of calling through a chain of closures whose
+ * shared call sites see every rule shape.
+ */
+public final class MethodHandleCompiler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType AMOUNT_TYPE = methodType(BigDecimal.class, OrderContext.class);
+    private static final MethodType CONDITION_TYPE = methodType(boolean.class, OrderContext.class);
+
+    private static final MethodHandle PRICING;
+    private static final MethodHandle VIP;
+    private static final MethodHandle HAS_COUPON;
+    private static final MethodHandle SUBTOTAL;
+    private static final MethodHandle TOTAL;
+    private static final MethodHandle DISCOUNT_TOTAL;
+    private static final MethodHandle NOT;
+
+    static {
+        try {
+            PRICING = LOOKUP.findVirtual(OrderContext.class, "pricing", methodType(OrderPricing.class));
+            VIP = LOOKUP.findVirtual(OrderContext.class, "vip", methodType(boolean.class));
+            HAS_COUPON = LOOKUP.findVirtual(OrderContext.class, "hasCoupon", methodType(boolean.class));
+            SUBTOTAL = MethodHandles.filterReturnValue(PRICING, LOOKUP.findVirtual(OrderPricing.class, "subtotal", methodType(BigDecimal.class)));
+            TOTAL = MethodHandles.filterReturnValue(PRICING, LOOKUP.findVirtual(OrderPricing.class, "total", methodType(BigDecimal.class)));
+            DISCOUNT_TOTAL = MethodHandles.filterReturnValue(PRICING, LOOKUP.findVirtual(OrderPricing.class, "discountTotal", methodType(BigDecimal.class)));
+            NOT = helper("not", methodType(boolean.class, boolean.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private MethodHandleCompiler() {
+    }
+
+    /**
+     * A rule whose condition and amount run as one hidden class each compiled to a constant method-handle tree.
+     */
+    public static DiscountRule compileRule(String name, DiscountGroup group, int priority, Expr when, Expr amount) {
+        Object compiled = HiddenRuleClass.instantiate(LOOKUP, List.of(condition(when), amount(amount)));
+        @SuppressWarnings("unchecked")
+        Predicate<OrderContext> eligible = (Predicate<OrderContext>) compiled;
+        @SuppressWarnings("unchecked")
+        Function<OrderContext, BigDecimal> calculate = (Function<OrderContext, BigDecimal>) compiled;
+        return new DiscountRule(name, group, priority, eligible, calculate);
+    }
+
+    public static MethodHandle condition(Expr expr) {
+        if (expr instanceof Expr.BooleanLiteral literal) {
+            return constant(boolean.class, literal.value());
+        }
+        if (expr instanceof Expr.FlagRef ref) {
+            return ref.flag() == Expr.Flag.VIP ? VIP : HAS_COUPON;
+        }
+        if (expr instanceof Expr.Not not) {
+            return MethodHandles.filterReturnValue(condition(not.operand()), NOT);
+        }
+        if (expr instanceof Expr.Logical logical) {
+            MethodHandle left = condition(logical.left());
+            MethodHandle right = condition(logical.right());
+            return logical.op() == Expr.LogicalOp.AND
+                    ? MethodHandles.guardWithTest(left, right, constant(boolean.class, false))
+                    : MethodHandles.guardWithTest(left, constant(boolean.class, true), right);
+        }
+        if (expr instanceof Expr.Comparison comparison) {
+            MethodHandle op = helper(comparison.op().name().toLowerCase(), methodType(boolean.class, BigDecimal.class, BigDecimal.class));
+            return binary(op, amount(comparison.left()), amount(comparison.right()), CONDITION_TYPE);
+        }
+        throw new IllegalArgumentException("Not a condition: " + expr);
+    }
+
+    public static MethodHandle amount(Expr expr) {
+        if (expr instanceof Expr.Literal literal) {
+            return constant(BigDecimal.class, literal.value());
+        }
+        if (expr instanceof Expr.AmountRef ref) {
+            return switch (ref.amount()) {
+                case SUBTOTAL -> SUBTOTAL;
+                case TOTAL -> TOTAL;
+                case DISCOUNT_TOTAL -> DISCOUNT_TOTAL;
+            };
+        }
+        if (expr instanceof Expr.Arithmetic arithmetic) {
+            MethodHandle op = helper(arithmetic.op().name().toLowerCase(), methodType(BigDecimal.class, BigDecimal.class, BigDecimal.class));
+            if (arithmetic.left() instanceof Expr.Literal left && arithmetic.right() instanceof Expr.Literal right) {
+                try {
+                    return constant(BigDecimal.class, fold(op, left.value(), right.value()));
+                } catch (ArithmeticException e) {
+                    // e.g. division by zero: keep it, so it fails when the rule is evaluated like any other rule
+                }
+            }
+            return binary(op, amount(arithmetic.left()), amount(arithmetic.right()), AMOUNT_TYPE);
+        }
+        throw new IllegalArgumentException("Not an amount: " + expr);
+    }
+
+    private static MethodHandle binary(MethodHandle op, MethodHandle left, MethodHandle right, MethodType type) {
+        return MethodHandles.permuteArguments(MethodHandles.filterArguments(op, 0, left, right), type, 0, 0);
+    }
+
+    private static MethodHandle constant(Class<?> type, Object value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(type, value), 0, OrderContext.class);
+    }
+
+    private static BigDecimal fold(MethodHandle op, BigDecimal left, BigDecimal right) {
+        try {
+            return (BigDecimal) op.invoke(left, right);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static MethodHandle helper(String name, MethodType type) {
+        try {
+            return LOOKUP.findStatic(MethodHandleCompiler.class, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing helper " + name + type, e);
+        }
+    }
+
+    // operator helpers, looked up by the lower-cased Expr operator name
+
+    private static BigDecimal add(BigDecimal a, BigDecimal b) { return a.add(b); }
+    private static BigDecimal subtract(BigDecimal a, BigDecimal b) { return a.subtract(b); }
+    private static BigDecimal multiply(BigDecimal a, BigDecimal b) { return a.multiply(b); }
+    private static BigDecimal divide(BigDecimal a, BigDecimal b) { return a.divide(b, MathContext.DECIMAL64); }
+    private static BigDecimal min(BigDecimal a, BigDecimal b) { return a.min(b); }
+    private static BigDecimal max(BigDecimal a, BigDecimal b) { return a.max(b); }
+
+    private static boolean lt(BigDecimal a, BigDecimal b) { return a.compareTo(b) < 0; }
+    private static boolean le(BigDecimal a, BigDecimal b) { return a.compareTo(b) <= 0; }
+    private static boolean gt(BigDecimal a, BigDecimal b) { return a.compareTo(b) > 0; }
+    private static boolean ge(BigDecimal a, BigDecimal b) { return a.compareTo(b) >= 0; }
+    private static boolean eq(BigDecimal a, BigDecimal b) { return a.compareTo(b) == 0; }
+    private static boolean ne(BigDecimal a, BigDecimal b) { return a.compareTo(b) != 0; }
+
+    private static boolean not(boolean value) { return !value; }
+}
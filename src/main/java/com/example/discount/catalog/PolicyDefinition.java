@@ -0,0 +1,82 @@
+package com.example.discount.catalog;
+
+import com.example.discount.DiscountCapPolicy;
+import com.example.discount.DiscountGroup;
+import com.example.discount.ExclusivityPolicy;
+import com.example.discount.StackingPolicy;
+import com.example.fpcore.Validation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional stacking policy of a catalog file; fields left out keep {@link StackingPolicy#defaults()}.
+ * <pre>
+ * "policy": {"capRate": 0.25, "groupOrder": ["VIP", "CAMPAIGN", "COUPON"], "blocks": {"COUPON": ["CAMPAIGN"]}}
+ * </pre>
+ * {@code blocks} replaces the default exclusivity matrix as a whole.
+ */
+public record PolicyDefinition(
+        BigDecimal capRate,
+        List<String> groupOrder,
+        Map<String, List<String>> blocks
+) {
+
+    Validation<StackingPolicy> compile() {
+        StackingPolicy defaults = StackingPolicy.defaults();
+        List<String> errors = new ArrayList<>();
+
+        DiscountCapPolicy cap = defaults.cap();
+        if (capRate != null) {
+            if (capRate.signum() < 0 || capRate.compareTo(BigDecimal.ONE) > 0) {
+                errors.add("Policy capRate must be between 0 and 1");
+            } else {
+                cap = new DiscountCapPolicy(capRate);
+            }
+        }
+
+        List<DiscountGroup> order = defaults.groupOrder();
+        if (groupOrder != null) {
+            order = new ArrayList<>(groupOrder.size());
+            for (String name : groupOrder) {
+                DiscountGroup group = group(name, "groupOrder", errors);
+                if (group == null) continue;
+                if (order.contains(group)) {
+                    errors.add("Policy groupOrder lists " + group + " more than once");
+                }
+                order.add(group);
+            }
+        }
+
+        ExclusivityPolicy exclusivity = defaults.exclusivity();
+        if (blocks != null) {
+            exclusivity = new ExclusivityPolicy();
+            for (Map.Entry<String, List<String>> entry : blocks.entrySet()) {
+                DiscountGroup applied = group(entry.getKey(), "blocks", errors);
+                List<DiscountGroup> blocked = new ArrayList<>();
+                for (String name : entry.getValue() == null ? List.<String>of() : entry.getValue()) {
+                    DiscountGroup group = group(name, "blocks", errors);
+                    if (group != null) blocked.add(group);
+                }
+                if (applied != null) {
+                    exclusivity.block(applied, blocked.toArray(DiscountGroup[]::new));
+                }
+            }
+        }
+
+        return errors.isEmpty()
+                ? Validation.valid(new StackingPolicy(order, exclusivity, cap))
+                : Validation.invalid(errors);
+    }
+
+    private static DiscountGroup group(String name, String field, List<String> errors) {
+        try {
+            return DiscountGroup.valueOf(String.valueOf(name));
+        } catch (IllegalArgumentException e) {
+            errors.add("Policy " + field + " has unknown group '" + name + "'");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.discount.catalog;
+
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.RuleSource;
+import com.example.discount.StackingPolicy;
+import com.example.fpcore.Option;
+import com.example.fpcore.Result;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rule catalog backed by a file, republished whenever the file changes.
+ * <p>
+ * The current {@link RuleCatalog} is an immutable snapshot behind an {@link AtomicReference}: a quote reads it once
+ * and keeps that rule set, and a reload compiles the new file off the request path and swaps the reference.
+ * A file that does not compile or validate is reported and the previous snapshot stays active.
+ */
+public final class ReloadingRuleCatalog implements RuleSource, AutoCloseable {
+
+    private static final long DEBOUNCE_MILLIS = 50;
+
+    private final Path path;
+    private final AtomicReference<RuleCatalog> current;
+    private final AtomicReference<Option<RuntimeException>> lastError = new AtomicReference<>(Option.none());
+    private byte[] lastContent;
+    private WatchService watchService;
+    private Thread watcher;
+
+    private ReloadingRuleCatalog(Path path, RuleCatalog initial, byte[] content) {
+        this.path = path;
+        this.current = new AtomicReference<>(initial);
+        this.lastContent = content;
+    }
+
+    /**
+     * Loads the catalog once; fails if the initial file is missing or invalid.
+     */
+    public static Result<ReloadingRuleCatalog> open(Path path) {
+        Objects.requireNonNull(path, "path");
+        Path absolute = path.toAbsolutePath();
+        try {
+            byte[] content = Files.readAllBytes(absolute);
+            return RuleCatalogLoader.parse(content, 1)
+                    .map(catalog -> new ReloadingRuleCatalog(absolute, catalog, content));
+        } catch (IOException e) {
+            return Result.failure(e);
+        }
+    }
+
+    public RuleCatalog current() {
+        return current.get();
+    }
+
+    @Override
+    public List<DiscountRule> rules(OrderContext ctx) {
+        return current.get().rules();
+    }
+
+    @Override
+    public Option<StackingPolicy> policy() {
+        return current.get().policy();
+    }
+
+    @Override
+    public RuleCatalog snapshot() {
+        return current.get();
+    }
+
+    public Option<RuntimeException> lastError() {
+        return lastError.get();
+    }
+
+    /**
+     * Re-reads the file and publishes it if it changed. Returns the active catalog, or why the file was rejected.
+     */
+    public synchronized Result<RuleCatalog> reload() {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (IOException e) {
+            return rejected(Result.failure(e));
+        }
+        if (Arrays.equals(content, lastContent)) {
+            return Result.success(current.get());
+        }
+        Result<RuleCatalog> next = RuleCatalogLoader.parse(content, current.get().version() + 1);
+        if (!next.isSuccess()) {
+            return rejected(next);
+        }
+        lastContent = content;
+        current.set(next.getOrThrow());
+        lastError.set(Option.none());
+        return next;
+    }
+
+    /**
+     * Starts a daemon thread that reloads on every create/modify event for the catalog file. A reload that fails,
+     * even with an unexpected exception, is recorded in {@link #lastError} and the thread keeps watching.
+     */
+    public synchronized ReloadingRuleCatalog watch() throws IOException {
+        if (watcher != null) {
+            return this;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(this::watchLoop, "rule-catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        return this;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void watchLoop() {
+        Path fileName = path.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean relevant = key.pollEvents().stream().anyMatch(event -> fileName.equals(event.context()));
+                key.reset();
+                if (!relevant) continue;
+
+                // editors often write a file in several steps; let them settle before reading
+                WatchKey more;
+                while ((more = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                try {
+                    reload();
+                } catch (RuntimeException | StackOverflowError e) {
+                    // a bug in loading one file must not stop the watcher; the previous snapshot stays active
+                    lastError.set(Option.some(new IllegalStateException("Rule catalog reload failed: " + e, e)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private Result<RuleCatalog> rejected(Result<RuleCatalog> failure) {
+        lastError.set(Option.some(failure.isFailure()
+                ? failure.failureCause()
+                : new IllegalStateException("Rule catalog produced no rules")));
+        return failure;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.discount.catalog;
+
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.RuleSource;
+import com.example.discount.StackingPolicy;
+import com.example.fpcore.Option;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable, validated snapshot of a compiled catalog. Every order sees the same rules;
+ * eligibility is decided by the compiled conditions. {@code policy} is the catalog's own stacking policy, if it
+ * declares one; it is applied to tenant catalogs ({@link TenantRegistry}) and to shadow candidates.
+ */
+public record RuleCatalog(long version, List<RuleDefinition> definitions, List<DiscountRule> rules,
+                          Option<StackingPolicy> policy) implements RuleSource {
+
+    // rough per-rule cost of a compiled rule: its hidden class in metaspace (~3.4 KiB measured on JDK 17) plus handles
+    private static final long BYTES_PER_RULE = 4 * 1024;
+    private static final long BYTES_PER_CATALOG = 512;
+
+    public RuleCatalog {
+        definitions = List.copyOf(definitions);
+        rules = List.copyOf(rules);
+        Objects.requireNonNull(policy, "policy");
+    }
+
+    public RuleCatalog(long version, List<RuleDefinition> definitions, List<DiscountRule> rules) {
+        this(version, definitions, rules, Option.none());
+    }
+
+    @Override
+    public List<DiscountRule> rules(OrderContext ctx) {
+        return rules;
+    }
+
+    /**
+     * Estimated memory held by this catalog (compiled rules plus definition text), used to bound caches of
+     * catalogs. It is an estimate, not a measurement.
+     */
+    public long estimatedBytes() {
+        long chars = 0;
+        for (RuleDefinition definition : definitions) {
+            chars += length(definition.name()) + length(definition.group()) + length(definition.when())
+                    + length(definition.amount());
+        }
+        return BYTES_PER_CATALOG + rules.size() * BYTES_PER_RULE + 2 * chars;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.discount.catalog;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountRule;
+import com.example.discount.StackingPolicy;
+import com.example.discount.validation.DiscountValidation;
+import com.example.fpcore.Option;
+import com.example.fpcore.Result;
+import com.example.fpcore.Validation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads a JSON catalog and compiles it into {@link DiscountRule}s.
+ * <pre>
+ * {"rules": [
+ *   {"name": "VIP_10_PERCENT", "group": "VIP", "priority": 10, "when": "vip", "amount": "total * 0.10"},
+ *   {"name": "OVER_500", "group": "CAMPAIGN", "priority": 98, "when": "total >= 500", "amount": "total * 0.02"}
+ * ],
+ *  "policy": {"capRate": 0.25}}
+ * </pre>
+ * The {@link PolicyDefinition policy} is optional. All definition errors are reported together; compiled rules are then checked by
+ * {@link DiscountValidation#validateRules}.
+ */
+public final class RuleCatalogLoader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final RuleCompiler DEFAULT_COMPILER = RuleCompiler.HIDDEN_CLASSES;
+
+    private record CatalogFile(List<RuleDefinition> rules, PolicyDefinition policy) {
+    }
+
+    private RuleCatalogLoader() {
+    }
+
+    public static Result<RuleCatalog> load(Path path, long version) {
+        try {
+            return parse(Files.readAllBytes(path), version, DEFAULT_COMPILER);
+        } catch (IOException e) {
+            return Result.failure(e);
+        }
+    }
+
+    public static Result<RuleCatalog> parse(byte[] json, long version) {
+        return parse(json, version, DEFAULT_COMPILER);
+    }
+
+    public static Result<RuleCatalog> parse(byte[] json, long version, RuleCompiler compiler) {
+        CatalogFile file;
+        try {
+            file = MAPPER.readValue(json, CatalogFile.class);
+        } catch (JsonProcessingException e) {
+            return Result.failure("Invalid rule catalog: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            return Result.failure(e);
+        }
+        if (file.rules() == null) {
+            return Result.failure("Invalid rule catalog: 'rules' is required");
+        }
+        Validation<Option<StackingPolicy>> policy = file.policy() == null
+                ? Validation.valid(Option.none())
+                : file.policy().compile().map(Option::some);
+        Validation<List<DiscountRule>> rules = compile(file.rules(), compiler)
+                .flatMap(DiscountValidation::validateRules);
+        return Validation.map2(rules, policy, (r, p) -> new RuleCatalog(version, file.rules(), r, p))
+                .toResult();
+    }
+
+    public static Validation<List<DiscountRule>> compile(List<RuleDefinition> definitions, RuleCompiler compiler) {
+        List<String> errors = new ArrayList<>();
+        List<DiscountRule> rules = new ArrayList<>(definitions.size());
+        Set<String> names = new HashSet<>();
+
+        for (int i = 0; i < definitions.size(); i++) {
+            RuleDefinition definition = definitions.get(i);
+            if (definition == null) {
+                errors.add("Rule at index " + i + " is null");
+                continue;
+            }
+            Validation<DiscountRule> compiled = compile(definition, i, compiler);
+            if (!compiled.isValid()) {
+                errors.addAll(compiled.errors());
+            } else if (!names.add(definition.name())) {
+                errors.add("Rule '" + definition.name() + "' is defined more than once");
+            } else {
+                rules.add(compiled.getOrThrow());
+            }
+        }
+        return errors.isEmpty() ? Validation.valid(List.copyOf(rules)) : Validation.invalid(errors);
+    }
+
+    private static Validation<DiscountRule> compile(RuleDefinition definition, int index, RuleCompiler compiler) {
+        String label = definition.name() == null || definition.name().isBlank()
+                ? "Rule at index " + index
+                : "Rule '" + definition.name() + "'";
+
+        List<String> errors = new ArrayList<>();
+        if (definition.name() == null || definition.name().isBlank()) {
+            errors.add(label + " must have a name");
+        }
+        DiscountGroup group = null;
+        try {
+            group = DiscountGroup.valueOf(String.valueOf(definition.group()));
+        } catch (IllegalArgumentException e) {
+            errors.add(label + " has unknown group '" + definition.group() + "'");
+        }
+        if (definition.priority() == null) {
+            errors.add(label + " must have a priority");
+        }
+        Validation<Expr> when = ExpressionParser.parseCondition(definition.when());
+        Validation<Expr> amount = ExpressionParser.parseAmount(definition.amount());
+        when.errors().forEach(e -> errors.add(label + " when: " + e));
+        amount.errors().forEach(e -> errors.add(label + " amount: " + e));
+
+        if (!errors.isEmpty()) {
+            return Validation.invalid(errors);
+        }
+        return Validation.valid(compiler.compile(definition.name(), group, definition.priority(), when.getOrThrow(), amount.getOrThrow()));
+    }
+}
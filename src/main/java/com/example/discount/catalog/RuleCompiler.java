@@ -0,0 +1,20 @@
+package com.example.discount.catalog;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountRule;
+
+/**
+ * Turns a parsed rule definition into an executable {@link DiscountRule}.
+ */
+@FunctionalInterface
+public interface RuleCompiler {
+
+    /** Closure trees ({@link ExpressionCompiler}). */
+    RuleCompiler CLOSURES = (name, group, priority, when, amount) ->
+            new DiscountRule(name, group, priority, ExpressionCompiler.condition(when), ExpressionCompiler.amount(amount));
+
+    /** One hidden class per rule over constant method-handle trees ({@link MethodHandleCompiler}). */
+    RuleCompiler HIDDEN_CLASSES = MethodHandleCompiler::compileRule;
+
+    DiscountRule compile(String name, DiscountGroup group, int priority, Expr when, Expr amount);
+}
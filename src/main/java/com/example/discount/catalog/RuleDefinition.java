@@ -0,0 +1,13 @@
+package com.example.discount.catalog;
+
+/**
+ * One rule as written in a catalog file; {@code when} and {@code amount} use the {@link ExpressionParser} syntax.
+ */
+public record RuleDefinition(
+        String name,
+        String group,
+        Integer priority,
+        String when,
+        String amount
+) {
+}
@@ -0,0 +1,15 @@
+package com.example.discount.catalog;
+
+import com.example.fpcore.Result;
+
+/**
+ * Looks up the compiled catalog of one tenant (restaurant).
+ * {@link Result#empty()} means the tenant has no catalog of its own and is priced with the shared rules.
+ */
+@FunctionalInterface
+public interface TenantCatalogs {
+
+    TenantCatalogs NONE = tenantId -> Result.empty();
+
+    Result<RuleCatalog> catalog(String tenantId);
+}
@@ -0,0 +1,325 @@
+package com.example.discount.catalog;
+
+import com.example.fpcore.Lazy;
+import com.example.fpcore.Result;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled catalogs per tenant, loaded on first use and evicted least-recently-used under a memory budget.
+ * <p>
+ * A lookup is a {@link ConcurrentHashMap#get} plus a read of the entry's {@link Lazy}; it takes no lock and stamps
+ * the entry's last use with a plain volatile write. The first request for a tenant installs a {@link Lazy} with
+ * {@code computeIfAbsent} and compiles outside the map; concurrent first requests wait on that one {@link Lazy}, so
+ * a catalog is compiled once. A failed load, or a tenant without a catalog ({@link Result#empty()}), is handed to
+ * everyone waiting on it and kept for {@code negativeTtl}, after which the next request tries again; at most
+ * {@value #MAX_NEGATIVE_ENTRIES} such results are kept, beyond that they are retried on every request.
+ * <p>
+ * Loaded catalogs are weighed with {@link RuleCatalog#estimatedBytes()}. When a load takes the total over
+ * {@code budgetBytes}, the least recently used other tenants are evicted until it fits again; finding them scans
+ * the entries, which only happens on the (rare) loading path. A request still holding an evicted catalog finishes
+ * with it; the next request for that tenant loads it again.
+ * <p>
+ * A registry {@link #fromDirectory from a directory} can {@link #watch} it and invalidates a tenant whenever its file
+ * is created, changed or deleted.
+ */
+public final class TenantRegistry implements TenantCatalogs, AutoCloseable {
+
+    /**
+     * {@code tenants} counts loaded catalogs, {@code negative} the failed or missing ones kept until they are retried.
+     */
+    public record Stats(long hits, long loads, long failures, long missing, long evictions, int tenants, int negative,
+                        long bytes, long budgetBytes) {}
+
+    public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(30);
+    static final int MAX_NEGATIVE_ENTRIES = 4096;
+
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final String SUFFIX = ".json";
+    private static final long DEBOUNCE_MILLIS = 50;
+
+    private final Function<String, Result<RuleCatalog>> loader;
+    private final long budgetBytes;
+    private final long negativeTtlNanos;
+    private final Path directory;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder missing = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // guards weights, the byte total and the negative count; only taken when an entry is loaded, evicted or dropped
+    private final Object accountingLock = new Object();
+    private final AtomicInteger negatives = new AtomicInteger();
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * Keeps failed and missing catalogs for {@link #DEFAULT_NEGATIVE_TTL}.
+     */
+    public TenantRegistry(Function<String, Result<RuleCatalog>> loader, long budgetBytes) {
+        this(loader, budgetBytes, DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * @param loader      compiles the catalog of one tenant; a failure is reported to the request, empty means the
+     *                    tenant has no catalog of its own
+     * @param budgetBytes estimated bytes of compiled catalogs to keep loaded
+     * @param negativeTtl how long a failure or empty result is returned before the tenant is loaded again
+     */
+    public TenantRegistry(Function<String, Result<RuleCatalog>> loader, long budgetBytes, Duration negativeTtl) {
+        this(loader, budgetBytes, negativeTtl, null);
+    }
+
+    private TenantRegistry(Function<String, Result<RuleCatalog>> loader, long budgetBytes, Duration negativeTtl,
+                           Path directory) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("budgetBytes must be positive");
+        }
+        Objects.requireNonNull(negativeTtl, "negativeTtl");
+        if (negativeTtl.isNegative()) {
+            throw new IllegalArgumentException("negativeTtl must not be negative");
+        }
+        this.loader = Objects.requireNonNull(loader, "loader");
+        this.budgetBytes = budgetBytes;
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.directory = directory;
+    }
+
+    public static TenantRegistry fromDirectory(Path directory, long budgetBytes) {
+        return fromDirectory(directory, budgetBytes, DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * Tenant {@code id} is read from {@code directory/id.json}; ids are letters, digits, '_' and '-' only. A tenant
+     * without a file has no catalog of its own and is priced with the shared rules.
+     */
+    public static TenantRegistry fromDirectory(Path directory, long budgetBytes, Duration negativeTtl) {
+        Path root = directory.toAbsolutePath();
+        return new TenantRegistry(id -> {
+            if (!TENANT_ID.matcher(id).matches()) {
+                return Result.failure("Invalid restaurantId '" + id + "'");
+            }
+            Path file = root.resolve(id + SUFFIX);
+            if (!Files.isRegularFile(file)) {
+                return Result.empty();
+            }
+            return RuleCatalogLoader.load(file, 1)
+                    .mapFailure("Catalog of restaurant '" + id + "' is invalid");
+        }, budgetBytes, negativeTtl, root);
+    }
+
+    @Override
+    public Result<RuleCatalog> catalog(String tenantId) {
+        Objects.requireNonNull(tenantId, "tenantId");
+        long now = System.nanoTime();
+        Entry entry = entries.get(tenantId);
+        if (entry == null) {
+            entry = entries.computeIfAbsent(tenantId, Entry::new);
+        } else if (entry.retryDue(now)) {
+            entry = retry(entry);
+        } else {
+            hits.increment();
+        }
+        entry.lastUsed = now;
+        return entry.catalog.get();
+    }
+
+    /**
+     * Drops the tenant's catalog (or cached failure), e.g. after its file changed; the next request loads it again.
+     */
+    public void invalidate(String tenantId) {
+        synchronized (accountingLock) {
+            Entry entry = entries.remove(tenantId);
+            if (entry != null) {
+                dropped(entry);
+            }
+        }
+    }
+
+    /**
+     * Starts a daemon thread that {@link #invalidate invalidates} a tenant whenever its {@code id.json} is created,
+     * modified or deleted. Only for registries created with {@link #fromDirectory}.
+     */
+    public synchronized TenantRegistry watch() throws IOException {
+        if (directory == null) {
+            throw new IllegalStateException("only a registry created from a directory can watch it");
+        }
+        if (watcher != null) {
+            return this;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        watcher = new Thread(this::watchLoop, "tenant-catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        return this;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    public Stats stats() {
+        int negative = negatives.get();
+        return new Stats(hits.sum(), loads.sum(), failures.sum(), missing.sum(), evictions.sum(),
+                Math.max(entries.size() - negative, 0), negative, bytes.get(), budgetBytes);
+    }
+
+    private Result<RuleCatalog> load(Entry entry) {
+        loads.increment();
+        Result<RuleCatalog> loaded;
+        try {
+            loaded = Objects.requireNonNull(loader.apply(entry.tenantId), "loader returned null");
+        } catch (RuntimeException e) {
+            loaded = Result.failure(e);
+        }
+        if (!loaded.isSuccess()) {
+            (loaded.isFailure() ? failures : missing).increment();
+            synchronized (accountingLock) {
+                if (entries.get(entry.tenantId) == entry && negativeTtlNanos > 0
+                        && negatives.get() < MAX_NEGATIVE_ENTRIES) {
+                    entry.retryAt = System.nanoTime() + negativeTtlNanos;
+                    entry.negative = true;
+                    negatives.incrementAndGet();
+                } else {
+                    entries.remove(entry.tenantId, entry);
+                }
+            }
+            return loaded;
+        }
+        long weight = loaded.getOrThrow().estimatedBytes();
+        synchronized (accountingLock) {
+            // invalidated while compiling: the entry is no longer in the map, so it is not counted
+            if (entries.get(entry.tenantId) == entry) {
+                entry.weight = weight;
+                if (bytes.addAndGet(weight) > budgetBytes) {
+                    evictFor(entry);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Replaces a negative entry whose time to live is over, unless another request already did.
+     */
+    private Entry retry(Entry stale) {
+        synchronized (accountingLock) {
+            Entry fresh = new Entry(stale.tenantId);
+            if (entries.replace(stale.tenantId, stale, fresh)) {
+                dropped(stale);
+                return fresh;
+            }
+        }
+        return entries.computeIfAbsent(stale.tenantId, Entry::new);
+    }
+
+    /**
+     * Called with {@code accountingLock} held for an entry just removed from the map.
+     */
+    private void dropped(Entry entry) {
+        if (entry.negative) {
+            negatives.decrementAndGet();
+        } else {
+            bytes.addAndGet(-entry.weight);
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                Set<String> changed = new HashSet<>();
+                changed(watchService.take(), changed);
+                // editors often write a file in several steps; let them settle before dropping the tenant
+                WatchKey more;
+                while ((more = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed(more, changed);
+                }
+                changed.forEach(this::invalidate);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void changed(WatchKey key, Set<String> tenants) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                tenants.addAll(entries.keySet());
+                continue;
+            }
+            String name = event.context().toString();
+            if (name.endsWith(SUFFIX)) {
+                tenants.add(name.substring(0, name.length() - SUFFIX.length()));
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * Called with {@code accountingLock} held.
+     */
+    private void evictFor(Entry keep) {
+        while (bytes.get() > budgetBytes) {
+            Entry oldest = entries.values().stream()
+                    .filter(e -> e != keep && e.weight > 0)
+                    .min(Comparator.comparingLong(e -> e.lastUsed))
+                    .orElse(null);
+            if (oldest == null) {
+                return; // a single catalog larger than the budget stays until something else is loaded
+            }
+            if (entries.remove(oldest.tenantId, oldest)) {
+                bytes.addAndGet(-oldest.weight);
+                evictions.increment();
+            }
+        }
+    }
+
+    private final class Entry {
+        private final String tenantId;
+        private final Lazy<Result<RuleCatalog>> catalog;
+        private volatile long lastUsed;
+        // 0 until the loaded catalog is counted in bytes
+        private long weight;
+        // set (under accountingLock) when a failed or empty load is kept; retryAt is written first
+        private volatile boolean negative;
+        private volatile long retryAt;
+
+        private Entry(String tenantId) {
+            this.tenantId = tenantId;
+            this.catalog = Lazy.of(() -> load(this));
+        }
+
+        boolean retryDue(long now) {
+            return negative && now - retryAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.discount.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One {@code priceValidated} call: validation, rule evaluation, selection and stacking.
+ * Only quotes slower than the threshold are recorded.
+ */
+@Name("com.example.discount.Quote")
+@Label("Pricing Quote")
+@Category({"Discount Engine", "Pricing"})
+@Description("Validation, selection and stacking of one order")
+@Threshold("1 ms")
+@StackTrace(false)
+public final class QuoteEvent extends Event {
+
+    @Label("Outcome")
+    @Description("SUCCESS, EMPTY or FAILURE")
+    String outcome;
+
+    @Label("Subtotal")
+    double subtotal;
+
+    @Label("Discount")
+    double discount;
+
+    @Label("Rules")
+    int rules;
+
+    @Label("Steps")
+    int steps;
+
+    @Label("Failure")
+    String failure;
+
+    public void commit(String outcome, double subtotal, double discount, int rules, int steps, String failure) {
+        this.outcome = outcome;
+        this.subtotal = subtotal;
+        this.discount = discount;
+        this.rules = rules;
+        this.steps = steps;
+        this.failure = failure;
+        commit();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.discount.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One {@code DiscountRule.evaluate} call (eligibility + amount). Only evaluations slower than the threshold
+ * are recorded, so a recording shows the individual slow rules next to GC and lock events.
+ */
+@Name("com.example.discount.RuleEvaluation")
+@Label("Rule Evaluation")
+@Category({"Discount Engine", "Pricing"})
+@Description("Eligibility and amount of one discount rule")
+@Threshold("100 us")
+@StackTrace(false)
+public final class RuleEvaluationEvent extends Event {
+
+    @Label("Rule")
+    String rule;
+
+    @Label("Group")
+    String group;
+
+    @Label("Outcome")
+    @Description("SUCCESS, EMPTY (not eligible) or FAILURE")
+    String outcome;
+
+    public void commit(String rule, String group, String outcome) {
+        this.rule = rule;
+        this.group = group;
+        this.outcome = outcome;
+        commit();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.discount.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One stacking decision of {@code GroupedStackingApplier}. Steps are instant and numerous, so the event is
+ * disabled unless the recording settings turn it on (see {@code config/pricing.jfc}).
+ */
+@Name("com.example.discount.StackingStep")
+@Label("Stacking Step")
+@Category({"Discount Engine", "Pricing"})
+@Description("APPLIED, CAPPED or SKIPPED decision for the selected discount of one group")
+@Enabled(false)
+@StackTrace(false)
+public final class StackingStepEvent extends Event {
+
+    @Label("Rule")
+    String rule;
+
+    @Label("Group")
+    String group;
+
+    @Label("Decision")
+    @Description("APPLIED, CAPPED or SKIPPED")
+    String decision;
+
+    @Label("Requested")
+    double requested;
+
+    @Label("Applied")
+    double applied;
+
+    @Label("Note")
+    String note;
+
+    public void commit(String rule, String group, String decision, double requested, double applied, String note) {
+        this.rule = rule;
+        this.group = group;
+        this.decision = decision;
+        this.requested = requested;
+        this.applied = applied;
+        this.note = note;
+        commit();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.discount.shadow;
+
+import com.example.discount.DiscountGroup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One sampled quote whose candidate pricing differed from the live one.
+ * {@code candidateTotal} is {@code null} when the candidate failed or found no price ({@code candidateOutcome}).
+ */
+public record ShadowDiff(
+        Instant at,
+        BigDecimal subtotal,
+        boolean vip,
+        boolean hasCoupon,
+        BigDecimal liveTotal,
+        BigDecimal candidateTotal,
+        String candidateOutcome,
+        List<StepDiff> steps
+) {
+    public ShadowDiff {
+        steps = List.copyOf(steps);
+    }
+
+    /**
+     * Candidate total minus live total; positive when the candidate would charge more.
+     */
+    public BigDecimal delta() {
+        return candidateTotal == null ? null : candidateTotal.subtract(liveTotal);
+    }
+
+    /**
+     * The first audit step of one group on each side; a side without a step for the group has {@code null}s.
+     */
+    public record StepDiff(
+            DiscountGroup group,
+            String liveRule,
+            BigDecimal liveApplied,
+            String liveNote,
+            String candidateRule,
+            BigDecimal candidateApplied,
+            String candidateNote
+    ) {}
+}
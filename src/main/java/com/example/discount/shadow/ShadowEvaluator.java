@@ -0,0 +1,201 @@
+package com.example.discount.shadow;
+
+import com.example.discount.AppliedStep;
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.OrderContext;
+import com.example.discount.PricingResult;
+import com.example.discount.RuleSource;
+import com.example.fpcore.Result;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prices a sampled fraction of live quotes again with a candidate orchestrator (policy) and rule source, and
+ * records how the candidate differs from the live {@link PricingResult}. A rule source that declares its own
+ * {@link RuleSource#policy policy}, such as a catalog, is priced with that one instead of the orchestrator's, read
+ * from the same {@link RuleSource#snapshot snapshot} as the rules.
+ * <p>
+ * {@link #offer} only samples and hands the quote to a bounded executor; when its queue is full the work is dropped
+ * and counted, so the live path never waits for shadow pricing. Differences in total or in the audit steps of any
+ * group are kept in a ring of the last {@code retainedDiffs} entries.
+ * <p>
+ * The candidate prices without campaign spend budgets, so live quotes with a step capped or skipped by a budget are
+ * not compared (they would always differ) and are counted as {@code budgetLimited} instead.
+ */
+public final class ShadowEvaluator implements ShadowPricing {
+
+    public record Stats(long sampled, long compared, long matched, long differed, long candidateFailed,
+                        long dropped, long budgetLimited, BigDecimal totalDelta) {}
+
+    private final DiscountOrchestratorV2 candidate;
+    private final RuleSource candidateRules;
+    private final double sampleRate;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder compared = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder candidateFailed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder budgetLimited = new LongAdder();
+    private final AtomicLong totalDeltaCents = new AtomicLong();
+    private final AtomicLong differed = new AtomicLong();
+    private final AtomicReferenceArray<ShadowDiff> diffs;
+
+    /**
+     * @param sampleRate    fraction of offered quotes that are shadow priced (0..1)
+     * @param threads       background pricing threads
+     * @param queueCapacity quotes waiting for a thread before new ones are dropped
+     * @param retainedDiffs how many of the most recent differences are kept
+     */
+    public ShadowEvaluator(DiscountOrchestratorV2 candidate, RuleSource candidateRules, double sampleRate,
+                           int threads, int queueCapacity, int retainedDiffs) {
+        if (!(sampleRate >= 0 && sampleRate <= 1) || threads <= 0 || queueCapacity <= 0 || retainedDiffs <= 0) {
+            throw new IllegalArgumentException("expected 0 <= sampleRate <= 1 and positive threads, queueCapacity and retainedDiffs");
+        }
+        this.candidate = Objects.requireNonNull(candidate, "candidate");
+        this.candidateRules = Objects.requireNonNull(candidateRules, "candidateRules");
+        this.sampleRate = sampleRate;
+        this.diffs = new AtomicReferenceArray<>(retainedDiffs);
+        AtomicInteger ids = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "pricing-shadow-" + ids.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (r, pool) -> dropped.increment());
+    }
+
+    @Override
+    public void offer(OrderContext ctx, PricingResult live) {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        sampled.increment();
+        executor.execute(() -> compare(ctx, live));
+    }
+
+    public Stats stats() {
+        return new Stats(sampled.sum(), compared.sum(), matched.sum(), differed.get(), candidateFailed.sum(),
+                dropped.sum(), budgetLimited.sum(), BigDecimal.valueOf(totalDeltaCents.get(), 2));
+    }
+
+    /**
+     * Most recent differences first, at most {@code limit}.
+     */
+    public List<ShadowDiff> recentDiffs(int limit) {
+        long newest = differed.get();
+        int count = (int) Math.min(Math.min(limit, diffs.length()), newest);
+        List<ShadowDiff> recent = new ArrayList<>(count);
+        for (long i = newest - 1; i >= newest - count; i--) {
+            ShadowDiff diff = diffs.get((int) (i % diffs.length()));
+            if (diff != null) recent.add(diff);
+        }
+        return recent;
+    }
+
+    /**
+     * Stops accepting quotes, waits briefly for queued ones, then closes the candidate rule source when it is
+     * closeable (e.g. stops the file watcher of a {@code ReloadingRuleCatalog}).
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (candidateRules instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot close candidate rules", e);
+            }
+        }
+    }
+
+    private void compare(OrderContext ctx, PricingResult live) {
+        if (live.steps().stream().anyMatch(AppliedStep::limitedByBudget)) {
+            budgetLimited.increment();
+            return;
+        }
+        Result<PricingResult> shadow;
+        try {
+            RuleSource rules = candidateRules.snapshot();
+            shadow = rules.policy().map(candidate::withPolicy).getOrElse(candidate)
+                    .priceValidated(ctx, rules.rules(ctx));
+        } catch (RuntimeException e) {
+            shadow = Result.failure(e);
+        }
+        compared.increment();
+
+        BigDecimal liveTotal = live.pricing().total();
+        if (!shadow.isSuccess()) {
+            candidateFailed.increment();
+            record(ctx, liveTotal, null, shadow.outcome(true), stepDiffs(live.steps(), List.of()));
+            return;
+        }
+
+        PricingResult priced = shadow.getOrThrow();
+        BigDecimal candidateTotal = priced.pricing().total();
+        List<ShadowDiff.StepDiff> steps = stepDiffs(live.steps(), priced.steps());
+        if (candidateTotal.compareTo(liveTotal) == 0 && steps.isEmpty()) {
+            matched.increment();
+            return;
+        }
+        totalDeltaCents.addAndGet(candidateTotal.subtract(liveTotal).movePointRight(2).longValue());
+        record(ctx, liveTotal, candidateTotal, shadow.outcome(false), steps);
+    }
+
+    private void record(OrderContext ctx, BigDecimal liveTotal, BigDecimal candidateTotal, String outcome,
+                        List<ShadowDiff.StepDiff> steps) {
+        ShadowDiff diff = new ShadowDiff(Instant.now(), ctx.pricing().subtotal(), ctx.vip(), ctx.hasCoupon(),
+                liveTotal, candidateTotal, outcome, steps);
+        long slot = differed.getAndIncrement();
+        diffs.set((int) (slot % diffs.length()), diff);
+    }
+
+    static List<ShadowDiff.StepDiff> stepDiffs(List<AppliedStep> live, List<AppliedStep> candidate) {
+        Map<DiscountGroup, AppliedStep> liveByGroup = firstPerGroup(live);
+        Map<DiscountGroup, AppliedStep> candidateByGroup = firstPerGroup(candidate);
+        List<ShadowDiff.StepDiff> diffs = new ArrayList<>();
+        for (DiscountGroup group : DiscountGroup.values()) {
+            AppliedStep l = liveByGroup.get(group);
+            AppliedStep c = candidateByGroup.get(group);
+            if (l == null && c == null || l != null && c != null && sameOutcome(l, c)) continue;
+            diffs.add(new ShadowDiff.StepDiff(group,
+                    l == null ? null : l.ruleName(), l == null ? null : l.appliedDiscount(), l == null ? null : l.note(),
+                    c == null ? null : c.ruleName(), c == null ? null : c.appliedDiscount(), c == null ? null : c.note()));
+        }
+        return diffs;
+    }
+
+    private static Map<DiscountGroup, AppliedStep> firstPerGroup(List<AppliedStep> steps) {
+        Map<DiscountGroup, AppliedStep> byGroup = new EnumMap<>(DiscountGroup.class);
+        for (AppliedStep step : steps) byGroup.putIfAbsent(step.group(), step);
+        return byGroup;
+    }
+
+    private static boolean sameOutcome(AppliedStep live, AppliedStep candidate) {
+        return live.ruleName().equals(candidate.ruleName())
+                && live.appliedDiscount().compareTo(candidate.appliedDiscount()) == 0
+                && Objects.equals(live.note(), candidate.note());
+    }
+}
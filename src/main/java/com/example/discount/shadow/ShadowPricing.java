@@ -0,0 +1,19 @@
+package com.example.discount.shadow;
+
+import com.example.discount.OrderContext;
+import com.example.discount.PricingResult;
+
+/**
+ * Receives every live quote so it can be compared against a candidate rule set off the quote path.
+ * Implementations must not block the caller.
+ */
+public interface ShadowPricing extends AutoCloseable {
+
+    ShadowPricing NOOP = (ctx, live) -> { };
+
+    void offer(OrderContext ctx, PricingResult live);
+
+    @Override
+    default void close() {
+    }
+}
@@ -38,11 +38,14 @@ public final class DiscountValidation {
             if (context.pricing().discountTotal().signum() < 0) {
                 errors.add("Discount total cannot be negative");
             }
+            if (!context.items().isEmpty() && context.pricing().subtotal().compareTo(context.items().subtotal()) != 0) {
+                errors.add("Subtotal must equal the sum of the line items (" + context.items().subtotal() + ")");
+            }
         }
         return errors.isEmpty() ? Validation.valid(context) : Validation.invalid(errors);
     }
 
-    private static Validation<List<DiscountRule>> validateRules(List<DiscountRule> rules) {
+    public static Validation<List<DiscountRule>> validateRules(List<DiscountRule> rules) {
         List<String> errors = new ArrayList<>();
         if (rules == null || rules.isEmpty()) {
             errors.add("At least one discount rule is required");
@@ -55,6 +55,17 @@ public abstract class Result<T> {
         return null;
     }
 
+    /**
+     * {@code "SUCCESS"}, {@code "EMPTY"} or {@code "FAILURE"}, the last followed by {@code ": "} and the cause's
+     * message when {@code withMessage} is set.
+     */
+    public String outcome(boolean withMessage) {
+        if (this instanceof Failure<T> f) {
+            return withMessage ? "FAILURE: " + f.exception.getMessage() : "FAILURE";
+        }
+        return isSuccess() ? "SUCCESS" : "EMPTY";
+    }
+
     public Option<T> toOption() {
         if (isSuccess()) {
             return Option.some(getOrThrow());
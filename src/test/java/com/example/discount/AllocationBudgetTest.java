@@ -0,0 +1,140 @@
+package com.example.discount;
+
+import com.example.discount.application.api.PricingRequest;
+import com.example.discount.application.service.PricingService;
+import com.example.discount.batch.OrderBatch;
+import com.example.discount.batch.OrderBatchPricer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Bytes allocated per operation on the quote path, measured with {@code ThreadMXBean.getThreadAllocatedBytes}
+ * after a JIT warm-up. Each operation fails when it allocates more than its budget, so per-step list copying or
+ * boxing that creeps back into the applier, {@code Result} or {@code Folds} shows up here first.
+ * <p>
+ * Budgets are deliberately loose (about 1.5x the measured steady state on JDK 17) and can be overridden with
+ * {@code -Dalloc.budget.<operation>=<bytes>}; {@code -Dalloc.report=true} prints the measured values.
+ */
+class AllocationBudgetTest {
+
+    private static final int WARMUP = Integer.getInteger("alloc.warmup", 20_000);
+    private static final int MEASURED = Integer.getInteger("alloc.iterations", 20_000);
+
+    private static final OrderContext CTX = new OrderContext(true, true, OrderPricing.of(new BigDecimal("1200.00")));
+    private static final List<DiscountRule> RULES = List.of(
+            new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                    c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+            new DiscountRule("COUPON50", DiscountGroup.COUPON, 5, OrderContext::hasCoupon, c -> new BigDecimal("50.00")),
+            new DiscountRule("OVER500", DiscountGroup.CAMPAIGN, 20,
+                    c -> c.pricing().total().compareTo(new BigDecimal("500.00")) >= 0,
+                    c -> new BigDecimal("75.00")),
+            new DiscountRule("CAMPAIGN5", DiscountGroup.CAMPAIGN, 10, c -> true,
+                    c -> c.pricing().total().multiply(new BigDecimal("0.05")))
+    );
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    @BeforeAll
+    static void allocationCounting() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "thread allocation counters are not available on this JVM");
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "thread allocation counters are not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    void orchestrator_price_validated() {
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2();
+        assertWithinBudget("orchestrator", 10_000, () -> orchestrator.priceValidated(CTX, RULES));
+    }
+
+    @Test
+    void orchestrator_with_optimal_stacking() {
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2()
+                .withOptimalStacking(OptimalStackingSolver.Objective.MAX_DISCOUNT);
+        assertWithinBudget("optimal", 12_000, () -> orchestrator.priceValidated(CTX, RULES));
+    }
+
+    @Test
+    void sequential_engine() {
+        SequentialDiscountEngine engine = new SequentialDiscountEngine();
+        assertWithinBudget("sequential", 3_000, () -> engine.applySequentiallyResult(CTX, RULES));
+    }
+
+    @Test
+    void best_wins_engine() {
+        BestDiscountWinsEngine engine = new BestDiscountWinsEngine();
+        assertWithinBudget("bestWins", 2_000, () -> engine.applyBestResult(CTX, RULES));
+    }
+
+    @Test
+    void multi_strategy_evaluator() {
+        MultiStrategyEvaluator evaluator = new MultiStrategyEvaluator();
+        assertWithinBudget("multiStrategy", 14_000, () -> evaluator.evaluate(CTX, RULES));
+    }
+
+    @Test
+    void incremental_pricer() {
+        IncrementalPricer pricer = new IncrementalPricer();
+        assertWithinBudget("incremental", 11_000, () -> pricer.price(CTX, RULES));
+    }
+
+    @Test
+    void batch_pricer_per_order() {
+        OrderBatchPricer pricer = new OrderBatchPricer();
+        OrderBatch batch = OrderBatch.of(List.of(CTX, CTX, CTX, CTX, CTX, CTX, CTX, CTX)).getOrThrow();
+        // budget is for the whole batch of eight orders
+        assertWithinBudget("batch", 14_000, () -> pricer.price(batch, RULES));
+    }
+
+    @Test
+    void pricing_service_quote() {
+        PricingService service = new PricingService();
+        PricingRequest request = new PricingRequest(new BigDecimal("1200.00"), true, true);
+        assertWithinBudget("service", 15_000, () -> service.quote(request));
+    }
+
+    @Test
+    void prorator_per_cart() {
+        LineItems.Builder cart = LineItems.builder(200);
+        for (int i = 0; i < 200; i++) {
+            cart.addCents("SKU" + i, "C" + i % 4, 1 + i % 3, 199 + i);
+        }
+        OrderContext ctx = OrderContext.ofItems(true, true, cart.build());
+        PricingResult priced = new DiscountOrchestratorV2().priceValidated(ctx, RULES).getOrThrow();
+        DiscountProrator prorator = new DiscountProrator();
+        // the steps x 200 lines result matrix is the only allocation proportional to the cart
+        assertWithinBudget("prorator", 8L * priced.steps().size() * 200 + 1_000, () -> prorator.prorate(ctx, priced));
+    }
+
+    private static void assertWithinBudget(String operation, long defaultBudget, Runnable op) {
+        long budget = Long.getLong("alloc.budget." + operation, defaultBudget);
+        long perOp = bytesPerOperation(op);
+        if (Boolean.getBoolean("alloc.report")) {
+            System.out.printf("alloc %-14s %,8d B/op (budget %,d)%n", operation, perOp, budget);
+        }
+        assertTrue(perOp <= budget,
+                operation + " allocated " + perOp + " B/op, budget is " + budget + " B/op (alloc.budget." + operation + ")");
+    }
+
+    private static long bytesPerOperation(Runnable op) {
+        for (int i = 0; i < WARMUP; i++) {
+            op.run();
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED; i++) {
+            op.run();
+        }
+        long after = threads.getThreadAllocatedBytes(thread);
+        return (after - before) / MEASURED;
+    }
+}
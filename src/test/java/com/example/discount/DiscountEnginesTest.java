@@ -4,7 +4,13 @@ import com.example.fpcore.Result;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -194,4 +200,539 @@ class DiscountEnginesTest {
         assertEquals(0, count.get());
 
     }
+
+    @Test
+    void incremental_reprice_matches_full_pricing_after_coupon_toggle() {
+        AtomicInteger vipEvaluations = new AtomicInteger(0);
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip, c -> {
+                    vipEvaluations.incrementAndGet();
+                    return c.pricing().total().multiply(new BigDecimal("0.10"));
+                }),
+                new DiscountRule("COUPON150", DiscountGroup.COUPON, 10, OrderContext::hasCoupon,
+                        c -> new BigDecimal("150.00")),
+                new DiscountRule("CAMPAIGN120", DiscountGroup.CAMPAIGN, 10, c -> !c.hasCoupon(),
+                        c -> new BigDecimal("120.00"))
+        );
+        IncrementalPricer pricer = new IncrementalPricer(StackingPolicy.defaults(), Map.of(
+                "VIP10", Set.of(IncrementalPricer.Input.VIP, IncrementalPricer.Input.PRICING),
+                "COUPON150", Set.of(IncrementalPricer.Input.COUPON),
+                "CAMPAIGN120", Set.of(IncrementalPricer.Input.COUPON)
+        ));
+
+        OrderContext withoutCoupon = new OrderContext(true, false, OrderPricing.of(new BigDecimal("1000.00")));
+        OrderContext withCoupon = new OrderContext(true, true, OrderPricing.of(new BigDecimal("1000.00")));
+
+        PricingSnapshot first = pricer.price(withoutCoupon, rules).getOrThrow();
+        int evaluationsBefore = vipEvaluations.get();
+        PricingSnapshot second = pricer.reprice(first, withCoupon).getOrThrow();
+        assertEquals(evaluationsBefore, vipEvaluations.get());
+
+        PricingResult full = new DiscountOrchestratorV2().priceResult(withCoupon, rules).getOrThrow();
+        assertEquals(full.pricing().total(), second.result().pricing().total());
+        assertEquals(full.pricing().discountTotal(), second.result().pricing().discountTotal());
+        assertEquals(full.steps(), second.result().steps());
+
+        PricingSnapshot back = pricer.reprice(second, withoutCoupon).getOrThrow();
+        assertEquals(first.result().steps(), back.result().steps());
+    }
+
+    @Test
+    void incremental_reprice_replays_everything_when_subtotal_changes() {
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                        c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+                new DiscountRule("CAMPAIGN200", DiscountGroup.CAMPAIGN, 10, c -> true,
+                        c -> new BigDecimal("200.00"))
+        );
+        IncrementalPricer pricer = new IncrementalPricer();
+
+        PricingSnapshot first = pricer.price(
+                new OrderContext(true, false, OrderPricing.of(new BigDecimal("1000.00"))), rules).getOrThrow();
+        OrderContext bigger = new OrderContext(true, false, OrderPricing.of(new BigDecimal("1500.00")));
+        PricingSnapshot second = pricer.reprice(first, bigger).getOrThrow();
+        PricingResult full = new DiscountOrchestratorV2().priceResult(bigger, rules).getOrThrow();
+
+        assertEquals(full.pricing().total(), second.result().pricing().total());
+        assertEquals(full.steps(), second.result().steps());
+    }
+
+    @Test
+    void incremental_reprice_reselects_fixed_amounts_clamped_to_the_total() {
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("COUPON150", DiscountGroup.COUPON, 10, OrderContext::hasCoupon,
+                        c -> new BigDecimal("150.00")),
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                        c -> c.pricing().total().multiply(new BigDecimal("0.10")))
+        );
+        StackingPolicy uncapped = new StackingPolicy(StackingPolicy.defaults().groupOrder(),
+                StackingPolicy.defaults().exclusivity(), new DiscountCapPolicy(BigDecimal.ONE));
+        // the coupon declares no PRICING input, but its candidate is still clamped to the order total
+        IncrementalPricer pricer = new IncrementalPricer(uncapped, Map.of(
+                "COUPON150", Set.of(IncrementalPricer.Input.COUPON),
+                "VIP10", Set.of(IncrementalPricer.Input.VIP, IncrementalPricer.Input.PRICING)
+        ));
+        DiscountOrchestratorV2 full = new DiscountOrchestratorV2().withPolicy(uncapped);
+
+        OrderContext small = new OrderContext(false, true, OrderPricing.of(new BigDecimal("100.00")));
+        OrderContext large = new OrderContext(false, true, OrderPricing.of(new BigDecimal("400.00")));
+
+        PricingSnapshot first = pricer.price(small, rules).getOrThrow();
+        PricingSnapshot up = pricer.reprice(first, large).getOrThrow();
+        assertEquals(full.priceResult(large, rules).getOrThrow().steps(), up.result().steps());
+        assertEquals(0, new BigDecimal("250.00").compareTo(up.result().pricing().total()));
+
+        PricingSnapshot down = pricer.reprice(up, small).getOrThrow();
+        assertEquals(full.priceResult(small, rules).getOrThrow().steps(), down.result().steps());
+        assertEquals(0, down.result().pricing().total().signum());
+    }
+
+    @Test
+    void optimal_stacking_picks_the_better_exclusive_group() {
+        OrderContext ctx = new OrderContext(true, true, OrderPricing.of(new BigDecimal("1000.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP50", DiscountGroup.VIP, 10, OrderContext::vip, c -> new BigDecimal("50.00")),
+                new DiscountRule("COUPON250", DiscountGroup.COUPON, 10, OrderContext::hasCoupon, c -> new BigDecimal("250.00")),
+                new DiscountRule("CAMPAIGN100", DiscountGroup.CAMPAIGN, 10, c -> true, c -> new BigDecimal("100.00"))
+        );
+
+        PricingResult greedy = new DiscountOrchestratorV2().price(ctx, rules);
+        PricingResult optimal = new DiscountOrchestratorV2()
+                .withOptimalStacking(OptimalStackingSolver.Objective.MAX_DISCOUNT)
+                .price(ctx, rules);
+
+        assertEquals(new BigDecimal("150.00"), greedy.pricing().discountTotal());
+        assertEquals(new BigDecimal("300.00"), optimal.pricing().discountTotal());
+        assertEquals(3, optimal.steps().size());
+        assertTrue(optimal.steps().stream()
+                .anyMatch(s -> s.ruleName().equals("CAMPAIGN100") && s.note().startsWith("SKIPPED: blocked")));
+    }
+
+    @Test
+    void optimal_stacking_min_objective_never_exceeds_greedy() {
+        OrderContext ctx = new OrderContext(true, true, OrderPricing.of(new BigDecimal("1000.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip, c -> new BigDecimal("10.00")),
+                new DiscountRule("COUPON50", DiscountGroup.COUPON, 10, OrderContext::hasCoupon, c -> new BigDecimal("50.00")),
+                new DiscountRule("CAMPAIGN200", DiscountGroup.CAMPAIGN, 10, c -> true, c -> new BigDecimal("200.00"))
+        );
+
+        PricingResult merchant = new DiscountOrchestratorV2()
+                .withOptimalStacking(OptimalStackingSolver.Objective.MIN_DISCOUNT)
+                .price(ctx, rules);
+
+        assertEquals(new BigDecimal("60.00"), merchant.pricing().discountTotal());
+        assertEquals(new BigDecimal("210.00"), new DiscountOrchestratorV2().price(ctx, rules).pricing().discountTotal());
+    }
+
+    @Test
+    void optimal_stacking_falls_back_to_greedy_for_amounts_beyond_long() {
+        OrderContext ctx = new OrderContext(true, true, OrderPricing.of(new BigDecimal("1000.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP_TINY", DiscountGroup.VIP, 10, OrderContext::vip, c -> new BigDecimal("1E-30")),
+                new DiscountRule("COUPON_HUGE", DiscountGroup.COUPON, 10, OrderContext::hasCoupon, c -> new BigDecimal("1E+25"))
+        );
+
+        Result<PricingResult> optimal = new DiscountOrchestratorV2()
+                .withOptimalStacking(OptimalStackingSolver.Objective.MAX_DISCOUNT)
+                .priceResult(ctx, rules);
+
+        assertTrue(optimal.isSuccess());
+        assertEquals(new DiscountOrchestratorV2().price(ctx, rules).steps(), optimal.getOrThrow().steps());
+    }
+
+    @Test
+    void multi_strategy_evaluates_each_rule_once_per_context() {
+        OrderContext ctx = new OrderContext(true, true, OrderPricing.of(new BigDecimal("1200.00")));
+        AtomicInteger evaluations = new AtomicInteger(0);
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("NOT_ELIGIBLE", DiscountGroup.CAMPAIGN, 1, c -> false, c -> new BigDecimal("999.00")),
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, c -> {
+                    evaluations.incrementAndGet();
+                    return c.vip();
+                }, c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+                new DiscountRule("COUPON50", DiscountGroup.COUPON, 10, c -> {
+                    evaluations.incrementAndGet();
+                    return c.hasCoupon();
+                }, c -> new BigDecimal("50.00"))
+        );
+
+        MultiStrategyEvaluator.StrategyResults results = new MultiStrategyEvaluator().evaluate(ctx, rules);
+
+        // VIP10 and COUPON50 once for the initial context, COUPON50 again after VIP10 changed the total
+        assertEquals(3, evaluations.get());
+        assertEquals(new SequentialDiscountEngine().applySequentially(ctx, rules).total(), results.sequential().getOrThrow().total());
+        assertEquals("VIP10", results.bestWins().getOrThrow().ruleName());
+        assertEquals(new DiscountOrchestratorV2().price(ctx, rules).pricing().total(), results.grouped().getOrThrow().pricing().total());
+    }
+
+    @Test
+    void evaluation_budget_skips_slow_rule_and_records_it_in_audit() {
+        OrderContext ctx = new OrderContext(true, false, OrderPricing.of(new BigDecimal("1000.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                        c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+                new DiscountRule("SLOW_CAMPAIGN", DiscountGroup.CAMPAIGN, 10, c -> true, c -> {
+                    sleep(2_000);
+                    return new BigDecimal("200.00");
+                })
+        );
+
+        long start = System.nanoTime();
+        PricingResult result = new DiscountOrchestratorV2()
+                .withEvaluationBudget(EvaluationBudget.of(Duration.ofSeconds(1), Duration.ofMillis(50), EvaluationBudget.Overrun.EMPTY))
+                .price(ctx, rules);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 1_000, "took " + elapsedMillis + "ms");
+        assertEquals(new BigDecimal("900.00"), result.pricing().total());
+        assertTrue(result.steps().stream()
+                .anyMatch(s -> s.ruleName().equals("SLOW_CAMPAIGN") && s.note().startsWith("SKIPPED: rule budget")));
+    }
+
+    @Test
+    void evaluation_budget_can_fail_the_quote_on_overrun() {
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("100.00")));
+        DiscountRule stuck = new DiscountRule("STUCK", DiscountGroup.CAMPAIGN, 1, c -> true, c -> {
+            sleep(5_000);
+            return BigDecimal.ONE;
+        });
+
+        // a request deadline alone is enough to stop waiting for a rule that does not return
+        long start = System.nanoTime();
+        Result<PricingResult> result = new DiscountOrchestratorV2()
+                .withEvaluationBudget(EvaluationBudget.perRequest(Duration.ofMillis(50), EvaluationBudget.Overrun.FAILURE))
+                .priceValidated(ctx, List.of(stuck));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 1_000, "took " + elapsedMillis + "ms");
+        assertTrue(result.isFailure());
+        assertTrue(result.failureCause().getMessage().contains("STUCK"));
+    }
+
+    @Test
+    void rules_a_saturated_evaluation_executor_rejects_overrun_like_slow_ones() {
+        OrderContext ctx = new OrderContext(true, false, OrderPricing.of(new BigDecimal("100.00")));
+        ExecutorService saturated = Executors.newSingleThreadExecutor();
+        saturated.shutdown();
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                        c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+                new DiscountRule("CAMPAIGN5", DiscountGroup.CAMPAIGN, 10, c -> true, c -> new BigDecimal("5.00")));
+
+        Result<PricingResult> result = new DiscountOrchestratorV2()
+                .withEvaluationBudget(EvaluationBudget.of(Duration.ofSeconds(1), Duration.ofMillis(50),
+                        EvaluationBudget.Overrun.EMPTY).withExecutor(saturated))
+                .priceValidated(ctx, rules);
+
+        // skipped with a note, not a failed quote
+        assertTrue(result.isSuccess());
+        assertEquals(0, new BigDecimal("100.00").compareTo(result.getOrThrow().pricing().total()));
+        assertEquals(List.of("SKIPPED: could not be scheduled", "SKIPPED: could not be scheduled"),
+                result.getOrThrow().steps().stream().map(AppliedStep::note).toList());
+    }
+
+    @Test
+    void sampled_quotes_are_traced_into_the_ring() {
+        PricingTracer tracer = new PricingTracer(2, 3, 64);
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2().withTracer(tracer);
+        OrderContext ctx = new OrderContext(true, true, OrderPricing.of(new BigDecimal("1000.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                        c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+                new DiscountRule("COUPON50", DiscountGroup.COUPON, 5, OrderContext::hasCoupon, c -> new BigDecimal("50.00")),
+                new DiscountRule("CAMPAIGN80", DiscountGroup.CAMPAIGN, 5, c -> true, c -> new BigDecimal("80.00"))
+        );
+
+        for (int i = 0; i < 10; i++) {
+            orchestrator.priceValidated(ctx, rules);
+        }
+
+        List<TraceSnapshot> traces = tracer.recent(10);
+        assertEquals(3, traces.size());
+        assertTrue(traces.get(0).id() > traces.get(1).id());
+
+        TraceSnapshot trace = traces.get(0);
+        assertEquals("SUCCESS", trace.outcome());
+        assertEquals(1, count(trace, TraceSnapshot.Kind.VALIDATION));
+        assertEquals(3, count(trace, TraceSnapshot.Kind.RULE));
+        assertEquals(3, count(trace, TraceSnapshot.Kind.SELECTED));
+        assertEquals(1, count(trace, TraceSnapshot.Kind.APPLY));
+        assertTrue(trace.events().stream().anyMatch(e -> e.kind() == TraceSnapshot.Kind.STEP
+                && e.rule().equals("COUPON50") && e.detail().startsWith("SKIPPED")));
+    }
+
+    @Test
+    void trace_ring_keeps_newest_events_of_a_long_quote() {
+        PricingTracer tracer = new PricingTracer(1, 4, 4);
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("100.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("A", DiscountGroup.CAMPAIGN, 1, c -> true, c -> BigDecimal.ONE),
+                new DiscountRule("B", DiscountGroup.CAMPAIGN, 2, c -> true, c -> BigDecimal.TEN),
+                new DiscountRule("C", DiscountGroup.CAMPAIGN, 3, c -> false, c -> BigDecimal.ONE)
+        );
+
+        new DiscountOrchestratorV2().withTracer(tracer).priceValidated(ctx, rules);
+
+        TraceSnapshot trace = tracer.recent(1).get(0);
+        assertEquals(4, trace.events().size());
+        assertEquals(3, trace.droppedEvents());
+        assertEquals(TraceSnapshot.Kind.STEP, trace.events().get(3).kind());
+    }
+
+    @Test
+    void failing_rule_is_quarantined_as_empty_and_retried_after_cooldown() {
+        RuleHealthMonitor monitor = new RuleHealthMonitor(new RuleHealthMonitor.Thresholds(
+                Duration.ofSeconds(10), 4, 0.5, Duration.ofSeconds(1), 0.5, Duration.ofMillis(200)));
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2().withRuleHealthMonitor(monitor);
+        OrderContext ctx = new OrderContext(true, false, OrderPricing.of(new BigDecimal("200.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                        c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+                new DiscountRule("BROKEN", DiscountGroup.CAMPAIGN, 1, c -> true, c -> {
+                    throw new IllegalStateException("bad campaign data");
+                })
+        );
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(orchestrator.priceResult(ctx, rules).isFailure());
+        }
+
+        PricingResult tripped = orchestrator.priceResult(ctx, rules).getOrThrow();
+        assertEquals(0, new BigDecimal("180.00").compareTo(tripped.pricing().total()));
+        assertTrue(tripped.steps().stream().anyMatch(s -> s.ruleName().equals("BROKEN")
+                && s.note().startsWith("QUARANTINED: failure rate 100% over 4 calls")));
+
+        PricingResult skipped = orchestrator.priceResult(ctx, rules).getOrThrow();
+        assertTrue(skipped.steps().stream().anyMatch(s -> s.ruleName().equals("BROKEN")
+                && s.note().startsWith("SKIPPED: quarantined")));
+
+        RuleHealthMonitor.RuleStatus broken = monitor.status().get(0);
+        assertEquals("BROKEN", broken.rule());
+        assertEquals(4, broken.failures());
+        assertEquals(1, broken.skipped());
+        assertTrue(broken.quarantined());
+        assertEquals(1, monitor.quarantineCount());
+
+        sleep(300);
+        assertTrue(orchestrator.priceResult(ctx, rules).isFailure());
+        assertFalse(monitor.status().get(0).quarantined());
+    }
+
+    @Test
+    void rule_health_is_kept_per_tenant_bounded_and_forgotten_when_idle() {
+        RuleHealthMonitor monitor = new RuleHealthMonitor(new RuleHealthMonitor.Thresholds(
+                Duration.ofSeconds(10), 2, 0.5, Duration.ofSeconds(1), 0.5, Duration.ofSeconds(30)), 2, Duration.ofMillis(50));
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2().withRuleHealthMonitor(monitor);
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("100.00")));
+        List<DiscountRule> broken = List.of(new DiscountRule("CAMP", DiscountGroup.CAMPAIGN, 1, c -> true, c -> {
+            throw new IllegalStateException("bad campaign data");
+        }));
+        List<DiscountRule> healthy = List.of(new DiscountRule("CAMP", DiscountGroup.CAMPAIGN, 1, c -> true,
+                c -> new BigDecimal("5.00")));
+
+        DiscountOrchestratorV2 a = orchestrator.forTenant("a");
+        a.priceResult(ctx, broken);
+        assertTrue(a.priceResult(ctx, broken).getOrThrow().steps().stream()
+                .anyMatch(s -> s.note().startsWith("QUARANTINED")));
+        PricingResult b = orchestrator.forTenant("b").priceResult(ctx, healthy).getOrThrow();
+        assertEquals(0, new BigDecimal("95.00").compareTo(b.pricing().total()));
+
+        assertEquals(List.of("a", "b"), monitor.status().stream().map(RuleHealthMonitor.RuleStatus::tenant).toList());
+        assertTrue(monitor.status().get(0).quarantined());
+        assertFalse(monitor.status().get(1).quarantined());
+
+        // full: the shared rules are priced untracked
+        orchestrator.priceResult(ctx, healthy);
+        assertEquals(1, monitor.untrackedCount());
+
+        sleep(120);
+        orchestrator.priceResult(ctx, healthy);
+        // tenant b's rule was idle and is forgotten; a's is still quarantined and kept
+        assertEquals(Arrays.asList(null, "a"), monitor.status().stream().map(RuleHealthMonitor.RuleStatus::tenant).toList());
+    }
+
+    @Test
+    void slow_rule_is_quarantined_but_its_last_result_is_kept() {
+        RuleHealthMonitor monitor = new RuleHealthMonitor(new RuleHealthMonitor.Thresholds(
+                Duration.ofSeconds(10), 2, 0.5, Duration.ofMillis(5), 0.5, Duration.ofSeconds(30)));
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2().withRuleHealthMonitor(monitor);
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("100.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("SLOW5", DiscountGroup.CAMPAIGN, 1, c -> true, c -> {
+                    sleep(10);
+                    return new BigDecimal("5.00");
+                })
+        );
+
+        assertEquals(0, new BigDecimal("95.00").compareTo(orchestrator.price(ctx, rules).pricing().total()));
+        PricingResult tripped = orchestrator.price(ctx, rules);
+        assertEquals(0, new BigDecimal("95.00").compareTo(tripped.pricing().total()));
+        assertTrue(tripped.steps().stream().anyMatch(s -> s.note().startsWith("QUARANTINED: slow-call rate 100%")));
+
+        PricingResult skipped = orchestrator.price(ctx, rules);
+        assertEquals(0, new BigDecimal("100.00").compareTo(skipped.pricing().total()));
+        assertEquals(2, monitor.status().get(0).slowCalls());
+    }
+
+    @Test
+    void line_items_aggregate_per_category_and_compare_by_content() {
+        LineItems items = LineItems.builder(2)
+                .add("COLA", "drinks", 3, new BigDecimal("2.50"))
+                .add("BURGER", "food", 2, new BigDecimal("10"))
+                .add("COLA", "drinks", 1, new BigDecimal("2.00"))
+                .build();
+
+        assertEquals(new BigDecimal("29.50"), items.subtotal());
+        assertEquals(2, items.categoryCount());
+        assertEquals(new BigDecimal("9.50"), items.categorySubtotal("drinks"));
+        assertEquals(4, items.categoryQuantity("drinks"));
+        assertEquals(new BigDecimal("0.00"), items.categorySubtotal("dessert"));
+        assertEquals(4, items.quantityOf("COLA"));
+        assertEquals(200, items.lowestUnitPriceCentsOf("COLA"));
+        assertEquals(-1, items.lowestUnitPriceCentsOf("FRIES"));
+
+        LineItems same = LineItems.builder(0)
+                .addCents("COLA", "drinks", 3, 250)
+                .addCents("BURGER", "food", 2, 1000)
+                .addCents("COLA", "drinks", 1, 200)
+                .build();
+        assertEquals(items, same);
+        assertEquals(items.hashCode(), same.hashCode());
+        assertEquals(items, OrderContext.ofItems(true, false, same).withPricing(OrderPricing.of(BigDecimal.TEN)).items());
+    }
+
+    @Test
+    void item_and_category_rules_price_through_the_orchestrator() {
+        OrderContext ctx = OrderContext.ofItems(false, false, LineItems.builder(3)
+                .add("COLA", "drinks", 3, new BigDecimal("2.50"))
+                .add("BURGER", "food", 3, new BigDecimal("10.00"))
+                .add("COLA", "drinks", 1, new BigDecimal("2.00"))
+                .build());
+
+        List<DiscountRule> rules = List.of(
+                ItemRules.categoryPercent("DRINKS_10", DiscountGroup.CAMPAIGN, 10, "drinks", new BigDecimal("0.10")),
+                ItemRules.categoryAmount("DESSERT_5", DiscountGroup.CAMPAIGN, 20, "dessert", BigDecimal.ONE, new BigDecimal("5.00")),
+                ItemRules.buyGetFree("BURGER_2_PLUS_1", DiscountGroup.VIP, 10, "BURGER", 2, 1)
+        );
+        PricingResult result = new DiscountOrchestratorV2().priceValidated(ctx, rules).getOrThrow();
+
+        // 39.50 - one free burger (10.00) - 10% of drinks (0.95), under the default cap
+        assertEquals(0, new BigDecimal("28.55").compareTo(result.pricing().total()));
+        assertTrue(result.steps().stream().noneMatch(s -> s.ruleName().equals("DESSERT_5")));
+
+        OrderContext subtotalOnly = new OrderContext(false, false, OrderPricing.of(new BigDecimal("39.50")));
+        assertEquals(0, new BigDecimal("39.50").compareTo(
+                new DiscountOrchestratorV2().priceValidated(subtotalOnly, rules).getOrThrow().pricing().total()));
+    }
+
+    @Test
+    void large_carts_price_from_the_category_aggregates() {
+        int lines = 5_000;
+        LineItems.Builder builder = LineItems.builder(16);
+        long subtotalCents = 0;
+        long snacksCents = 0;
+        for (int i = 0; i < lines; i++) {
+            String category = "C" + i % 7;
+            int quantity = 1 + i % 3;
+            long unitCents = 100 + i;
+            builder.addCents("SKU" + i % 100, category, quantity, unitCents);
+            subtotalCents += quantity * unitCents;
+            if (category.equals("C3")) snacksCents += quantity * unitCents;
+        }
+        LineItems items = builder.build();
+        assertEquals(lines, items.size());
+        assertEquals(subtotalCents, items.subtotalCents());
+        assertEquals(BigDecimal.valueOf(snacksCents, 2), items.categorySubtotal("C3"));
+
+        OrderContext ctx = OrderContext.ofItems(false, false, items);
+        PricingResult result = new DiscountOrchestratorV2().priceValidated(ctx, List.of(
+                ItemRules.categoryPercent("C3_10", DiscountGroup.CAMPAIGN, 1, "C3", new BigDecimal("0.10"))
+        )).getOrThrow();
+        assertEquals(0, BigDecimal.valueOf(subtotalCents - snacksCents / 10, 2).compareTo(result.pricing().total()));
+    }
+
+    @Test
+    void proration_gives_leftover_cents_to_the_largest_remainders() {
+        LineItems items = LineItems.builder(3)
+                .addCents("A", "x", 1, 100)
+                .addCents("B", "x", 1, 100)
+                .addCents("C", "x", 1, 100)
+                .addCents("D", "x", 1, 150)
+                .build();
+        List<AppliedStep> steps = List.of(
+                new AppliedStep("TEN", DiscountGroup.CAMPAIGN, new BigDecimal("0.10"), new BigDecimal("0.10"),
+                        new BigDecimal("4.50"), new BigDecimal("4.40"), "APPLIED"),
+                new AppliedStep("NOTE", DiscountGroup.VIP, BigDecimal.ZERO, BigDecimal.ZERO,
+                        new BigDecimal("4.40"), new BigDecimal("4.40"), "SKIPPED: not eligible"),
+                new AppliedStep("ALL", DiscountGroup.COUPON, new BigDecimal("4.40"), new BigDecimal("4.40"),
+                        new BigDecimal("4.40"), BigDecimal.ZERO, "APPLIED")
+        );
+
+        ProratedDiscounts prorated = new DiscountProrator().prorate(items, steps).getOrThrow();
+
+        // exact shares 2.22, 2.22, 2.22, 3.33: the leftover cent goes to D, then ties go to the earlier line
+        assertArrayEquals(new long[]{2, 2, 2, 4}, row(prorated, 0));
+        assertArrayEquals(new long[]{0, 0, 0, 0}, row(prorated, 1));
+        assertArrayEquals(new long[]{98, 98, 98, 146}, row(prorated, 2));
+        assertEquals(new BigDecimal("1.50"), prorated.lineDiscount(3));
+
+        Result<ProratedDiscounts> tooMuch = new DiscountProrator().prorate(items, List.of(
+                new AppliedStep("HUGE", DiscountGroup.CAMPAIGN, new BigDecimal("5.00"), new BigDecimal("5.00"),
+                        new BigDecimal("5.00"), BigDecimal.ZERO, "APPLIED")));
+        assertTrue(tooMuch.isFailure());
+    }
+
+    @Test
+    void proration_of_priced_carts_sums_exactly_per_step_and_per_cart() {
+        java.util.Random random = new java.util.Random(46);
+        DiscountProrator prorator = new DiscountProrator();
+        for (int round = 0; round < 50; round++) {
+            LineItems.Builder builder = LineItems.builder(0);
+            int lines = 1 + random.nextInt(400);
+            for (int i = 0; i < lines; i++) {
+                builder.addCents("SKU" + random.nextInt(50), "C" + random.nextInt(5), 1 + random.nextInt(4),
+                        random.nextInt(20_000));
+            }
+            OrderContext ctx = OrderContext.ofItems(true, true, builder.build());
+            PricingResult result = new DiscountOrchestratorV2().priceValidated(ctx, List.of(
+                    new DiscountRule("VIP7", DiscountGroup.VIP, 1, OrderContext::vip,
+                            c -> c.pricing().total().multiply(new BigDecimal("0.07"))),
+                    new DiscountRule("COUPON", DiscountGroup.COUPON, 1, OrderContext::hasCoupon,
+                            c -> new BigDecimal("13.37")),
+                    ItemRules.categoryPercent("C1_15", DiscountGroup.CAMPAIGN, 1, "C1", new BigDecimal("0.15"))
+            )).getOrThrow();
+
+            ProratedDiscounts prorated = prorator.prorate(ctx, result).getOrThrow();
+            long lineTotal = 0;
+            for (int line = 0; line < lines; line++) {
+                assertTrue(prorated.lineCents(line) <= ctx.items().lineTotalCents(line));
+                lineTotal += prorated.lineCents(line);
+            }
+            for (int s = 0; s < result.steps().size(); s++) {
+                assertEquals(result.steps().get(s).appliedDiscount().movePointRight(2).setScale(0, java.math.RoundingMode.HALF_UP).longValueExact(),
+                        prorated.stepCents(s));
+            }
+            assertEquals(result.pricing().discountTotal().movePointRight(2).longValueExact(), lineTotal);
+        }
+    }
+
+    private static long count(TraceSnapshot trace, TraceSnapshot.Kind kind) {
+        return trace.events().stream().filter(e -> e.kind() == kind).count();
+    }
+
+    private static long[] row(ProratedDiscounts prorated, int step) {
+        long[] row = new long[prorated.lines()];
+        for (int line = 0; line < row.length; line++) row[line] = prorated.cents(step, line);
+        return row;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        }
+    }
 }
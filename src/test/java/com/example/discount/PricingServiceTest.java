@@ -1,16 +1,57 @@
 package com.example.discount;
 
+import com.example.discount.application.PricingExecutors;
+import com.example.discount.application.PricingWarmup;
+import com.example.discount.application.api.PricingController;
 import com.example.discount.application.api.PricingRequest;
 import com.example.discount.application.api.PricingResponse;
+import com.example.discount.application.api.PricingResultJsonWriter;
+import com.example.discount.application.capture.RequestCapture;
+import com.example.discount.application.capture.RequestCaptureWriter;
+import com.example.discount.application.service.NdjsonQuoteStreamer;
+import com.example.discount.application.service.PlacedOrder;
 import com.example.discount.application.service.PricingService;
+import com.example.discount.application.service.SingleFlight;
+import com.example.discount.budget.BudgetReservations;
+import com.example.discount.budget.StripedSpendBudget;
 import com.example.fpcore.Result;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ApplicationAvailabilityBean;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PricingServiceTest {
@@ -61,4 +102,359 @@ class PricingServiceTest {
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertTrue(response.getBody() instanceof com.example.discount.application.api.ErrorResponse);
     }
+
+    @Test
+    void async_quote_answers_503_when_the_pricing_queue_is_full() throws Exception {
+        ExecutorService executor = PricingExecutors.platform(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            PricingController controller = new PricingController(new PricingService(), null, executor);
+            PricingRequest request = new PricingRequest(new BigDecimal("1200.00"), true, true);
+
+            CompletableFuture<ResponseEntity<?>> queued = controller.quoteAsync(request);
+            ResponseEntity<?> rejected = controller.quoteAsync(request).get(1, TimeUnit.SECONDS);
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+            assertEquals("1", rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+            release.countDown();
+            assertEquals(HttpStatus.OK, queued.get(5, TimeUnit.SECONDS).getStatusCode());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void ndjson_stream_answers_every_line_in_order() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        NdjsonQuoteStreamer streamer = new NdjsonQuoteStreamer(new PricingService(), new PricingResultJsonWriter(), mapper);
+        String input = """
+                {"subtotal": 1200.00, "vip": true, "hasCoupon": true}
+
+                {"subtotal": null, "vip": null, "hasCoupon": null}
+                not json
+                {"subtotal": 100.00, "vip": false, "hasCoupon": false}""";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long answered = streamer.quote(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, answered);
+        assertEquals(4, lines.length);
+        assertTrue(mapper.readTree(lines[0]).has("steps"));
+        assertTrue(mapper.readTree(lines[1]).get("message").asText().contains("subtotal is required"));
+        assertTrue(mapper.readTree(lines[2]).get("message").asText().startsWith("malformed request"));
+        assertEquals(0, new BigDecimal("100.00").compareTo(mapper.readTree(lines[3]).get("total").decimalValue()));
+    }
+
+    @Test
+    void direct_json_writer_matches_jackson_response_bytes() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        PricingResultJsonWriter writer = new PricingResultJsonWriter();
+        PricingResult quoted = new PricingService().quote(new PricingRequest(new BigDecimal("5200.00"), true, true)).getOrThrow();
+        PricingResult unusual = new PricingResult(OrderPricing.of(new BigDecimal("10")), List.of(
+                new AppliedStep("Çift \"kupon\"\t\u0001 😀", DiscountGroup.SHIPPING, new BigDecimal("1E+3"),
+                        BigDecimal.ZERO, new BigDecimal("0.0000001"), BigDecimal.TEN, null)
+        ));
+
+        for (PricingResult result : List.of(quoted, unusual)) {
+            ByteArrayOutputStream direct = new ByteArrayOutputStream();
+            writer.write(result, direct);
+            assertEquals(mapper.writeValueAsString(PricingResponse.from(result)), direct.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void direct_json_writer_escapes_unpaired_surrogates_like_jackson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String name = "half \uD83D and \uDE00 alone\uD800";
+        PricingResult result = new PricingResult(OrderPricing.of(new BigDecimal("10")), List.of(
+                new AppliedStep(name, DiscountGroup.VIP, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.TEN, new BigDecimal("9"), "APPLIED")
+        ));
+
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        new PricingResultJsonWriter().write(result, direct);
+        assertArrayEquals(mapper.writeValueAsBytes(PricingResponse.from(result)), direct.toByteArray());
+        assertTrue(direct.toString(StandardCharsets.US_ASCII).contains("half \\uD83D and \\uDE00 alone\\uD800"));
+        assertEquals(name, mapper.readTree(direct.toByteArray()).get("steps").get(0).get("ruleName").asText());
+    }
+
+    @Test
+    void direct_json_writer_buffers_are_returned_clean_after_concurrent_and_failed_writes() throws Exception {
+        PricingResultJsonWriter writer = new PricingResultJsonWriter();
+        PricingResult result = new PricingService().quote(new PricingRequest(new BigDecimal("5200.00"), true, true)).getOrThrow();
+        ByteArrayOutputStream reference = new ByteArrayOutputStream();
+        writer.write(result, reference);
+        String expected = reference.toString(StandardCharsets.UTF_8);
+
+        assertThrows(IOException.class, () -> writer.write(result, new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("client went away");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("client went away");
+            }
+        }));
+
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> written = new ArrayList<>();
+            for (int t = 0; t < threads * 10; t++) {
+                written.add(pool.submit(() -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    writer.write(result, out);
+                    return out.toString(StandardCharsets.UTF_8);
+                }));
+            }
+            for (Future<String> json : written) {
+                assertEquals(expected, json.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void warmup_runs_rounds_until_steady_or_max_rounds() throws Exception {
+        PricingWarmup.Report report = PricingWarmup.warmUp(new PricingService(), new PricingResultJsonWriter(), 5, 50);
+
+        assertTrue(report.rounds() >= 1 && report.rounds() <= 5);
+        assertEquals(50, report.quotesPerRound());
+        assertTrue(report.lastRoundNanosPerQuote() > 0);
+    }
+
+    @Test
+    void warmup_refuses_traffic_until_it_completes() throws Exception {
+        try (GenericApplicationContext context = new GenericApplicationContext()) {
+            context.registerBean(ApplicationAvailabilityBean.class);
+            context.refresh();
+            ApplicationAvailability availability = context.getBean(ApplicationAvailability.class);
+            AvailabilityChangeEvent.publish(context, ReadinessState.ACCEPTING_TRAFFIC);
+            List<ReadinessState> seenWhileWarming = new ArrayList<>();
+            RuleSource rules = ctx -> {
+                seenWhileWarming.add(availability.getReadinessState());
+                return PricingService.DEFAULT_RULES.rules(ctx);
+            };
+
+            new PricingWarmup(rules, new PricingResultJsonWriter(), context, 2, 10, false).run(null);
+
+            assertFalse(seenWhileWarming.isEmpty());
+            assertTrue(seenWhileWarming.stream().allMatch(ReadinessState.REFUSING_TRAFFIC::equals));
+            assertEquals(ReadinessState.ACCEPTING_TRAFFIC, availability.getReadinessState());
+        }
+    }
+
+    @Test
+    void single_flight_shares_one_in_flight_computation_and_forgets_it_on_completion() throws Exception {
+        SingleFlight<String, Object> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+        Object shared = new Object();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> calls = new ArrayList<>();
+            calls.add(pool.submit(() -> flight.execute("k", () -> {
+                computations.incrementAndGet();
+                awaitQuietly(release);
+                return shared;
+            })));
+            while (flight.stats().inFlight() == 0) Thread.onSpinWait();
+            for (int i = 0; i < 3; i++) {
+                calls.add(pool.submit(() -> flight.execute("k", Object::new)));
+            }
+            while (flight.stats().coalesced() < 3) Thread.onSpinWait();
+            release.countDown();
+
+            for (Future<Object> call : calls) {
+                assertSame(shared, call.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, computations.get());
+        assertEquals(new SingleFlight.Stats(1, 3, 0), flight.stats());
+        assertEquals("fresh", flight.execute("k", () -> "fresh"));
+    }
+
+    @Test
+    void quote_coalescing_keys_on_normalized_subtotal_and_skips_invalid_requests() throws Exception {
+        CountDownLatch firstPricing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger evaluations = new AtomicInteger();
+        AtomicInteger shadowed = new AtomicInteger();
+        AtomicInteger audited = new AtomicInteger();
+        PricingService service = PricingService.builder().ruleSource(ctx -> {
+            if (evaluations.incrementAndGet() == 1) {
+                firstPricing.countDown();
+                awaitQuietly(release);
+            }
+            return PricingService.DEFAULT_RULES.rules(ctx);
+        }).shadow((ctx, live) -> shadowed.incrementAndGet()).auditSink(result -> audited.incrementAndGet()).build();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Result<PricingResult>> a = pool.submit(() -> service.quote(new PricingRequest(new BigDecimal("1200"), true, true)));
+            assertTrue(firstPricing.await(5, TimeUnit.SECONDS));
+            Future<Result<PricingResult>> b = pool.submit(() -> service.quote(new PricingRequest(new BigDecimal("1200.00"), true, true)));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (service.coalescingStats().coalesced() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertSame(a.get(5, TimeUnit.SECONDS).getOrThrow(), b.get(5, TimeUnit.SECONDS).getOrThrow());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+        assertTrue(service.quote(new PricingRequest(null, true, true)).isFailure());
+
+        assertEquals(1, evaluations.get());
+        assertEquals(new SingleFlight.Stats(1, 1, 0), service.coalescingStats());
+        // the shared result is compared once but audited for each caller it was served to
+        assertEquals(1, shadowed.get());
+        assertEquals(2, audited.get());
+    }
+
+    @Test
+    void quote_with_items_derives_the_subtotal_and_validates_every_line() {
+        PricingService service = new PricingService();
+        List<PricingRequest.Item> cart = List.of(
+                new PricingRequest.Item("TV", "electronics", 1, new BigDecimal("1000.00")),
+                new PricingRequest.Item("CABLE", "electronics", 4, new BigDecimal("50"))
+        );
+
+        Result<PricingResult> derived = service.quote(new PricingRequest(null, true, true, cart));
+        Result<PricingResult> explicit = service.quote(new PricingRequest(new BigDecimal("1200"), true, true, cart));
+        Result<PricingResult> subtotalOnly = service.quote(new PricingRequest(new BigDecimal("1200"), true, true));
+        assertEquals(new BigDecimal("1200.00"), derived.getOrThrow().pricing().subtotal());
+        assertEquals(subtotalOnly.getOrThrow().pricing().total(), derived.getOrThrow().pricing().total());
+        assertEquals(derived.getOrThrow().pricing().total(), explicit.getOrThrow().pricing().total());
+
+        Result<PricingResult> mismatch = service.quote(new PricingRequest(new BigDecimal("1100"), true, true, cart));
+        assertEquals("subtotal must equal the sum of the items (1200.00)", mismatch.failureCause().getMessage());
+
+        Result<PricingResult> invalid = service.quote(new PricingRequest(null, true, null, List.of(
+                new PricingRequest.Item("TV", null, 0, new BigDecimal("1000.00")),
+                new PricingRequest.Item("CABLE", "electronics", 1, new BigDecimal("0.001"))
+        )));
+        String message = invalid.failureCause().getMessage();
+        assertTrue(message.contains("items[0].category is required"), message);
+        assertTrue(message.contains("items[0].quantity must be greater than zero"), message);
+        assertTrue(message.contains("items[1].unitPrice must have at most 2 decimals"), message);
+        assertTrue(message.contains("hasCoupon is required"), message);
+    }
+
+    @Test
+    void captured_requests_replay_in_order_including_invalid_ones(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("quotes.preq");
+        RequestCaptureWriter writer = RequestCaptureWriter.open(file, 1 << 20, 16).getOrThrow();
+        PricingService service = PricingService.builder().recorder(writer).build();
+
+        List<PricingRequest> sent = List.of(
+                new PricingRequest(new BigDecimal("1200.00"), true, true),
+                new PricingRequest(new BigDecimal("99.5"), false, null),
+                new PricingRequest(null, null, false),
+                new PricingRequest(new BigDecimal("123456789.123"), false, true),
+                new PricingRequest(null, true, false, java.util.Arrays.asList(
+                        new PricingRequest.Item("TV", "electronics", 1, new BigDecimal("1000.00")),
+                        null,
+                        new PricingRequest.Item("ÇAY", null, -2, null)))
+        );
+        sent.forEach(service::quote);
+        writer.close();
+
+        List<RequestCapture.Captured> captured = RequestCapture.read(file).getOrThrow();
+        assertEquals(sent, captured.stream().map(RequestCapture.Captured::request).toList());
+        assertTrue(captured.get(3).offsetMicros() >= captured.get(0).offsetMicros());
+        assertEquals(new RequestCaptureWriter.Stats(5, 0, 0, Files.size(file)), writer.stats());
+
+        // a record cut off mid-write ends the capture without losing the earlier ones
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 2));
+        assertEquals(4, RequestCapture.read(file).getOrThrow().size());
+    }
+
+    @Test
+    void quotes_spend_no_budget_and_orders_hold_it_until_committed_cancelled_or_expired() throws Exception {
+        StripedSpendBudget budget = StripedSpendBudget.inMemory(Map.of("VIP_10_PERCENT", new BigDecimal("30.00")), 2);
+        BudgetReservations reservations = new BudgetReservations(budget, Duration.ofMillis(50));
+        PricingService service = PricingService.builder().reservations(reservations).build();
+        PricingRequest vip200 = new PricingRequest(new BigDecimal("200.00"), true, false);
+
+        // quotes that never become orders leave the budget untouched
+        for (int i = 0; i < 5; i++) {
+            assertEquals("APPLIED", vipStep(service.quote(vip200).getOrThrow()).note());
+        }
+        assertEquals(0, spentCents(budget));
+
+        PlacedOrder committed = service.order(vip200).getOrThrow();
+        assertEquals(2_000, spentCents(budget));
+        AppliedStep quoted = vipStep(service.quote(vip200).getOrThrow());
+        assertTrue(quoted.limitedByBudget(), quoted.note());
+        assertEquals(0, new BigDecimal("10.00").compareTo(quoted.appliedDiscount()));
+        assertEquals(2_000, spentCents(budget));
+
+        PlacedOrder cancelled = service.order(vip200).getOrThrow();
+        assertEquals(3_000, spentCents(budget));
+        assertTrue(service.cancelOrder(cancelled.reservation()));
+        assertEquals(2_000, spentCents(budget));
+        assertTrue(service.commitOrder(committed.reservation()));
+        assertEquals(2_000, spentCents(budget));
+        assertFalse(service.cancelOrder(committed.reservation()));
+
+        PlacedOrder abandoned = service.order(vip200).getOrThrow();
+        assertEquals(3_000, spentCents(budget));
+        Thread.sleep(100);
+        assertEquals(1, reservations.expire());
+        assertEquals(2_000, spentCents(budget));
+        assertFalse(service.commitOrder(abandoned.reservation()));
+        assertEquals(new BudgetReservations.Stats(0, 1, 1, 1), reservations.stats());
+
+        // an order that fails after reserving gives the budget back
+        PricingService failingAudit = PricingService.builder().auditSink(result -> {
+            throw new IllegalStateException("audit is down");
+        }).reservations(reservations).build();
+        assertThrows(IllegalStateException.class, () -> failingAudit.order(vip200));
+        assertEquals(2_000, spentCents(budget));
+
+        ResponseEntity<?> http = service.orderHttp(vip200);
+        assertEquals(HttpStatus.OK, http.getStatusCode());
+        assertTrue(service.cancelOrder(http.getHeaders().getFirst(PricingService.RESERVATION_HEADER)));
+        assertEquals(2_000, spentCents(budget));
+
+        // a graceful shutdown releases what open holds took; only committed orders stay spent
+        service.order(vip200).getOrThrow();
+        assertEquals(3_000, spentCents(budget));
+        reservations.close();
+        assertEquals(2_000, spentCents(budget));
+        assertEquals(new BudgetReservations.Stats(0, 1, 3, 1), reservations.stats());
+    }
+
+    private static AppliedStep vipStep(PricingResult result) {
+        return result.steps().stream().filter(s -> s.ruleName().equals("VIP_10_PERCENT")).findFirst().orElseThrow();
+    }
+
+    private static long spentCents(StripedSpendBudget budget) {
+        return budget.status().get(0).spent().movePointRight(2).longValueExact();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
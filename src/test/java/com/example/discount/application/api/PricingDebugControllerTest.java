@@ -0,0 +1,66 @@
+package com.example.discount.application.api;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.discount.PricingTracer;
+import com.example.discount.RuleHealthMonitor;
+import com.example.discount.SpendBudget;
+import com.example.discount.budget.BudgetReservations;
+import com.example.discount.catalog.TenantCatalogs;
+import com.example.discount.shadow.ShadowPricing;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PricingDebugControllerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void traces_honours_the_limit_parameter_and_reports_failed_quotes() throws Exception {
+        PricingTracer tracer = new PricingTracer(1, 8, 64);
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2().withTracer(tracer);
+        OrderContext ctx = new OrderContext(true, false, OrderPricing.of(new BigDecimal("200.00")));
+        DiscountRule vip = new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                c -> c.pricing().total().multiply(new BigDecimal("0.10")));
+        DiscountRule broken = new DiscountRule("BROKEN", DiscountGroup.CAMPAIGN, 1, c -> true, c -> {
+            throw new IllegalStateException("bad campaign data");
+        });
+        orchestrator.priceValidated(ctx, List.of(vip));
+        orchestrator.priceValidated(ctx, List.of(vip, broken));
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new PricingDebugController(tracer,
+                new StaticListableBeanFactory().getBeanProvider(RuleHealthMonitor.class), ShadowPricing.NOOP,
+                TenantCatalogs.NONE, new BudgetReservations(SpendBudget.UNLIMITED, BudgetReservations.DEFAULT_TTL))).build();
+
+        JsonNode newest = mapper.readTree(mvc.perform(get("/api/pricing/debug/traces").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals(1, newest.size());
+        assertTrue(newest.get(0).get("outcome").asText().startsWith("FAILURE: "), newest.toString());
+
+        JsonNode all = mapper.readTree(mvc.perform(get("/api/pricing/debug/traces"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals(2, all.size());
+        assertEquals("SUCCESS", all.get(1).get("outcome").asText());
+
+        mvc.perform(get("/api/pricing/debug/traces").with(request -> {
+            request.setRemoteAddr("10.0.0.7");
+            return request;
+        })).andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.discount.audit;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.discount.PricingResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogTest {
+
+    private static final List<DiscountRule> RULES = List.of(
+            new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                    c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+            new DiscountRule("COUPON150", DiscountGroup.COUPON, 10, OrderContext::hasCoupon,
+                    c -> new BigDecimal("150.00")),
+            new DiscountRule("CAMPAIGN5", DiscountGroup.CAMPAIGN, 10, c -> true,
+                    c -> c.pricing().total().multiply(new BigDecimal("0.05")))
+    );
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void written_results_read_back_in_order_with_identical_steps() {
+        List<PricingResult> results = quotes(200);
+
+        AuditLogWriter writer = AuditLogWriter.open(directory, 1 << 20, 1024, 4).getOrThrow();
+        results.forEach(writer::record);
+        writer.close();
+
+        List<AuditRecord> records = AuditLogReader.readAll(directory).getOrThrow();
+        assertEquals(new AuditLogWriter.Stats(200, 0, 0, writer.stats().batches(), 0), writer.stats());
+        assertEquals(200, records.size());
+        for (int i = 0; i < results.size(); i++) {
+            AuditRecord record = records.get(i);
+            assertEquals(i + 1, record.sequence());
+            assertEquals(results.get(i).steps(), record.result().steps());
+            assertEquals(results.get(i).pricing().total(), record.result().pricing().total());
+            assertEquals(results.get(i).pricing().discountTotal(), record.result().pricing().discountTotal());
+        }
+    }
+
+    @Test
+    void full_segments_rotate_and_only_the_newest_are_kept() throws IOException {
+        AuditLogWriter writer = AuditLogWriter.open(directory, 2048, 4096, 3).getOrThrow();
+        quotes(300).forEach(writer::record);
+        writer.close();
+
+        List<Path> segments = AuditSegments.list(directory);
+        List<AuditRecord> records = AuditLogReader.readAll(directory).getOrThrow();
+        assertEquals(3, segments.size());
+        assertTrue(records.size() < 300);
+        assertEquals(300, records.get(records.size() - 1).sequence());
+        for (int i = 1; i < records.size(); i++) {
+            assertEquals(records.get(i - 1).sequence() + 1, records.get(i).sequence());
+        }
+    }
+
+    @Test
+    void reader_stops_at_a_torn_record() throws IOException {
+        AuditLogWriter writer = AuditLogWriter.open(directory, 1 << 16, 64, 1).getOrThrow();
+        quotes(3).forEach(writer::record);
+        writer.close();
+
+        Path segment = AuditSegments.list(directory).get(0);
+        List<Integer> offsets = recordOffsets(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), offsets.get(2) + AuditSegments.RECORD_HEADER_BYTES);
+        }
+
+        assertEquals(2, AuditLogReader.readAll(directory).getOrThrow().size());
+    }
+
+    @Test
+    void sequence_numbers_continue_after_a_restart() throws IOException {
+        AuditLogWriter first = AuditLogWriter.open(directory, 1 << 16, 64, 8).getOrThrow();
+        quotes(3).forEach(first::record);
+        first.close();
+        // a writer that recorded nothing and a segment whose header never reached the disk are skipped
+        AuditLogWriter.open(directory, 1 << 16, 64, 8).getOrThrow().close();
+        Files.write(AuditSegments.path(directory, 99), new byte[64]);
+
+        AuditLogWriter second = AuditLogWriter.open(directory, 1 << 16, 64, 8).getOrThrow();
+        quotes(2).forEach(second::record);
+        second.close();
+
+        Files.delete(AuditSegments.path(directory, 99));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L),
+                AuditLogReader.readAll(directory).getOrThrow().stream().map(AuditRecord::sequence).toList());
+    }
+
+    @Test
+    void a_result_that_cannot_be_encoded_is_counted_and_draining_goes_on() {
+        AuditLogWriter writer = AuditLogWriter.open(directory, 1 << 16, 64, 1).getOrThrow();
+        List<PricingResult> results = quotes(2);
+        writer.record(results.get(0));
+        writer.record(new PricingResult(null, List.of()));
+        writer.record(results.get(1));
+        writer.close();
+
+        assertEquals(2, writer.stats().written());
+        assertEquals(1, writer.stats().failed());
+        assertEquals(2, AuditLogReader.readAll(directory).getOrThrow().size());
+    }
+
+    @Test
+    void full_queue_drops_instead_of_blocking() {
+        AuditLogWriter writer = AuditLogWriter.open(directory, 1 << 20, 1, 1).getOrThrow();
+        writer.close();
+        writer.record(quotes(1).get(0));
+
+        assertEquals(1, writer.stats().dropped());
+    }
+
+    private static List<PricingResult> quotes(int n) {
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2();
+        List<PricingResult> results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            OrderContext ctx = new OrderContext(i % 2 == 0, i % 3 == 0,
+                    OrderPricing.of(BigDecimal.valueOf(10_000 + i * 1_337L, 2)));
+            results.add(orchestrator.price(ctx, RULES));
+        }
+        return results;
+    }
+
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        List<Integer> offsets = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int at = AuditSegments.HEADER_BYTES;
+            int length;
+            while ((length = buffer.getInt(at)) > 0) {
+                offsets.add(at);
+                at += AuditSegments.RECORD_HEADER_BYTES + length;
+            }
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.discount.batch;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.DiscountRule;
+import com.example.discount.LineItems;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.fpcore.Result;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBatchPricerTest {
+
+    private static final List<DiscountRule> RULES = List.of(
+            new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                    c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+            new DiscountRule("COUPON150", DiscountGroup.COUPON, 10, OrderContext::hasCoupon,
+                    c -> new BigDecimal("150.00")),
+            new DiscountRule("OVER500", DiscountGroup.CAMPAIGN, 20,
+                    c -> c.pricing().total().compareTo(new BigDecimal("500.00")) >= 0,
+                    c -> new BigDecimal("75.00")),
+            new DiscountRule("CAMPAIGN5", DiscountGroup.CAMPAIGN, 10, c -> true,
+                    c -> c.pricing().total().multiply(new BigDecimal("0.05")))
+    );
+
+    @Test
+    void batch_totals_match_orchestrator_per_order() {
+        Random random = new Random(42);
+        List<OrderContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            BigDecimal subtotal = BigDecimal.valueOf(100 + random.nextInt(300_000), 2);
+            contexts.add(new OrderContext(random.nextBoolean(), random.nextBoolean(), OrderPricing.of(subtotal)));
+        }
+
+        OrderBatch batch = OrderBatch.of(contexts).flatMap(b -> new OrderBatchPricer().price(b, RULES)).getOrThrow();
+
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2();
+        for (int i = 0; i < contexts.size(); i++) {
+            OrderPricing expected = orchestrator.price(contexts.get(i), RULES).pricing();
+            assertEquals(expected.total(), batch.result(i).getOrThrow().total(), "order " + i);
+            assertEquals(expected.discountTotal(), batch.result(i).getOrThrow().discountTotal(), "order " + i);
+        }
+    }
+
+    @Test
+    void failing_rule_only_fails_affected_orders() {
+        DiscountRule vipOnlyBoom = new DiscountRule("VIP_BOOM", DiscountGroup.VIP, 1, OrderContext::vip,
+                c -> { throw new IllegalStateException("boom"); });
+
+        OrderBatch batch = OrderBatch.builder(2)
+                .add(true, false, new BigDecimal("100.00"))
+                .add(false, true, new BigDecimal("1000.00"))
+                .build();
+
+        Result<OrderBatch> priced = new OrderBatchPricer().price(batch, List.of(vipOnlyBoom, RULES.get(1)));
+
+        assertTrue(priced.isSuccess());
+        assertTrue(batch.result(0).isFailure());
+        assertEquals(new BigDecimal("850.00"), batch.result(1).getOrThrow().total());
+        assertEquals(15_000L, batch.discountCents(1));
+    }
+
+    @Test
+    void invalid_rules_fail_the_whole_batch() {
+        OrderBatch batch = OrderBatch.builder(1).add(true, true, new BigDecimal("10.00")).build();
+
+        Result<OrderBatch> priced = new OrderBatchPricer().price(batch, List.of());
+
+        assertTrue(priced.isFailure());
+        assertTrue(priced.failureCause().getMessage().contains("At least one discount rule is required"));
+    }
+
+    @Test
+    void orders_with_line_items_are_rejected_instead_of_priced_without_them() {
+        OrderContext cart = OrderContext.ofItems(false, false, LineItems.builder(1)
+                .add("TV", "electronics", 1, new BigDecimal("1000.00")).build());
+        OrderContext plain = new OrderContext(false, false, OrderPricing.of(new BigDecimal("1000.00")));
+
+        Result<OrderBatch> batch = OrderBatch.of(List.of(plain, cart, plain, cart));
+
+        assertTrue(batch.isFailure());
+        assertEquals("batch pricing does not carry line items; 2 order(s) have them, e.g. at [1, 3]",
+                batch.failureCause().getMessage());
+    }
+}
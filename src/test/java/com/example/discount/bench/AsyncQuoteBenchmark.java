@@ -0,0 +1,116 @@
+package com.example.discount.bench;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.application.PricingAsyncConfiguration;
+import com.example.discount.application.PricingExecutors;
+import com.example.discount.application.api.PricingController;
+import com.example.discount.application.api.PricingRequest;
+import com.example.discount.application.service.PricingService;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Blocking vs asynchronous quote throughput through {@link PricingController} when a rule waits on a slow local
+ * lookup.
+ * <p>
+ * Requests are issued from a fixed pool the size of Tomcat's default worker pool. "blocking" calls
+ * {@code /quote}, which prices on that worker; "async-*" calls {@code /quote/async} with the executor
+ * {@link PricingAsyncConfiguration} builds for the given mode and default settings, so the worker is released at once
+ * and quotes beyond the executor's queue come back as 503 (counted as rejected). "async-virtual" is only run on a
+ * JDK with virtual threads. Every request has its own subtotal, so {@link PricingService} never coalesces two of
+ * them and each one pays for its own lookup.
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) com.example.discount.bench.AsyncQuoteBenchmark [quotes] [lookupMillis]
+ * </pre>
+ */
+public final class AsyncQuoteBenchmark {
+
+    private static final int SERVLET_THREADS = 200;
+
+    private AsyncQuoteBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int quotes = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long lookupMillis = args.length > 1 ? Long.parseLong(args[1]) : 5;
+
+        PricingService service = PricingService.builder().ruleSource(ctx -> List.of(
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                        c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+                new DiscountRule("LOOKUP_CAMPAIGN", DiscountGroup.CAMPAIGN, 10, c -> true, c -> {
+                    slowLookup(lookupMillis);
+                    return new BigDecimal("25.00");
+                })
+        )).build();
+        PricingAsyncConfiguration config = new PricingAsyncConfiguration();
+
+        ExecutorService platform = config.pricingExecutor("platform", 0, 1024);
+        PricingController onPlatform = new PricingController(service, null, platform);
+        run("warmup", blocking(onPlatform), quotes / 10);
+        run("blocking (" + SERVLET_THREADS + " servlet threads)", blocking(onPlatform), quotes);
+        run("async-platform (default pool)", onPlatform::quoteAsync, quotes);
+        platform.shutdown();
+
+        if (PricingExecutors.virtualThreadPerTask().isDefined()) {
+            ExecutorService virtual = config.pricingExecutor("virtual", 0, 1024);
+            PricingController onVirtual = new PricingController(service, null, virtual);
+            run("async-virtual", onVirtual::quoteAsync, quotes);
+            virtual.shutdown();
+        } else {
+            System.out.println("async-virtual: skipped (no virtual threads on this JDK)");
+        }
+        System.out.println("coalescing: " + service.coalescingStats());
+    }
+
+    private static Function<PricingRequest, CompletableFuture<ResponseEntity<?>>> blocking(PricingController controller) {
+        return request -> CompletableFuture.completedFuture(controller.quote(request));
+    }
+
+    /**
+     * Issues {@code quotes} requests from the servlet pool; a request holds its worker for as long as
+     * {@code endpoint} blocks it, which for the async endpoint is only until the quote is handed off.
+     */
+    private static void run(String label, Function<PricingRequest, CompletableFuture<ResponseEntity<?>>> endpoint,
+                            int quotes) throws Exception {
+        ExecutorService servlet = PricingExecutors.platform(SERVLET_THREADS, quotes);
+        List<CompletableFuture<ResponseEntity<?>>> pending = new ArrayList<>(quotes);
+        long start = System.nanoTime();
+        for (int i = 0; i < quotes; i++) {
+            // 1000.00, 1000.01, ...: no two requests are identical, so none is coalesced with another
+            PricingRequest request = new PricingRequest(new BigDecimal("1000.00").add(BigDecimal.valueOf(i, 2)), true, false);
+            pending.add(CompletableFuture.supplyAsync(() -> endpoint.apply(request), servlet).thenCompose(Function.identity()));
+        }
+        int rejected = 0;
+        for (CompletableFuture<ResponseEntity<?>> response : pending) {
+            if (response.join().getStatusCode().value() == 503) {
+                rejected++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        servlet.shutdown();
+        servlet.awaitTermination(1, TimeUnit.MINUTES);
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("%-40s %8d quotes in %6.2fs -> %10.0f quotes/s, %d rejected%n",
+                label, quotes, seconds, (quotes - rejected) / seconds, rejected);
+    }
+
+    private static void slowLookup(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("lookup interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.discount.bench;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.discount.catalog.Expr;
+import com.example.discount.catalog.ExpressionParser;
+import com.example.discount.catalog.MethodHandleCompiler;
+import com.example.discount.catalog.RuleCompiler;
+import com.example.fpcore.Result;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Rule evaluation cost for many distinct rule shapes, per catalog compiler.
+ * <ul>
+ *   <li>closures: {@link RuleCompiler#CLOSURES}, nested lambdas whose shared call sites see every shape</li>
+ *   <li>method-handles: the same {@link MethodHandleCompiler} trees called through non-constant handles</li>
+ *   <li>hidden-classes: {@link RuleCompiler#HIDDEN_CLASSES}, one hidden class per rule with constant handles</li>
+ * </ul>
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) com.example.discount.bench.RuleCompilationBenchmark [shapes] [rounds]
+ * </pre>
+ */
+public final class RuleCompilationBenchmark {
+
+    private static final DiscountGroup[] GROUPS = DiscountGroup.values();
+
+    private RuleCompilationBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int shapes = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+
+        SplittableRandom random = new SplittableRandom(7);
+        List<String[]> sources = new ArrayList<>(shapes);
+        for (int i = 0; i < shapes; i++) {
+            sources.add(new String[]{condition(random, 3), amount(random, 3)});
+        }
+        List<OrderContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            contexts.add(new OrderContext(random.nextBoolean(), random.nextBoolean(),
+                    OrderPricing.of(BigDecimal.valueOf(random.nextLong(1_000, 600_000), 2))));
+        }
+
+        List<DiscountRule> closures = compile(sources, RuleCompiler.CLOSURES);
+        List<DiscountRule> handles = compile(sources, RuleCompilationBenchmark::nonConstantHandles);
+        List<DiscountRule> hidden = compile(sources, RuleCompiler.HIDDEN_CLASSES);
+
+        System.out.printf("%d rule shapes x %d orders%n", shapes, contexts.size());
+        for (int round = 0; round < rounds; round++) {
+            boolean report = round >= rounds - 3;
+            run("closures", closures, contexts, report);
+            run("method-handles", handles, contexts, report);
+            run("hidden-classes", hidden, contexts, report);
+        }
+    }
+
+    private static DiscountRule nonConstantHandles(String name, DiscountGroup group, int priority, Expr when, Expr amount) {
+        MethodHandle condition = MethodHandleCompiler.condition(when);
+        MethodHandle calculation = MethodHandleCompiler.amount(amount);
+        return new DiscountRule(name, group, priority,
+                ctx -> {
+                    try {
+                        return (boolean) condition.invokeExact(ctx);
+                    } catch (Throwable t) {
+                        throw new IllegalStateException(t);
+                    }
+                },
+                ctx -> {
+                    try {
+                        return (BigDecimal) calculation.invokeExact(ctx);
+                    } catch (Throwable t) {
+                        throw new IllegalStateException(t);
+                    }
+                });
+    }
+
+    private static List<DiscountRule> compile(List<String[]> sources, RuleCompiler compiler) {
+        List<DiscountRule> rules = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            Expr when = ExpressionParser.parseCondition(sources.get(i)[0]).getOrThrow();
+            Expr amount = ExpressionParser.parseAmount(sources.get(i)[1]).getOrThrow();
+            rules.add(compiler.compile("R" + i, GROUPS[i % GROUPS.length], i, when, amount));
+        }
+        return rules;
+    }
+
+    private static void run(String label, List<DiscountRule> rules, List<OrderContext> contexts, boolean report) {
+        int repeats = 50;
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < repeats; r++) {
+            for (OrderContext ctx : contexts) {
+                for (DiscountRule rule : rules) {
+                    Result<BigDecimal> result = rule.evaluate(ctx);
+                    if (result.isSuccess()) checksum += result.getOrThrow().signum();
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (report) {
+            long evaluations = (long) repeats * contexts.size() * rules.size();
+            System.out.printf("%-16s %8.1f ns/evaluation (checksum %d)%n", label, elapsed / (double) evaluations, checksum);
+        }
+    }
+
+    private static String condition(SplittableRandom random, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            return switch (random.nextInt(4)) {
+                case 0 -> "vip";
+                case 1 -> "hasCoupon";
+                case 2 -> "total >= " + random.nextInt(100, 5_000);
+                default -> "subtotal - discountTotal < " + random.nextInt(100, 5_000);
+            };
+        }
+        return switch (random.nextInt(3)) {
+            case 0 -> "(" + condition(random, depth - 1) + " && " + condition(random, depth - 1) + ")";
+            case 1 -> "(" + condition(random, depth - 1) + " || " + condition(random, depth - 1) + ")";
+            default -> "!" + condition(random, depth - 1);
+        };
+    }
+
+    private static String amount(SplittableRandom random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            return switch (random.nextInt(4)) {
+                case 0 -> "total";
+                case 1 -> "subtotal";
+                case 2 -> "0.0" + random.nextInt(1, 10);
+                default -> random.nextInt(5, 200) + ".00";
+            };
+        }
+        return switch (random.nextInt(5)) {
+            case 0 -> "(" + amount(random, depth - 1) + " + " + amount(random, depth - 1) + ")";
+            case 1 -> "(" + amount(random, depth - 1) + " * " + amount(random, depth - 1) + ")";
+            case 2 -> "min(" + amount(random, depth - 1) + ", " + amount(random, depth - 1) + ")";
+            case 3 -> "max(" + amount(random, depth - 1) + ", " + amount(random, depth - 1) + ")";
+            default -> amount(random, depth - 1) + " / 4";
+        };
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.discount.budget;
+
+import com.example.fpcore.Result;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedSpendBudgetTest {
+
+    @Test
+    void separate_mappings_of_one_file_share_the_limit(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("budgets.shm");
+        // each mapping stands in for one pricing process
+        try (SharedSpendBudget a = SharedSpendBudget.open(file, Map.of("CAMP", new BigDecimal("500.00")), 16).getOrThrow();
+             SharedSpendBudget b = SharedSpendBudget.open(file, Map.of(), 16).getOrThrow()) {
+            int threads = 8;
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Long>> granted = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    SharedSpendBudget budget = t % 2 == 0 ? a : b;
+                    granted.add(pool.submit(() -> {
+                        start.await();
+                        long sum = 0;
+                        for (int i = 0; i < 5_000; i++) {
+                            sum += budget.reserve("CAMP", 3);
+                        }
+                        return sum;
+                    }));
+                }
+                start.countDown();
+                long total = 0;
+                for (Future<Long> f : granted) total += f.get(10, TimeUnit.SECONDS);
+                assertEquals(50_000, total);
+            } finally {
+                pool.shutdownNow();
+            }
+            assertEquals(List.of(BudgetStatus.ofCents("CAMP", 50_000, 50_000)), b.status());
+            b.release("CAMP", 1_000);
+            assertEquals(1_000, a.reserve("CAMP", 5_000));
+            assertEquals(7, a.reserve("UNBUDGETED", 7));
+        }
+    }
+
+    @Test
+    void rules_added_by_another_process_are_picked_up(@TempDir Path dir) {
+        Path file = dir.resolve("budgets.shm");
+        try (SharedSpendBudget early = SharedSpendBudget.open(file, Map.of("CAMP", BigDecimal.ONE), 16).getOrThrow()) {
+            assertEquals(50, early.reserve("COUPON", 50));
+            try (SharedSpendBudget late = SharedSpendBudget.open(file, Map.of("COUPON", new BigDecimal("0.20")), 16).getOrThrow()) {
+                assertEquals(20, early.reserve("COUPON", 50));
+                assertEquals(0, late.reserve("COUPON", 1));
+                assertEquals(100, late.reserve("CAMP", 500));
+            }
+        }
+    }
+
+    @Test
+    void spent_amounts_survive_a_restart_and_a_stale_limit_does_not_replace_the_files(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("budgets.shm");
+        try (SharedSpendBudget budget = SharedSpendBudget.open(file, Map.of("CAMP", new BigDecimal("10.00")), 16).getOrThrow()) {
+            assertEquals(600, budget.reserve("CAMP", 600));
+        }
+        try (SharedSpendBudget stale = SharedSpendBudget.open(file, Map.of("CAMP", new BigDecimal("20.00")), 4).getOrThrow()) {
+            assertEquals(List.of("CAMP: file has 10.00, configured 20.00"), stale.limitConflicts());
+            assertEquals(400, stale.available("CAMP", 5_000));
+        }
+        try (SharedSpendBudget raised = SharedSpendBudget.open(file, Map.of("CAMP", new BigDecimal("20.00")), 4, true).getOrThrow()) {
+            assertEquals(List.of(), raised.limitConflicts());
+            assertEquals(1_400, raised.reserve("CAMP", 5_000));
+        }
+        // the capacity of an existing file is kept
+        assertEquals(SharedSpendBudget.HEADER_BYTES + 16 * SharedSpendBudget.SLOT_BYTES, Files.size(file));
+    }
+
+    @Test
+    void limits_are_set_reset_and_removed_for_every_process(@TempDir Path dir) {
+        Path file = dir.resolve("budgets.shm");
+        try (SharedSpendBudget a = SharedSpendBudget.open(file, Map.of("CAMP", new BigDecimal("1.00")), 16).getOrThrow();
+             SharedSpendBudget b = SharedSpendBudget.open(file, Map.of(), 16).getOrThrow()) {
+            assertEquals(100, a.reserve("CAMP", 150));
+            assertEquals(BudgetStatus.ofCents("CAMP", 300, 100), b.setLimit("CAMP", new BigDecimal("3.00")).getOrThrow());
+            assertEquals(200, a.reserve("CAMP", 500));
+
+            // a new campaign period; what was reserved before it is not given back to it
+            long period = a.period("CAMP");
+            assertTrue(b.reset("CAMP"));
+            assertEquals(period + 1, a.period("CAMP"));
+            a.release("CAMP", 200, period);
+            assertEquals(List.of(BudgetStatus.ofCents("CAMP", 300, 0)), b.status());
+            assertEquals(300, a.reserve("CAMP", 500));
+
+            // a rule nobody limits any more is granted in full and no longer listed
+            assertTrue(a.remove("CAMP"));
+            assertEquals(500, b.reserve("CAMP", 500));
+            assertEquals(List.of(), b.status());
+            assertFalse(a.remove("UNKNOWN"));
+            assertFalse(a.reset("UNKNOWN"));
+
+            // a process configuring it again limits it afresh
+            try (SharedSpendBudget c = SharedSpendBudget.open(file, Map.of("CAMP", new BigDecimal("2.00")), 16).getOrThrow()) {
+                assertEquals(List.of(), c.limitConflicts());
+                assertEquals(200, a.reserve("CAMP", 500));
+            }
+        }
+    }
+
+    @Test
+    void processes_mapping_one_file_share_the_limit(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("budgets.shm");
+        try (SharedSpendBudget parent = SharedSpendBudget.open(file, Map.of("CAMP", new BigDecimal("500.00")), 16).getOrThrow()) {
+            assertEquals(10_000, parent.reserve("CAMP", 10_000));
+            List<Process> children = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                children.add(new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                        "-cp", System.getProperty("java.class.path"), Reserver.class.getName(), file.toString(), "10000")
+                        .redirectErrorStream(true)
+                        .start());
+            }
+            long total = 0;
+            for (Process child : children) {
+                assertTrue(child.waitFor(60, TimeUnit.SECONDS), "child did not finish");
+                String output = new String(child.getInputStream().readAllBytes()).trim();
+                assertEquals(0, child.exitValue(), output);
+                long granted = Long.parseLong(output);
+                // each child asks for 30,000 of the 40,000 left, so both get some and neither gets it all
+                assertTrue(granted >= 10_000 && granted <= 30_000, output);
+                total += granted;
+            }
+            assertEquals(40_000, total);
+            assertEquals(List.of(BudgetStatus.ofCents("CAMP", 50_000, 50_000)), parent.status());
+        }
+    }
+
+    /**
+     * Child process of {@link #processes_mapping_one_file_share_the_limit}: reserves 3 cents {@code args[1]} times
+     * from CAMP in the file {@code args[0]} and prints how much it got.
+     */
+    static final class Reserver {
+        public static void main(String[] args) {
+            try (SharedSpendBudget budget = SharedSpendBudget.open(Path.of(args[0]), Map.of(), 16).getOrThrow()) {
+                long total = 0;
+                for (int i = Integer.parseInt(args[1]); i > 0; i--) {
+                    total += budget.reserve("CAMP", 3);
+                }
+                System.out.println(total);
+            }
+        }
+    }
+
+    @Test
+    void a_full_or_foreign_file_is_rejected(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("budgets.shm");
+        Result<SharedSpendBudget> full = SharedSpendBudget.open(file, Map.of("A", BigDecimal.ONE, "B", BigDecimal.ONE), 1);
+        assertTrue(full.isFailure());
+        assertTrue(full.failureCause().getCause().getMessage().contains("no free slot"));
+
+        Path foreign = dir.resolve("notes.txt");
+        Files.writeString(foreign, "this is not a budget file, but it is longer than the 64-byte header of one");
+        assertTrue(SharedSpendBudget.open(foreign, Map.of(), 16).isFailure());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.discount.budget;
+
+import com.example.discount.AppliedStep;
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.discount.PricingResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedSpendBudgetTest {
+
+    @Test
+    void concurrent_reservations_hand_out_exactly_the_limit() throws Exception {
+        StripedSpendBudget budget = StripedSpendBudget.inMemory(Map.of("CAMP", new BigDecimal("1000.00")), 8);
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> granted = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                granted.add(pool.submit(() -> {
+                    start.await();
+                    long sum = 0;
+                    for (int i = 0; i < 2_000; i++) {
+                        sum += budget.reserve("CAMP", 7);
+                    }
+                    return sum;
+                }));
+            }
+            start.countDown();
+            long total = 0;
+            for (Future<Long> f : granted) total += f.get(10, TimeUnit.SECONDS);
+            // 16 * 2000 * 7 cents are asked for, far more than the 100,000 available
+            assertEquals(100_000, total);
+        } finally {
+            pool.shutdownNow();
+        }
+        BudgetStatus status = budget.status().get(0);
+        assertEquals(new BigDecimal("1000.00"), status.spent());
+        assertEquals(0, status.remaining().signum());
+        assertEquals(0, budget.reserve("CAMP", 1));
+        assertEquals(5, budget.reserve("UNBUDGETED", 5));
+    }
+
+    @Test
+    void released_amounts_can_be_reserved_again() {
+        StripedSpendBudget budget = StripedSpendBudget.inMemory(Map.of("CAMP", new BigDecimal("1.00")), 4);
+        assertEquals(100, budget.reserve("CAMP", 150));
+        budget.release("CAMP", 40);
+        assertEquals(40, budget.reserve("CAMP", 100));
+    }
+
+    @Test
+    void a_hold_from_before_a_reset_gives_nothing_to_the_new_period() {
+        StripedSpendBudget budget = StripedSpendBudget.inMemory(Map.of("CAMP", new BigDecimal("1.00")), 4);
+        BudgetReservations reservations = new BudgetReservations(budget, BudgetReservations.DEFAULT_TTL);
+        BudgetReservations.Reservation old = reservations.open();
+        assertEquals(60, old.reserve("CAMP", 60));
+        String id = old.hold();
+
+        assertTrue(budget.reset("CAMP"));
+        BudgetReservations.Reservation current = reservations.open();
+        assertEquals(30, current.reserve("CAMP", 30));
+        assertTrue(reservations.cancel(id));
+        assertEquals(List.of(BudgetStatus.ofCents("CAMP", 100, 30)), budget.status());
+
+        // a release within the period still gives back
+        current.cancel();
+        assertEquals(List.of(BudgetStatus.ofCents("CAMP", 100, 0)), budget.status());
+    }
+
+    @Test
+    void an_exhausted_campaign_is_skipped_and_no_longer_blocks_the_coupon() {
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("CAMP20", DiscountGroup.CAMPAIGN, 10, c -> true, c -> new BigDecimal("20.00")),
+                new DiscountRule("COUPON50", DiscountGroup.COUPON, 10, OrderContext::hasCoupon, c -> new BigDecimal("50.00"))
+        );
+        StripedSpendBudget budget = StripedSpendBudget.inMemory(Map.of("CAMP20", new BigDecimal("30.00")), 2);
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2().withSpendBudget(budget);
+        OrderContext ctx = new OrderContext(false, true, OrderPricing.of(new BigDecimal("1000.00")));
+
+        PricingResult first = orchestrator.priceValidated(ctx, rules).getOrThrow();
+        assertEquals("APPLIED", step(first, "CAMP20").note());
+        assertEquals("SKIPPED: blocked by exclusivity policy", step(first, "COUPON50").note());
+        assertEquals(0, new BigDecimal("980.00").compareTo(first.pricing().total()));
+
+        PricingResult second = orchestrator.priceValidated(ctx, rules).getOrThrow();
+        assertEquals("CAPPED: campaign budget, requested=20.00, applied=10.00", step(second, "CAMP20").note());
+        assertEquals(0, new BigDecimal("990.00").compareTo(second.pricing().total()));
+
+        PricingResult third = orchestrator.priceValidated(ctx, rules).getOrThrow();
+        assertEquals("SKIPPED: campaign budget exhausted", step(third, "CAMP20").note());
+        assertEquals("APPLIED", step(third, "COUPON50").note());
+        assertEquals(0, new BigDecimal("950.00").compareTo(third.pricing().total()));
+    }
+
+    @Test
+    void tenant_rules_are_budgeted_apart_from_the_shared_rule_of_the_same_name() {
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("CAMP", DiscountGroup.CAMPAIGN, 10, c -> true, c -> new BigDecimal("20.00")));
+        StripedSpendBudget budget = StripedSpendBudget.inMemory(Map.of("r1/CAMP", new BigDecimal("15.00")), 2);
+        DiscountOrchestratorV2 shared = new DiscountOrchestratorV2().withSpendBudget(budget);
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("100.00")));
+
+        assertEquals("CAPPED: campaign budget, requested=20.00, applied=15.00",
+                step(shared.forTenant("r1").priceValidated(ctx, rules).getOrThrow(), "CAMP").note());
+        assertEquals("APPLIED", step(shared.forTenant("r2").priceValidated(ctx, rules).getOrThrow(), "CAMP").note());
+        assertEquals("APPLIED", step(shared.priceValidated(ctx, rules).getOrThrow(), "CAMP").note());
+        // a read-only view prices against what is left without taking it
+        assertEquals("SKIPPED: campaign budget exhausted", step(shared.withSpendBudget(budget.readOnly())
+                .forTenant("r1").priceValidated(ctx, rules).getOrThrow(), "CAMP").note());
+        assertEquals(List.of(BudgetStatus.ofCents("r1/CAMP", 1_500, 1_500)), budget.status());
+    }
+
+    @Test
+    void spent_amounts_survive_a_restart_and_a_torn_last_record(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("budgets.pbud");
+        Map<String, BigDecimal> limits = Map.of("CAMP", new BigDecimal("100.00"), "OTHER", new BigDecimal("5.00"));
+        try (StripedSpendBudget budget = StripedSpendBudget.open(limits, 4, file, Duration.ofMillis(5)).getOrThrow()) {
+            assertEquals(2_500, budget.reserve("CAMP", 2_500));
+            assertEquals(500, budget.reserve("OTHER", 900));
+        }
+        try (StripedSpendBudget reopened = StripedSpendBudget.open(limits, 4, file, Duration.ofMillis(5)).getOrThrow()) {
+            assertEquals(0, reopened.reserve("OTHER", 1));
+            assertEquals(7_000, reopened.reserve("CAMP", 7_000));
+        }
+
+        // reopening compacted the log to one record per rule, then CAMP=9500 was appended; cut that one in half
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 6));
+        assertEquals(Map.of("CAMP", 2_500L, "OTHER", 500L), BudgetLog.read(file));
+        try (StripedSpendBudget afterTear = StripedSpendBudget.open(limits, 4, file, Duration.ofMillis(5)).getOrThrow()) {
+            assertEquals(7_500, afterTear.reserve("CAMP", 10_000));
+            assertEquals(0, afterTear.reserve("OTHER", 1));
+            assertEquals(0, afterTear.logStats().failed());
+        }
+    }
+
+    private static AppliedStep step(PricingResult result, String rule) {
+        return result.steps().stream().filter(s -> s.ruleName().equals(rule)).findFirst().orElseThrow();
+    }
+}
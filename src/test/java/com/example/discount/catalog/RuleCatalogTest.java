@@ -0,0 +1,194 @@
+package com.example.discount.catalog;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.discount.PricingResult;
+import com.example.discount.application.api.PricingRequest;
+import com.example.discount.application.service.PricingService;
+import com.example.fpcore.Result;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleCatalogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void example_catalog_prices_like_the_built_in_rules() {
+        RuleCatalog catalog = RuleCatalogLoader.load(Path.of("config/rules.json"), 1).getOrThrow();
+        PricingService builtIn = new PricingService();
+        PricingService fromCatalog = PricingService.builder().ruleSource(catalog).build();
+
+        for (int cents = 1_000; cents < 700_000; cents += 7_919) {
+            for (int flags = 0; flags < 4; flags++) {
+                PricingRequest request = new PricingRequest(BigDecimal.valueOf(cents, 2), (flags & 1) != 0, (flags & 2) != 0);
+                PricingResult expected = builtIn.quote(request).getOrThrow();
+                PricingResult actual = fromCatalog.quote(request).getOrThrow();
+                assertEquals(expected.pricing().total(), actual.pricing().total(), request.toString());
+                assertEquals(expected.steps(), actual.steps(), request.toString());
+            }
+        }
+    }
+
+    @Test
+    void expressions_follow_precedence_and_types() {
+        OrderContext ctx = new OrderContext(false, true, OrderPricing.of(new BigDecimal("200.00")));
+
+        assertTrue(condition("total - 10 * 2 >= 180 && !vip").test(ctx));
+        assertFalse(condition("(total - 10) * 2 < 380 || vip").test(ctx));
+        assertTrue(condition("hasCoupon && !(subtotal != 200)").test(ctx));
+        assertEquals(0, new BigDecimal("25").compareTo(amount("min(total / 8, max(10, -5))  + 15").apply(ctx)));
+
+        assertFalse(ExpressionParser.parseCondition("total * 2").isValid());
+        assertFalse(ExpressionParser.parseAmount("vip + 1").isValid());
+        assertFalse(ExpressionParser.parseAmount("total +").isValid());
+        assertFalse(ExpressionParser.parseCondition("price > 3").isValid());
+    }
+
+    @Test
+    void expressions_too_deep_to_evaluate_are_rejected() {
+        int levels = ExpressionParser.MAX_NESTING;
+        assertTrue(ExpressionParser.parseAmount("(".repeat(levels) + "1" + ")".repeat(levels)).isValid());
+        assertTrue(ExpressionParser.parseAmount("(".repeat(levels + 1) + "1" + ")".repeat(levels + 1)).errors()
+                .get(0).contains("nested deeper than " + levels + " levels"));
+        assertFalse(ExpressionParser.parseCondition("!".repeat(100_000) + "vip").isValid());
+        assertFalse(ExpressionParser.parseAmount("-".repeat(100_000) + "1").isValid());
+
+        int operators = ExpressionParser.MAX_OPERATORS;
+        assertEquals(0, new BigDecimal(operators + 1).compareTo(amount("1" + " + 1".repeat(operators)).apply(null)));
+        assertFalse(ExpressionParser.parseAmount("1" + " + 1".repeat(operators + 1)).isValid());
+    }
+
+    @Test
+    void hidden_class_rules_evaluate_like_closure_rules() {
+        String[][] sources = {
+                {"vip && total >= 100", "min(total * 0.10, 50)"},
+                {"!hasCoupon || subtotal - discountTotal < 150", "max(total / 3, 2 * 5) + 1.5"},
+                {"false && total / 0 > 1", "total"},
+                {"true || total / 0 > 1", "(subtotal - 20) * 0.05"},
+                {"total != 200", "10 / 0"},
+                {"total == 200", "-total + 300"}
+        };
+        List<OrderContext> contexts = List.of(
+                new OrderContext(true, false, OrderPricing.of(new BigDecimal("200.00"))),
+                new OrderContext(false, true, OrderPricing.of(new BigDecimal("120.00"))),
+                new OrderContext(true, true, OrderPricing.of(new BigDecimal("999.99")))
+        );
+
+        for (String[] source : sources) {
+            Expr when = ExpressionParser.parseCondition(source[0]).getOrThrow();
+            Expr amount = ExpressionParser.parseAmount(source[1]).getOrThrow();
+            DiscountRule closures = RuleCompiler.CLOSURES.compile("R", DiscountGroup.VIP, 1, when, amount);
+            DiscountRule hidden = RuleCompiler.HIDDEN_CLASSES.compile("R", DiscountGroup.VIP, 1, when, amount);
+            for (OrderContext ctx : contexts) {
+                Result<BigDecimal> expected = closures.evaluate(ctx);
+                Result<BigDecimal> actual = hidden.evaluate(ctx);
+                assertEquals(expected.isSuccess(), actual.isSuccess(), source[0] + " / " + source[1]);
+                assertEquals(expected.isFailure(), actual.isFailure(), source[0] + " / " + source[1]);
+                if (expected.isSuccess()) {
+                    assertEquals(expected.getOrThrow(), actual.getOrThrow(), source[0] + " / " + source[1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void definition_errors_are_accumulated() {
+        String json = """
+                {"rules": [
+                  {"name": "A", "group": "GOLD", "priority": 1, "when": "vip", "amount": "10"},
+                  {"name": "B", "group": "VIP", "when": "total", "amount": "vip"},
+                  {"name": "C", "group": "VIP", "priority": 1, "when": "true", "amount": "1"},
+                  {"name": "C", "group": "VIP", "priority": 2, "when": "true", "amount": "2"}
+                ]}
+                """;
+
+        Result<RuleCatalog> result = RuleCatalogLoader.parse(json.getBytes(StandardCharsets.UTF_8), 1);
+
+        assertTrue(result.isFailure());
+        String message = result.failureCause().getMessage();
+        assertTrue(message.contains("Rule 'A' has unknown group 'GOLD'"), message);
+        assertTrue(message.contains("Rule 'B' must have a priority"), message);
+        assertTrue(message.contains("Rule 'B' when:"), message);
+        assertTrue(message.contains("Rule 'B' amount:"), message);
+        assertTrue(message.contains("Rule 'C' is defined more than once"), message);
+    }
+
+    @Test
+    void catalog_policy_is_compiled_and_its_errors_are_accumulated_with_rule_errors() {
+        String json = """
+                {"rules": [{"name": "A", "group": "VIP", "priority": 1, "when": "vip", "amount": "10"}],
+                 "policy": {"capRate": 0.05, "groupOrder": ["VIP", "COUPON"], "blocks": {"VIP": ["COUPON"]}}}
+                """;
+        RuleCatalog catalog = RuleCatalogLoader.parse(json.getBytes(StandardCharsets.UTF_8), 1).getOrThrow();
+        assertEquals(List.of(DiscountGroup.VIP, DiscountGroup.COUPON), catalog.policy().getOrThrow().groupOrder());
+        assertEquals(new BigDecimal("5.00"),
+                catalog.policy().getOrThrow().cap().maxAllowedDiscount(OrderPricing.of(new BigDecimal("100"))));
+        assertFalse(catalog.policy().getOrThrow().exclusivity().isAllowed(1 << DiscountGroup.VIP.ordinal(), DiscountGroup.COUPON));
+        assertTrue(RuleCatalogLoader.load(Path.of("config/rules.json"), 1).getOrThrow().policy().isEmpty());
+
+        String invalid = """
+                {"rules": [{"name": "A", "group": "GOLD", "priority": 1, "when": "vip", "amount": "10"}],
+                 "policy": {"capRate": 1.5, "groupOrder": ["VIP", "VIP", "SILVER"]}}
+                """;
+        String message = RuleCatalogLoader.parse(invalid.getBytes(StandardCharsets.UTF_8), 1).failureCause().getMessage();
+        assertTrue(message.contains("Rule 'A' has unknown group 'GOLD'"), message);
+        assertTrue(message.contains("Policy capRate must be between 0 and 1"), message);
+        assertTrue(message.contains("Policy groupOrder lists VIP more than once"), message);
+        assertTrue(message.contains("Policy groupOrder has unknown group 'SILVER'"), message);
+    }
+
+    @Test
+    void watcher_swaps_in_changed_file_and_keeps_snapshot_on_invalid_file() throws Exception {
+        Path file = directory.resolve("rules.json");
+        write(file, "10.00");
+
+        try (ReloadingRuleCatalog catalog = ReloadingRuleCatalog.open(file).getOrThrow().watch()) {
+            RuleCatalog first = catalog.current();
+            assertEquals(new BigDecimal("10.00"), first.rules().get(0).calculate().apply(null));
+
+            write(file, "20.00");
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (catalog.current().version() == 1 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, catalog.current().version());
+            assertEquals(new BigDecimal("20.00"), catalog.current().rules().get(0).calculate().apply(null));
+            assertEquals(new BigDecimal("10.00"), first.rules().get(0).calculate().apply(null));
+
+            Files.writeString(file, "{\"rules\": [{\"name\": \"X\"}]}");
+            assertTrue(catalog.reload().isFailure());
+            assertTrue(catalog.lastError().isDefined());
+            assertEquals(2, catalog.current().version());
+        }
+    }
+
+    private static Predicate<OrderContext> condition(String source) {
+        return ExpressionCompiler.condition(ExpressionParser.parseCondition(source).getOrThrow());
+    }
+
+    private static Function<OrderContext, BigDecimal> amount(String source) {
+        return ExpressionCompiler.amount(ExpressionParser.parseAmount(source).getOrThrow());
+    }
+
+    private void write(Path file, String amount) throws Exception {
+        Path tmp = directory.resolve("rules.json.tmp");
+        Files.writeString(tmp, "{\"rules\": [{\"name\": \"FLAT\", \"group\": \"" + DiscountGroup.CAMPAIGN
+                + "\", \"priority\": 1, \"when\": \"true\", \"amount\": \"" + amount + "\"}]}");
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.discount.catalog;
+
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.discount.PricingResult;
+import com.example.discount.application.api.PricingRequest;
+import com.example.discount.application.service.PricingService;
+import com.example.fpcore.Result;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TenantRegistryTest {
+
+    private static final RuleCatalog FLAT_10 = catalog("10.00");
+    private static final long WEIGHT = FLAT_10.estimatedBytes();
+
+    @Test
+    void concurrent_first_requests_for_a_tenant_compile_it_once() throws Exception {
+        AtomicInteger compilations = new AtomicInteger();
+        CountDownLatch compiling = new CountDownLatch(1);
+        TenantRegistry registry = new TenantRegistry(id -> {
+            compilations.incrementAndGet();
+            await(compiling);
+            return Result.success(catalog("10.00"));
+        }, 1 << 20);
+
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Result<RuleCatalog>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    await(start);
+                    return registry.catalog("r1");
+                }));
+            }
+            start.countDown();
+            Thread.sleep(50);
+            compiling.countDown();
+
+            RuleCatalog first = results.get(0).get(5, TimeUnit.SECONDS).getOrThrow();
+            for (Future<Result<RuleCatalog>> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS).getOrThrow());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, compilations.get());
+        assertEquals(1, registry.stats().loads());
+        assertEquals(WEIGHT, registry.stats().bytes());
+    }
+
+    @Test
+    void least_recently_used_tenants_are_evicted_over_the_memory_budget() {
+        Map<String, Integer> compilations = new ConcurrentHashMap<>();
+        TenantRegistry registry = new TenantRegistry(id -> {
+            compilations.merge(id, 1, Integer::sum);
+            return Result.success(catalog("10.00"));
+        }, WEIGHT * 2 + WEIGHT / 2);
+
+        registry.catalog("a");
+        registry.catalog("b");
+        registry.catalog("a");
+        registry.catalog("c"); // over budget: b is the least recently used
+        assertEquals(new TenantRegistry.Stats(1, 3, 0, 0, 1, 2, 0, 2 * WEIGHT, WEIGHT * 2 + WEIGHT / 2), registry.stats());
+
+        registry.catalog("a");
+        registry.catalog("b"); // compiled again, now c goes
+        assertEquals(Map.of("a", 1, "b", 2, "c", 1), compilations);
+        assertEquals(2, registry.stats().evictions());
+
+        registry.invalidate("a");
+        assertEquals(WEIGHT, registry.stats().bytes());
+    }
+
+    @Test
+    void failed_loads_are_reported_and_retried_after_the_negative_ttl() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        TenantRegistry registry = new TenantRegistry(id -> attempts.incrementAndGet() == 1
+                ? Result.failure("catalog store unavailable")
+                : Result.success(catalog("10.00")), 1 << 20, Duration.ofMillis(100));
+
+        assertEquals("catalog store unavailable", registry.catalog("r1").failureCause().getMessage());
+        assertEquals("catalog store unavailable", registry.catalog("r1").failureCause().getMessage());
+        assertEquals(1, attempts.get());
+        assertEquals(1, registry.stats().negative());
+        assertEquals(0, registry.stats().tenants());
+
+        Thread.sleep(150);
+        assertTrue(registry.catalog("r1").isSuccess());
+        assertEquals(2, attempts.get());
+        assertEquals(1, registry.stats().failures());
+        assertEquals(0, registry.stats().negative());
+        assertEquals(WEIGHT, registry.stats().bytes());
+    }
+
+    @Test
+    void watched_directory_changes_take_effect_on_the_next_request(@TempDir Path dir) throws Exception {
+        try (TenantRegistry registry = TenantRegistry.fromDirectory(dir, 1 << 20, Duration.ofHours(1)).watch()) {
+            assertTrue(registry.catalog("r1").isEmpty());
+            assertEquals(1, registry.stats().missing());
+
+            Files.writeString(dir.resolve("r1.json"), flatJson("10.00"));
+            awaitCatalog(registry, "r1", "10.00");
+            Files.writeString(dir.resolve("r1.json"), flatJson("20.00"));
+            awaitCatalog(registry, "r1", "20.00");
+
+            Files.delete(dir.resolve("r1.json"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (registry.catalog("r1").isSuccess() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            Result<RuleCatalog> deleted = registry.catalog("r1");
+            assertTrue(deleted.isEmpty() && !deleted.isFailure());
+        }
+    }
+
+    @Test
+    void service_prices_each_restaurant_with_its_own_catalog_and_policy(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("r1.json"), """
+                {"rules": [{"name": "R1_FLAT", "group": "CAMPAIGN", "priority": 1, "when": "true", "amount": "100.00"}],
+                 "policy": {"capRate": 0.05}}
+                """);
+        Files.writeString(dir.resolve("broken.json"), "{\"rules\": [{\"name\": \"X\"}]}");
+        TenantRegistry registry = TenantRegistry.fromDirectory(dir, 1 << 20);
+        PricingService service = PricingService.builder().tenants(registry).build();
+
+        PricingResult r1 = service.quote(new PricingRequest(new BigDecimal("1200.00"), true, true, null, "r1")).getOrThrow();
+        assertEquals(List.of("R1_FLAT"), r1.steps().stream().map(s -> s.ruleName()).toList());
+        assertEquals(new BigDecimal("1140.00"), r1.pricing().total()); // capped at 5%
+
+        PricingResult shared = service.quote(new PricingRequest(new BigDecimal("1200.00"), true, true)).getOrThrow();
+        assertEquals(new BigDecimal("1044.00"), shared.pricing().total());
+
+        PricingResult unknown = service.quote(new PricingRequest(new BigDecimal("1200.00"), true, true, null, "r2")).getOrThrow();
+        assertEquals(shared.pricing().total(), unknown.pricing().total()); // no file: the shared rules
+        Result<PricingResult> traversal = service.quote(new PricingRequest(new BigDecimal("1200.00"), true, true, null, "../r1"));
+        assertEquals("Invalid restaurantId '../r1'", traversal.failureCause().getMessage());
+        assertTrue(service.quote(new PricingRequest(new BigDecimal("1200.00"), true, true, null, "broken"))
+                .failureCause().getMessage().startsWith("Catalog of restaurant 'broken' is invalid"));
+        assertEquals(1, registry.stats().tenants());
+    }
+
+    private static RuleCatalog catalog(String amount) {
+        return RuleCatalogLoader.parse(flatJson(amount).getBytes(StandardCharsets.UTF_8), 1).getOrThrow();
+    }
+
+    private static String flatJson(String amount) {
+        return "{\"rules\": [{\"name\": \"FLAT\", \"group\": \"CAMPAIGN\", \"priority\": 1, \"when\": \"true\", \"amount\": \""
+                + amount + "\"}]}";
+    }
+
+    /**
+     * Waits for the watcher to drop the old catalog so the next request compiles the file's current content.
+     */
+    private static void awaitCatalog(TenantRegistry registry, String tenant, String amount) throws InterruptedException {
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("1000.00")));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Result<RuleCatalog> catalog = registry.catalog(tenant);
+            if (catalog.isSuccess()
+                    && catalog.getOrThrow().rules().get(0).calculate().apply(ctx).compareTo(new BigDecimal(amount)) == 0) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError(tenant + " never priced at " + amount);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.discount.jfr;
+
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingEventsTest {
+
+    private static final String QUOTE = "com.example.discount.Quote";
+    private static final String RULE = "com.example.discount.RuleEvaluation";
+    private static final String STEP = "com.example.discount.StackingStep";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void quote_rule_and_step_events_are_recorded_when_enabled() throws IOException {
+        OrderContext ctx = new OrderContext(true, true, OrderPricing.of(new BigDecimal("1000.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                        c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+                new DiscountRule("COUPON50", DiscountGroup.COUPON, 5, OrderContext::hasCoupon, c -> new BigDecimal("50.00")),
+                new DiscountRule("CAMPAIGN80", DiscountGroup.CAMPAIGN, 5, c -> true, c -> new BigDecimal("80.00")),
+                new DiscountRule("BROKEN", DiscountGroup.CAMPAIGN, 9, c -> false, c -> BigDecimal.ONE)
+        );
+
+        List<RecordedEvent> events = record(() -> new DiscountOrchestratorV2().priceValidated(ctx, rules));
+
+        RecordedEvent quote = single(events, QUOTE);
+        assertEquals("SUCCESS", quote.getString("outcome"));
+        assertEquals(1000.0, quote.getDouble("subtotal"));
+        assertEquals(180.0, quote.getDouble("discount"));
+        assertEquals(4, quote.getInt("rules"));
+        assertEquals(3, quote.getInt("steps"));
+
+        List<RecordedEvent> evaluations = ofType(events, RULE);
+        assertEquals(4, evaluations.size());
+        assertTrue(evaluations.stream().anyMatch(e -> e.getString("rule").equals("BROKEN")
+                && e.getString("outcome").equals("EMPTY")));
+
+        List<RecordedEvent> steps = ofType(events, STEP);
+        assertEquals(List.of("APPLIED", "APPLIED", "SKIPPED"),
+                steps.stream().map(e -> e.getString("decision")).toList());
+        assertEquals("COUPON", steps.get(2).getString("group"));
+    }
+
+    @Test
+    void failed_quote_records_its_failure() throws IOException {
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("100.00")));
+        List<DiscountRule> rules = List.of(
+                new DiscountRule("THROWS", DiscountGroup.CAMPAIGN, 1, c -> true, c -> {
+                    throw new IllegalStateException("boom");
+                })
+        );
+
+        List<RecordedEvent> events = record(() -> new DiscountOrchestratorV2().priceValidated(ctx, rules));
+
+        RecordedEvent quote = single(events, QUOTE);
+        assertEquals("FAILURE", quote.getString("outcome"));
+        assertNotNull(quote.getString("failure"));
+        assertEquals("FAILURE", single(events, RULE).getString("outcome"));
+        assertTrue(ofType(events, STEP).isEmpty());
+    }
+
+    private List<RecordedEvent> record(Runnable body) throws IOException {
+        Path file = dir.resolve("pricing.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(QUOTE).withThreshold(Duration.ZERO);
+            recording.enable(RULE).withThreshold(Duration.ZERO);
+            recording.enable(STEP);
+            recording.start();
+            body.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = ofType(events, name);
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+}
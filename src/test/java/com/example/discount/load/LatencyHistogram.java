@@ -0,0 +1,147 @@
+package com.example.discount.load;
+
+import java.io.PrintStream;
+
+/**
+ * Log-linear latency histogram in the spirit of HdrHistogram: exact below {@code 2 * SUB_BUCKETS}, then
+ * {@code SUB_BUCKETS} linear sub-buckets per power of two (~0.1% relative precision). Values are microseconds.
+ * <p>
+ * Not thread-safe; each load worker records into its own instance and they are merged with {@link #add}.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 10;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long HIGHEST_TRACKABLE = 3_600_000_000L; // one hour in micros
+    private static final double[] REPORTED_PERCENTILES = {
+            0, 50, 75, 90, 95, 99, 99.5, 99.9, 99.95, 99.99, 99.999, 100
+    };
+
+    private final long[] counts;
+    private long totalCount;
+    private long max;
+    private double sum;
+    private double sumOfSquares;
+
+    LatencyHistogram() {
+        this.counts = new long[indexOf(HIGHEST_TRACKABLE) + 1];
+    }
+
+    void record(long micros) {
+        record(micros, 1);
+    }
+
+    /**
+     * Records {@code micros} and, when it exceeds {@code expectedIntervalMicros}, the samples a non-stalled
+     * closed-loop client would have taken meanwhile ({@code micros - k * interval} for every k > 0),
+     * correcting for coordinated omission the way HdrHistogram's {@code recordValueWithExpectedInterval} does.
+     */
+    void recordCorrected(long micros, long expectedIntervalMicros) {
+        recordCorrected(micros, expectedIntervalMicros, 1);
+    }
+
+    /**
+     * Copy with every recorded bucket replayed through {@link #recordCorrected}, like HdrHistogram's
+     * {@code copyCorrectedForCoordinatedOmission}.
+     */
+    LatencyHistogram correctedCopy(long expectedIntervalMicros) {
+        LatencyHistogram copy = new LatencyHistogram();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                copy.recordCorrected(Math.min(highestEquivalent(i), max), expectedIntervalMicros, counts[i]);
+            }
+        }
+        return copy;
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+    }
+
+    long totalCount() {
+        return totalCount;
+    }
+
+    long max() {
+        return max;
+    }
+
+    double mean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Highest value equivalent to the bucket holding the given percentile (HdrHistogram reporting convention).
+     */
+    long valueAtPercentile(double percentile) {
+        if (totalCount == 0) return 0;
+        long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= countAtPercentile) {
+                return Math.min(highestEquivalent(i), max);
+            }
+        }
+        return max;
+    }
+
+    void print(PrintStream out, String label) {
+        out.printf("%n# %s%n", label);
+        out.printf("%12s %14s %12s %16s%n", "Value(ms)", "Percentile", "TotalCount", "1/(1-Percentile)");
+        for (double p : REPORTED_PERCENTILES) {
+            long value = valueAtPercentile(p);
+            long countBelow = countAtOrBelow(value);
+            String inverse = p >= 100 ? "" : String.format("%16.2f", 1 / (1 - p / 100));
+            out.printf("%12.3f %14.12f %12d %s%n", value / 1000.0, p / 100, countBelow, inverse);
+        }
+        double variance = totalCount == 0 ? 0 : sumOfSquares / totalCount - mean() * mean();
+        out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", mean() / 1000.0, Math.sqrt(Math.max(variance, 0)) / 1000.0);
+        out.printf("#[Max     = %12.3f, Total count    = %12d]%n", max / 1000.0, totalCount);
+    }
+
+    private void recordCorrected(long micros, long expectedIntervalMicros, long count) {
+        record(micros, count);
+        if (expectedIntervalMicros <= 0) return;
+        for (long missing = micros - expectedIntervalMicros; missing >= expectedIntervalMicros; missing -= expectedIntervalMicros) {
+            record(missing, count);
+        }
+    }
+
+    private void record(long micros, long count) {
+        long value = Math.min(Math.max(micros, 0), HIGHEST_TRACKABLE);
+        counts[indexOf(value)] += count;
+        totalCount += count;
+        max = Math.max(max, value);
+        sum += (double) value * count;
+        sumOfSquares += (double) value * value * count;
+    }
+
+    private long countAtOrBelow(long value) {
+        long cumulative = 0;
+        int last = indexOf(value);
+        for (int i = 0; i <= last; i++) {
+            cumulative += counts[i];
+        }
+        return cumulative;
+    }
+
+    static int indexOf(long value) {
+        if (value < 2L * SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return exponent * SUB_BUCKETS + (int) (value >>> exponent);
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < 2 * SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS - 1;
+        long subBucket = index - (long) exponent * SUB_BUCKETS;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.discount.load;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentiles_are_within_bucket_precision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v);
+        }
+
+        assertEquals(100_000, histogram.totalCount());
+        assertEquals(100_000, histogram.max());
+        assertWithin(50_000, histogram.valueAtPercentile(50));
+        assertWithin(99_000, histogram.valueAtPercentile(99));
+        assertWithin(99_900, histogram.valueAtPercentile(99.9));
+        assertEquals(100_000, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    void coordinated_omission_correction_backfills_missed_samples() {
+        LatencyHistogram raw = new LatencyHistogram();
+        LatencyHistogram corrected = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            raw.record(1_000);
+            corrected.recordCorrected(1_000, 1_000);
+        }
+        raw.record(100_000);
+        corrected.recordCorrected(100_000, 1_000);
+
+        assertEquals(100, raw.totalCount());
+        assertEquals(199, corrected.totalCount());
+        assertWithin(1_000, raw.valueAtPercentile(99));
+        assertTrue(corrected.valueAtPercentile(75) > 40_000);
+        assertEquals(corrected.totalCount(), raw.correctedCopy(1_000).totalCount());
+    }
+
+    @Test
+    void merged_histograms_count_both_inputs() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(5_000_000);
+
+        a.add(b);
+
+        assertEquals(2, a.totalCount());
+        assertEquals(5_000_000, a.max());
+        assertEquals(10, a.valueAtPercentile(50));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 500 + 1, () -> "expected ~" + expected + " but was " + actual);
+    }
+}
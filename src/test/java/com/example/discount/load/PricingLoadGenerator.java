@@ -0,0 +1,187 @@
+package com.example.discount.load;
+
+import com.example.discount.application.PricingApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load generator for {@code POST /api/pricing/quote}.
+ * <p>
+ * Boots the application on a random local port (or targets {@code load.url}) and drives it from
+ * {@code load.connections} threads, first for {@code load.warmupSeconds} (discarded), then for {@code load.seconds}.
+ * <ul>
+ *   <li>{@code load.mode=closed}: every connection sends its next request when the previous one returns. Latency is
+ *       corrected for coordinated omission with {@code load.expectedIntervalMicros} (default: the measured median)
+ *       as the expected interval between samples.</li>
+ *   <li>{@code load.mode=fixed-rate}: requests are scheduled at {@code load.rate} per second overall and latency is
+ *       measured from the intended send time, so queueing behind a stall is counted.</li>
+ * </ul>
+ * The request mix is configured through {@link RequestMix#fromSystemProperties()}.
+ * <pre>
+ * mvn -B -Pload verify -Dload.mode=fixed-rate -Dload.rate=2000 -Dload.connections=32
+ * </pre>
+ */
+public final class PricingLoadGenerator {
+
+    private static final String QUOTE_PATH = "/api/pricing/quote";
+    private static final int DISTINCT_BODIES = 4096;
+
+    private enum Mode { CLOSED, FIXED_RATE }
+
+    private PricingLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Mode mode = Mode.valueOf(System.getProperty("load.mode", "closed").toUpperCase().replace('-', '_'));
+        int connections = Integer.getInteger("load.connections", 16);
+        int rate = Integer.getInteger("load.rate", 1000);
+        int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+        int seconds = Integer.getInteger("load.seconds", 20);
+        RequestMix mix = RequestMix.fromSystemProperties();
+        byte[][] bodies = mix.bodies(DISTINCT_BODIES);
+
+        ConfigurableApplicationContext app = null;
+        String url = System.getProperty("load.url");
+        if (url == null) {
+            app = SpringApplication.run(PricingApplication.class,
+                    "--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=WARN");
+            url = "http://localhost:" + ((WebServerApplicationContext) app).getWebServer().getPort();
+        }
+
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            URI target = URI.create(url + QUOTE_PATH);
+            System.out.printf("Target %s, mode %s, %d connections%s, mix: %s%n", target, mode.name().toLowerCase().replace('_', '-'),
+                    connections, mode == Mode.FIXED_RATE ? ", " + rate + " req/s" : "", mix);
+
+            new Run(client, target, bodies, mode, connections, rate).execute(Duration.ofSeconds(warmupSeconds));
+
+            Run measured = new Run(client, target, bodies, mode, connections, rate);
+            measured.execute(Duration.ofSeconds(seconds));
+            measured.report(seconds, Long.getLong("load.expectedIntervalMicros", 0L));
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    /**
+     * One load phase: per-connection histograms, merged when every connection has stopped.
+     */
+    private static final class Run {
+        private final HttpClient client;
+        private final URI target;
+        private final byte[][] bodies;
+        private final Mode mode;
+        private final int connections;
+        private final long intervalNanos;
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final LatencyHistogram responseTime = new LatencyHistogram();
+
+        private Run(HttpClient client, URI target, byte[][] bodies, Mode mode, int connections, int rate) {
+            this.client = client;
+            this.target = target;
+            this.bodies = bodies;
+            this.mode = mode;
+            this.connections = connections;
+            this.intervalNanos = 1_000_000_000L / Math.max(rate, 1);
+        }
+
+        void execute(Duration duration) throws InterruptedException {
+            long start = System.nanoTime();
+            long end = start + duration.toNanos();
+            List<Thread> threads = new ArrayList<>(connections);
+            List<LatencyHistogram[]> perConnection = new ArrayList<>(connections);
+
+            for (int c = 0; c < connections; c++) {
+                LatencyHistogram[] histograms = {new LatencyHistogram(), new LatencyHistogram()};
+                perConnection.add(histograms);
+                Thread thread = new Thread(() -> drive(start, end, histograms[0], histograms[1]), "load-" + c);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (LatencyHistogram[] histograms : perConnection) {
+                serviceTime.add(histograms[0]);
+                responseTime.add(histograms[1]);
+            }
+        }
+
+        private void drive(long start, long end, LatencyHistogram service, LatencyHistogram response) {
+            while (true) {
+                long n = sequence.getAndIncrement();
+                long intended;
+                if (mode == Mode.FIXED_RATE) {
+                    intended = start + n * intervalNanos;
+                    if (intended >= end) return;
+                    long wait;
+                    while ((wait = intended - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                } else {
+                    intended = System.nanoTime();
+                    if (intended >= end) return;
+                }
+
+                long sent = System.nanoTime();
+                send(bodies[(int) (n % bodies.length)]);
+                long done = System.nanoTime();
+
+                service.record((done - sent) / 1_000);
+                if (mode == Mode.FIXED_RATE) {
+                    response.record((done - intended) / 1_000);
+                }
+            }
+        }
+
+        private void send(byte[] body) {
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) errors.incrementAndGet();
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                errors.incrementAndGet();
+            }
+        }
+
+        void report(int seconds, long expectedIntervalMicros) {
+            long expected = expectedIntervalMicros > 0 ? expectedIntervalMicros : serviceTime.valueAtPercentile(50);
+            LatencyHistogram corrected = mode == Mode.FIXED_RATE ? responseTime : serviceTime.correctedCopy(expected);
+            long requests = serviceTime.totalCount();
+            System.out.printf("%nRequests: %d in %ds -> %.0f req/s, errors: %d%n",
+                    requests, seconds, requests / (double) seconds, errors.get());
+            System.out.printf("p50 %.3f ms | p99 %.3f ms | p99.9 %.3f ms | max %.3f ms (%s)%n",
+                    corrected.valueAtPercentile(50) / 1000.0, corrected.valueAtPercentile(99) / 1000.0,
+                    corrected.valueAtPercentile(99.9) / 1000.0, corrected.max() / 1000.0,
+                    mode == Mode.FIXED_RATE ? "from intended send time" : "corrected, expected interval " + expected + "us");
+            corrected.print(System.out, "Response time (coordinated-omission corrected)");
+            serviceTime.print(System.out, "Service time (as measured by the client)");
+        }
+    }
+}
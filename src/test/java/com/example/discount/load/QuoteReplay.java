@@ -0,0 +1,186 @@
+package com.example.discount.load;
+
+import com.example.discount.AppliedStep;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.discount.PricingResult;
+import com.example.discount.RuleSource;
+import com.example.discount.application.api.PricingRequest;
+import com.example.discount.application.capture.RequestCapture;
+import com.example.discount.application.service.PricingService;
+import com.example.discount.catalog.RuleCatalogLoader;
+import com.example.discount.catalog.TenantCatalogs;
+import com.example.discount.catalog.TenantRegistry;
+import com.example.fpcore.Result;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+/**
+ * Replays a captured request file ({@code pricing.capture.path}) in process, single-threaded, as fast as possible.
+ * <p>
+ * Every round prices the whole corpus; after {@code replay.warmupRounds} the remaining rounds are measured for
+ * throughput, per-quote latency and bytes allocated per quote. The outcome of every request in the last round can
+ * be written to {@code replay.output} and compared with the output of another build via {@code replay.compare}.
+ * <pre>
+ * mvn -B -Preplay verify -Dreplay.file=quotes.preq -Dreplay.output=target/replay-new.txt -Dreplay.compare=replay-old.txt
+ * </pre>
+ * Properties: {@code replay.file} (required), {@code replay.target} ({@code service} or {@code orchestrator}),
+ * {@code replay.catalog} (rules file, default the built-in rules), {@code replay.tenants} (directory of restaurant
+ * catalogs for requests with a {@code restaurantId}, service target only), {@code replay.rounds},
+ * {@code replay.warmupRounds}, {@code replay.output}, {@code replay.compare}.
+ */
+public final class QuoteReplay {
+
+    private static final int SHOWN_DIFFERENCES = 10;
+
+    private QuoteReplay() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        String file = System.getProperty("replay.file");
+        if (file == null || file.isBlank()) {
+            throw new IllegalArgumentException("-Dreplay.file=<capture> is required");
+        }
+        String target = System.getProperty("replay.target", "service");
+        int rounds = Integer.getInteger("replay.rounds", 10);
+        int warmupRounds = Integer.getInteger("replay.warmupRounds", 3);
+        String catalog = System.getProperty("replay.catalog", "");
+        String tenantDirectory = System.getProperty("replay.tenants", "");
+
+        List<PricingRequest> requests = RequestCapture.read(Path.of(file)).getOrThrow().stream()
+                .map(RequestCapture.Captured::request)
+                .toList();
+        RuleSource rules = catalog.isBlank()
+                ? PricingService.DEFAULT_RULES
+                : RuleCatalogLoader.load(Path.of(catalog), 1).getOrThrow();
+        Function<PricingRequest, Result<PricingResult>> quote = switch (target) {
+            case "service" -> PricingService.builder().ruleSource(rules).tenants(tenants(tenantDirectory)).build()::quote;
+            case "orchestrator" -> orchestrator(rules);
+            default -> throw new IllegalArgumentException("replay.target must be service or orchestrator, got " + target);
+        };
+
+        System.out.printf("Replaying %,d requests from %s through %s, %d rounds (%d warm-up)%n",
+                requests.size(), file, target, rounds, warmupRounds);
+        List<String> outcomes = run(requests, quote, rounds, warmupRounds, System.out);
+
+        String output = System.getProperty("replay.output", "");
+        if (!output.isBlank()) {
+            Files.write(Path.of(output), outcomes, StandardCharsets.UTF_8);
+            System.out.printf("Outcomes written to %s%n", output);
+        }
+        String compare = System.getProperty("replay.compare", "");
+        if (!compare.isBlank()) {
+            compare(Files.readAllLines(Path.of(compare), StandardCharsets.UTF_8), outcomes, System.out);
+        }
+    }
+
+    /**
+     * Runs all rounds and returns one outcome line per request from the last round.
+     */
+    static List<String> run(List<PricingRequest> requests, Function<PricingRequest, Result<PricingResult>> quote,
+                            int rounds, int warmupRounds, PrintStream out) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        // in-process quotes take microseconds, so record nanoseconds (only print() assumes micros)
+        LatencyHistogram nanos = new LatencyHistogram();
+        long measuredQuotes = 0;
+        long measuredNanos = 0;
+        long measuredBytes = 0;
+        List<Result<PricingResult>> last = new ArrayList<>(requests.size());
+
+        for (int round = 0; round < rounds; round++) {
+            boolean measured = round >= warmupRounds;
+            boolean keep = round == rounds - 1;
+            long bytesBefore = threads.getThreadAllocatedBytes(thread);
+            long roundStart = System.nanoTime();
+            for (PricingRequest request : requests) {
+                long start = System.nanoTime();
+                Result<PricingResult> result = quote.apply(request);
+                long elapsed = System.nanoTime() - start;
+                if (measured) nanos.record(elapsed);
+                if (keep) last.add(result);
+            }
+            long roundNanos = System.nanoTime() - roundStart;
+            long roundBytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+            out.printf("round %2d%s: %,12.0f quotes/s, %,8d B/quote%n", round + 1, measured ? "" : " (warm-up)",
+                    requests.size() / (roundNanos / 1e9), requests.isEmpty() ? 0 : roundBytes / requests.size());
+            if (measured) {
+                measuredQuotes += requests.size();
+                measuredNanos += roundNanos;
+                measuredBytes += roundBytes;
+            }
+        }
+
+        if (measuredQuotes > 0) {
+            out.printf("%nmeasured: %,d quotes, %,.0f quotes/s, %,d B/quote%n", measuredQuotes,
+                    measuredQuotes / (measuredNanos / 1e9), measuredBytes / measuredQuotes);
+            out.printf("latency (us): p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  p99.99 %.2f  max %.2f  mean %.2f%n",
+                    nanos.valueAtPercentile(50) / 1e3, nanos.valueAtPercentile(90) / 1e3,
+                    nanos.valueAtPercentile(99) / 1e3, nanos.valueAtPercentile(99.9) / 1e3,
+                    nanos.valueAtPercentile(99.99) / 1e3, nanos.max() / 1e3, nanos.mean() / 1e3);
+        }
+
+        List<String> outcomes = new ArrayList<>(last.size());
+        for (int i = 0; i < last.size(); i++) {
+            outcomes.add(i + "\t" + describe(last.get(i)));
+        }
+        return outcomes;
+    }
+
+    /**
+     * Prints how many requests priced differently, and the first few of them.
+     */
+    static int compare(List<String> before, List<String> after, PrintStream out) {
+        int differences = 0;
+        int n = Math.max(before.size(), after.size());
+        for (int i = 0; i < n; i++) {
+            String b = i < before.size() ? before.get(i) : "<missing>";
+            String a = i < after.size() ? after.get(i) : "<missing>";
+            if (!a.equals(b)) {
+                if (differences < SHOWN_DIFFERENCES) {
+                    out.printf("- %s%n+ %s%n", b, a);
+                }
+                differences++;
+            }
+        }
+        out.printf("%,d of %,d outcomes differ%n", differences, n);
+        return differences;
+    }
+
+    static String describe(Result<PricingResult> result) {
+        if (result.isSuccess()) {
+            PricingResult priced = result.getOrThrow();
+            StringJoiner steps = new StringJoiner("|");
+            for (AppliedStep step : priced.steps()) {
+                steps.add(step.ruleName() + ":" + step.group() + ":" + step.appliedDiscount().toPlainString() + ":" + step.note());
+            }
+            return "SUCCESS\t" + priced.pricing().total().toPlainString() + "\t" + steps;
+        }
+        return result.outcome(true);
+    }
+
+    private static TenantCatalogs tenants(String directory) {
+        return directory.isBlank() ? TenantCatalogs.NONE : TenantRegistry.fromDirectory(Path.of(directory), Long.MAX_VALUE);
+    }
+
+    private static Function<PricingRequest, Result<PricingResult>> orchestrator(RuleSource rules) {
+        DiscountOrchestratorV2 orchestrator = new DiscountOrchestratorV2();
+        return request -> {
+            if (request.subtotal() == null || request.vip() == null || request.hasCoupon() == null) {
+                return Result.failure("incomplete request");
+            }
+            OrderContext ctx = new OrderContext(request.vip(), request.hasCoupon(), OrderPricing.of(request.subtotal()));
+            return orchestrator.priceValidated(ctx, rules.rules(ctx));
+        };
+    }
+}
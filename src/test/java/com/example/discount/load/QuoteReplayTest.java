@@ -0,0 +1,42 @@
+package com.example.discount.load;
+
+import com.example.discount.application.api.PricingRequest;
+import com.example.discount.application.service.PricingService;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteReplayTest {
+
+    @Test
+    void replay_reports_every_outcome_of_the_last_round_and_compares_builds() {
+        List<PricingRequest> requests = List.of(
+                new PricingRequest(new BigDecimal("1200.00"), true, true),
+                new PricingRequest(null, true, true),
+                new PricingRequest(new BigDecimal("40.00"), false, false)
+        );
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(report, true, StandardCharsets.UTF_8);
+
+        List<String> outcomes = QuoteReplay.run(requests, new PricingService()::quote, 3, 1, out);
+
+        assertEquals(3, outcomes.size());
+        assertTrue(outcomes.get(0).startsWith("0\tSUCCESS\t1044.00\t"));
+        assertTrue(outcomes.get(1).startsWith("1\tFAILURE: "));
+        assertEquals("2\tSUCCESS\t40.00\t", outcomes.get(2));
+        String text = report.toString(StandardCharsets.UTF_8);
+        assertTrue(text.contains("(warm-up)"));
+        assertTrue(text.contains("measured: 6 quotes"));
+        assertTrue(text.contains("latency (us): p50"));
+
+        List<String> changed = List.of(outcomes.get(0), outcomes.get(1), "2\tSUCCESS\t39.00\t");
+        assertEquals(0, QuoteReplay.compare(outcomes, outcomes, out));
+        assertEquals(1, QuoteReplay.compare(outcomes, changed, out));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.discount.load;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Pre-encoded {@code PricingRequest} bodies drawn from a configurable mix.
+ * Subtotals default to 50.00..6000.00, which crosses every dynamic campaign tier (500, 1000, ... 4500).
+ */
+record RequestMix(double vipRatio, double couponRatio, BigDecimal subtotalMin, BigDecimal subtotalMax,
+                  Distribution distribution, long seed) {
+
+    enum Distribution { UNIFORM, LOG_UNIFORM }
+
+    RequestMix {
+        if (vipRatio < 0 || vipRatio > 1 || couponRatio < 0 || couponRatio > 1) {
+            throw new IllegalArgumentException("ratios must be within [0, 1]");
+        }
+        if (subtotalMin.signum() <= 0 || subtotalMax.compareTo(subtotalMin) < 0) {
+            throw new IllegalArgumentException("expected 0 < subtotalMin <= subtotalMax");
+        }
+    }
+
+    static RequestMix fromSystemProperties() {
+        return new RequestMix(
+                Double.parseDouble(System.getProperty("load.vipRatio", "0.2")),
+                Double.parseDouble(System.getProperty("load.couponRatio", "0.3")),
+                new BigDecimal(System.getProperty("load.subtotalMin", "50.00")),
+                new BigDecimal(System.getProperty("load.subtotalMax", "6000.00")),
+                Distribution.valueOf(System.getProperty("load.subtotalDistribution", "uniform").toUpperCase().replace('-', '_')),
+                Long.getLong("load.seed", 42L)
+        );
+    }
+
+    byte[][] bodies(int count) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long minCents = subtotalMin.movePointRight(2).longValue();
+        long maxCents = subtotalMax.movePointRight(2).longValue();
+        byte[][] bodies = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            long cents = distribution == Distribution.UNIFORM
+                    ? minCents + (long) (random.nextDouble() * (maxCents - minCents + 1))
+                    : Math.round(Math.exp(Math.log(minCents) + random.nextDouble() * (Math.log(maxCents) - Math.log(minCents))));
+            String json = "{\"subtotal\":" + BigDecimal.valueOf(cents, 2).toPlainString()
+                    + ",\"vip\":" + (random.nextDouble() < vipRatio)
+                    + ",\"hasCoupon\":" + (random.nextDouble() < couponRatio) + "}";
+            bodies[i] = json.getBytes(StandardCharsets.UTF_8);
+        }
+        return bodies;
+    }
+
+    @Override
+    public String toString() {
+        return "vip=" + vipRatio + " coupon=" + couponRatio + " subtotal=" + subtotalMin + ".." + subtotalMax
+                + " (" + distribution.name().toLowerCase() + ")";
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.discount.shadow;
+
+import com.example.discount.DiscountCapPolicy;
+import com.example.discount.DiscountGroup;
+import com.example.discount.DiscountOrchestratorV2;
+import com.example.discount.DiscountRule;
+import com.example.discount.OrderContext;
+import com.example.discount.OrderPricing;
+import com.example.discount.PricingResult;
+import com.example.discount.RuleSource;
+import com.example.discount.StackingPolicy;
+import com.example.discount.budget.StripedSpendBudget;
+import com.example.discount.catalog.RuleCatalog;
+import com.example.fpcore.Option;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShadowEvaluatorTest {
+
+    private static final List<DiscountRule> LIVE_RULES = List.of(
+            new DiscountRule("VIP10", DiscountGroup.VIP, 10, OrderContext::vip,
+                    c -> c.pricing().total().multiply(new BigDecimal("0.10"))),
+            new DiscountRule("CAMPAIGN100", DiscountGroup.CAMPAIGN, 5, c -> true, c -> new BigDecimal("100.00"))
+    );
+
+    @Test
+    void candidate_differences_in_total_and_steps_are_recorded() {
+        StackingPolicy defaults = StackingPolicy.defaults();
+        DiscountOrchestratorV2 candidate = new DiscountOrchestratorV2(new StackingPolicy(
+                defaults.groupOrder(), defaults.exclusivity(), new DiscountCapPolicy(new BigDecimal("0.15"))));
+        ShadowEvaluator shadow = new ShadowEvaluator(candidate, ctx -> LIVE_RULES, 1.0, 1, 16, 8);
+
+        OrderContext ctx = new OrderContext(true, false, OrderPricing.of(new BigDecimal("1000.00")));
+        PricingResult live = new DiscountOrchestratorV2().price(ctx, LIVE_RULES);
+        shadow.offer(ctx, live);
+        OrderContext regular = new OrderContext(false, false, OrderPricing.of(new BigDecimal("1000.00")));
+        shadow.offer(regular, new DiscountOrchestratorV2().price(regular, LIVE_RULES));
+        await(() -> shadow.stats().compared() == 2);
+        shadow.close();
+
+        ShadowEvaluator.Stats stats = shadow.stats();
+        assertEquals(2, stats.sampled());
+        assertEquals(1, stats.matched());
+        assertEquals(1, stats.differed());
+        assertEquals(0, new BigDecimal("50.00").compareTo(stats.totalDelta()));
+
+        ShadowDiff diff = shadow.recentDiffs(10).get(0);
+        assertEquals(0, new BigDecimal("800.00").compareTo(diff.liveTotal()));
+        assertEquals(0, new BigDecimal("850.00").compareTo(diff.candidateTotal()));
+        assertEquals(0, new BigDecimal("50.00").compareTo(diff.delta()));
+        assertEquals(1, diff.steps().size());
+        ShadowDiff.StepDiff vip = diff.steps().get(0);
+        assertEquals(DiscountGroup.VIP, vip.group());
+        assertEquals("APPLIED", vip.liveNote());
+        assertTrue(vip.candidateNote().startsWith("CAPPED"));
+    }
+
+    @Test
+    void a_candidate_catalog_policy_replaces_the_orchestrator_policy_and_follows_reloads() {
+        StackingPolicy defaults = StackingPolicy.defaults();
+        StackingPolicy capped = new StackingPolicy(
+                defaults.groupOrder(), defaults.exclusivity(), new DiscountCapPolicy(new BigDecimal("0.15")));
+        AtomicReference<RuleCatalog> current = new AtomicReference<>(
+                new RuleCatalog(1, List.of(), LIVE_RULES, Option.some(capped)));
+        RuleSource reloading = new RuleSource() {
+            @Override
+            public List<DiscountRule> rules(OrderContext ctx) {
+                return current.get().rules();
+            }
+
+            @Override
+            public RuleSource snapshot() {
+                return current.get();
+            }
+        };
+        ShadowEvaluator shadow = new ShadowEvaluator(new DiscountOrchestratorV2(), reloading, 1.0, 1, 16, 8);
+
+        OrderContext ctx = new OrderContext(true, false, OrderPricing.of(new BigDecimal("1000.00")));
+        PricingResult live = new DiscountOrchestratorV2().price(ctx, LIVE_RULES);
+        shadow.offer(ctx, live);
+        await(() -> shadow.stats().compared() == 1);
+        assertEquals(0, new BigDecimal("850.00").compareTo(shadow.recentDiffs(10).get(0).candidateTotal()));
+
+        current.set(new RuleCatalog(2, List.of(), LIVE_RULES, Option.none()));
+        shadow.offer(ctx, live);
+        await(() -> shadow.stats().compared() == 2);
+        shadow.close();
+        assertEquals(1, shadow.stats().matched());
+        assertEquals(1, shadow.stats().differed());
+    }
+
+    @Test
+    void failing_candidate_is_counted_and_recorded() {
+        RuleSource broken = ctx -> List.of(new DiscountRule("BROKEN", DiscountGroup.VIP, 1, c -> true, c -> {
+            throw new IllegalStateException("bad candidate");
+        }));
+        ShadowEvaluator shadow = new ShadowEvaluator(new DiscountOrchestratorV2(), broken, 1.0, 1, 16, 8);
+
+        OrderContext ctx = new OrderContext(true, false, OrderPricing.of(new BigDecimal("100.00")));
+        shadow.offer(ctx, new DiscountOrchestratorV2().price(ctx, LIVE_RULES));
+        await(() -> shadow.stats().compared() == 1);
+        shadow.close();
+
+        assertEquals(1, shadow.stats().candidateFailed());
+        ShadowDiff diff = shadow.recentDiffs(1).get(0);
+        assertNull(diff.candidateTotal());
+        assertTrue(diff.candidateOutcome().startsWith("FAILURE: "));
+        assertEquals(2, diff.steps().size());
+    }
+
+    @Test
+    void work_is_dropped_when_the_queue_is_full() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        RuleSource blocking = ctx -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return LIVE_RULES;
+        };
+        ShadowEvaluator shadow = new ShadowEvaluator(new DiscountOrchestratorV2(), blocking, 1.0, 1, 1, 8);
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("100.00")));
+        PricingResult live = new DiscountOrchestratorV2().price(ctx, LIVE_RULES);
+
+        shadow.offer(ctx, live);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            shadow.offer(ctx, live);
+        }
+        assertEquals(3, shadow.stats().dropped());
+
+        release.countDown();
+        await(() -> shadow.stats().compared() == 2);
+        shadow.close();
+        assertEquals(2, shadow.stats().matched());
+    }
+
+    @Test
+    void budget_limited_live_quotes_are_not_compared_and_closing_closes_the_candidate_rules() {
+        AtomicBoolean rulesClosed = new AtomicBoolean();
+        class ClosingRules implements RuleSource, AutoCloseable {
+            @Override
+            public List<DiscountRule> rules(OrderContext ctx) {
+                return LIVE_RULES;
+            }
+
+            @Override
+            public void close() {
+                rulesClosed.set(true);
+            }
+        }
+        ShadowEvaluator shadow = new ShadowEvaluator(new DiscountOrchestratorV2(), new ClosingRules(), 1.0, 1, 16, 8);
+        DiscountOrchestratorV2 budgeted = new DiscountOrchestratorV2()
+                .withSpendBudget(StripedSpendBudget.inMemory(Map.of("CAMPAIGN100", new BigDecimal("150.00")), 1));
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("1000.00")));
+
+        shadow.offer(ctx, budgeted.price(ctx, LIVE_RULES));
+        PricingResult capped = budgeted.price(ctx, LIVE_RULES);
+        assertTrue(capped.steps().get(0).limitedByBudget());
+        shadow.offer(ctx, capped);
+        await(() -> shadow.stats().compared() + shadow.stats().budgetLimited() == 2);
+        shadow.close();
+
+        assertEquals(1, shadow.stats().matched());
+        assertEquals(1, shadow.stats().budgetLimited());
+        assertEquals(0, shadow.stats().differed());
+        assertTrue(rulesClosed.get());
+    }
+
+    @Test
+    void unsampled_quotes_are_not_priced() {
+        ShadowEvaluator shadow = new ShadowEvaluator(new DiscountOrchestratorV2(), ctx -> LIVE_RULES, 0.0, 1, 1, 1);
+        OrderContext ctx = new OrderContext(false, false, OrderPricing.of(new BigDecimal("100.00")));
+        shadow.offer(ctx, new DiscountOrchestratorV2().price(ctx, LIVE_RULES));
+        shadow.close();
+        assertEquals(0, shadow.stats().sampled());
+        assertTrue(shadow.recentDiffs(10).isEmpty());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("condition not reached within 5s");
+            Thread.onSpinWait();
+        }
+    }
+}